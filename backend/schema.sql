@@ -119,8 +119,10 @@ CREATE TABLE IF NOT EXISTS `message` (
   `type` ENUM('ai', 'user') NOT NULL COMMENT '消息类型',
   `text` TEXT NOT NULL COMMENT '消息内容',
   `created_at` DATETIME NOT NULL COMMENT '消息创建时间',
+  `turn_id` VARCHAR(36) NULL COMMENT '生成该AI回复的队列任务ID（异步对话轮次、opening:/final:加会话ID），保证重复投递只保存一次',
   PRIMARY KEY (`id`),
   INDEX `idx_message_session` (`session_id` ASC) VISIBLE,
+  UNIQUE INDEX `uq_message_turn` (`turn_id` ASC) VISIBLE,
   CONSTRAINT `fk_message_session`
     FOREIGN KEY (`session_id`)
     REFERENCES `session` (`id`)
@@ -2,19 +2,22 @@
 package com.xinyu.InterviewCoach_v2.config;
 
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
-import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ThreadPoolExecutor;
 
 /**
  * 队列相关配置
- * 配置AI处理线程池和异步任务
+ * 配置异步任务和定时任务线程池，AI任务按Topic由AIQueueBulkhead执行
+ * spring.threads.virtual.enabled=true且运行在Java 21+时，改用虚拟线程执行器
  */
 @Configuration
 @EnableAsync
@@ -22,49 +25,12 @@ import java.util.concurrent.ThreadPoolExecutor;
 @ConditionalOnProperty(name = "queue.ai.enabled", havingValue = "true", matchIfMissing = true)
 public class QueueConfiguration {
 
-    /**
-     * AI处理专用线程池
-     * 用于处理AI相关的异步任务（OpenAI API调用、embedding计算等）
-     */
-    @Bean("aiProcessorExecutor")
-    public Executor aiProcessorExecutor() {
-        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-
-        // 核心线程数：保持3个线程处理高优先级AI任务
-        executor.setCorePoolSize(3);
-
-        // 最大线程数：高峰期可扩展到8个线程
-        executor.setMaxPoolSize(8);
-
-        // 队列容量：缓冲50个AI任务
-        executor.setQueueCapacity(50);
-
-        // 线程名前缀：便于日志追踪
-        executor.setThreadNamePrefix("ai-processor-");
-
-        // 拒绝策略：调用者线程执行，保证任务不丢失
-        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
-
-        // 线程空闲时间：60秒后回收
-        executor.setKeepAliveSeconds(60);
-
-        // 允许核心线程超时
-        executor.setAllowCoreThreadTimeOut(true);
-
-        // 优雅关闭：等待任务完成
-        executor.setWaitForTasksToCompleteOnShutdown(true);
-        executor.setAwaitTerminationSeconds(30);
-
-        executor.initialize();
-
-        return executor;
-    }
-
     /**
      * 通用异步处理线程池
      * 用于处理非AI的异步任务（数据更新、缓存操作等）
      */
     @Bean("taskExecutor")
+    @ConditionalOnThreading(Threading.PLATFORM)
     public Executor taskExecutor() {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
 
@@ -87,6 +53,18 @@ public class QueueConfiguration {
         return executor;
     }
 
+    /**
+     * 通用异步处理虚拟线程执行器
+     */
+    @Bean("taskExecutor")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public Executor virtualTaskExecutor() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("task-vt-");
+        executor.setVirtualThreads(true);
+        executor.setTaskTerminationTimeout(20000);
+        return executor;
+    }
+
     /**
      * 定时任务线程池
      * 用于队列监控、缓存清理等定时任务
@@ -8,11 +8,13 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 /**
- * Redis配置类 - 只配置objectRedisTemplate，复用Spring Boot的stringRedisTemplate
+ * Redis配置类 - 配置objectRedisTemplate和binaryRedisTemplate，复用Spring Boot的stringRedisTemplate
  */
 @Configuration
 public class RedisConfig {
@@ -42,6 +44,36 @@ public class RedisConfig {
         return template;
     }
 
+    /**
+     * 配置RedisTemplate<String, byte[]> - 存储embedding等二进制数据
+     */
+    @Bean("binaryRedisTemplate")
+    public RedisTemplate<String, byte[]> binaryRedisTemplate(RedisConnectionFactory connectionFactory) {
+        RedisTemplate<String, byte[]> template = new RedisTemplate<>();
+        template.setConnectionFactory(connectionFactory);
+
+        StringRedisSerializer stringRedisSerializer = new StringRedisSerializer();
+        template.setKeySerializer(stringRedisSerializer);
+        template.setHashKeySerializer(stringRedisSerializer);
+
+        // Value直接读写原始字节
+        template.setValueSerializer(RedisSerializer.byteArray());
+        template.setHashValueSerializer(RedisSerializer.byteArray());
+
+        template.afterPropertiesSet();
+        return template;
+    }
+
+    /**
+     * Redis pub/sub监听容器 - 用于近端缓存跨节点失效
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
+
     /**
      * 配置ObjectMapper用于Redis序列化
      */
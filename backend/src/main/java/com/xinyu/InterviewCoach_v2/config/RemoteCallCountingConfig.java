@@ -0,0 +1,79 @@
+package com.xinyu.InterviewCoach_v2.config;
+
+import com.xinyu.InterviewCoach_v2.util.RemoteCallCounter;
+import io.lettuce.core.AbstractRedisClient;
+import io.lettuce.core.event.command.CommandListener;
+import io.lettuce.core.event.command.CommandStartedEvent;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+
+/**
+ * 远程调用计数配置
+ * 注册MyBatis拦截器和Lettuce命令监听器，为RemoteCallCounter提供数据库语句和Redis命令计数
+ */
+@Configuration
+public class RemoteCallCountingConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(RemoteCallCountingConfig.class);
+
+    /**
+     * MyBatis拦截器 - 每条查询或更新语句计数一次
+     */
+    @Bean
+    public Interceptor remoteCallCountingInterceptor() {
+        return new DatabaseCallCountingInterceptor();
+    }
+
+    /**
+     * 在Lettuce客户端建立连接前注册命令监听器 - 每条Redis命令计数一次（pipeline中的命令分别计数）
+     */
+    @Bean
+    public static BeanPostProcessor redisCallCountingPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof LettuceConnectionFactory connectionFactory) {
+                    AbstractRedisClient client = connectionFactory.getNativeClient();
+                    if (client != null) {
+                        client.addListener(new CommandListener() {
+                            @Override
+                            public void commandStarted(CommandStartedEvent event) {
+                                RemoteCallCounter.recordRedis();
+                            }
+                        });
+                    } else {
+                        logger.warn("Lettuce客户端尚未初始化，Redis命令不计数");
+                    }
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Intercepts({
+            @Signature(type = Executor.class, method = "update",
+                    args = {MappedStatement.class, Object.class}),
+            @Signature(type = Executor.class, method = "query",
+                    args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class})
+    })
+    static class DatabaseCallCountingInterceptor implements Interceptor {
+
+        @Override
+        public Object intercept(Invocation invocation) throws Throwable {
+            RemoteCallCounter.recordDatabase();
+            return invocation.proceed();
+        }
+    }
+}
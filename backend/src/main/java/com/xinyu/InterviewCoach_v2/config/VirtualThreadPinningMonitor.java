@@ -0,0 +1,89 @@
+// VirtualThreadPinningMonitor.java - 虚拟线程钉住监控
+package com.xinyu.InterviewCoach_v2.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+
+/**
+ * 虚拟线程钉住(pinning)监控
+ * 虚拟线程在synchronized块内阻塞时会钉住载体线程，导致吞吐退化为平台线程模型。
+ * 通过JFR的jdk.VirtualThreadPinned事件记录超过阈值的钉住，并输出触发位置，便于替换为ReentrantLock
+ */
+@Component
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadPinningMonitor {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    @Value("${queue.ai.virtual-threads.pinned-threshold-ms:20}")
+    private long pinnedThresholdMs;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    private Counter pinnedCounter;
+
+    private RecordingStream recordingStream;
+
+    @PostConstruct
+    private void start() {
+        if (meterRegistry != null) {
+            pinnedCounter = Counter.builder("jvm.virtual.thread.pinned").register(meterRegistry);
+        }
+
+        try {
+            recordingStream = new RecordingStream();
+            recordingStream.enable(PINNED_EVENT)
+                    .withThreshold(Duration.ofMillis(pinnedThresholdMs))
+                    .withStackTrace();
+            recordingStream.onEvent(PINNED_EVENT, event -> {
+                if (pinnedCounter != null) pinnedCounter.increment();
+                logger.warn("虚拟线程被钉住: duration={}ms, at={}",
+                        event.getDuration().toMillis(), topFrame(event.getStackTrace()));
+            });
+            recordingStream.startAsync();
+            logger.info("虚拟线程钉住监控已启动: threshold={}ms", pinnedThresholdMs);
+        } catch (Exception e) {
+            logger.warn("虚拟线程钉住监控启动失败，可使用-Djdk.tracePinnedThreads=short排查", e);
+        }
+    }
+
+    @PreDestroy
+    private void stop() {
+        if (recordingStream != null) {
+            recordingStream.close();
+        }
+    }
+
+    /**
+     * 取第一个非JDK的栈帧作为钉住位置
+     */
+    private String topFrame(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return "unknown";
+        }
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            String type = frame.getMethod().getType().getName();
+            if (!type.startsWith("java.") && !type.startsWith("jdk.")) {
+                return type + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+            }
+        }
+        return stackTrace.getFrames().isEmpty() ? "unknown" : stackTrace.getFrames().get(0).toString();
+    }
+}
@@ -65,6 +65,8 @@ public class AIQueueProperties {
     public static class Streams {
         private String requests = "ai:requests";
         private String responses = "ai:responses";
+        private String retry = "ai:requests:retry";        // 等待重试的消息(ZSET，score为到期时间)
+        private String deadLetter = "ai:requests:dlq";     // 超过最大重试次数的消息
 
         public String getRequests() {
             return requests;
@@ -81,6 +83,31 @@ public class AIQueueProperties {
         public void setResponses(String responses) {
             this.responses = responses;
         }
+
+        public String getRetry() {
+            return retry;
+        }
+
+        public void setRetry(String retry) {
+            this.retry = retry;
+        }
+
+        public String getDeadLetter() {
+            return deadLetter;
+        }
+
+        public void setDeadLetter(String deadLetter) {
+            this.deadLetter = deadLetter;
+        }
+
+        /**
+         * 按优先级和Topic划分的请求流名称，如ai:requests:high:feedback_generation
+         * 每个流只有一个Topic，消费者可以按Topic的剩余处理能力决定读不读
+         */
+        public String forTopic(String topic, String priority) {
+            String name = topic.startsWith("ai.") ? topic.substring(3) : topic;
+            return requests + ":" + priority + ":" + name;
+        }
     }
 
     /**
@@ -92,6 +119,13 @@ public class AIQueueProperties {
         private int maxMessages = 10;
         private long blockTimeout = 2000;
         private boolean autoAck = false;
+        private int threads = 2;                    // 常驻消费循环线程数
+        private String dequeueMode = "strict";      // strict：严格按优先级；weighted：按权重轮转优先读取的流
+        private int highWeight = 6;
+        private int mediumWeight = 3;
+        private int lowWeight = 1;
+        private long claimMinIdleMs = 600000;       // 待确认超过该时长视为消费者已失效，由其他消费者回收；须大于单条消息最长处理时间
+        private int claimBatchSize = 100;           // 每个流单次回收的最大条数
 
         public String getGroupName() {
             return groupName;
@@ -132,6 +166,62 @@ public class AIQueueProperties {
         public void setAutoAck(boolean autoAck) {
             this.autoAck = autoAck;
         }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+
+        public String getDequeueMode() {
+            return dequeueMode;
+        }
+
+        public void setDequeueMode(String dequeueMode) {
+            this.dequeueMode = dequeueMode;
+        }
+
+        public int getHighWeight() {
+            return highWeight;
+        }
+
+        public void setHighWeight(int highWeight) {
+            this.highWeight = highWeight;
+        }
+
+        public int getMediumWeight() {
+            return mediumWeight;
+        }
+
+        public void setMediumWeight(int mediumWeight) {
+            this.mediumWeight = mediumWeight;
+        }
+
+        public int getLowWeight() {
+            return lowWeight;
+        }
+
+        public void setLowWeight(int lowWeight) {
+            this.lowWeight = lowWeight;
+        }
+
+        public long getClaimMinIdleMs() {
+            return claimMinIdleMs;
+        }
+
+        public void setClaimMinIdleMs(long claimMinIdleMs) {
+            this.claimMinIdleMs = claimMinIdleMs;
+        }
+
+        public int getClaimBatchSize() {
+            return claimBatchSize;
+        }
+
+        public void setClaimBatchSize(int claimBatchSize) {
+            this.claimBatchSize = claimBatchSize;
+        }
     }
 
     /**
@@ -140,7 +230,8 @@ public class AIQueueProperties {
     public static class Processors {
         private int threadPoolSize = 5;
         private int maxRetries = 3;
-        private int retryDelaySeconds = 5;
+        private int retryDelaySeconds = 5;          // 首次重试延迟，之后每次翻倍
+        private int maxRetryDelaySeconds = 300;
 
         public int getThreadPoolSize() {
             return threadPoolSize;
@@ -165,16 +256,25 @@ public class AIQueueProperties {
         public void setRetryDelaySeconds(int retryDelaySeconds) {
             this.retryDelaySeconds = retryDelaySeconds;
         }
+
+        public int getMaxRetryDelaySeconds() {
+            return maxRetryDelaySeconds;
+        }
+
+        public void setMaxRetryDelaySeconds(int maxRetryDelaySeconds) {
+            this.maxRetryDelaySeconds = maxRetryDelaySeconds;
+        }
     }
 
     /**
      * Topic配置
      */
     public static class Topics {
-        private TopicConfig questionGeneration = new TopicConfig(true, "high");
-        private TopicConfig feedbackGeneration = new TopicConfig(true, "high");
-        private EmbeddingTopicConfig embeddingCalculation = new EmbeddingTopicConfig(true, "medium", 10);
-        private TopicConfig finalEvaluation = new TopicConfig(true, "low");
+        // 各Topic并发上限之和不应超过OpenAI客户端的并发许可（openai.api.max-concurrency / openai.embedding.max-concurrency）
+        private TopicConfig questionGeneration = new TopicConfig(true, "high", 4);
+        private TopicConfig feedbackGeneration = new TopicConfig(true, "high", 10);
+        private EmbeddingTopicConfig embeddingCalculation = new EmbeddingTopicConfig(true, "medium", 10, 4);
+        private TopicConfig finalEvaluation = new TopicConfig(true, "low", 4);
 
         public TopicConfig getQuestionGeneration() {
             return questionGeneration;
@@ -214,12 +314,14 @@ public class AIQueueProperties {
         public static class TopicConfig {
             private boolean enabled;
             private String priority;
+            private int maxConcurrency = 4;         // 该Topic同时处理的最大消息数(隔离舱容量)
 
             public TopicConfig() {}
 
-            public TopicConfig(boolean enabled, String priority) {
+            public TopicConfig(boolean enabled, String priority, int maxConcurrency) {
                 this.enabled = enabled;
                 this.priority = priority;
+                this.maxConcurrency = maxConcurrency;
             }
 
             public boolean isEnabled() {
@@ -237,6 +339,14 @@ public class AIQueueProperties {
             public void setPriority(String priority) {
                 this.priority = priority;
             }
+
+            public int getMaxConcurrency() {
+                return maxConcurrency;
+            }
+
+            public void setMaxConcurrency(int maxConcurrency) {
+                this.maxConcurrency = maxConcurrency;
+            }
         }
 
         /**
@@ -249,8 +359,8 @@ public class AIQueueProperties {
                 super();
             }
 
-            public EmbeddingTopicConfig(boolean enabled, String priority, int batchSize) {
-                super(enabled, priority);
+            public EmbeddingTopicConfig(boolean enabled, String priority, int batchSize, int maxConcurrency) {
+                super(enabled, priority, maxConcurrency);
                 this.batchSize = batchSize;
             }
 
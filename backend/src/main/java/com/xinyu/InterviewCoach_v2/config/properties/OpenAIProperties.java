@@ -0,0 +1,190 @@
+// OpenAIProperties.java - OpenAI客户端配置属性类
+package com.xinyu.InterviewCoach_v2.config.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * OpenAI客户端配置属性
+ * 映射application.yml中的openai配置
+ */
+@Component
+@ConfigurationProperties(prefix = "openai")
+public class OpenAIProperties {
+
+    private Api api = new Api();
+    private Embedding embedding = new Embedding();
+
+    // 主类getter/setter
+    public Api getApi() {
+        return api;
+    }
+
+    public void setApi(Api api) {
+        this.api = api;
+    }
+
+    public Embedding getEmbedding() {
+        return embedding;
+    }
+
+    public void setEmbedding(Embedding embedding) {
+        this.embedding = embedding;
+    }
+
+    /**
+     * Chat Completions接口配置
+     */
+    public static class Api {
+        private String key;
+        private String url = "https://api.openai.com/v1/chat/completions";
+        private long timeout = 30000;           // 单次请求超时(ms)
+        private long connectTimeout = 5000;     // 建连超时(ms)
+        private int maxRetries = 2;             // 最大重试次数
+        private long retryDelayMs = 1000;       // 重试基础延迟(ms)，按指数退避并加随机抖动
+        private int maxConcurrency = 20;        // 最大并发请求数
+        private long acquireTimeoutMs = 10000;  // 等待并发许可的超时(ms)
+        private long streamIdleTimeoutMs = 15000;   // 流式响应两次数据之间的最长间隔(ms)
+        private long streamTimeoutMs = 120000;      // 流式响应从发出请求到结束的总时长上限(ms)
+
+        public String getKey() {
+            return key;
+        }
+
+        public void setKey(String key) {
+            this.key = key;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public long getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(long timeout) {
+            this.timeout = timeout;
+        }
+
+        public long getConnectTimeout() {
+            return connectTimeout;
+        }
+
+        public void setConnectTimeout(long connectTimeout) {
+            this.connectTimeout = connectTimeout;
+        }
+
+        public int getMaxRetries() {
+            return maxRetries;
+        }
+
+        public void setMaxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+        }
+
+        public long getRetryDelayMs() {
+            return retryDelayMs;
+        }
+
+        public void setRetryDelayMs(long retryDelayMs) {
+            this.retryDelayMs = retryDelayMs;
+        }
+
+        public int getMaxConcurrency() {
+            return maxConcurrency;
+        }
+
+        public void setMaxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+        }
+
+        public long getAcquireTimeoutMs() {
+            return acquireTimeoutMs;
+        }
+
+        public void setAcquireTimeoutMs(long acquireTimeoutMs) {
+            this.acquireTimeoutMs = acquireTimeoutMs;
+        }
+
+        public long getStreamIdleTimeoutMs() {
+            return streamIdleTimeoutMs;
+        }
+
+        public void setStreamIdleTimeoutMs(long streamIdleTimeoutMs) {
+            this.streamIdleTimeoutMs = streamIdleTimeoutMs;
+        }
+
+        public long getStreamTimeoutMs() {
+            return streamTimeoutMs;
+        }
+
+        public void setStreamTimeoutMs(long streamTimeoutMs) {
+            this.streamTimeoutMs = streamTimeoutMs;
+        }
+    }
+
+    /**
+     * Embeddings接口配置
+     */
+    public static class Embedding {
+        private String url = "https://api.openai.com/v1/embeddings";
+        private String model = "text-embedding-3-small";
+        private int batchSize = 20;
+        private long batchWindowMs = 5;         // 单条请求合并等待窗口(ms)
+        private long timeout = 25000;           // 单次请求超时(ms)
+        private int maxConcurrency = 10;        // 最大并发请求数
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getModel() {
+            return model;
+        }
+
+        public void setModel(String model) {
+            this.model = model;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public long getBatchWindowMs() {
+            return batchWindowMs;
+        }
+
+        public void setBatchWindowMs(long batchWindowMs) {
+            this.batchWindowMs = batchWindowMs;
+        }
+
+        public long getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(long timeout) {
+            this.timeout = timeout;
+        }
+
+        public int getMaxConcurrency() {
+            return maxConcurrency;
+        }
+
+        public void setMaxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+        }
+    }
+}
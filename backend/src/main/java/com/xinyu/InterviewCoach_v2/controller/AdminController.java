@@ -6,6 +6,7 @@ import com.xinyu.InterviewCoach_v2.dto.request.admin.BatchImportRequestDTO;
 import com.xinyu.InterviewCoach_v2.dto.response.common.ApiErrorResponseDTO;
 import com.xinyu.InterviewCoach_v2.dto.response.common.ApiSuccessResponseDTO;
 import com.xinyu.InterviewCoach_v2.enums.UserRole;
+import com.xinyu.InterviewCoach_v2.queue.producer.AIQueueProducer;
 import com.xinyu.InterviewCoach_v2.service.*;
 import com.xinyu.InterviewCoach_v2.util.JwtUtil;
 import jakarta.servlet.http.HttpServletRequest;
@@ -33,6 +34,9 @@ public class AdminController {
     @Autowired
     private JwtUtil jwtUtil;
 
+    @Autowired
+    private AIQueueProducer aiQueueProducer;
+
     /**
      * 通过JSON文件批量导入题目
      */
@@ -190,6 +194,52 @@ public class AdminController {
         }
     }
 
+    /**
+     * 查看AI队列死信流中的消息数
+     */
+    @GetMapping("/queue/dead-letters/count")
+    public ResponseEntity<?> getDeadLetterCount(HttpServletRequest httpRequest) {
+        if (!isAdmin(httpRequest)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(new ApiErrorResponseDTO("权限不足，需要管理员权限", "INSUFFICIENT_PERMISSION"));
+        }
+
+        try {
+            return ResponseEntity.ok(new ApiSuccessResponseDTO<>("获取死信消息数成功",
+                    Map.of("count", aiQueueProducer.getDeadLetterCount())));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new ApiErrorResponseDTO("服务器内部错误: " + e.getMessage(), "INTERNAL_ERROR"));
+        }
+    }
+
+    /**
+     * 重新投递AI队列死信流中的消息
+     */
+    @PostMapping("/queue/dead-letters/replay")
+    public ResponseEntity<?> replayDeadLetters(
+            @RequestParam(defaultValue = "100") int count,
+            HttpServletRequest httpRequest) {
+        if (!isAdmin(httpRequest)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(new ApiErrorResponseDTO("权限不足，需要管理员权限", "INSUFFICIENT_PERMISSION"));
+        }
+
+        if (count < 1 || count > 1000) {
+            return ResponseEntity.badRequest()
+                    .body(new ApiErrorResponseDTO("单次重新投递数量需在1到1000之间", "INVALID_COUNT"));
+        }
+
+        try {
+            int replayed = aiQueueProducer.replayDeadLetters(count);
+            return ResponseEntity.ok(new ApiSuccessResponseDTO<>("已重新投递" + replayed + "条死信消息",
+                    Map.of("replayed", replayed)));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new ApiErrorResponseDTO("服务器内部错误: " + e.getMessage(), "INTERNAL_ERROR"));
+        }
+    }
+
     /**
      * 验证是否为管理员
      */
@@ -5,6 +5,7 @@ import com.xinyu.InterviewCoach_v2.dto.core.SessionDTO;
 import com.xinyu.InterviewCoach_v2.dto.request.chat.SendMessageRequestDTO;
 import com.xinyu.InterviewCoach_v2.dto.request.chat.StartInterviewRequestDTO;
 import com.xinyu.InterviewCoach_v2.dto.response.chat.ChatMessageResponseDTO;
+import com.xinyu.InterviewCoach_v2.dto.response.chat.ChatTurnResponseDTO;
 import com.xinyu.InterviewCoach_v2.dto.response.chat.InterviewSessionResponseDTO;
 import com.xinyu.InterviewCoach_v2.dto.response.common.ApiErrorResponseDTO;
 import com.xinyu.InterviewCoach_v2.dto.response.common.ApiSuccessResponseDTO;
@@ -20,6 +21,7 @@ import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 /**
  * 对话控制层 - 重构后使用统一的DTO
@@ -68,6 +70,7 @@ public class ChatController {
 
     /**
      * 发送消息到指定会话
+     * 异步模式下保存回答后返回202和turnId，AI回复通过WebSocket推送，也可轮询对话轮次接口
      */
     @PostMapping("/sessions/{sessionId}/messages")
     public ResponseEntity<?> sendMessage(@PathVariable Long sessionId,
@@ -80,6 +83,16 @@ public class ChatController {
                         .body(new ApiErrorResponseDTO("用户未认证", "UNAUTHORIZED"));
             }
 
+            if (chatService.shouldProcessAsync(request)) {
+                ChatTurnResponseDTO turn = chatService.submitMessage(userId, sessionId, request);
+                if (turn.isSuccess()) {
+                    return ResponseEntity.status(HttpStatus.ACCEPTED).body(turn);
+                } else {
+                    return ResponseEntity.badRequest()
+                            .body(new ApiErrorResponseDTO(turn.getMessage(), "SEND_MESSAGE_FAILED"));
+                }
+            }
+
             ChatMessageResponseDTO response = chatService.processMessage(userId, sessionId, request);
 
             if (response.isSuccess()) {
@@ -95,6 +108,32 @@ public class ChatController {
         }
     }
 
+    /**
+     * 查询异步对话轮次的处理状态和AI回复
+     */
+    @GetMapping("/sessions/{sessionId}/turns/{turnId}")
+    public ResponseEntity<?> getTurn(@PathVariable Long sessionId, @PathVariable String turnId,
+                                     HttpServletRequest httpRequest) {
+        try {
+            Long userId = getUserIdFromRequest(httpRequest);
+            if (userId == null) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                        .body(new ApiErrorResponseDTO("用户未认证", "UNAUTHORIZED"));
+            }
+
+            Optional<ChatTurnResponseDTO> turn = chatService.getTurn(userId, sessionId, turnId);
+            if (turn.isEmpty()) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(new ApiErrorResponseDTO("对话轮次不存在或已过期", "TURN_NOT_FOUND"));
+            }
+            return ResponseEntity.ok(turn.get());
+
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new ApiErrorResponseDTO("获取对话轮次失败: " + e.getMessage(), "GET_TURN_ERROR"));
+        }
+    }
+
     /**
      * 获取会话消息历史
      */
@@ -102,6 +102,19 @@ public class SessionDTO {
         this.queuePosition = queuePosition;
     }
 
+    /**
+     * 复制当前对象，近端缓存返回副本，避免调用方修改共享实例
+     */
+    public SessionDTO copy() {
+        SessionDTO copy = new SessionDTO(id, userId, mode, expectedQuestionCount,
+                askedQuestionCount, completedQuestionCount, startedAt, endedAt, isActive);
+        copy.setQuestionQueue(questionQueue);
+        copy.setCurrentQuestionId(currentQuestionId);
+        copy.setQueuePosition(queuePosition);
+        copy.setCurrentState(currentState);
+        return copy;
+    }
+
     /**
      * 检查队列是否完成
      */
@@ -12,6 +12,16 @@ public class SendMessageRequestDTO {
     @Size(max = 5000, message = "消息内容长度不能超过5000个字符")
     private String text;
 
+    /**
+     * 是否以流式方式返回AI回复（通过WebSocket推送ai_delta），为空时使用服务端默认配置
+     */
+    private Boolean stream;
+
+    /**
+     * 是否异步处理本轮：立即返回turnId，AI回复通过WebSocket推送或按turnId轮询，为空时使用服务端默认配置
+     */
+    private Boolean async;
+
     public SendMessageRequestDTO() {}
 
     public SendMessageRequestDTO(String text) {
@@ -41,10 +51,28 @@ public class SendMessageRequestDTO {
         this.text = text;
     }
 
+    public Boolean getStream() {
+        return stream;
+    }
+
+    public void setStream(Boolean stream) {
+        this.stream = stream;
+    }
+
+    public Boolean getAsync() {
+        return async;
+    }
+
+    public void setAsync(Boolean async) {
+        this.async = async;
+    }
+
     @Override
     public String toString() {
         return "SendMessageRequestDTO{" +
                 "text='" + (text != null ? text.substring(0, Math.min(text.length(), 50)) + "..." : null) + '\'' +
+                ", stream=" + stream +
+                ", async=" + async +
                 '}';
     }
 }
\ No newline at end of file
@@ -0,0 +1,165 @@
+package com.xinyu.InterviewCoach_v2.dto.response.chat;
+
+import com.xinyu.InterviewCoach_v2.enums.InterviewState;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import java.time.LocalDateTime;
+
+/**
+ * 异步对话轮次响应DTO
+ * 提交回答时返回turnId，之后AI回复通过WebSocket推送，也可按turnId轮询状态
+ */
+public class ChatTurnResponseDTO {
+
+    public static final String STATUS_PENDING = "PENDING";
+    public static final String STATUS_PROCESSING = "PROCESSING";
+    public static final String STATUS_COMPLETED = "COMPLETED";
+    public static final String STATUS_FAILED = "FAILED";
+
+    private boolean success;
+    private String message;
+    private String turnId;
+    private Long sessionId;
+    private String status;
+    private Long aiMessageId;
+    private String reply;
+    private InterviewState currentState;
+    private boolean chatInputEnabled;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime timestamp;
+
+    public ChatTurnResponseDTO() {
+        this.timestamp = LocalDateTime.now();
+    }
+
+    // Builder pattern
+    public static ChatTurnResponseDTO builder() {
+        return new ChatTurnResponseDTO();
+    }
+
+    public ChatTurnResponseDTO success(boolean success) {
+        this.success = success;
+        return this;
+    }
+
+    public ChatTurnResponseDTO message(String message) {
+        this.message = message;
+        return this;
+    }
+
+    public ChatTurnResponseDTO turnId(String turnId) {
+        this.turnId = turnId;
+        return this;
+    }
+
+    public ChatTurnResponseDTO sessionId(Long sessionId) {
+        this.sessionId = sessionId;
+        return this;
+    }
+
+    public ChatTurnResponseDTO status(String status) {
+        this.status = status;
+        return this;
+    }
+
+    public ChatTurnResponseDTO aiMessageId(Long aiMessageId) {
+        this.aiMessageId = aiMessageId;
+        return this;
+    }
+
+    public ChatTurnResponseDTO reply(String reply) {
+        this.reply = reply;
+        return this;
+    }
+
+    public ChatTurnResponseDTO currentState(InterviewState currentState) {
+        this.currentState = currentState;
+        return this;
+    }
+
+    public ChatTurnResponseDTO chatInputEnabled(boolean chatInputEnabled) {
+        this.chatInputEnabled = chatInputEnabled;
+        return this;
+    }
+
+    // Getters and Setters
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public void setSuccess(boolean success) {
+        this.success = success;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public String getTurnId() {
+        return turnId;
+    }
+
+    public void setTurnId(String turnId) {
+        this.turnId = turnId;
+    }
+
+    public Long getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(Long sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public Long getAiMessageId() {
+        return aiMessageId;
+    }
+
+    public void setAiMessageId(Long aiMessageId) {
+        this.aiMessageId = aiMessageId;
+    }
+
+    public String getReply() {
+        return reply;
+    }
+
+    public void setReply(String reply) {
+        this.reply = reply;
+    }
+
+    public InterviewState getCurrentState() {
+        return currentState;
+    }
+
+    public void setCurrentState(InterviewState currentState) {
+        this.currentState = currentState;
+    }
+
+    public boolean isChatInputEnabled() {
+        return chatInputEnabled;
+    }
+
+    public void setChatInputEnabled(boolean chatInputEnabled) {
+        this.chatInputEnabled = chatInputEnabled;
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(LocalDateTime timestamp) {
+        this.timestamp = timestamp;
+    }
+}
@@ -13,6 +13,7 @@ public class Message {
     private MessageType type;
     private String text;
     private LocalDateTime createdAt;
+    private String turnId;
 
     public Message() {}
 
@@ -64,6 +65,14 @@ public class Message {
         this.createdAt = createdAt;
     }
 
+    public String getTurnId() {
+        return turnId;
+    }
+
+    public void setTurnId(String turnId) {
+        this.turnId = turnId;
+    }
+
     @Override
     public String toString() {
         return "Message{" +
@@ -72,6 +81,7 @@ public class Message {
                 ", type=" + type +
                 ", text='" + text + '\'' +
                 ", createdAt=" + createdAt +
+                ", turnId='" + turnId + '\'' +
                 '}';
     }
 }
@@ -47,6 +47,25 @@ public interface AnswerMapper {
     })
     List<Answer> findByQuestionId(Long questionId);
 
+    /**
+     * 根据多个题目ID批量查询答案
+     */
+    @Select("<script>" +
+            "SELECT id, question_id, text, created_at, updated_at FROM answer WHERE question_id IN " +
+            "<foreach item='questionId' collection='questionIds' open='(' separator=',' close=')'>" +
+            "  #{questionId}" +
+            "</foreach>" +
+            " ORDER BY question_id, created_at DESC" +
+            "</script>")
+    @Results({
+            @Result(property = "id", column = "id"),
+            @Result(property = "questionId", column = "question_id"),
+            @Result(property = "text", column = "text"),
+            @Result(property = "createdAt", column = "created_at"),
+            @Result(property = "updatedAt", column = "updated_at")
+    })
+    List<Answer> findByQuestionIds(@Param("questionIds") List<Long> questionIds);
+
     /**
      * 查询所有答案
      */
@@ -17,8 +17,8 @@ public interface MessageMapper {
     /**
      * 插入新消息
      */
-    @Insert("INSERT INTO message (session_id, type, text, created_at) " +
-            "VALUES (#{sessionId}, #{type}, #{text}, #{createdAt})")
+    @Insert("INSERT INTO message (session_id, type, text, created_at, turn_id) " +
+            "VALUES (#{sessionId}, #{type}, #{text}, #{createdAt}, #{turnId})")
     @Options(useGeneratedKeys = true, keyProperty = "id")
     int insert(Message message);
 
@@ -36,6 +36,21 @@ public interface MessageMapper {
     })
     Optional<Message> findById(Long id);
 
+    /**
+     * 根据异步对话轮次ID查询该轮次已保存的AI回复
+     */
+    @Select("SELECT id, session_id, type, text, created_at, turn_id " +
+            "FROM message WHERE turn_id = #{turnId}")
+    @Results({
+            @Result(property = "id", column = "id"),
+            @Result(property = "sessionId", column = "session_id"),
+            @Result(property = "type", column = "type", javaType = MessageType.class),
+            @Result(property = "text", column = "text"),
+            @Result(property = "createdAt", column = "created_at"),
+            @Result(property = "turnId", column = "turn_id")
+    })
+    Optional<Message> findByTurnId(String turnId);
+
     /**
      * 根据会话ID查询所有消息（按时间升序）
      */
@@ -89,4 +104,10 @@ public interface MessageMapper {
      */
     @Delete("DELETE FROM message WHERE session_id = #{sessionId}")
     int deleteBySessionId(Long sessionId);
+
+    /**
+     * 根据ID删除消息
+     */
+    @Delete("DELETE FROM message WHERE id = #{id}")
+    int deleteById(Long id);
 }
@@ -32,6 +32,23 @@ public interface QuestionMapper {
     })
     Optional<Question> findById(Long id);
 
+    /**
+     * 根据ID批量查询题目
+     */
+    @Select("<script>" +
+            "SELECT id, text, created_at, updated_at FROM question WHERE id IN " +
+            "<foreach item='id' collection='ids' open='(' separator=',' close=')'>" +
+            "  #{id}" +
+            "</foreach>" +
+            "</script>")
+    @Results({
+            @Result(property = "id", column = "id"),
+            @Result(property = "text", column = "text"),
+            @Result(property = "createdAt", column = "created_at"),
+            @Result(property = "updatedAt", column = "updated_at")
+    })
+    List<Question> findByIds(@Param("ids") List<Long> ids);
+
     /**
      * 查询所有题目
      */
@@ -117,16 +134,8 @@ public interface QuestionMapper {
     List<Question> findLatest(int limit);
 
     /**
-     * 随机获取N个题目
+     * 查询全部题目ID（只读主键索引），用于随机抽样
      */
-    @Select("SELECT id, text, created_at, updated_at FROM question " +
-            "ORDER BY RAND() " +
-            "LIMIT #{limit}")
-    @Results({
-            @Result(property = "id", column = "id"),
-            @Result(property = "text", column = "text"),
-            @Result(property = "createdAt", column = "created_at"),
-            @Result(property = "updatedAt", column = "updated_at")
-    })
-    List<Question> findRandom(int limit);
+    @Select("SELECT id FROM question ORDER BY id")
+    List<Long> findAllIds();
 }
\ No newline at end of file
@@ -55,6 +55,18 @@ public interface QuestionTagMapper {
     @Select("SELECT COUNT(*) FROM question_tag WHERE tag_id = #{tagId}")
     int getQuestionCountByTagId(Long tagId);
 
+    /**
+     * 查询标签下的所有题目ID（只读关联表索引，不回表）
+     */
+    @Select("SELECT question_id FROM question_tag WHERE tag_id = #{tagId}")
+    List<Long> findQuestionIdsByTagId(Long tagId);
+
+    /**
+     * 查询题目关联的所有标签ID
+     */
+    @Select("SELECT tag_id FROM question_tag WHERE question_id = #{questionId}")
+    List<Long> findTagIdsByQuestionId(Long questionId);
+
     /**
      * 根据题目ID查询所有关联的标签
      */
@@ -1,5 +1,6 @@
 package com.xinyu.InterviewCoach_v2.mapper;
 
+import com.xinyu.InterviewCoach_v2.dto.core.SessionDTO;
 import com.xinyu.InterviewCoach_v2.entity.Session;
 import com.xinyu.InterviewCoach_v2.enums.SessionMode;
 import org.apache.ibatis.annotations.*;
@@ -196,4 +197,50 @@ public interface SessionMapper {
      */
     @Select("SELECT question_queue FROM session WHERE id = #{sessionId}")
     String getQuestionQueue(Long sessionId);
-}
\ No newline at end of file
+
+    /**
+     * 恢复会话进度（LLM调用失败后的补偿），仅当当前位置仍是本轮推进后的位置时生效
+     */
+    @Update("UPDATE session SET queue_position = #{queuePosition}, " +
+            "asked_question_count = #{askedQuestionCount}, " +
+            "completed_question_count = #{completedQuestionCount} " +
+            "WHERE id = #{sessionId} AND queue_position = #{expectedPosition}")
+    int restoreProgress(@Param("sessionId") Long sessionId,
+                        @Param("expectedPosition") Integer expectedPosition,
+                        @Param("queuePosition") Integer queuePosition,
+                        @Param("askedQuestionCount") Integer askedQuestionCount,
+                        @Param("completedQuestionCount") Integer completedQuestionCount);
+
+    /**
+     * 原子推进会话进度：位置和已提问数+1，已完成数+completedDelta
+     * 以当前位置做乐观校验，并发提交时只有一个能成功
+     */
+    @Update("UPDATE session SET queue_position = queue_position + 1, " +
+            "asked_question_count = asked_question_count + 1, " +
+            "completed_question_count = completed_question_count + #{completedDelta} " +
+            "WHERE id = #{sessionId} AND queue_position = #{expectedPosition}")
+    int advanceProgress(@Param("sessionId") Long sessionId,
+                        @Param("expectedPosition") Integer expectedPosition,
+                        @Param("completedDelta") Integer completedDelta);
+
+    /**
+     * 批量写回会话进度（write-behind模式），一条语句更新一批会话
+     */
+    @Update("<script>" +
+            "UPDATE session SET " +
+            "queue_position = CASE id " +
+            "<foreach item='s' collection='sessions'> WHEN #{s.id} THEN #{s.queuePosition} </foreach>" +
+            "END, " +
+            "asked_question_count = CASE id " +
+            "<foreach item='s' collection='sessions'> WHEN #{s.id} THEN #{s.askedQuestionCount} </foreach>" +
+            "END, " +
+            "completed_question_count = CASE id " +
+            "<foreach item='s' collection='sessions'> WHEN #{s.id} THEN #{s.completedQuestionCount} </foreach>" +
+            "END " +
+            "WHERE id IN " +
+            "<foreach item='s' collection='sessions' open='(' separator=',' close=')'>" +
+            "  #{s.id}" +
+            "</foreach>" +
+            "</script>")
+    int batchUpdateProgress(@Param("sessions") List<SessionDTO> sessions);
+}
@@ -48,6 +48,12 @@ public interface UserAttemptMapper {
     })
     List<UserAttempt> findByUserId(Long userId);
 
+    /**
+     * 查询用户尝试过的所有题目ID
+     */
+    @Select("SELECT question_id FROM user_attempt WHERE user_id = #{userId}")
+    List<Long> findQuestionIdsByUserId(Long userId);
+
     /**
      * 获取用户从未尝试过的题目（根据标签）
      */
@@ -0,0 +1,208 @@
+package com.xinyu.InterviewCoach_v2.queue.consumer;
+
+import com.xinyu.InterviewCoach_v2.config.properties.AIQueueProperties;
+import com.xinyu.InterviewCoach_v2.config.properties.OpenAIProperties;
+import com.xinyu.InterviewCoach_v2.queue.constants.AIQueueTopics;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * AI队列处理隔离舱
+ * 每个Topic一个有界执行器和同等数量的许可，某个Topic变慢时不会占满其他Topic的处理能力；
+ * 消费者读取某个Topic的流之前先预占许可，读取数量不超过预占数，许可用尽的Topic不再读取，积压留在持久化的Stream中而不是JVM内存里
+ */
+@Component
+public class AIQueueBulkhead {
+
+    private static final Logger logger = LoggerFactory.getLogger(AIQueueBulkhead.class);
+
+    @Autowired
+    private AIQueueProperties queueProperties;
+
+    @Autowired
+    private OpenAIProperties openAIProperties;
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, Semaphore> permits = new LinkedHashMap<>();
+    private final Map<String, Executor> executors = new LinkedHashMap<>();
+
+    // 任一Topic释放许可时唤醒等待容量的消费循环
+    private final ReentrantLock capacityLock = new ReentrantLock();
+    private final Condition capacityReleased = capacityLock.newCondition();
+
+    @PostConstruct
+    private void init() {
+        AIQueueProperties.Topics topics = queueProperties.getTopics();
+        register(AIQueueTopics.QUESTION_GENERATION, topics.getQuestionGeneration().getMaxConcurrency());
+        register(AIQueueTopics.FEEDBACK_GENERATION, topics.getFeedbackGeneration().getMaxConcurrency());
+        register(AIQueueTopics.EMBEDDING_CALCULATION, topics.getEmbeddingCalculation().getMaxConcurrency());
+        register(AIQueueTopics.FINAL_EVALUATION, topics.getFinalEvaluation().getMaxConcurrency());
+
+        int chatConcurrency = topics.getQuestionGeneration().getMaxConcurrency()
+                + topics.getFeedbackGeneration().getMaxConcurrency()
+                + topics.getFinalEvaluation().getMaxConcurrency();
+        if (chatConcurrency > openAIProperties.getApi().getMaxConcurrency()) {
+            logger.warn("AI队列对话类Topic并发上限之和({})超过OpenAI并发许可({})，多出的任务会在OpenAI客户端排队",
+                    chatConcurrency, openAIProperties.getApi().getMaxConcurrency());
+        }
+        logger.info("AI队列隔离舱已初始化: {}", permits.keySet());
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        executors.values().forEach(executor -> {
+            if (executor instanceof ThreadPoolTaskExecutor pool) {
+                pool.shutdown();
+            } else if (executor instanceof SimpleAsyncTaskExecutor async) {
+                async.close();
+            }
+        });
+    }
+
+    /**
+     * 不等待地预占topic最多max个许可，返回实际预占数；未知topic不限制
+     */
+    public int tryAcquire(String topic, int max) {
+        Semaphore semaphore = permits.get(topic);
+        if (semaphore == null) {
+            return max;
+        }
+        int acquired = 0;
+        while (acquired < max && semaphore.tryAcquire()) {
+            acquired++;
+        }
+        return acquired;
+    }
+
+    /**
+     * 归还预占后没有用上的许可
+     */
+    public void release(String topic, int count) {
+        Semaphore semaphore = permits.get(topic);
+        if (semaphore == null || count <= 0) {
+            return;
+        }
+        semaphore.release(count);
+        signalCapacity();
+    }
+
+    /**
+     * 在topic的执行器上运行任务，结束后释放许可；调用前需已预占许可，执行器拒绝时归还许可并抛出异常
+     */
+    public void execute(String topic, Runnable task) {
+        Executor executor = executors.get(topic);
+        if (executor == null) {
+            task.run();
+            return;
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    release(topic, 1);
+                }
+            });
+        } catch (RuntimeException e) {
+            release(topic, 1);
+            throw e;
+        }
+    }
+
+    /**
+     * 所有Topic剩余许可之和
+     */
+    public int availablePermits() {
+        int available = 0;
+        for (Semaphore semaphore : permits.values()) {
+            available += semaphore.availablePermits();
+        }
+        return available;
+    }
+
+    /**
+     * 所有Topic的许可都已用尽时阻塞等待，直到有许可释放或超时
+     */
+    public void awaitCapacity(long timeoutMs) throws InterruptedException {
+        capacityLock.lock();
+        try {
+            if (availablePermits() == 0) {
+                capacityReleased.await(timeoutMs, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            capacityLock.unlock();
+        }
+    }
+
+    private void signalCapacity() {
+        capacityLock.lock();
+        try {
+            capacityReleased.signalAll();
+        } finally {
+            capacityLock.unlock();
+        }
+    }
+
+    private void register(String topic, int maxConcurrency) {
+        int capacity = Math.max(1, maxConcurrency);
+        Semaphore semaphore = new Semaphore(capacity);
+        permits.put(topic, semaphore);
+        executors.put(topic, createExecutor(topic, capacity));
+
+        if (meterRegistry != null) {
+            Gauge.builder("ai.queue.bulkhead.available", semaphore, Semaphore::availablePermits)
+                    .tag("topic", topic)
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * 平台线程模式下线程数等于许可数；虚拟线程模式下每个任务一个虚拟线程，并发由许可控制
+     * 许可在任务的finally中释放，此时工作线程还没回到池里，队列容量留出与许可数相同的余量，新任务短暂排队而不是被拒绝
+     */
+    private Executor createExecutor(String topic, int capacity) {
+        String threadNamePrefix = topic.replace('.', '-') + "-";
+        if (Threading.VIRTUAL.isActive(environment)) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix + "vt-");
+            executor.setVirtualThreads(true);
+            executor.setTaskTerminationTimeout(30000);
+            return executor;
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(capacity);
+        executor.setMaxPoolSize(capacity);
+        executor.setQueueCapacity(capacity);
+        executor.setKeepAliveSeconds(60);
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+}
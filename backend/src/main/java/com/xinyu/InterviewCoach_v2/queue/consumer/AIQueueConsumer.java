@@ -1,56 +1,111 @@
-// AIQueueConsumer.java - 修正版，使用现有ChatService方法
+// AIQueueConsumer.java - AI请求队列消费者
 package com.xinyu.InterviewCoach_v2.queue.consumer;
 
 import com.xinyu.InterviewCoach_v2.queue.constants.AIQueueTopics;
-import com.xinyu.InterviewCoach_v2.service.ChatService;
-import com.xinyu.InterviewCoach_v2.service.WebSocketService;
-import com.xinyu.InterviewCoach_v2.service.SessionService;
-import com.xinyu.InterviewCoach_v2.service.cache.AIResponseCacheManager;
+import com.xinyu.InterviewCoach_v2.queue.handler.AITaskHandler;
 import com.xinyu.InterviewCoach_v2.config.properties.AIQueueProperties;
-import com.xinyu.InterviewCoach_v2.entity.Question;
-import com.xinyu.InterviewCoach_v2.dto.core.MessageDTO;
+import com.xinyu.InterviewCoach_v2.config.properties.OpenAIProperties;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisStreamCommands.XClaimOptions;
 import org.springframework.data.redis.connection.stream.*;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import jakarta.annotation.PostConstruct;
-import java.lang.reflect.Method;
+import jakarta.annotation.PreDestroy;
 import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AI请求队列消费者
+ * 每个优先级和Topic一个请求流(ai:requests:{priority}:{topic})，由常驻线程循环执行阻塞XREADGROUP，
+ * 有消息立即返回处理，没有轮询间隔；读取前先预占该Topic的隔离舱许可，某个Topic处理能力用尽时只是不读它的流，
+ * 不会阻塞其他Topic。旧版单一请求流(ai:requests)中的存量消息按最低优先级继续消费。
+ * 处理失败按指数退避重试，超过最大重试次数转入死信流；消费者崩溃遗留的待确认消息由XPENDING+XCLAIM定期回收（至少一次投递）
+ */
 @Component
 public class AIQueueConsumer {
 
     private static final Logger logger = LoggerFactory.getLogger(AIQueueConsumer.class);
 
+    private static final List<String> PRIORITIES = List.of(
+            AIQueueTopics.PRIORITY_HIGH, AIQueueTopics.PRIORITY_MEDIUM, AIQueueTopics.PRIORITY_LOW);
+
+    // 回收时每个流最多扫描的XPENDING页数
+    private static final int MAX_PENDING_PAGES = 10;
+
+    private static final List<String> TOPICS = List.of(
+            AIQueueTopics.QUESTION_GENERATION, AIQueueTopics.FEEDBACK_GENERATION,
+            AIQueueTopics.EMBEDDING_CALCULATION, AIQueueTopics.FINAL_EVALUATION);
+
+    // 原子取出到期的重试消息，多个节点同时执行时每条只会被取出一次
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static final RedisScript<List<String>> POP_DUE_RETRIES_SCRIPT = new DefaultRedisScript<>(
+            "local items = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, ARGV[2]) " +
+            "if #items > 0 then redis.call('ZREM', KEYS[1], unpack(items)) end " +
+            "return items", (Class<List<String>>) (Class) List.class);
+
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
 
     @Autowired
-    private ObjectMapper objectMapper;
+    private RedisTemplate<String, String> stringRedisTemplate;
 
     @Autowired
-    private ChatService chatService;
+    private ObjectMapper objectMapper;
 
     @Autowired
-    private SessionService sessionService;
+    private List<AITaskHandler> taskHandlers;
 
     @Autowired
-    private WebSocketService webSocketService;
+    private AIQueueProperties queueProperties;
 
     @Autowired
-    private AIResponseCacheManager aiCacheManager;
+    private AIQueueBulkhead bulkhead;
 
     @Autowired
-    private AIQueueProperties queueProperties;
+    private OpenAIProperties openAIProperties;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    // topic -> 处理器
+    private final Map<String, AITaskHandler> handlers = new HashMap<>();
+
+    // priority -> 该优先级下各Topic的请求流
+    private final Map<String, List<TopicStream>> topicStreams = new LinkedHashMap<>();
+
+    // 旧版单一请求流，所有Topic混在一起
+    private String legacyStream;
+
+    // 全部流，用于创建消费者组和回收待确认消息
+    private List<String> streams;
+
+    // 请求流 -> Topic，旧版单一请求流不在其中
+    private final Map<String, String> streamTopics = new HashMap<>();
+
+    // 本节点已分发、尚未处理完的消息(stream/recordId)，回收时跳过，不会把自己仍在处理的消息再领一遍
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    // weighted模式下各轮优先读取的优先级，按权重展开
+    private List<String> weightedSchedule;
+    private final AtomicLong scheduleCursor = new AtomicLong();
+
+    private final List<Thread> consumerThreads = new ArrayList<>();
+    private volatile boolean running;
 
     @PostConstruct
     public void initialize() {
@@ -59,112 +114,305 @@ public class AIQueueConsumer {
             return;
         }
 
-        try {
-            String streamName = queueProperties.getStreams().getRequests();
-            String groupName = queueProperties.getConsumer().getGroupName();
+        for (AITaskHandler handler : taskHandlers) {
+            handlers.put(handler.topic(), handler);
+        }
+
+        String groupName = queueProperties.getConsumer().getGroupName();
+        AIQueueProperties.Streams streamNames = queueProperties.getStreams();
+        streams = new ArrayList<>();
+        for (String priority : PRIORITIES) {
+            List<TopicStream> slots = new ArrayList<>();
+            for (String topic : TOPICS) {
+                TopicStream slot = new TopicStream(streamNames.forTopic(topic, priority), topic);
+                slots.add(slot);
+                streams.add(slot.stream);
+                streamTopics.put(slot.stream, topic);
+            }
+            topicStreams.put(priority, slots);
+        }
+        legacyStream = streamNames.getRequests();
+        streams.add(legacyStream);
+
+        for (String streamName : streams) {
+            try {
+                redisTemplate.opsForStream().createGroup(streamName, groupName);
+                logger.info("AI队列消费者组初始化成功: stream={}, group={}", streamName, groupName);
+            } catch (Exception e) {
+                logger.debug("消费者组可能已存在: stream={}, {}", streamName, e.getMessage());
+            }
+        }
 
-            redisTemplate.opsForStream().createGroup(streamName, groupName);
-            logger.info("AI队列消费者组初始化成功: stream={}, group={}", streamName, groupName);
+        weightedSchedule = buildWeightedSchedule();
+        checkClaimMinIdle();
+        startConsumerLoops();
+    }
 
-        } catch (Exception e) {
-            logger.debug("消费者组可能已存在: {}", e.getMessage());
+    /**
+     * 回收阈值必须大于单条消息的最长处理时间，否则其他节点会把仍在处理的消息领走重复执行。
+     * 对话类处理器最坏情况：等待OpenAI并发许可 + 每次请求超时 * (重试次数+1) + 重试退避
+     */
+    private void checkClaimMinIdle() {
+        OpenAIProperties.Api api = openAIProperties.getApi();
+        int maxRetries = Math.max(0, api.getMaxRetries());
+        long worstCaseMs = api.getAcquireTimeoutMs()
+                + api.getTimeout() * (maxRetries + 1)
+                + api.getRetryDelayMs() * ((1L << Math.min(maxRetries, 10)) - 1);
+        long claimMinIdleMs = queueProperties.getConsumer().getClaimMinIdleMs();
+        if (claimMinIdleMs <= worstCaseMs) {
+            logger.warn("AI队列回收阈值claim-min-idle-ms({})不大于单条消息最长处理时间(约{}ms)，处理中的消息可能被其他节点重复领取",
+                    claimMinIdleMs, worstCaseMs);
         }
     }
 
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        consumerThreads.forEach(Thread::interrupt);
+    }
+
+    private void startConsumerLoops() {
+        running = true;
+        int threads = Math.max(1, queueProperties.getConsumer().getThreads());
+        for (int i = 0; i < threads; i++) {
+            Thread thread = new Thread(this::consumeLoop, "ai-queue-consumer-" + (i + 1));
+            thread.setDaemon(true);
+            thread.start();
+            consumerThreads.add(thread);
+        }
+        logger.info("AI队列消费循环已启动: threads={}, dequeueMode={}, streams={}",
+                threads, queueProperties.getConsumer().getDequeueMode(), streams);
+    }
+
     /**
-     * 定时轮询AI请求队列 - 按优先级处理
+     * 常驻消费循环：读到消息立即分发，读不到时阻塞等待仍有许可的Topic的新消息；
+     * 所有Topic的许可都已用尽时等待许可释放，不再读取，积压留在Redis流中
      */
-    @Scheduled(fixedDelay = 500)
-    @Async("aiProcessorExecutor")
-    public void pollHighPriorityAIRequests() {
-        if (!queueProperties.isEnabled()) {
-            return;
+    private void consumeLoop() {
+        while (running) {
+            try {
+                if (bulkhead.availablePermits() == 0) {
+                    bulkhead.awaitCapacity(queueProperties.getConsumer().getBlockTimeout());
+                    continue;
+                }
+                for (ReservedRecord reserved : readNext()) {
+                    dispatch(reserved.record, reserved.topic);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                if (!running) {
+                    break;
+                }
+                logger.error("读取AI队列失败", e);
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
         }
-        pollAIRequestsByPriority(AIQueueTopics.PRIORITY_HIGH, 3);
+        logger.info("AI队列消费循环已退出: thread={}", Thread.currentThread().getName());
     }
 
-    @Scheduled(fixedDelay = 1000)
-    @Async("aiProcessorExecutor")
-    public void pollMediumPriorityAIRequests() {
-        if (!queueProperties.isEnabled()) {
-            return;
+    /**
+     * 按出队顺序依次非阻塞读取各流，第一个有消息的流直接返回；全部为空时对仍有许可的Topic流发起一次阻塞读取。
+     * 每次读取前先预占该Topic的许可，读取数量不超过预占数，读出的消息都已持有许可，分发时不会等待
+     */
+    private List<ReservedRecord> readNext() {
+        int maxMessages = Math.max(1, queueProperties.getConsumer().getMaxMessages());
+        for (String priority : nextPriorityOrder()) {
+            for (TopicStream slot : topicStreams.get(priority)) {
+                int reserved = bulkhead.tryAcquire(slot.topic, maxMessages);
+                if (reserved == 0) {
+                    continue;
+                }
+                List<MapRecord<String, Object, Object>> records = read(StreamReadOptions.empty().count(reserved),
+                        List.of(StreamOffset.create(slot.stream, ReadOffset.lastConsumed())));
+                bulkhead.release(slot.topic, reserved - records.size());
+                if (!records.isEmpty()) {
+                    return reserve(records, slot.topic);
+                }
+            }
+        }
+
+        List<ReservedRecord> records = readLegacy();
+        if (!records.isEmpty()) {
+            return records;
         }
-        pollAIRequestsByPriority(AIQueueTopics.PRIORITY_MEDIUM, 5);
+
+        return blockingRead();
     }
 
-    @Scheduled(fixedDelay = 2000)
-    @Async("aiProcessorExecutor")
-    public void pollLowPriorityAIRequests() {
-        if (!queueProperties.isEnabled()) {
-            return;
+    /**
+     * 旧版单一请求流读到消息后才知道Topic：先只读一条，再预占该Topic的许可；
+     * 许可已用尽或Topic未知时不经隔离舱，直接在当前消费线程处理，消费线程被占用本身就限制了存量消息的并发
+     */
+    private List<ReservedRecord> readLegacy() {
+        List<MapRecord<String, Object, Object>> records = read(StreamReadOptions.empty().count(1),
+                List.of(StreamOffset.create(legacyStream, ReadOffset.lastConsumed())));
+        if (records.isEmpty()) {
+            return List.of();
         }
-        pollAIRequestsByPriority(AIQueueTopics.PRIORITY_LOW, 2);
+
+        String topic = (String) records.get(0).getValue().get("topic");
+        boolean reserved = TOPICS.contains(topic) && bulkhead.tryAcquire(topic, 1) == 1;
+        return reserve(records, reserved ? topic : null);
     }
 
-    private void pollAIRequestsByPriority(String priority, int maxCount) {
+    /**
+     * 所有流都为空时阻塞等待：每个流预占一个许可、每流最多读一条，许可已用尽的Topic不参与，
+     * 其积压不会占用消费线程；旧版单一请求流只在非阻塞读取中消费
+     */
+    private List<ReservedRecord> blockingRead() {
+        List<TopicStream> slots = new ArrayList<>();
+        for (String priority : PRIORITIES) {
+            for (TopicStream slot : topicStreams.get(priority)) {
+                if (bulkhead.tryAcquire(slot.topic, 1) == 1) {
+                    slots.add(slot);
+                }
+            }
+        }
+        if (slots.isEmpty()) {
+            return List.of();
+        }
+
+        List<MapRecord<String, Object, Object>> records = List.of();
         try {
-            String streamName = queueProperties.getStreams().getRequests();
-            String groupName = queueProperties.getConsumer().getGroupName();
-            String consumerName = queueProperties.getConsumer().getConsumerName();
-
-            List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream()
-                    .read(Consumer.from(groupName, consumerName),
-                            StreamReadOptions.empty().count(maxCount).block(Duration.ofMillis(queueProperties.getConsumer().getBlockTimeout())),
-                            StreamOffset.create(streamName, ReadOffset.lastConsumed()));
-
-            if (records != null && !records.isEmpty()) {
-                // 按优先级过滤
-                List<MapRecord<String, Object, Object>> filteredRecords = records.stream()
-                        .filter(record -> priority.equals(record.getValue().get("priority")))
-                        .toList();
-
-                if (!filteredRecords.isEmpty()) {
-                    logger.debug("收到{}优先级AI消息: count={}", priority, filteredRecords.size());
-
-                    for (MapRecord<String, Object, Object> record : filteredRecords) {
-                        CompletableFuture.runAsync(() -> processAIMessage(record));
-                    }
+            List<StreamOffset<String>> offsets = slots.stream()
+                    .map(slot -> StreamOffset.create(slot.stream, ReadOffset.lastConsumed()))
+                    .toList();
+            records = read(StreamReadOptions.empty().count(1)
+                    .block(Duration.ofMillis(queueProperties.getConsumer().getBlockTimeout())), offsets);
+        } finally {
+            Set<String> served = new HashSet<>();
+            records.forEach(record -> served.add(record.getStream()));
+            for (TopicStream slot : slots) {
+                if (!served.contains(slot.stream)) {
+                    bulkhead.release(slot.topic, 1);
                 }
             }
+        }
 
-        } catch (Exception e) {
-            logger.error("轮询{}优先级AI队列失败", priority, e);
+        List<ReservedRecord> reserved = new ArrayList<>(records.size());
+        for (MapRecord<String, Object, Object> record : records) {
+            String topic = slots.stream().filter(slot -> slot.stream.equals(record.getStream()))
+                    .map(slot -> slot.topic).findFirst().orElse(null);
+            reserved.add(new ReservedRecord(record, topic));
+        }
+        return reserved;
+    }
+
+    private List<ReservedRecord> reserve(List<MapRecord<String, Object, Object>> records, String topic) {
+        List<ReservedRecord> reserved = new ArrayList<>(records.size());
+        records.forEach(record -> reserved.add(new ReservedRecord(record, topic)));
+        return reserved;
+    }
+
+    private List<MapRecord<String, Object, Object>> read(StreamReadOptions options, List<StreamOffset<String>> offsets) {
+        // 泛型数组只能由原始类型数组转换；数组只在这里创建并直接传给read，不会混入其他类型的元素
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        StreamOffset<String>[] offsetArray = offsets.toArray(new StreamOffset[0]);
+        AIQueueProperties.Consumer consumer = queueProperties.getConsumer();
+        List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream()
+                .read(Consumer.from(consumer.getGroupName(), consumer.getConsumerName()), options, offsetArray);
+        return records != null ? records : List.of();
+    }
+
+    /**
+     * 本轮读取各优先级的顺序：strict模式始终从高到低；weighted模式按权重轮转首先读取的优先级，其余仍从高到低
+     */
+    private List<String> nextPriorityOrder() {
+        if (!"weighted".equalsIgnoreCase(queueProperties.getConsumer().getDequeueMode())) {
+            return PRIORITIES;
         }
+
+        String first = weightedSchedule.get((int) (scheduleCursor.getAndIncrement() % weightedSchedule.size()));
+        List<String> order = new ArrayList<>(PRIORITIES.size());
+        order.add(first);
+        for (String priority : PRIORITIES) {
+            if (!priority.equals(first)) {
+                order.add(priority);
+            }
+        }
+        return order;
+    }
+
+    private List<String> buildWeightedSchedule() {
+        AIQueueProperties.Consumer consumer = queueProperties.getConsumer();
+        int[] weights = {consumer.getHighWeight(), consumer.getMediumWeight(), consumer.getLowWeight()};
+        List<String> schedule = new ArrayList<>();
+        for (int i = 0; i < PRIORITIES.size(); i++) {
+            for (int j = 0; j < Math.max(0, weights[i]); j++) {
+                schedule.add(PRIORITIES.get(i));
+            }
+        }
+        if (schedule.isEmpty()) {
+            schedule.add(PRIORITIES.get(0));
+        }
+        return schedule;
     }
 
     /**
-     * 处理AI消息
+     * 交给topic的执行器处理，调用前已预占topic的许可，这里不会阻塞；
+     * topic为空（旧版流中未预占许可或未知Topic的消息）时直接在当前线程处理
      */
-    private void processAIMessage(MapRecord<String, Object, Object> record) {
-        String messageId = null;
-        String topic = null;
+    private void dispatch(MapRecord<String, Object, Object> record, String topic) {
+        if (meterRegistry != null) {
+            Object priority = record.getValue().get("priority");
+            Timer.builder("ai.queue.wait")
+                    .tag("priority", priority != null ? priority.toString() : "unknown")
+                    .register(meterRegistry)
+                    .record(Math.max(0, System.currentTimeMillis() - record.getId().getTimestamp()),
+                            TimeUnit.MILLISECONDS);
+        }
 
+        String key = inFlightKey(record);
+        inFlight.add(key);
+        if (topic == null) {
+            processAIMessage(record);
+            return;
+        }
         try {
-            Map<Object, Object> data = record.getValue();
-            messageId = (String) data.get("messageId");
-            topic = (String) data.get("topic");
-            String payloadStr = (String) data.get("payload");
+            bulkhead.execute(topic, () -> processAIMessage(record));
+        } catch (RuntimeException e) {
+            // 执行器拒绝时许可已归还，消息不确认，留待回收
+            inFlight.remove(key);
+            logger.error("提交AI消息处理失败，留待回收: messageId={}, topic={}",
+                    record.getValue().get("messageId"), topic, e);
+        }
+    }
 
-            Map<String, Object> payload = objectMapper.readValue(payloadStr,
+    private String inFlightKey(MapRecord<String, Object, Object> record) {
+        return record.getStream() + "/" + record.getId().getValue();
+    }
+
+    /**
+     * 处理AI消息，处理器抛出异常时按重试策略重新投递或转入死信流
+     */
+    private void processAIMessage(MapRecord<String, Object, Object> record) {
+        Map<Object, Object> data = record.getValue();
+        String messageId = (String) data.get("messageId");
+        String topic = (String) data.get("topic");
+
+        try {
+            Map<String, Object> payload = objectMapper.readValue((String) data.get("payload"),
                     new TypeReference<Map<String, Object>>() {});
 
             logger.debug("开始处理AI消息: topic={}, messageId={}", topic, messageId);
             long startTime = System.currentTimeMillis();
 
             // 根据topic分发处理
-            switch(topic) {
-                case AIQueueTopics.QUESTION_GENERATION -> processQuestionGeneration(payload);
-                case AIQueueTopics.FEEDBACK_GENERATION -> processFeedbackGeneration(payload);
-                case AIQueueTopics.EMBEDDING_CALCULATION -> processEmbeddingCalculation(payload);
-                case AIQueueTopics.FINAL_EVALUATION -> processFinalEvaluation(payload);
-                default -> {
-                    logger.warn("未知的AI Topic: {}", topic);
-                    return;
-                }
+            AITaskHandler handler = handlers.get(topic);
+            if (handler == null) {
+                throw new IllegalArgumentException("未知的AI Topic: " + topic);
             }
+            handler.handle(payload);
 
             // 确认消息处理完成
-            acknowledgeMessage(String.valueOf(record.getId()));
+            acknowledgeMessage(record);
 
             long duration = System.currentTimeMillis() - startTime;
             logger.info("AI消息处理完成: topic={}, messageId={}, 耗时={}ms", topic, messageId, duration);
@@ -172,241 +420,296 @@ public class AIQueueConsumer {
         } catch (Exception e) {
             logger.error("处理AI消息失败: topic={}, messageId={}", topic, messageId, e);
             handleProcessingError(record, e);
+        } finally {
+            inFlight.remove(inFlightKey(record));
         }
     }
 
     /**
-     * 处理开场题目生成 - 使用现有方法
+     * 消息最终失败（转入死信流）时交给对应处理器做补偿和通知
      */
-    private void processQuestionGeneration(Map<String, Object> payload) {
-        Long sessionId = getLongValue(payload, "sessionId");
-        Long questionId = getLongValue(payload, "questionId");
-
+    private void notifyFailure(String topic, Map<Object, Object> data) {
+        AITaskHandler handler = topic != null ? handlers.get(topic) : null;
+        if (handler == null) {
+            return;
+        }
         try {
-            // 获取题目信息
-            Question question = getQuestionById(questionId);
-            if (question == null) {
-                logger.error("题目不存在: questionId={}", questionId);
-                webSocketService.pushAIResponse(sessionId, "抱歉，无法获取题目信息。", "ERROR");
-                return;
-            }
-
-            // 使用现有的generateOpeningMessage方法（通过反射调用私有方法）
-            String aiResponse = callPrivateMethod(chatService, "generateOpeningMessage",
-                    new Class[]{Question.class}, new Object[]{question});
-
-            if (aiResponse == null) {
-                aiResponse = "面试开始！请回答以下问题：\n\n" + question.getText();
-            }
-
-            // 使用现有的saveAIMessage方法（通过反射调用私有方法）
-            MessageDTO aiMessage = callPrivateMethod(chatService, "saveAIMessage",
-                    new Class[]{Long.class, String.class}, new Object[]{sessionId, aiResponse});
-
-            // 通过WebSocket推送给前端
-            webSocketService.pushAIResponse(sessionId, aiResponse, "ASKING_QUESTION");
+            Map<String, Object> payload = objectMapper.readValue((String) data.get("payload"),
+                    new TypeReference<Map<String, Object>>() {});
+            handler.onFailure(payload);
+        } catch (Exception e) {
+            logger.warn("AI消息失败补偿或通知失败: topic={}", topic, e);
+        }
+    }
 
-            logger.info("开场题目生成完成: sessionId={}, questionId={}", sessionId, questionId);
+    // ===== 辅助方法 =====
 
+    private void acknowledgeMessage(MapRecord<String, Object, Object> record) {
+        try {
+            redisTemplate.opsForStream().acknowledge(
+                    queueProperties.getConsumer().getGroupName(), record);
         } catch (Exception e) {
-            logger.error("处理开场题目生成失败: sessionId={}", sessionId, e);
-            webSocketService.pushAIResponse(sessionId, "AI暂时无法生成题目，请稍后再试。", "ERROR");
+            logger.error("确认消息失败: stream={}, recordId={}", record.getStream(), record.getId(), e);
         }
     }
 
     /**
-     * 处理反馈生成 - 使用现有方法
+     * 处理失败：未超过最大重试次数时按指数退避放入重试队列，否则转入死信流；原消息都会确认
      */
-    private void processFeedbackGeneration(Map<String, Object> payload) {
-        Long sessionId = getLongValue(payload, "sessionId");
-        Long currentQuestionId = getLongValue(payload, "currentQuestionId");
-        String userAnswer = (String) payload.get("userAnswer");
-        Long nextQuestionId = getLongValue(payload, "nextQuestionId");
+    private void handleProcessingError(MapRecord<String, Object, Object> record, Throwable error) {
+        Map<Object, Object> data = record.getValue();
+        String messageId = (String) data.get("messageId");
+        int retryCount = getRetryCount(data);
+        int maxRetries = queueProperties.getProcessors().getMaxRetries();
 
         try {
-            String aiResponse;
-            String newState;
-
-            if (nextQuestionId != null && nextQuestionId > 0) {
-                // 有下一题，生成反馈+下一题
-                Question nextQuestion = getQuestionById(nextQuestionId);
-                if (nextQuestion == null) {
-                    logger.error("下一题不存在: questionId={}", nextQuestionId);
-                    webSocketService.pushAIResponse(sessionId, "抱歉，无法获取下一个问题。", "ERROR");
-                    return;
-                }
-
-                // 使用现有的generateFeedbackWithNextQuestion方法
-                aiResponse = callPrivateMethod(chatService, "generateFeedbackWithNextQuestion",
-                        new Class[]{String.class, Long.class, Question.class},
-                        new Object[]{userAnswer, currentQuestionId, nextQuestion});
-
-                // 使用现有的SessionService方法更新状态
-                sessionService.moveToNextQuestion(sessionId);
-                sessionService.incrementCompletedQuestionCount(sessionId);
-
-                newState = "WAITING_FOR_USER_ANSWER";
-
+            // 未知Topic的消息没有对应的请求流，重试没有意义，直接转入死信
+            if (retryCount < maxRetries && handlers.containsKey((String) data.get("topic"))) {
+                scheduleRetry(record, retryCount + 1, error);
             } else {
-                // 面试结束，生成最终评价
-                aiResponse = callPrivateMethod(chatService, "generateFinalFeedback",
-                        new Class[]{Long.class, String.class, Long.class},
-                        new Object[]{sessionId, userAnswer, currentQuestionId});
-
-                // 使用现有的SessionService方法结束会话
-                sessionService.endSession(sessionId);
-
-                newState = "INTERVIEW_COMPLETED";
+                deadLetter(record, error);
+                notifyFailure((String) data.get("topic"), data);
             }
+            acknowledgeMessage(record);
+        } catch (Exception e) {
+            // 不确认，等待超时后被回收重新处理
+            logger.error("AI消息失败处理异常，保留在待确认列表: messageId={}", messageId, e);
+        }
+    }
 
-            // 使用现有的saveAIMessage方法保存消息
-            MessageDTO aiMessage = callPrivateMethod(chatService, "saveAIMessage",
-                    new Class[]{Long.class, String.class}, new Object[]{sessionId, aiResponse});
+    private void scheduleRetry(MapRecord<String, Object, Object> record, int retryCount, Throwable error)
+            throws Exception {
+        AIQueueProperties.Processors processors = queueProperties.getProcessors();
+        long delaySeconds = Math.min((long) processors.getRetryDelaySeconds() << Math.min(retryCount - 1, 20),
+                processors.getMaxRetryDelaySeconds());
 
-            // 推送给前端
-            webSocketService.pushAIResponse(sessionId, aiResponse, newState);
+        Map<String, Object> retryRecord = toFieldMap(record.getValue());
+        retryRecord.put("retryCount", retryCount);
+        retryRecord.put("lastError", errorMessage(error));
 
-            logger.info("反馈生成完成: sessionId={}, currentQuestionId={}", sessionId, currentQuestionId);
+        stringRedisTemplate.opsForZSet().add(queueProperties.getStreams().getRetry(),
+                objectMapper.writeValueAsString(retryRecord), System.currentTimeMillis() + delaySeconds * 1000);
+        logger.warn("AI消息将在{}秒后重试: messageId={}, retryCount={}",
+                delaySeconds, record.getValue().get("messageId"), retryCount);
+    }
 
-        } catch (Exception e) {
-            logger.error("处理反馈生成失败: sessionId={}", sessionId, e);
-            webSocketService.pushAIResponse(sessionId, "AI暂时无法回应，请稍后再试。", "ERROR");
-        }
+    private void deadLetter(MapRecord<String, Object, Object> record, Throwable error) {
+        Map<String, Object> deadRecord = toFieldMap(record.getValue());
+        deadRecord.put("lastError", errorMessage(error));
+        deadRecord.put("sourceStream", record.getStream());
+        deadRecord.put("failedAt", System.currentTimeMillis());
+
+        redisTemplate.opsForStream().add(queueProperties.getStreams().getDeadLetter(), deadRecord);
+        logger.error("AI消息超过最大重试次数，转入死信流: messageId={}, retryCount={}",
+                record.getValue().get("messageId"), getRetryCount(record.getValue()));
     }
 
     /**
-     * 处理embedding计算 - 使用现有缓存管理器方法
+     * 将到期的重试消息重新投递到对应优先级和Topic的请求流
      */
-    private void processEmbeddingCalculation(Map<String, Object> payload) {
-        String type = (String) payload.get("type");
+    @Scheduled(fixedDelayString = "${queue.ai.processors.retry-poll-interval-ms:1000}")
+    public void enqueueDueRetries() {
+        if (!running) {
+            return;
+        }
 
         try {
-            switch(type) {
-                case "single_embedding" -> {
-                    String text = (String) payload.get("text");
-                    String cacheKey = (String) payload.get("cacheKey");
-
-                    // 使用AIResponseCacheManager的新增方法
-                    aiCacheManager.calculateAndCacheEmbedding(text, cacheKey);
-                    logger.debug("单个embedding计算完成: cacheKey={}", cacheKey);
-                }
-
-                case "batch_embedding" -> {
-                    List<Map<String, String>> textList = (List<Map<String, String>>) payload.get("textList");
-                    String batchId = (String) payload.get("batchId");
+            List<String> due = stringRedisTemplate.execute(POP_DUE_RETRIES_SCRIPT,
+                    List.of(queueProperties.getStreams().getRetry()),
+                    String.valueOf(System.currentTimeMillis()),
+                    String.valueOf(queueProperties.getConsumer().getClaimBatchSize()));
+            if (due == null) {
+                return;
+            }
 
-                    Map<String, String> textCacheMap = new HashMap<>();
-                    for (Map<String, String> item : textList) {
-                        textCacheMap.put(item.get("text"), item.get("cacheKey"));
+            for (int i = 0; i < due.size(); i++) {
+                try {
+                    Map<String, Object> retryRecord = objectMapper.readValue(due.get(i),
+                            new TypeReference<Map<String, Object>>() {});
+                    Object priority = retryRecord.get("priority");
+                    redisTemplate.opsForStream().add(queueProperties.getStreams().forTopic(
+                            String.valueOf(retryRecord.get("topic")),
+                            priority != null ? priority.toString() : AIQueueTopics.PRIORITY_MEDIUM), retryRecord);
+                } catch (Exception e) {
+                    // 投递失败时把尚未投递的消息放回重试队列，下一轮再试
+                    long now = System.currentTimeMillis();
+                    for (String member : due.subList(i, due.size())) {
+                        stringRedisTemplate.opsForZSet().add(queueProperties.getStreams().getRetry(), member, now);
                     }
-
-                    // 使用AIResponseCacheManager的新增方法
-                    aiCacheManager.batchCalculateEmbeddings(textCacheMap);
-                    logger.info("批量embedding计算完成: batchId={}, size={}", batchId, textList.size());
+                    throw e;
                 }
-
-                default -> logger.warn("未知的embedding计算类型: {}", type);
+            }
+            if (!due.isEmpty()) {
+                logger.info("重新投递到期的AI重试消息: count={}", due.size());
             }
         } catch (Exception e) {
-            logger.error("处理embedding计算失败: type={}", type, e);
+            logger.error("投递AI重试消息失败", e);
         }
     }
 
     /**
-     * 处理最终评价生成 - 使用现有方法
+     * 回收空闲过久的待确认消息（消费者崩溃或重启前已读取但未确认），转给本消费者重新处理。
+     * 在调度线程上执行，不等待许可：先按Topic预占许可，只领取预占到的数量，其余留待下一轮
      */
-    private void processFinalEvaluation(Map<String, Object> payload) {
-        Long sessionId = getLongValue(payload, "sessionId");
-        String lastAnswer = (String) payload.get("lastAnswer");
-
-        try {
-            // 获取当前题目ID作为最后一题
-            Long lastQuestionId = sessionService.getPreviousQuestionId(sessionId);
-
-            // 使用现有的generateFinalFeedback方法
-            String evaluation = callPrivateMethod(chatService, "generateFinalFeedback",
-                    new Class[]{Long.class, String.class, Long.class},
-                    new Object[]{sessionId, lastAnswer, lastQuestionId});
-
-            // 使用现有的saveAIMessage方法
-            MessageDTO aiMessage = callPrivateMethod(chatService, "saveAIMessage",
-                    new Class[]{Long.class, String.class}, new Object[]{sessionId, evaluation});
+    @Scheduled(fixedDelayString = "${queue.ai.consumer.reclaim-interval-ms:30000}", initialDelay = 5000)
+    public void reclaimIdlePending() {
+        if (!running) {
+            return;
+        }
 
-            // 使用现有的SessionService.endSession方法
-            sessionService.endSession(sessionId);
+        for (String streamName : streams) {
+            try {
+                List<RecordId> candidates = findIdlePending(streamName);
+                if (candidates.isEmpty()) {
+                    continue;
+                }
 
-            // 推送给前端
-            webSocketService.pushAIResponse(sessionId, evaluation, "EVALUATION_COMPLETED");
+                String topic = streamTopics.get(streamName);
+                int reserved = topic != null ? bulkhead.tryAcquire(topic, candidates.size()) : candidates.size();
+                if (reserved == 0) {
+                    continue;
+                }
 
-            logger.info("最终评价生成完成: sessionId={}", sessionId);
+                List<MapRecord<String, Object, Object>> claimed = List.of();
+                try {
+                    claimed = claim(streamName, candidates.subList(0, reserved));
+                } finally {
+                    if (topic != null) {
+                        bulkhead.release(topic, reserved - claimed.size());
+                    }
+                }
+                if (claimed.isEmpty()) {
+                    continue;
+                }
 
-        } catch (Exception e) {
-            logger.error("处理最终评价失败: sessionId={}", sessionId, e);
-            webSocketService.pushAIResponse(sessionId, "感谢您参加本次面试！", "EVALUATION_COMPLETED");
+                logger.warn("回收空闲待确认AI消息: stream={}, count={}", streamName, claimed.size());
+                for (MapRecord<String, Object, Object> record : claimed) {
+                    if (topic != null) {
+                        dispatch(record, topic);
+                    } else {
+                        dispatchLegacy(record);
+                    }
+                }
+            } catch (Exception e) {
+                logger.error("回收待确认AI消息失败: stream={}", streamName, e);
+            }
         }
     }
 
-    // ===== 辅助方法 =====
-
     /**
-     * 获取题目信息 - 使用反射调用questionMapper
+     * 旧版单一请求流回收的消息领取后才知道Topic：有许可时分发，未知Topic直接处理（失败后转入死信），
+     * 没有许可的留在本消费者的待确认列表，空闲超过阈值后再次回收
      */
-    private Question getQuestionById(Long questionId) {
-        try {
-            // 通过反射访问ChatService中的questionMapper
-            java.lang.reflect.Field field = ChatService.class.getDeclaredField("questionMapper");
-            field.setAccessible(true);
-            Object questionMapper = field.get(chatService);
+    private void dispatchLegacy(MapRecord<String, Object, Object> record) {
+        String topic = (String) record.getValue().get("topic");
+        if (!TOPICS.contains(topic)) {
+            dispatch(record, null);
+        } else if (bulkhead.tryAcquire(topic, 1) == 1) {
+            dispatch(record, topic);
+        }
+    }
 
-            Method findByIdMethod = questionMapper.getClass().getMethod("findById", Long.class);
-            Optional<Question> result = (Optional<Question>) findByIdMethod.invoke(questionMapper, questionId);
+    /**
+     * XPENDING分页扫描待确认列表，找出空闲超过claimMinIdleMs的消息；
+     * 本消费者名下且本节点仍在处理的消息跳过（同一消费者名在重启后会继承崩溃前的待确认消息，这部分仍需回收）
+     */
+    private List<RecordId> findIdlePending(String streamName) {
+        AIQueueProperties.Consumer consumer = queueProperties.getConsumer();
+        long minIdleMs = consumer.getClaimMinIdleMs();
+        int batchSize = Math.max(1, consumer.getClaimBatchSize());
+
+        List<RecordId> candidates = new ArrayList<>();
+        String lastId = null;
+        for (int page = 0; page < MAX_PENDING_PAGES && candidates.size() < batchSize; page++) {
+            Range<String> range = lastId == null
+                    ? Range.unbounded() : Range.rightUnbounded(Range.Bound.inclusive(lastId));
+            PendingMessages pending = redisTemplate.opsForStream()
+                    .pending(streamName, consumer.getGroupName(), range, batchSize);
+            if (pending == null || pending.isEmpty()) {
+                break;
+            }
 
-            return result.orElse(null);
+            for (PendingMessage message : pending) {
+                if (message.getIdAsString().equals(lastId)) {
+                    continue;
+                }
+                boolean idle = message.getElapsedTimeSinceLastDelivery().toMillis() >= minIdleMs;
+                boolean processingHere = consumer.getConsumerName().equals(message.getConsumerName())
+                        && inFlight.contains(streamName + "/" + message.getIdAsString());
+                if (idle && !processingHere && candidates.size() < batchSize) {
+                    candidates.add(message.getId());
+                }
+            }
 
-        } catch (Exception e) {
-            logger.error("获取题目失败: questionId={}", questionId, e);
-            return null;
+            if (pending.size() < batchSize) {
+                break;
+            }
+            lastId = pending.get(pending.size() - 1).getIdAsString();
         }
+        return candidates;
     }
 
     /**
-     * 通过反射调用ChatService的私有方法
+     * XCLAIM转移到本消费者，Redis按minIdle再校验一次，期间已被确认或被其他节点领取的消息不会返回
      */
-    @SuppressWarnings("unchecked")
-    private <T> T callPrivateMethod(Object target, String methodName, Class<?>[] paramTypes, Object[] args) {
+    private List<MapRecord<String, Object, Object>> claim(String streamName, List<RecordId> ids) {
+        AIQueueProperties.Consumer consumer = queueProperties.getConsumer();
+        List<MapRecord<String, Object, Object>> claimed = redisTemplate.opsForStream().claim(streamName,
+                consumer.getGroupName(), consumer.getConsumerName(),
+                XClaimOptions.minIdle(Duration.ofMillis(consumer.getClaimMinIdleMs())).ids(ids));
+        return claimed != null ? claimed : List.of();
+    }
+
+    private Map<String, Object> toFieldMap(Map<Object, Object> data) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        data.forEach((field, value) -> fields.put(String.valueOf(field), value));
+        return fields;
+    }
+
+    private int getRetryCount(Map<Object, Object> data) {
+        Object value = data.get("retryCount");
+        if (value instanceof Number number) {
+            return number.intValue();
+        }
         try {
-            Method method = target.getClass().getDeclaredMethod(methodName, paramTypes);
-            method.setAccessible(true);
-            return (T) method.invoke(target, args);
-        } catch (Exception e) {
-            logger.error("反射调用方法失败: method={}", methodName, e);
-            throw new RuntimeException("调用ChatService方法失败: " + methodName, e);
+            return value != null ? Integer.parseInt(value.toString()) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
         }
     }
 
-    private Long getLongValue(Map<String, Object> payload, String key) {
-        Object value = payload.get(key);
-        if (value == null) return null;
-        if (value instanceof Number) {
-            return ((Number) value).longValue();
+    private String errorMessage(Throwable error) {
+        Throwable root = error;
+        while (root.getCause() != null && root.getCause() != root) {
+            root = root.getCause();
         }
-        return Long.parseLong(value.toString());
+        String message = root.getClass().getSimpleName() + ": " + root.getMessage();
+        return message.length() > 500 ? message.substring(0, 500) : message;
     }
 
-    private void acknowledgeMessage(String recordId) {
-        try {
-            redisTemplate.opsForStream().acknowledge(
-                    queueProperties.getConsumer().getGroupName(),
-                    queueProperties.getStreams().getRequests(),
-                    recordId);
-        } catch (Exception e) {
-            logger.error("确认消息失败: recordId={}", recordId, e);
+    /**
+     * 单个Topic的请求流
+     */
+    private static class TopicStream {
+        final String stream;
+        final String topic;
+
+        TopicStream(String stream, String topic) {
+            this.stream = stream;
+            this.topic = topic;
         }
     }
 
-    private void handleProcessingError(MapRecord<String, Object, Object> record, Throwable error) {
-        String messageId = (String) record.getValue().get("messageId");
-        logger.error("AI消息处理失败，将确认消息: messageId={}", messageId, error);
-        acknowledgeMessage(String.valueOf(record.getId()));
+    /**
+     * 已读取并预占了Topic许可的消息，topic为空表示旧版流中的未知Topic
+     */
+    private static class ReservedRecord {
+        final MapRecord<String, Object, Object> record;
+        final String topic;
+
+        ReservedRecord(MapRecord<String, Object, Object> record, String topic) {
+            this.record = record;
+            this.topic = topic;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,38 @@
+package com.xinyu.InterviewCoach_v2.queue.handler;
+
+import java.util.Map;
+
+/**
+ * AI队列任务处理器，每个AIQueueTopics的Topic一个实现
+ * 消费者按topic()建立映射后直接调用，抛出异常即视为处理失败，由消费者按重试策略处理
+ */
+public interface AITaskHandler {
+
+    /**
+     * 处理的Topic，取值见AIQueueTopics
+     */
+    String topic();
+
+    /**
+     * 处理一条消息的payload
+     */
+    void handle(Map<String, Object> payload) throws Exception;
+
+    /**
+     * 超过最大重试次数、消息转入死信流后调用，用于回滚和通知前端
+     */
+    default void onFailure(Map<String, Object> payload) {
+    }
+
+    /**
+     * 读取payload中的长整型字段，JSON反序列化后可能是Integer、Long或字符串
+     */
+    static Long getLong(Map<String, Object> payload, String key) {
+        Object value = payload.get(key);
+        if (value == null) return null;
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        return Long.parseLong(value.toString());
+    }
+}
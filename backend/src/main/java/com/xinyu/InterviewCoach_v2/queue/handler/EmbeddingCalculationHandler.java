@@ -0,0 +1,60 @@
+package com.xinyu.InterviewCoach_v2.queue.handler;
+
+import com.xinyu.InterviewCoach_v2.queue.constants.AIQueueTopics;
+import com.xinyu.InterviewCoach_v2.service.cache.AIResponseCacheManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * embedding计算
+ */
+@Component
+public class EmbeddingCalculationHandler implements AITaskHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddingCalculationHandler.class);
+
+    @Autowired
+    private AIResponseCacheManager aiCacheManager;
+
+    @Override
+    public String topic() {
+        return AIQueueTopics.EMBEDDING_CALCULATION;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void handle(Map<String, Object> payload) {
+        String type = (String) payload.get("type");
+
+        switch(type) {
+            case "single_embedding" -> {
+                String text = (String) payload.get("text");
+                String cacheKey = (String) payload.get("cacheKey");
+
+                aiCacheManager.calculateAndCacheEmbedding(text, cacheKey);
+                logger.debug("单个embedding计算完成: cacheKey={}", cacheKey);
+            }
+
+            case "batch_embedding" -> {
+                List<Map<String, String>> textList = (List<Map<String, String>>) payload.get("textList");
+                String batchId = (String) payload.get("batchId");
+
+                Map<String, String> textCacheMap = new HashMap<>();
+                for (Map<String, String> item : textList) {
+                    textCacheMap.put(item.get("text"), item.get("cacheKey"));
+                }
+
+                aiCacheManager.batchCalculateEmbeddings(textCacheMap);
+                logger.info("批量embedding计算完成: batchId={}, size={}", batchId, textList.size());
+            }
+
+            default -> logger.warn("未知的embedding计算类型: {}", type);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.xinyu.InterviewCoach_v2.queue.handler;
+
+import com.xinyu.InterviewCoach_v2.dto.core.MessageDTO;
+import com.xinyu.InterviewCoach_v2.dto.core.SessionDTO;
+import com.xinyu.InterviewCoach_v2.dto.response.chat.ChatTurnResponseDTO;
+import com.xinyu.InterviewCoach_v2.entity.Message;
+import com.xinyu.InterviewCoach_v2.entity.Question;
+import com.xinyu.InterviewCoach_v2.enums.InterviewState;
+import com.xinyu.InterviewCoach_v2.mapper.MessageMapper;
+import com.xinyu.InterviewCoach_v2.queue.constants.AIQueueTopics;
+import com.xinyu.InterviewCoach_v2.service.InterviewTurnEngine;
+import com.xinyu.InterviewCoach_v2.service.SessionService;
+import com.xinyu.InterviewCoach_v2.service.UserAttemptService;
+import com.xinyu.InterviewCoach_v2.service.WebSocketService;
+import com.xinyu.InterviewCoach_v2.service.cache.ChatTurnStore;
+import com.xinyu.InterviewCoach_v2.service.cache.QuestionCatalogCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * 异步对话轮次的反馈生成：有下一题时生成反馈并提出下一题，否则生成最终评价并结束会话
+ * 提交时用户消息已保存、会话进度已推进（见ChatService.submitMessage），这里只调用LLM并保存回复；
+ * 最终失败时按payload中的进度快照回滚并删除用户消息，与同步模式的补偿一致。
+ * 消息可能重复投递（回收、保存后更新轮次状态失败再重试），调用LLM前先原子领取轮次，
+ * AI回复按turn_id唯一保存，轮次状态过期时以数据库为准判断是否已处理或已回滚
+ */
+@Component
+public class FeedbackGenerationHandler implements AITaskHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(FeedbackGenerationHandler.class);
+
+    @Autowired
+    private InterviewTurnEngine turnEngine;
+
+    @Autowired
+    private SessionService sessionService;
+
+    @Autowired
+    private UserAttemptService userAttemptService;
+
+    @Autowired
+    private QuestionCatalogCache questionCatalogCache;
+
+    @Autowired
+    private ChatTurnStore chatTurnStore;
+
+    @Autowired
+    private MessageMapper messageMapper;
+
+    @Autowired
+    private WebSocketService webSocketService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Override
+    public String topic() {
+        return AIQueueTopics.FEEDBACK_GENERATION;
+    }
+
+    @Override
+    public void handle(Map<String, Object> payload) {
+        String turnId = (String) payload.get("turnId");
+        Long userId = AITaskHandler.getLong(payload, "userId");
+        Long sessionId = AITaskHandler.getLong(payload, "sessionId");
+
+        String claimToken = UUID.randomUUID().toString();
+        if (!chatTurnStore.claim(turnId, sessionId, userId, claimToken)) {
+            String status = chatTurnStore.getStatus(turnId);
+            if (ChatTurnResponseDTO.STATUS_COMPLETED.equals(status) || ChatTurnResponseDTO.STATUS_FAILED.equals(status)) {
+                logger.info("对话轮次已结束，跳过: turnId={}, status={}", turnId, status);
+                return;
+            }
+            // 其他节点持有未过期的租约：不能确认消息，交给重试，持有者崩溃时租约过期后可重新领取
+            throw new IllegalStateException("对话轮次正在处理中: turnId=" + turnId + ", status=" + status);
+        }
+
+        try {
+            processTurn(payload, turnId, userId, sessionId);
+        } catch (RuntimeException e) {
+            // 归还领取，由消费者重试时重新领取
+            chatTurnStore.release(turnId, claimToken);
+            throw e;
+        }
+    }
+
+    private void processTurn(Map<String, Object> payload, String turnId, Long userId, Long sessionId) {
+        Long currentQuestionId = AITaskHandler.getLong(payload, "currentQuestionId");
+        String userAnswer = (String) payload.get("userAnswer");
+        Long nextQuestionId = AITaskHandler.getLong(payload, "nextQuestionId");
+        Long userMessageId = AITaskHandler.getLong(payload, "userMessageId");
+        boolean hasNextQuestion = nextQuestionId != null && nextQuestionId > 0;
+        InterviewState currentState = hasNextQuestion
+                ? InterviewState.WAITING_FOR_USER_ANSWER : InterviewState.SESSION_ENDED;
+
+        // 上次处理已保存回复但没来得及更新轮次状态：补齐状态和推送，不再调用LLM
+        Optional<Message> saved = messageMapper.findByTurnId(turnId);
+        if (saved.isPresent()) {
+            completeTurn(turnId, sessionId, saved.get().getId(), saved.get().getText(), currentState);
+            logger.info("对话轮次回复已保存，补齐轮次状态: sessionId={}, turnId={}", sessionId, turnId);
+            return;
+        }
+        // 用户消息已被删除说明轮次已回滚（轮次状态可能已过期）
+        if (userMessageId != null && messageMapper.findById(userMessageId).isEmpty()) {
+            chatTurnStore.fail(turnId, "对话轮次已回滚，请重新发送");
+            chatTurnStore.unlockSession(sessionId, turnId);
+            logger.info("对话轮次已回滚，跳过: sessionId={}, turnId={}", sessionId, turnId);
+            return;
+        }
+
+        String aiResponse;
+        if (hasNextQuestion) {
+            Question nextQuestion = questionCatalogCache.getQuestion(nextQuestionId)
+                    .orElseThrow(() -> new RuntimeException("下一题不存在: questionId=" + nextQuestionId));
+            aiResponse = turnEngine.generateFeedbackWithNextQuestion(userAnswer, currentQuestionId,
+                    questionCatalogCache.getAnswers(currentQuestionId), nextQuestion, null);
+        } else {
+            aiResponse = turnEngine.generateFinalFeedback(sessionId, sessionService.getQuestionQueue(sessionId), null);
+        }
+
+        // 短事务：保存AI回复（turn_id唯一，重复保存回滚整个事务），最后一题时结束会话
+        MessageDTO aiMessage = transactionTemplate.execute(status -> {
+            MessageDTO message = turnEngine.saveAIMessage(sessionId, aiResponse, turnId);
+            if (currentQuestionId != null && currentQuestionId > 0) {
+                userAttemptService.recordAttempt(userId, currentQuestionId);
+            }
+            if (!hasNextQuestion) {
+                sessionService.endSession(sessionId);
+                logger.info("面试会话结束: sessionId={}", sessionId);
+            }
+            return message;
+        });
+
+        completeTurn(turnId, sessionId, aiMessage.getId(), aiResponse, currentState);
+        logger.info("反馈生成完成: sessionId={}, turnId={}, currentQuestionId={}", sessionId, turnId, currentQuestionId);
+    }
+
+    private void completeTurn(String turnId, Long sessionId, Long aiMessageId, String reply, InterviewState currentState) {
+        chatTurnStore.complete(turnId, aiMessageId, reply, currentState.name());
+        chatTurnStore.unlockSession(sessionId, turnId);
+        webSocketService.pushAIResponse(sessionId, reply, currentState.name());
+    }
+
+    @Override
+    public void onFailure(Map<String, Object> payload) {
+        String turnId = (String) payload.get("turnId");
+        Long userId = AITaskHandler.getLong(payload, "userId");
+        Long sessionId = AITaskHandler.getLong(payload, "sessionId");
+        if (turnId == null || userId == null || sessionId == null) {
+            return;
+        }
+        // 回复已保存的轮次不能回滚；FAILED只会设置一次，保证只回滚一次
+        if (messageMapper.findByTurnId(turnId).isPresent()
+                || !chatTurnStore.failIfUnfinished(turnId, sessionId, userId, "AI服务暂时不可用，请稍后重新发送")) {
+            logger.info("对话轮次已完成或正在处理，不回滚: sessionId={}, turnId={}", sessionId, turnId);
+            return;
+        }
+
+        Long nextQuestionId = AITaskHandler.getLong(payload, "nextQuestionId");
+        Long userMessageId = AITaskHandler.getLong(payload, "userMessageId");
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                // 只撤销本轮的推进，进度已被后续轮次推进时保留用户消息
+                if (nextQuestionId != null && nextQuestionId > 0
+                        && !sessionService.restoreProgress(snapshotOf(payload, sessionId))) {
+                    throw new IllegalStateException("会话进度已变化，无法回滚本轮对话");
+                }
+                if (userMessageId != null) {
+                    messageMapper.deleteById(userMessageId);
+                }
+            });
+            logger.warn("异步对话轮次失败，已回滚: sessionId={}, turnId={}, userMessageId={}",
+                    sessionId, turnId, userMessageId);
+        } catch (RuntimeException e) {
+            logger.error("异步对话轮次回滚失败: sessionId={}, turnId={}", sessionId, turnId, e);
+        } finally {
+            chatTurnStore.unlockSession(sessionId, turnId);
+        }
+        webSocketService.pushAIResponse(sessionId, "AI暂时无法回应，请稍后再试。", "ERROR");
+    }
+
+    /**
+     * 提交时记录的会话进度快照
+     */
+    private SessionDTO snapshotOf(Map<String, Object> payload, Long sessionId) {
+        SessionDTO snapshot = new SessionDTO();
+        snapshot.setId(sessionId);
+        snapshot.setQueuePosition(AITaskHandler.getLong(payload, "queuePosition").intValue());
+        snapshot.setAskedQuestionCount(AITaskHandler.getLong(payload, "askedQuestionCount").intValue());
+        snapshot.setCompletedQuestionCount(AITaskHandler.getLong(payload, "completedQuestionCount").intValue());
+        return snapshot;
+    }
+}
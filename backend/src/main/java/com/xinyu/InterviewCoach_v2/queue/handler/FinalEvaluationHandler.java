@@ -0,0 +1,90 @@
+package com.xinyu.InterviewCoach_v2.queue.handler;
+
+import com.xinyu.InterviewCoach_v2.entity.Message;
+import com.xinyu.InterviewCoach_v2.mapper.MessageMapper;
+import com.xinyu.InterviewCoach_v2.queue.constants.AIQueueTopics;
+import com.xinyu.InterviewCoach_v2.service.InterviewTurnEngine;
+import com.xinyu.InterviewCoach_v2.service.SessionService;
+import com.xinyu.InterviewCoach_v2.service.WebSocketService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * 最终评价生成
+ * 消息可能重复投递（回收、保存后确认失败），最终评价以"final:{sessionId}"作为turn_id唯一保存，
+ * 已保存时只补齐结束会话和推送，不再调用LLM
+ */
+@Component
+public class FinalEvaluationHandler implements AITaskHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(FinalEvaluationHandler.class);
+
+    private static final String TURN_ID_PREFIX = "final:";
+
+    @Autowired
+    private InterviewTurnEngine turnEngine;
+
+    @Autowired
+    private SessionService sessionService;
+
+    @Autowired
+    private WebSocketService webSocketService;
+
+    @Autowired
+    private MessageMapper messageMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Override
+    public String topic() {
+        return AIQueueTopics.FINAL_EVALUATION;
+    }
+
+    @Override
+    public void handle(Map<String, Object> payload) {
+        Long sessionId = AITaskHandler.getLong(payload, "sessionId");
+        String turnId = TURN_ID_PREFIX + sessionId;
+
+        // 上次处理已保存评价：结束会话可能没来得及执行，重复结束是幂等的
+        Optional<Message> saved = messageMapper.findByTurnId(turnId);
+        if (saved.isPresent()) {
+            sessionService.endSession(sessionId);
+            webSocketService.pushAIResponse(sessionId, saved.get().getText(), "EVALUATION_COMPLETED");
+            logger.info("最终评价已保存，重新推送: sessionId={}", sessionId);
+            return;
+        }
+
+        String evaluation = turnEngine.generateFinalFeedback(sessionId, sessionService.getQuestionQueue(sessionId), null);
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                turnEngine.saveAIMessage(sessionId, evaluation, turnId);
+                sessionService.endSession(sessionId);
+            });
+        } catch (DuplicateKeyException e) {
+            // 并发的重复投递已保存并推送
+            logger.info("最终评价已由重复投递保存，跳过: sessionId={}", sessionId);
+            return;
+        }
+
+        webSocketService.pushAIResponse(sessionId, evaluation, "EVALUATION_COMPLETED");
+
+        logger.info("最终评价生成完成: sessionId={}", sessionId);
+    }
+
+    @Override
+    public void onFailure(Map<String, Object> payload) {
+        Long sessionId = AITaskHandler.getLong(payload, "sessionId");
+        if (sessionId != null) {
+            webSocketService.pushAIResponse(sessionId, "感谢您参加本次面试！", "EVALUATION_COMPLETED");
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.xinyu.InterviewCoach_v2.queue.handler;
+
+import com.xinyu.InterviewCoach_v2.entity.Message;
+import com.xinyu.InterviewCoach_v2.entity.Question;
+import com.xinyu.InterviewCoach_v2.mapper.MessageMapper;
+import com.xinyu.InterviewCoach_v2.queue.constants.AIQueueTopics;
+import com.xinyu.InterviewCoach_v2.service.InterviewTurnEngine;
+import com.xinyu.InterviewCoach_v2.service.WebSocketService;
+import com.xinyu.InterviewCoach_v2.service.cache.QuestionCatalogCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * 开场题目生成
+ * 消息可能重复投递（回收、保存后确认失败），开场消息以"opening:{sessionId}"作为turn_id唯一保存，
+ * 已保存时只重新推送，不再调用LLM
+ */
+@Component
+public class QuestionGenerationHandler implements AITaskHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(QuestionGenerationHandler.class);
+
+    private static final String TURN_ID_PREFIX = "opening:";
+
+    @Autowired
+    private InterviewTurnEngine turnEngine;
+
+    @Autowired
+    private QuestionCatalogCache questionCatalogCache;
+
+    @Autowired
+    private MessageMapper messageMapper;
+
+    @Autowired
+    private WebSocketService webSocketService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Override
+    public String topic() {
+        return AIQueueTopics.QUESTION_GENERATION;
+    }
+
+    @Override
+    public void handle(Map<String, Object> payload) {
+        Long sessionId = AITaskHandler.getLong(payload, "sessionId");
+        Long questionId = AITaskHandler.getLong(payload, "questionId");
+        String turnId = TURN_ID_PREFIX + sessionId;
+
+        Optional<Message> saved = messageMapper.findByTurnId(turnId);
+        if (saved.isPresent()) {
+            webSocketService.pushAIResponse(sessionId, saved.get().getText(), "ASKING_QUESTION");
+            logger.info("开场消息已保存，重新推送: sessionId={}", sessionId);
+            return;
+        }
+
+        Question question = questionCatalogCache.getQuestion(questionId).orElse(null);
+        if (question == null) {
+            logger.error("题目不存在: questionId={}", questionId);
+            webSocketService.pushAIResponse(sessionId, "抱歉，无法获取题目信息。", "ERROR");
+            return;
+        }
+
+        // 事务外调用LLM，失败时抛出由消费者重试
+        String aiResponse = turnEngine.generateOpeningMessage(question);
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> turnEngine.saveAIMessage(sessionId, aiResponse, turnId));
+        } catch (DuplicateKeyException e) {
+            // 并发的重复投递已保存并推送
+            logger.info("开场消息已由重复投递保存，跳过: sessionId={}", sessionId);
+            return;
+        }
+        webSocketService.pushAIResponse(sessionId, aiResponse, "ASKING_QUESTION");
+
+        logger.info("开场题目生成完成: sessionId={}, questionId={}", sessionId, questionId);
+    }
+
+    @Override
+    public void onFailure(Map<String, Object> payload) {
+        Long sessionId = AITaskHandler.getLong(payload, "sessionId");
+        if (sessionId != null) {
+            webSocketService.pushAIResponse(sessionId, "AI暂时无法生成题目，请稍后再试。", "ERROR");
+        }
+    }
+}
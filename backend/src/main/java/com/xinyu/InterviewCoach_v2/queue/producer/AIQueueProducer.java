@@ -1,5 +1,6 @@
 package com.xinyu.InterviewCoach_v2.queue.producer;
 
+import com.xinyu.InterviewCoach_v2.dto.core.SessionDTO;
 import com.xinyu.InterviewCoach_v2.dto.queue.AIQueueMessage;
 import com.xinyu.InterviewCoach_v2.queue.constants.AIQueueTopics;
 import com.xinyu.InterviewCoach_v2.config.properties.AIQueueProperties;
@@ -7,9 +8,14 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.stream.MapRecord;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Component;
 
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -47,25 +53,33 @@ public class AIQueueProducer {
     }
 
     /**
-     * 发送反馈+下一题生成请求
+     * 发送异步对话轮次的反馈+下一题生成请求
+     * snapshot为推进前的会话进度，最终失败时据此回滚；nextQuestionId为空表示最后一题，生成最终评价
      */
-    public void sendFeedbackWithNextQuestionRequest(Long sessionId, Long currentQuestionId,
-                                                    String userAnswer, Long nextQuestionId) {
+    public void sendFeedbackWithNextQuestionRequest(String turnId, Long userId, SessionDTO snapshot,
+                                                    Long currentQuestionId, String userAnswer,
+                                                    Long nextQuestionId, Long userMessageId) {
         if (!isTopicEnabled(AIQueueTopics.FEEDBACK_GENERATION)) {
             return;
         }
 
-        Map<String, Object> payload = Map.of(
-                "sessionId", sessionId,
-                "currentQuestionId", currentQuestionId,
-                "userAnswer", userAnswer,
-                "nextQuestionId", nextQuestionId,
-                "type", "feedback_with_next_question",
-                "requestTime", System.currentTimeMillis()
-        );
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("turnId", turnId);
+        payload.put("userId", userId);
+        payload.put("sessionId", snapshot.getId());
+        payload.put("currentQuestionId", currentQuestionId != null ? currentQuestionId : 0L);
+        payload.put("userAnswer", userAnswer);
+        payload.put("nextQuestionId", nextQuestionId != null ? nextQuestionId : 0L);
+        payload.put("userMessageId", userMessageId);
+        payload.put("queuePosition", snapshot.getQueuePosition());
+        payload.put("askedQuestionCount", snapshot.getAskedQuestionCount());
+        payload.put("completedQuestionCount", snapshot.getCompletedQuestionCount());
+        payload.put("type", "feedback_with_next_question");
+        payload.put("requestTime", System.currentTimeMillis());
 
         sendMessage(AIQueueTopics.FEEDBACK_GENERATION, payload, AIQueueTopics.PRIORITY_HIGH);
-        logger.info("发送反馈生成请求: sessionId={}, currentQuestionId={}", sessionId, currentQuestionId);
+        logger.info("发送反馈生成请求: sessionId={}, turnId={}, currentQuestionId={}",
+                snapshot.getId(), turnId, currentQuestionId);
     }
 
     /**
@@ -128,26 +142,47 @@ public class AIQueueProducer {
     }
 
     /**
-     * 发送用户答案相似度检查请求
+     * 将死信流中最早的count条消息重置重试次数后重新投递，返回投递条数
      */
-    public void sendAnswerSimilarityRequest(Long sessionId, Long questionId, String userAnswer) {
-        if (!isTopicEnabled(AIQueueTopics.EMBEDDING_CALCULATION)) {
-            return;
+    public int replayDeadLetters(int count) {
+        String deadLetterStream = queueProperties.getStreams().getDeadLetter();
+        List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream()
+                .range(deadLetterStream, Range.unbounded(), Limit.limit().count(count));
+        if (records == null) {
+            return 0;
         }
 
-        Map<String, Object> payload = Map.of(
-                "sessionId", sessionId,
-                "questionId", questionId,
-                "userAnswer", userAnswer,
-                "type", "similarity_check",
-                "requestTime", System.currentTimeMillis()
-        );
+        int replayed = 0;
+        for (MapRecord<String, Object, Object> record : records) {
+            Map<String, Object> streamRecord = new LinkedHashMap<>();
+            record.getValue().forEach((field, value) -> streamRecord.put(String.valueOf(field), value));
+            streamRecord.keySet().removeAll(List.of("lastError", "sourceStream", "failedAt"));
+            streamRecord.put("retryCount", 0);
+
+            Object priority = streamRecord.get("priority");
+            redisTemplate.opsForStream().add(queueProperties.getStreams().forTopic(
+                    String.valueOf(streamRecord.get("topic")),
+                    priority != null ? priority.toString() : AIQueueTopics.PRIORITY_MEDIUM), streamRecord);
+            redisTemplate.opsForStream().delete(deadLetterStream, record.getId());
+            replayed++;
+        }
 
-        sendMessage(AIQueueTopics.EMBEDDING_CALCULATION, payload, AIQueueTopics.PRIORITY_HIGH);
-        logger.debug("发送答案相似度检查请求: sessionId={}, questionId={}", sessionId, questionId);
+        logger.info("重新投递死信消息: count={}", replayed);
+        return replayed;
     }
 
-    private boolean isTopicEnabled(String topic) {
+    /**
+     * 死信流中的消息数
+     */
+    public long getDeadLetterCount() {
+        Long size = redisTemplate.opsForStream().size(queueProperties.getStreams().getDeadLetter());
+        return size != null ? size : 0;
+    }
+
+    /**
+     * 队列和指定Topic是否都已启用
+     */
+    public boolean isTopicEnabled(String topic) {
         if (!queueProperties.isEnabled()) {
             logger.debug("AI队列整体未启用");
             return false;
@@ -179,7 +214,7 @@ public class AIQueueProducer {
                     "timestamp", message.getTimestamp().toString()
             );
 
-            redisTemplate.opsForStream().add(queueProperties.getStreams().getRequests(), streamRecord);
+            redisTemplate.opsForStream().add(queueProperties.getStreams().forTopic(topic, priority), streamRecord);
 
         } catch (Exception e) {
             logger.error("发送AI消息到队列失败: topic={}", topic, e);
@@ -3,6 +3,7 @@ package com.xinyu.InterviewCoach_v2.service;
 import com.xinyu.InterviewCoach_v2.entity.Answer;
 import com.xinyu.InterviewCoach_v2.mapper.AnswerMapper;
 import com.xinyu.InterviewCoach_v2.mapper.QuestionMapper;
+import com.xinyu.InterviewCoach_v2.service.cache.QuestionCatalogCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -22,6 +23,9 @@ public class AnswerService {
     @Autowired
     private QuestionMapper questionMapper;
 
+    @Autowired
+    private QuestionCatalogCache questionCatalogCache;
+
     /**
      * 创建新答案
      */
@@ -42,6 +46,7 @@ public class AnswerService {
 
         int result = answerMapper.insert(answer);
         if (result > 0) {
+            questionCatalogCache.invalidateAnswers(answer.getQuestionId());
             return answer;
         } else {
             throw new RuntimeException("创建答案失败");
@@ -123,6 +128,7 @@ public class AnswerService {
 
         int result = answerMapper.update(answer);
         if (result > 0) {
+            questionCatalogCache.invalidateAnswers(existingAnswer.get().getQuestionId());
             return answerMapper.findById(id).orElse(null);
         } else {
             throw new RuntimeException("更新答案失败");
@@ -135,11 +141,16 @@ public class AnswerService {
     @Transactional
     public boolean deleteAnswer(Long id) {
         // 验证答案是否存在
-        if (!answerMapper.findById(id).isPresent()) {
+        Optional<Answer> existingAnswer = answerMapper.findById(id);
+        if (!existingAnswer.isPresent()) {
             throw new RuntimeException("答案不存在");
         }
 
-        return answerMapper.deleteById(id) > 0;
+        boolean deleted = answerMapper.deleteById(id) > 0;
+        if (deleted) {
+            questionCatalogCache.invalidateAnswers(existingAnswer.get().getQuestionId());
+        }
+        return deleted;
     }
 
     /**
@@ -147,6 +158,8 @@ public class AnswerService {
      */
     @Transactional
     public boolean deleteAnswersByQuestionId(Long questionId) {
-        return answerMapper.deleteByQuestionId(questionId) >= 0;
+        boolean success = answerMapper.deleteByQuestionId(questionId) >= 0;
+        questionCatalogCache.invalidateAnswers(questionId);
+        return success;
     }
 }
\ No newline at end of file
@@ -6,23 +6,27 @@ import com.xinyu.InterviewCoach_v2.dto.core.SessionDTO;
 import com.xinyu.InterviewCoach_v2.dto.request.chat.SendMessageRequestDTO;
 import com.xinyu.InterviewCoach_v2.dto.request.chat.StartInterviewRequestDTO;
 import com.xinyu.InterviewCoach_v2.dto.response.chat.ChatMessageResponseDTO;
+import com.xinyu.InterviewCoach_v2.dto.response.chat.ChatTurnResponseDTO;
 import com.xinyu.InterviewCoach_v2.dto.response.chat.InterviewSessionResponseDTO;
-import com.xinyu.InterviewCoach_v2.entity.Answer;
-import com.xinyu.InterviewCoach_v2.entity.Message;
 import com.xinyu.InterviewCoach_v2.entity.Question;
 import com.xinyu.InterviewCoach_v2.enums.InterviewState;
-import com.xinyu.InterviewCoach_v2.enums.MessageType;
 import com.xinyu.InterviewCoach_v2.mapper.*;
-import com.xinyu.InterviewCoach_v2.service.cache.AIResponseCacheManager;
+import com.xinyu.InterviewCoach_v2.queue.constants.AIQueueTopics;
+import com.xinyu.InterviewCoach_v2.queue.producer.AIQueueProducer;
+import com.xinyu.InterviewCoach_v2.service.cache.ChatTurnStore;
+import com.xinyu.InterviewCoach_v2.service.cache.QuestionCatalogCache;
+import com.xinyu.InterviewCoach_v2.service.cache.QuestionSelectionIndex;
 import com.xinyu.InterviewCoach_v2.util.DTOConverter;
+import com.xinyu.InterviewCoach_v2.util.RemoteCallCounter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -35,57 +39,61 @@ public class ChatService {
 
     private static final Logger logger = LoggerFactory.getLogger(ChatService.class);
 
-    @Autowired
-    private SessionMapper sessionMapper;
+    private static final String TURN_IN_PROGRESS_MESSAGE = "上一轮回答仍在处理中，请等待AI回复后再发送";
 
     @Autowired
     private MessageMapper messageMapper;
 
     @Autowired
-    private QuestionMapper questionMapper;
+    private SessionService sessionService;
 
     @Autowired
-    private QuestionTagMapper questionTagMapper;
+    private TemplateService templateService;
 
     @Autowired
-    private UserAttemptMapper userAttemptMapper;
+    private UserAttemptService userAttemptService;
 
     @Autowired
-    private SessionService sessionService;
+    private DTOConverter dtoConverter;
 
     @Autowired
-    private TemplateService templateService;
+    private QuestionSetService questionSetService;
 
     @Autowired
-    private UserAttemptService userAttemptService;
+    private QuestionCatalogCache questionCatalogCache;
 
     @Autowired
-    private DTOConverter dtoConverter;
+    private QuestionSelectionIndex questionSelectionIndex;
 
     @Autowired
-    private QuestionSetService questionSetService;
+    private WebSocketService webSocketService;
 
     @Autowired
-    private AnswerService answerService;
+    private TransactionTemplate transactionTemplate;
 
     @Autowired
-    private AIResponseCacheManager aiCacheManager;
+    private InterviewTurnEngine turnEngine;
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    @Autowired
+    private AIQueueProducer aiQueueProducer;
+
+    @Autowired
+    private ChatTurnStore chatTurnStore;
 
-    @Value("${openai.api.key}")
-    private String openAiApiKey;
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
 
-    @Value("${openai.api.url:https://api.openai.com/v1/chat/completions}")
-    private String openAiApiUrl;
+    @Value("${openai.stream.enabled:false}")  // 请求未指定stream时的默认回复模式
+    private boolean streamEnabled;
 
-    @Value("${openai.model:gpt-3.5-turbo}")
-    private String openAiModel;
+    @Value("${interview.async-turn.enabled:false}")  // 请求未指定async时的默认处理模式
+    private boolean asyncTurnEnabled;
 
     /**
      * 启动新的面试会话
+     * 分三段执行：短事务创建会话和题目队列 -> 事务外生成开场白 -> 短事务保存开场白，
+     * 避免OpenAI调用期间占用数据库连接
      */
-    @Transactional
     public InterviewSessionResponseDTO startInterview(Long userId, StartInterviewRequestDTO request) {
         try {
             logger.info("开始启动面试会话: userId={}, mode={}", userId, request.getMode());
@@ -97,38 +105,29 @@ public class ChatService {
                         .message("请求参数无效");
             }
 
-            // 2. 创建会话
-            SessionDTO session = sessionService.createSession(
-                    userId, request.getMode(), request.getExpectedQuestionCount());
-            logger.debug("创建会话成功: sessionId={}", session.getId());
-
-            // 3. 根据模式初始化题目队列
-            List<Long> questionIds = initializeQuestionsByMode(request, userId);
-            if (questionIds.isEmpty()) {
-                return InterviewSessionResponseDTO.builder()
-                        .success(false)
-                        .message("无法获取题目，请检查配置");
-            }
-            logger.debug("初始化题目队列: sessionId={}, questionCount={}",
-                    session.getId(), questionIds.size());
-
-            // 4. 初始化题目队列到数据库
-            sessionService.initializeQuestionQueue(session.getId(), questionIds);
-
-            // 5. 获取第一个题目并生成开场
-            Question firstQuestion = sessionService.getCurrentQuestion(session.getId());
-            if (firstQuestion == null) {
+            // 2. 短事务：创建会话、初始化题目队列并取出第一题，任一步失败整体回滚
+            InterviewReservation reservation = transactionTemplate.execute(status -> reserveInterview(userId, request));
+            SessionDTO session = reservation.session;
+            Question firstQuestion = reservation.firstQuestion;
+
+            // 3. 事务外生成开场消息
+            String openingMessage;
+            try {
+                openingMessage = turnEngine.generateOpeningMessage(firstQuestion);
+            } catch (Exception e) {
+                logger.error("生成开场消息失败: sessionId={}", session.getId(), e);
+                // 补偿：删除刚创建的会话，用户可直接重试
+                compensateInterview(session.getId());
                 return InterviewSessionResponseDTO.builder()
                         .success(false)
-                        .message("无法获取第一个题目");
+                        .message("AI服务暂时不可用，请稍后重试");
             }
 
-            // 6. 生成开场消息
-            String openingMessage = generateOpeningMessage(firstQuestion);
-            MessageDTO aiMessage = saveAIMessage(session.getId(), openingMessage);
-
-            // 7. 移动到下一题准备
-            sessionService.moveToNextQuestion(session.getId());
+            // 4. 短事务：保存开场消息并移动到下一题准备
+            transactionTemplate.executeWithoutResult(status -> {
+                turnEngine.saveAIMessage(session.getId(), openingMessage);
+                sessionService.moveToNextQuestion(session.getId());
+            });
 
             logger.info("面试会话启动成功: sessionId={}, firstQuestionId={}",
                     session.getId(), firstQuestion.getId());
@@ -149,63 +148,84 @@ public class ChatService {
 
     /**
      * 处理用户消息
+     * 分三段执行：短事务保存用户消息并推进会话状态 -> 事务外调用LLM -> 短事务保存AI回复，
+     * LLM失败时回滚已推进的会话状态并删除用户消息
      */
-    @Transactional
     public ChatMessageResponseDTO processMessage(Long userId, Long sessionId, SendMessageRequestDTO request) {
+        RemoteCallCounter.begin();
+        String turnLock = null;
         try {
             logger.debug("处理用户消息: sessionId={}, messageLength={}",
                     sessionId, request.getText().length());
 
-            // 1. 验证会话
-            if (!sessionService.validateSessionOwnership(sessionId, userId)) {
+            // 1. 加载本轮上下文并验证会话，整轮复用
+            Optional<InterviewTurnContext> contextOpt = sessionService.loadTurnContext(sessionId);
+            if (contextOpt.isEmpty() || !userId.equals(contextOpt.get().getSession().getUserId())) {
                 return ChatMessageResponseDTO.builder()
                         .success(false)
                         .message("无权访问此会话");
             }
+            InterviewTurnContext context = contextOpt.get();
 
-            // 2. 保存用户消息
-            MessageDTO userMessage = saveUserMessage(sessionId, request.getText());
+            // 同一会话同时只处理一轮，上一轮（含异步轮次）未完成时拒绝
+            turnLock = UUID.randomUUID().toString();
+            if (!chatTurnStore.tryLockSession(sessionId, turnLock)) {
+                turnLock = null;
+                return ChatMessageResponseDTO.builder()
+                        .success(false)
+                        .message(TURN_IN_PROGRESS_MESSAGE);
+            }
 
-            // 3. 获取上一题ID用于生成反馈
-            Long previousQuestionId = sessionService.getPreviousQuestionId(sessionId);
-            logger.debug("上一题ID: {}", previousQuestionId);
+            if (context.getPreviousQuestionId() != null) {
+                context.setPreviousAnswers(questionCatalogCache.getAnswers(context.getPreviousQuestionId()));
+            }
+
+            // 流式模式下通过WebSocket推送ai_delta，未连接时回退到阻塞模式
+            Long streamSessionId = shouldStream(request, sessionId) ? sessionId : null;
 
-            // 4. 检查是否还有更多题目
-            boolean hasMoreQuestions = sessionService.hasMoreQuestions(sessionId);
-            logger.debug("还有更多题目: {}", hasMoreQuestions);
+            // 2. 短事务：保存用户消息并推进会话状态
+            TurnReservation turn = transactionTemplate.execute(status -> reserveTurn(context, request.getText()));
 
+            // 3. 事务外调用LLM
             String aiResponse;
-            InterviewState currentState;
-            boolean chatEnabled = true;
-
-            if (hasMoreQuestions) {
-                // 还有题目，生成反馈并问下一题
-                Question nextQuestion = sessionService.getCurrentQuestion(sessionId);
-                aiResponse = generateFeedbackWithNextQuestion(
-                        request.getText(), previousQuestionId, nextQuestion);
-                currentState = InterviewState.WAITING_FOR_USER_ANSWER;
-
-                // 移动到下一题
-                sessionService.moveToNextQuestion(sessionId);
-                System.out.println("question position ++");
-                // 增加完成题目计数
-                sessionService.incrementCompletedQuestionCount(sessionId);
-
-                logger.debug("生成中间反馈和下一题: nextQuestionId={}",
-                        nextQuestion != null ? nextQuestion.getId() : null);
-
-            } else {
-                // 没有更多题目，生成最终反馈
-                aiResponse = generateFinalFeedback(sessionId, request.getText(), previousQuestionId);
-                currentState = InterviewState.SESSION_ENDED;
-                chatEnabled = false;
-
-                // 结束会话
-                sessionService.endSession(sessionId);
-                logger.info("面试会话结束: sessionId={}", sessionId);
+            try {
+                if (turn.hasMoreQuestions) {
+                    // 还有题目，生成反馈并问下一题
+                    aiResponse = turnEngine.generateFeedbackWithNextQuestion(request.getText(), turn.previousQuestionId,
+                            context.getPreviousAnswers(), turn.nextQuestion, streamSessionId);
+                } else {
+                    // 没有更多题目，生成最终反馈
+                    aiResponse = turnEngine.generateFinalFeedback(sessionId, context.getQuestionQueue(), streamSessionId);
+                }
+            } catch (Exception e) {
+                logger.error("生成AI回复失败: sessionId={}", sessionId, e);
+                compensateTurn(turn);
+                return ChatMessageResponseDTO.builder()
+                        .success(false)
+                        .message("AI服务暂时不可用，请稍后重新发送");
             }
 
-            MessageDTO aiMessage = saveAIMessage(sessionId, aiResponse);
+            InterviewState currentState = turn.hasMoreQuestions
+                    ? InterviewState.WAITING_FOR_USER_ANSWER : InterviewState.SESSION_ENDED;
+            boolean chatEnabled = turn.hasMoreQuestions;
+
+            // 4. 短事务：保存AI回复，最后一题时结束会话
+            String finalResponse = aiResponse;
+            MessageDTO aiMessage = transactionTemplate.execute(status -> {
+                MessageDTO saved = turnEngine.saveAIMessage(sessionId, finalResponse);
+                if (turn.previousQuestionId != null) {
+                    userAttemptService.recordAttempt(context.getSession().getUserId(), turn.previousQuestionId);
+                }
+                if (!turn.hasMoreQuestions) {
+                    sessionService.endSession(sessionId);
+                    logger.info("面试会话结束: sessionId={}", sessionId);
+                }
+                return saved;
+            });
+
+            if (streamSessionId != null) {
+                webSocketService.pushAIDeltaDone(sessionId, aiMessage.getId(), aiResponse, currentState.name());
+            }
 
             return ChatMessageResponseDTO.builder()
                     .success(true)
@@ -218,6 +238,203 @@ public class ChatService {
             return ChatMessageResponseDTO.builder()
                     .success(false)
                     .message("处理消息失败: " + e.getMessage());
+        } finally {
+            if (turnLock != null) {
+                chatTurnStore.unlockSession(sessionId, turnLock);
+            }
+            recordTurnRemoteCalls(sessionId, RemoteCallCounter.end());
+        }
+    }
+
+    /**
+     * 异步处理用户消息
+     * 短事务保存用户消息并推进会话状态后，将本轮投递到AI队列并立即返回turnId；
+     * AI回复由FeedbackGenerationHandler生成并通过WebSocket推送，也可按turnId轮询
+     */
+    public ChatTurnResponseDTO submitMessage(Long userId, Long sessionId, SendMessageRequestDTO request) {
+        try {
+            // 1. 加载本轮上下文并验证会话
+            Optional<InterviewTurnContext> contextOpt = sessionService.loadTurnContext(sessionId);
+            if (contextOpt.isEmpty() || !userId.equals(contextOpt.get().getSession().getUserId())) {
+                return ChatTurnResponseDTO.builder()
+                        .success(false)
+                        .message("无权访问此会话");
+            }
+            InterviewTurnContext context = contextOpt.get();
+
+            // 2. 同一会话同时只允许一个进行中的轮次，由处理器在完成或回滚后释放
+            String turnId = UUID.randomUUID().toString();
+            if (!chatTurnStore.tryLockSession(sessionId, turnId)) {
+                return ChatTurnResponseDTO.builder()
+                        .success(false)
+                        .message(TURN_IN_PROGRESS_MESSAGE);
+            }
+
+            // 3. 短事务：保存用户消息并推进会话状态
+            TurnReservation turn;
+            try {
+                turn = transactionTemplate.execute(status -> reserveTurn(context, request.getText()));
+            } catch (RuntimeException e) {
+                chatTurnStore.unlockSession(sessionId, turnId);
+                throw e;
+            }
+
+            // 4. 登记轮次并投递，投递失败时按同步模式的方式回滚
+            try {
+                chatTurnStore.create(turnId, sessionId, userId);
+                aiQueueProducer.sendFeedbackWithNextQuestionRequest(turnId, userId, turn.snapshot,
+                        turn.previousQuestionId, request.getText(),
+                        turn.nextQuestion != null ? turn.nextQuestion.getId() : null, turn.userMessageId);
+            } catch (Exception e) {
+                logger.error("投递异步对话轮次失败: sessionId={}, turnId={}", sessionId, turnId, e);
+                compensateTurn(turn);
+                chatTurnStore.fail(turnId, "AI服务暂时不可用，请稍后重新发送");
+                chatTurnStore.unlockSession(sessionId, turnId);
+                return ChatTurnResponseDTO.builder()
+                        .success(false)
+                        .message("AI服务暂时不可用，请稍后重新发送");
+            }
+
+            logger.debug("异步对话轮次已提交: sessionId={}, turnId={}", sessionId, turnId);
+            return ChatTurnResponseDTO.builder()
+                    .success(true)
+                    .turnId(turnId)
+                    .sessionId(sessionId)
+                    .status(ChatTurnResponseDTO.STATUS_PENDING)
+                    .currentState(InterviewState.AI_ANALYZING)
+                    .chatInputEnabled(false);
+
+        } catch (Exception e) {
+            logger.error("提交消息失败: sessionId=" + sessionId, e);
+            return ChatTurnResponseDTO.builder()
+                    .success(false)
+                    .message("处理消息失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 查询异步对话轮次的状态，WebSocket未连接时的轮询兜底
+     */
+    public Optional<ChatTurnResponseDTO> getTurn(Long userId, Long sessionId, String turnId) {
+        Optional<Map<String, String>> fieldsOpt = chatTurnStore.get(turnId);
+        if (fieldsOpt.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Map<String, String> fields = fieldsOpt.get();
+        if (!sessionId.toString().equals(fields.get(ChatTurnStore.FIELD_SESSION_ID))
+                || !userId.toString().equals(fields.get(ChatTurnStore.FIELD_USER_ID))) {
+            return Optional.empty();
+        }
+
+        String status = fields.get(ChatTurnStore.FIELD_STATUS);
+        ChatTurnResponseDTO response = ChatTurnResponseDTO.builder()
+                .success(!ChatTurnResponseDTO.STATUS_FAILED.equals(status))
+                .turnId(turnId)
+                .sessionId(sessionId)
+                .status(status)
+                .message(fields.get(ChatTurnStore.FIELD_ERROR));
+
+        if (ChatTurnResponseDTO.STATUS_COMPLETED.equals(status)) {
+            InterviewState currentState = InterviewState.valueOf(fields.get(ChatTurnStore.FIELD_CURRENT_STATE));
+            response.aiMessageId(Long.valueOf(fields.get(ChatTurnStore.FIELD_AI_MESSAGE_ID)))
+                    .reply(fields.get(ChatTurnStore.FIELD_REPLY))
+                    .currentState(currentState)
+                    .chatInputEnabled(currentState == InterviewState.WAITING_FOR_USER_ANSWER);
+        } else if (ChatTurnResponseDTO.STATUS_FAILED.equals(status)) {
+            // 已回滚，可以重新发送本题回答
+            response.currentState(InterviewState.WAITING_FOR_USER_ANSWER).chatInputEnabled(true);
+        } else {
+            response.currentState(InterviewState.AI_ANALYZING).chatInputEnabled(false);
+        }
+        return Optional.of(response);
+    }
+
+    /**
+     * 判断本轮是否异步处理，队列或反馈Topic未启用时始终同步
+     */
+    public boolean shouldProcessAsync(SendMessageRequestDTO request) {
+        boolean requested = request.getAsync() != null ? request.getAsync() : asyncTurnEnabled;
+        return requested && aiQueueProducer.isTopicEnabled(AIQueueTopics.FEEDBACK_GENERATION);
+    }
+
+    /**
+     * 启动阶段事务：创建会话并初始化题目队列
+     */
+    private InterviewReservation reserveInterview(Long userId, StartInterviewRequestDTO request) {
+        SessionDTO session = sessionService.createSession(
+                userId, request.getMode(), request.getExpectedQuestionCount());
+        logger.debug("创建会话成功: sessionId={}", session.getId());
+
+        List<Long> questionIds = initializeQuestionsByMode(request, userId);
+        if (questionIds.isEmpty()) {
+            throw new RuntimeException("无法获取题目，请检查配置");
+        }
+        logger.debug("初始化题目队列: sessionId={}, questionCount={}",
+                session.getId(), questionIds.size());
+
+        sessionService.initializeQuestionQueue(session.getId(), questionIds);
+
+        Question firstQuestion = sessionService.getCurrentQuestion(session.getId());
+        if (firstQuestion == null) {
+            throw new RuntimeException("无法获取第一个题目");
+        }
+
+        return new InterviewReservation(session, firstQuestion);
+    }
+
+    /**
+     * 开场白生成失败的补偿：删除会话及其队列缓存
+     */
+    private void compensateInterview(Long sessionId) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> sessionService.deleteSession(sessionId));
+            sessionService.clearSessionQueueCache(sessionId);
+            logger.warn("开场白生成失败，已回滚会话: sessionId={}", sessionId);
+        } catch (Exception e) {
+            logger.error("回滚会话失败: sessionId={}", sessionId, e);
+        }
+    }
+
+    /**
+     * 对话阶段事务：保存用户消息、记录推进前的进度快照并推进会话状态
+     */
+    private TurnReservation reserveTurn(InterviewTurnContext context, String userAnswer) {
+        Long sessionId = context.getSessionId();
+        MessageDTO userMessage = turnEngine.saveUserMessage(sessionId, userAnswer);
+
+        logger.debug("上一题ID: {}, 还有更多题目: {}", context.getPreviousQuestionId(), context.isHasMoreQuestions());
+
+        if (context.isHasMoreQuestions()) {
+            // 原子推进到下一题并增加完成题目计数，并发提交时只有一个成功
+            if (!sessionService.advanceProgress(context.getSession(), true)) {
+                throw new RuntimeException("会话进度已变化，请勿重复提交");
+            }
+
+            logger.debug("推进到下一题: sessionId={}, nextQuestionId={}", sessionId,
+                    context.getNextQuestion() != null ? context.getNextQuestion().getId() : null);
+        }
+
+        return new TurnReservation(sessionId, userMessage.getId(), context.getSession(),
+                context.getPreviousQuestionId(), context.isHasMoreQuestions(), context.getNextQuestion());
+    }
+
+    /**
+     * LLM调用失败的补偿：恢复会话进度并删除本轮用户消息，用户可重新发送
+     */
+    private void compensateTurn(TurnReservation turn) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                // 进度已被后续轮次推进时不能再回滚，保留用户消息
+                if (turn.hasMoreQuestions && !sessionService.restoreProgress(turn.snapshot)) {
+                    throw new IllegalStateException("会话进度已变化，无法回滚本轮对话");
+                }
+                messageMapper.deleteById(turn.userMessageId);
+            });
+            logger.warn("AI回复生成失败，已回滚本轮对话: sessionId={}, userMessageId={}",
+                    turn.sessionId, turn.userMessageId);
+        } catch (Exception e) {
+            logger.error("回滚本轮对话失败: sessionId={}", turn.sessionId, e);
         }
     }
 
@@ -226,6 +443,7 @@ public class ChatService {
      */
     @Transactional
     public ChatMessageResponseDTO endInterview(Long userId, Long sessionId) {
+        String turnLock = null;
         try {
             if (!sessionService.validateSessionOwnership(sessionId, userId)) {
                 return ChatMessageResponseDTO.builder()
@@ -233,9 +451,18 @@ public class ChatService {
                         .message("无权访问此会话");
             }
 
+            // 与对话轮次共用会话锁：进行中的轮次（含异步轮次）完成前不能结束，否则其回复会写入已结束的会话
+            turnLock = UUID.randomUUID().toString();
+            if (!chatTurnStore.tryLockSession(sessionId, turnLock)) {
+                turnLock = null;
+                return ChatMessageResponseDTO.builder()
+                        .success(false)
+                        .message("上一轮回答仍在处理中，请等待AI回复后再结束面试");
+            }
+
             // 生成结束语
             String finalSummary = generateFinalSummary(sessionId);
-            MessageDTO aiMessage = saveAIMessage(sessionId, finalSummary);
+            MessageDTO aiMessage = turnEngine.saveAIMessage(sessionId, finalSummary);
 
             // 结束会话并清理缓存
             sessionService.endSession(sessionId);
@@ -254,6 +481,10 @@ public class ChatService {
             return ChatMessageResponseDTO.builder()
                     .success(false)
                     .message("结束会话失败: " + e.getMessage());
+        } finally {
+            if (turnLock != null) {
+                chatTurnStore.unlockSession(sessionId, turnLock);
+            }
         }
     }
 
@@ -346,372 +577,107 @@ public class ChatService {
             expectedQuestionCount = 3; // 默认3题
         }
 
-        List<Long> selectedQuestionIds = new ArrayList<>();
-        Long tagId = request.getTagId();
-
-        // 优先选择用户未尝试过的题目
-        List<Question> untriedQuestions = userAttemptMapper.findUntriedQuestionsByTagId(userId, tagId);
-        for (Question q : untriedQuestions) {
-            selectedQuestionIds.add(q.getId());
-            if (selectedQuestionIds.size() >= expectedQuestionCount) {
-                break;
-            }
-        }
-
-        // 如果未尝试的题目不够，添加尝试次数较少的题目
-        if (selectedQuestionIds.size() < expectedQuestionCount) {
-            List<Question> leastAttempted = userAttemptMapper.findLeastAttemptedQuestionsByTagId(
-                    userId, tagId, expectedQuestionCount * 2);
-
-            for (Question q : leastAttempted) {
-                if (!selectedQuestionIds.contains(q.getId())) {
-                    selectedQuestionIds.add(q.getId());
-                    if (selectedQuestionIds.size() >= expectedQuestionCount) {
-                        break;
-                    }
-                }
-            }
-        }
+        List<Long> selectedQuestionIds = selectQuestionIdsForTags(
+                userId, List.of(request.getTagId()), expectedQuestionCount);
 
         if (selectedQuestionIds.isEmpty()) {
             throw new RuntimeException("该标签下没有可用的题目");
         }
 
-        Collections.shuffle(selectedQuestionIds);
-        return selectedQuestionIds.subList(0, Math.min(expectedQuestionCount, selectedQuestionIds.size()));
+        return selectedQuestionIds;
     }
 
     /**
      * 为模板的一个章节选择题目
      */
     private List<Long> selectQuestionsForSection(TemplateDTO.TemplateSection section, Long userId) {
-        List<Long> selectedQuestionIds = new ArrayList<>();
-        int neededCount = section.getQuestionCount();
-
-        // 为该章节的每个标签收集题目
-        List<Question> candidateQuestions = new ArrayList<>();
-        for (Long tagId : section.getTagIds()) {
-            // 优先选择用户未尝试过的题目
-            List<Question> untriedQuestions = userAttemptMapper.findUntriedQuestionsByTagId(userId, tagId);
-            candidateQuestions.addAll(untriedQuestions);
-
-            // 如果未尝试的题目不够，添加尝试次数较少的题目
-            if (candidateQuestions.size() < neededCount) {
-                List<Question> leastAttempted = userAttemptMapper.findLeastAttemptedQuestionsByTagId(
-                        userId, tagId, neededCount * 2);
-                for (Question q : leastAttempted) {
-                    if (!candidateQuestions.stream().anyMatch(existing -> existing.getId().equals(q.getId()))) {
-                        candidateQuestions.add(q);
-                    }
-                }
-            }
-        }
-
-        // 如果还是不够题目，从所有相关标签中随机选择
-        if (candidateQuestions.size() < neededCount) {
-            for (Long tagId : section.getTagIds()) {
-                List<Question> allTagQuestions = questionTagMapper.findQuestionsByTagId(tagId);
-                for (Question q : allTagQuestions) {
-                    if (!candidateQuestions.stream().anyMatch(existing -> existing.getId().equals(q.getId()))) {
-                        candidateQuestions.add(q);
-                    }
-                    if (candidateQuestions.size() >= neededCount) break;
-                }
-                if (candidateQuestions.size() >= neededCount) break;
-            }
-        }
-
-        // 随机选择所需数量的题目
-        Collections.shuffle(candidateQuestions);
-        int actualCount = Math.min(neededCount, candidateQuestions.size());
-        for (int i = 0; i < actualCount; i++) {
-            selectedQuestionIds.add(candidateQuestions.get(i).getId());
-        }
-
-        return selectedQuestionIds;
+        return selectQuestionIdsForTags(userId, section.getTagIds(), section.getQuestionCount());
     }
 
     /**
-     * 生成开场消息
+     * 从一组标签的题目中选取neededCount道，全程只处理题目ID：
+     * 优先在用户未尝试过的题目中抽样，不足时按尝试次数的倒数加权抽样补齐
      */
-    private String generateOpeningMessage(Question firstQuestion) {
-
-        String prompt = "你好！你是一位专业的技术面试官，现在正在直接与候选人对话。请以第一人称，将以下问题直接提问给候选人。不要回答问题本身，也不要提供任何指导建议或额外信息，直接提问即可。\n\n" +
-                firstQuestion.getText();
-
-        return callOpenAI(prompt);
-    }
-
-    /**
-     * 生成反馈并提出下一题
-     */
-    private String generateFeedbackWithNextQuestion(String userAnswer, Long previousQuestionId, Question nextQuestion) {
-        if (nextQuestion == null) {
-            return "系统错误：无法获取下一个问题。";
-        }
-
-        // 1. 尝试使用现有的缓存方法
-        if (previousQuestionId != null) {
-            List<Answer> answers = answerService.getAnswersByQuestionId(previousQuestionId);
-            boolean hasStandardAnswer = !answers.isEmpty();
-
-            // 使用AIResponseCacheManager的现有方法
-            Optional<String> cachedFeedback = aiCacheManager.getCachedFeedback(
-                    previousQuestionId, nextQuestion.getId(), userAnswer, hasStandardAnswer);
-
-            if (cachedFeedback.isPresent()) {
-                logger.debug("使用缓存的反馈: prevQuestionId={}, nextQuestionId={}",
-                        previousQuestionId, nextQuestion.getId());
-                return cachedFeedback.get();
-            }
+    private List<Long> selectQuestionIdsForTags(Long userId, List<Long> tagIds, int neededCount) {
+        if (tagIds == null || tagIds.isEmpty() || neededCount <= 0) {
+            return new ArrayList<>();
         }
 
-        // 2. 缓存未命中，生成新的反馈
-        String standardAnswer = getStandardAnswerForQuestion(previousQuestionId);
-        String prompt = buildFeedbackPromptWithAnswer(userAnswer, nextQuestion, standardAnswer);
-        String aiResponse = callOpenAI(prompt);
-
-        // 3. 使用现有的缓存方法
-        if (aiResponse != null && !aiResponse.contains("暂时无法") && !aiResponse.contains("不可用")) {
-            if (previousQuestionId != null) {
-                List<Answer> answers = answerService.getAnswersByQuestionId(previousQuestionId);
-                boolean hasStandardAnswer = !answers.isEmpty();
-
-                aiCacheManager.cacheFeedback(previousQuestionId, nextQuestion.getId(),
-                        userAnswer, hasStandardAnswer, aiResponse);
-                logger.debug("缓存反馈回复: prevQ={}, nextQ={}, answerLength={}",
-                        previousQuestionId, nextQuestion.getId(), userAnswer.length());
-            }
-        }
-
-        return aiResponse;
-    }
+        List<Long> selectedQuestionIds = questionSelectionIndex.sampleUntried(userId, tagIds, neededCount, List.of());
 
-    /**
-     * 获取题目的标准答案 - 复用现有逻辑
-     */
-    private String getStandardAnswerForQuestion(Long questionId) {
-        if (questionId == null) {
-            return null;
+        if (selectedQuestionIds.size() < neededCount) {
+            selectedQuestionIds.addAll(questionSelectionIndex.sampleLeastAttempted(
+                    userId, tagIds, neededCount - selectedQuestionIds.size(), selectedQuestionIds));
         }
 
-        try {
-            List<Answer> answers = answerService.getAnswersByQuestionId(questionId);
-            if (!answers.isEmpty()) {
-                // 如果有多个答案，取第一个作为主要参考答案
-                if (answers.size() == 1) {
-                    return answers.get(0).getText();
-                } else {
-                    // 多个答案时，组合它们
-                    StringBuilder combinedAnswer = new StringBuilder();
-                    for (int i = 0; i < answers.size(); i++) {
-                        combinedAnswer.append("参考答案").append(i + 1).append("：\n");
-                        combinedAnswer.append(answers.get(i).getText());
-                        if (i < answers.size() - 1) {
-                            combinedAnswer.append("\n\n");
-                        }
-                    }
-                    return combinedAnswer.toString();
-                }
-            }
-        } catch (Exception e) {
-            logger.error("获取题目答案失败: questionId=" + questionId, e);
-        }
-
-        return null;
+        Collections.shuffle(selectedQuestionIds);
+        return selectedQuestionIds;
     }
 
     /**
-     * 构建包含标准答案的反馈提示词
+     * 生成结束语
      */
-    private String buildFeedbackPromptWithAnswer(String userAnswer, Question nextQuestion, String standardAnswer) {
-        StringBuilder prompt = new StringBuilder();
-
-        prompt.append("你的面试者刚刚回答了一个面试问题。请你作为面试官：\n\n");
-        prompt.append("对他的回答给出简短的反馈（1-2句话）\n");
-
-        if (standardAnswer != null) {
-            prompt.append("参考标准答案：").append(standardAnswer + "\n\n");
-        }
-
-        prompt.append("面试者的回答：").append(userAnswer).append("\n\n");
-        prompt.append("然后提出下一个问题：\n");
-        prompt.append(nextQuestion.getText()).append("\n\n");
-        prompt.append("如果面试者答得很差, 可以讲标准答案内容。永远用你称呼对方，别用用户");
-        prompt.append("           你是一名资深的技术面试官，有10年+面试经验。你的特点：\n" +
-                "            \n" +
-                "            1. 直接犀利：不会给无关痛痒的鼓励，只关注技术能力\n" +
-                "            2. 标准严格：答不出来就是答不出来，模糊回答就是不及格  \n" +
-                "            3. 追根究底：会根据回答深入追问，测试真实理解程度\n" +
-                "            4. 职场现实：模拟真实面试的严肃氛围和压力\n" +
-                "            \n" +
-                "            你绝不会：\n" +
-                "            - 说\"很好的想法\"、\"不错的思路\"等安慰话\n" +
-                "            - 给模糊或错误答案正面反馈\n" +
-                "            - 提供学习建议或指导\n" +
-                "            \n" +
-                "            你只会：\n" +
-                "            - 直接指出回答的问题\n" +
-                "            - 基于答案质量给出真实评价\n" +
-                "            - 像真正面试一样保持专业距离感. 评价说完了你得问下一个问题");
-
-        return prompt.toString();
+    private String generateFinalSummary(Long sessionId) {
+        return "感谢您参加本次面试！面试已结束。希望这次练习对您有所帮助。祝您求职顺利！";
     }
 
     /**
-     * 生成最终反馈
-     */
-    /**
-     * 严格面试官最终反馈 - 真实、直接、不留情面
+     * 记录本轮访问数据库和Redis的次数
      */
-    private String generateFinalFeedback(Long sessionId, String lastAnswer, Long lastQuestionId) {
-        try {
-            StringBuilder prompt = new StringBuilder();
-
-            // 严格面试官角色设定
-            prompt.append("你是一名有10年经验的严格的技术面试官，刚结束一场面试。你需要为刚才的面试做出真实的评价。\n\n");
-
-            List<Message> allMessages = messageMapper.findBySessionId(sessionId);
-            List<Long> questionQueue = sessionService.getQuestionQueue(sessionId);
-
-            prompt.append("=== 面试记录 ===\n");
-            buildInterviewHistoryPrompt(prompt, allMessages, questionQueue);
-
-
-            prompt.append("先简单概括回答情况\n");
-            prompt.append("明确指出回答的不好的地方并整体评价技术基础\n");
-            prompt.append("说话要求：\n");
-            prompt.append("基于实际回答情况，该差就说差\n");
-            prompt.append("不要安慰性的话，直接说技术能力\n");
-            prompt.append("像面试官内心真实想法一样直接\n");
-            prompt.append("语气要职业但不客套\n");
-            prompt.append("永远用你称呼对面\n");
-            prompt.append("记住得严格，非常严格。最后输出别搞特殊格式，就一段话讲完\n\n");
-
-            return callOpenAI(prompt.toString());
-
-        } catch (Exception e) {
-            logger.error("生成最终反馈失败: sessionId={}", sessionId, e);
-            return "感谢您完成本次面试！由于系统暂时无法生成详细反馈，请稍后查看完整评价报告。";
+    private void recordTurnRemoteCalls(Long sessionId, RemoteCallCounter.Counts counts) {
+        if (counts == null) {
+            return;
         }
-    }
-
-    /**
-     * 构建面试历史提示词部分
-     * 复用已有方法，单一职责：只负责构建提示词
-     */
-    private void buildInterviewHistoryPrompt(StringBuilder prompt, List<Message> allMessages, List<Long> questionQueue) {
-        // 分离AI和用户消息
-        List<Message> aiMessages = allMessages.stream()
-                .filter(msg -> msg.getType() == MessageType.AI)
-                .collect(Collectors.toList());
-
-        List<Message> userMessages = allMessages.stream()
-                .filter(msg -> msg.getType() == MessageType.USER)
-                .collect(Collectors.toList());
-
-        // 按问题顺序构建历史
-        int questionCount = Math.min(questionQueue.size(), userMessages.size());
-
-        for (int i = 0; i < questionCount; i++) {
-            Long questionId = questionQueue.get(i);
-
-            // 复用现有方法获取问题文本
-            String questionText = getQuestionTextById(questionId);
-            String userAnswer = userMessages.get(i).getText();
-
-            prompt.append("【问题 ").append(i + 1).append("】").append(questionText).append("\n");
-            prompt.append("【候选人回答】").append(userAnswer).append("\n");
-
-            // 复用现有方法获取标准答案
-            String standardAnswer = getStandardAnswerForQuestion(questionId);
-            if (standardAnswer != null && !standardAnswer.trim().isEmpty()) {
-                prompt.append("【参考答案】").append(standardAnswer).append("\n");
-            }
-            prompt.append("\n");
+        if (meterRegistry != null) {
+            DistributionSummary.builder("interview.turn.remote.calls").tag("type", "database")
+                    .register(meterRegistry).record(counts.getDatabase());
+            DistributionSummary.builder("interview.turn.remote.calls").tag("type", "redis")
+                    .register(meterRegistry).record(counts.getRedis());
         }
+        logger.debug("本轮远程调用次数: sessionId={}, database={}, redis={}",
+                sessionId, counts.getDatabase(), counts.getRedis());
     }
 
     /**
-     * 生成结束语
+     * 判断本轮是否使用流式回复
      */
-    private String generateFinalSummary(Long sessionId) {
-        return "感谢您参加本次面试！面试已结束。希望这次练习对您有所帮助。祝您求职顺利！";
+    private boolean shouldStream(SendMessageRequestDTO request, Long sessionId) {
+        boolean requested = request.getStream() != null ? request.getStream() : streamEnabled;
+        return requested && webSocketService.isSessionConnected(sessionId);
     }
 
     /**
-     * 调用OpenAI API
+     * 启动阶段的预留结果
      */
-    private String callOpenAI(String prompt) {
-        try {
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.setBearerAuth(openAiApiKey);
-
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("model", openAiModel);
-            requestBody.put("messages", Arrays.asList(
-                    Map.of("role", "system", "content",
-                            "你是一个专业的技术面试官，正在直接与候选人对话。" +
-                                    "请始终以第一人称与候选人交流，就像真正的面试官一样。" +
-                                    "不要提供指导建议或元话语，直接进行面试对话。"),
-                    Map.of("role", "user", "content", prompt)
-            ));
-            requestBody.put("max_tokens", 1000);
-            requestBody.put("temperature", 0.7);
-
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
-            ResponseEntity<Map> response = restTemplate.exchange(
-                    openAiApiUrl,
-                    HttpMethod.POST,
-                    entity,
-                    Map.class
-            );
-
-            if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-                Map<String, Object> responseBody = response.getBody();
-                List<Map<String, Object>> choices = (List<Map<String, Object>>) responseBody.get("choices");
-                if (choices != null && !choices.isEmpty()) {
-                    Map<String, Object> message = (Map<String, Object>) choices.get(0).get("message");
-                    return (String) message.get("content");
-                }
-            }
-
-            return "AI暂时无法回应，请稍后再试。";
+    private static class InterviewReservation {
+        private final SessionDTO session;
+        private final Question firstQuestion;
 
-        } catch (Exception e) {
-            logger.error("调用OpenAI API失败", e);
-            return "AI服务暂时不可用：" + e.getMessage();
+        private InterviewReservation(SessionDTO session, Question firstQuestion) {
+            this.session = session;
+            this.firstQuestion = firstQuestion;
         }
     }
 
     /**
-     * 保存AI消息
+     * 单轮对话的预留结果，包含补偿所需的进度快照
      */
-    private MessageDTO saveAIMessage(Long sessionId, String text) {
-        Message message = new Message(sessionId, MessageType.AI, text);
-        messageMapper.insert(message);
-        return dtoConverter.convertToMessageDTO(message);
-    }
-
-    /**
-     * 保存用户消息
-     */
-    private MessageDTO saveUserMessage(Long sessionId, String text) {
-        Message message = new Message(sessionId, MessageType.USER, text);
-        messageMapper.insert(message);
-        return dtoConverter.convertToMessageDTO(message);
-    }
-
-    private String getQuestionTextById(Long questionId) {
-        try {
-            // 直接复用现有的questionMapper.findById方法
-            return questionMapper.findById(questionId)
-                    .map(Question::getText)
-                    .orElse("问题获取失败");
-        } catch (Exception e) {
-            logger.error("获取问题文本失败: questionId={}", questionId, e);
-            return "问题获取失败";
+    private static class TurnReservation {
+        private final Long sessionId;
+        private final Long userMessageId;
+        private final SessionDTO snapshot;
+        private final Long previousQuestionId;
+        private final boolean hasMoreQuestions;
+        private final Question nextQuestion;
+
+        private TurnReservation(Long sessionId, Long userMessageId, SessionDTO snapshot,
+                                Long previousQuestionId, boolean hasMoreQuestions, Question nextQuestion) {
+            this.sessionId = sessionId;
+            this.userMessageId = userMessageId;
+            this.snapshot = snapshot;
+            this.previousQuestionId = previousQuestionId;
+            this.hasMoreQuestions = hasMoreQuestions;
+            this.nextQuestion = nextQuestion;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,69 @@
+package com.xinyu.InterviewCoach_v2.service;
+
+import com.xinyu.InterviewCoach_v2.dto.core.SessionDTO;
+import com.xinyu.InterviewCoach_v2.entity.Answer;
+import com.xinyu.InterviewCoach_v2.entity.Question;
+
+import java.util.List;
+
+/**
+ * 单轮对话上下文
+ * 一轮processMessage开始时加载一次（会话和题目队列一次pipeline读取），之后在整轮中传递，
+ * 避免同一轮内重复查询会话、题目队列和参考答案
+ */
+public class InterviewTurnContext {
+
+    private final SessionDTO session;
+    private final List<Long> questionQueue;
+    private final Long previousQuestionId;
+    private final boolean hasMoreQuestions;
+    private final Question nextQuestion;
+    private List<Answer> previousAnswers = List.of();
+
+    public InterviewTurnContext(SessionDTO session, List<Long> questionQueue, Long previousQuestionId,
+                                boolean hasMoreQuestions, Question nextQuestion) {
+        this.session = session;
+        this.questionQueue = questionQueue;
+        this.previousQuestionId = previousQuestionId;
+        this.hasMoreQuestions = hasMoreQuestions;
+        this.nextQuestion = nextQuestion;
+    }
+
+    public Long getSessionId() {
+        return session.getId();
+    }
+
+    /**
+     * 本轮开始时的会话快照，同时作为推进进度的乐观校验依据和失败补偿的恢复点
+     */
+    public SessionDTO getSession() {
+        return session;
+    }
+
+    public List<Long> getQuestionQueue() {
+        return questionQueue;
+    }
+
+    public Long getPreviousQuestionId() {
+        return previousQuestionId;
+    }
+
+    public boolean isHasMoreQuestions() {
+        return hasMoreQuestions;
+    }
+
+    public Question getNextQuestion() {
+        return nextQuestion;
+    }
+
+    /**
+     * 上一题的参考答案，未设置时为空列表
+     */
+    public List<Answer> getPreviousAnswers() {
+        return previousAnswers;
+    }
+
+    public void setPreviousAnswers(List<Answer> previousAnswers) {
+        this.previousAnswers = previousAnswers != null ? previousAnswers : List.of();
+    }
+}
@@ -0,0 +1,356 @@
+package com.xinyu.InterviewCoach_v2.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xinyu.InterviewCoach_v2.dto.core.MessageDTO;
+import com.xinyu.InterviewCoach_v2.entity.Answer;
+import com.xinyu.InterviewCoach_v2.entity.Message;
+import com.xinyu.InterviewCoach_v2.entity.Question;
+import com.xinyu.InterviewCoach_v2.enums.MessageType;
+import com.xinyu.InterviewCoach_v2.mapper.MessageMapper;
+import com.xinyu.InterviewCoach_v2.service.ai.OpenAIClient;
+import com.xinyu.InterviewCoach_v2.service.cache.AIResponseCacheManager;
+import com.xinyu.InterviewCoach_v2.service.cache.QuestionCatalogCache;
+import com.xinyu.InterviewCoach_v2.util.DTOConverter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * 面试对话引擎
+ * 生成开场白、反馈+下一题、最终评价以及保存消息的公共API，同步接口(ChatService)和AI队列处理器都直接调用。
+ * 这里只负责调用LLM和写消息，事务边界由调用方控制，OpenAI调用不应放在事务内
+ */
+@Service
+public class InterviewTurnEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(InterviewTurnEngine.class);
+
+    @Autowired
+    private MessageMapper messageMapper;
+
+    @Autowired
+    private QuestionCatalogCache questionCatalogCache;
+
+    @Autowired
+    private AIResponseCacheManager aiCacheManager;
+
+    @Autowired
+    private WebSocketService webSocketService;
+
+    @Autowired
+    private DTOConverter dtoConverter;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private OpenAIClient openAIClient;
+
+    @Value("${openai.model:gpt-3.5-turbo}")
+    private String openAiModel;
+
+    /**
+     * 生成开场消息
+     */
+    public String generateOpeningMessage(Question firstQuestion) {
+
+        String prompt = "你好！你是一位专业的技术面试官，现在正在直接与候选人对话。请以第一人称，将以下问题直接提问给候选人。不要回答问题本身，也不要提供任何指导建议或额外信息，直接提问即可。\n\n" +
+                firstQuestion.getText();
+
+        return callOpenAI(prompt);
+    }
+
+    /**
+     * 生成反馈并提出下一题，previousAnswers为已加载的上一题参考答案，streamSessionId不为空时流式推送
+     */
+    public String generateFeedbackWithNextQuestion(String userAnswer, Long previousQuestionId,
+                                                    List<Answer> previousAnswers, Question nextQuestion,
+                                                    Long streamSessionId) {
+        if (nextQuestion == null) {
+            throw new IllegalArgumentException("无法获取下一个问题");
+        }
+
+        boolean hasStandardAnswer = !previousAnswers.isEmpty();
+
+        // 1. 尝试使用现有的缓存方法
+        if (previousQuestionId != null) {
+
+            // 使用AIResponseCacheManager的现有方法
+            Optional<String> cachedFeedback = aiCacheManager.getCachedFeedback(
+                    previousQuestionId, nextQuestion.getId(), userAnswer, hasStandardAnswer);
+
+            if (cachedFeedback.isPresent()) {
+                logger.debug("使用缓存的反馈: prevQuestionId={}, nextQuestionId={}",
+                        previousQuestionId, nextQuestion.getId());
+                return cachedFeedback.get();
+            }
+        }
+
+        // 2. 缓存未命中，生成新的反馈
+        String standardAnswer = combineStandardAnswers(previousAnswers);
+        String prompt = buildFeedbackPromptWithAnswer(userAnswer, nextQuestion, standardAnswer);
+        String aiResponse = callOpenAI(prompt, streamSessionId);
+
+        // 3. 调用失败时已抛出异常，这里只缓存成功的回复
+        if (previousQuestionId != null) {
+            aiCacheManager.cacheFeedback(previousQuestionId, nextQuestion.getId(),
+                    userAnswer, hasStandardAnswer, aiResponse);
+            logger.debug("缓存反馈回复: prevQ={}, nextQ={}, answerLength={}",
+                    previousQuestionId, nextQuestion.getId(), userAnswer.length());
+        }
+
+        return aiResponse;
+    }
+
+    /**
+     * 组合参考答案文本，无答案时返回null
+     */
+    private String combineStandardAnswers(List<Answer> answers) {
+        if (answers == null || answers.isEmpty()) {
+            return null;
+        }
+        // 如果有多个答案，取第一个作为主要参考答案
+        if (answers.size() == 1) {
+            return answers.get(0).getText();
+        }
+        // 多个答案时，组合它们
+        StringBuilder combinedAnswer = new StringBuilder();
+        for (int i = 0; i < answers.size(); i++) {
+            combinedAnswer.append("参考答案").append(i + 1).append("：\n");
+            combinedAnswer.append(answers.get(i).getText());
+            if (i < answers.size() - 1) {
+                combinedAnswer.append("\n\n");
+            }
+        }
+        return combinedAnswer.toString();
+    }
+
+    /**
+     * 构建包含标准答案的反馈提示词
+     */
+    private String buildFeedbackPromptWithAnswer(String userAnswer, Question nextQuestion, String standardAnswer) {
+        StringBuilder prompt = new StringBuilder();
+
+        prompt.append("你的面试者刚刚回答了一个面试问题。请你作为面试官：\n\n");
+        prompt.append("对他的回答给出简短的反馈（1-2句话）\n");
+
+        if (standardAnswer != null) {
+            prompt.append("参考标准答案：").append(standardAnswer + "\n\n");
+        }
+
+        prompt.append("面试者的回答：").append(userAnswer).append("\n\n");
+        prompt.append("然后提出下一个问题：\n");
+        prompt.append(nextQuestion.getText()).append("\n\n");
+        prompt.append("如果面试者答得很差, 可以讲标准答案内容。永远用你称呼对方，别用用户");
+        prompt.append("           你是一名资深的技术面试官，有10年+面试经验。你的特点：\n" +
+                "            \n" +
+                "            1. 直接犀利：不会给无关痛痒的鼓励，只关注技术能力\n" +
+                "            2. 标准严格：答不出来就是答不出来，模糊回答就是不及格  \n" +
+                "            3. 追根究底：会根据回答深入追问，测试真实理解程度\n" +
+                "            4. 职场现实：模拟真实面试的严肃氛围和压力\n" +
+                "            \n" +
+                "            你绝不会：\n" +
+                "            - 说\"很好的想法\"、\"不错的思路\"等安慰话\n" +
+                "            - 给模糊或错误答案正面反馈\n" +
+                "            - 提供学习建议或指导\n" +
+                "            \n" +
+                "            你只会：\n" +
+                "            - 直接指出回答的问题\n" +
+                "            - 基于答案质量给出真实评价\n" +
+                "            - 像真正面试一样保持专业距离感. 评价说完了你得问下一个问题");
+
+        return prompt.toString();
+    }
+
+    /**
+     * 严格面试官最终反馈 - 真实、直接、不留情面
+     * 面试记录从消息表读取，调用前需已保存候选人的最后一条回答；streamSessionId不为空时流式推送
+     */
+    public String generateFinalFeedback(Long sessionId, List<Long> questionQueue, Long streamSessionId) {
+        StringBuilder prompt = new StringBuilder();
+
+        // 严格面试官角色设定
+        prompt.append("你是一名有10年经验的严格的技术面试官，刚结束一场面试。你需要为刚才的面试做出真实的评价。\n\n");
+
+        List<Message> allMessages = messageMapper.findBySessionId(sessionId);
+
+        prompt.append("=== 面试记录 ===\n");
+        buildInterviewHistoryPrompt(prompt, allMessages, questionQueue);
+
+
+        prompt.append("先简单概括回答情况\n");
+        prompt.append("明确指出回答的不好的地方并整体评价技术基础\n");
+        prompt.append("说话要求：\n");
+        prompt.append("基于实际回答情况，该差就说差\n");
+        prompt.append("不要安慰性的话，直接说技术能力\n");
+        prompt.append("像面试官内心真实想法一样直接\n");
+        prompt.append("语气要职业但不客套\n");
+        prompt.append("永远用你称呼对面\n");
+        prompt.append("记住得严格，非常严格。最后输出别搞特殊格式，就一段话讲完\n\n");
+
+        return callOpenAI(prompt.toString(), streamSessionId);
+    }
+
+    /**
+     * 构建面试历史提示词部分
+     * 题目和参考答案各批量读取一次，与面试题数无关
+     */
+    private void buildInterviewHistoryPrompt(StringBuilder prompt, List<Message> allMessages, List<Long> questionQueue) {
+        // 分离AI和用户消息
+        List<Message> aiMessages = allMessages.stream()
+                .filter(msg -> msg.getType() == MessageType.AI)
+                .collect(Collectors.toList());
+
+        List<Message> userMessages = allMessages.stream()
+                .filter(msg -> msg.getType() == MessageType.USER)
+                .collect(Collectors.toList());
+
+        // 按问题顺序构建历史
+        int questionCount = Math.min(questionQueue.size(), userMessages.size());
+
+        List<Long> answeredQuestionIds = questionQueue.subList(0, questionCount);
+        Map<Long, Question> questions = questionCatalogCache.getQuestions(answeredQuestionIds);
+        Map<Long, List<Answer>> answers = questionCatalogCache.getAnswers(answeredQuestionIds);
+
+        for (int i = 0; i < questionCount; i++) {
+            Long questionId = questionQueue.get(i);
+
+            Question question = questions.get(questionId);
+            String questionText = question != null ? question.getText() : "问题获取失败";
+            String userAnswer = userMessages.get(i).getText();
+
+            prompt.append("【问题 ").append(i + 1).append("】").append(questionText).append("\n");
+            prompt.append("【候选人回答】").append(userAnswer).append("\n");
+
+            String standardAnswer = combineStandardAnswers(answers.get(questionId));
+            if (standardAnswer != null && !standardAnswer.trim().isEmpty()) {
+                prompt.append("【参考答案】").append(standardAnswer).append("\n");
+            }
+            prompt.append("\n");
+        }
+    }
+
+    /**
+     * 调用OpenAI API - streamSessionId不为空时走流式接口
+     * 调用失败或没有返回内容时抛出异常，不返回兜底文案，由调用方决定回滚或重试
+     */
+    private String callOpenAI(String prompt, Long streamSessionId) {
+        if (streamSessionId == null) {
+            return callOpenAI(prompt);
+        }
+        return callOpenAIStream(prompt, streamSessionId);
+    }
+
+    /**
+     * 调用OpenAI API
+     */
+    private String callOpenAI(String prompt) {
+        JsonNode response = openAIClient.chatCompletion(buildChatRequestBody(prompt));
+
+        JsonNode content = response.path("choices").path(0).path("message").path("content");
+        if (!content.isTextual() || content.asText().trim().isEmpty()) {
+            throw new RuntimeException("OpenAI响应中没有回复内容");
+        }
+        return content.asText();
+    }
+
+    /**
+     * 流式调用OpenAI API - 将SSE增量内容作为ai_delta推送，返回完整文本
+     * 流在结束前中断时推送中止帧并抛出异常，已推送的部分文本不返回、不缓存
+     */
+    private String callOpenAIStream(String prompt, Long sessionId) {
+        StringBuilder fullText = new StringBuilder();
+        int[] seq = {0};
+        boolean[] finished = {false};
+
+        try {
+            Map<String, Object> requestBody = buildChatRequestBody(prompt);
+            requestBody.put("stream", true);
+
+            boolean done = openAIClient.streamChatCompletion(requestBody, data -> {
+                try {
+                    JsonNode choice = objectMapper.readTree(data).path("choices").path(0);
+                    if (choice.path("finish_reason").isTextual()) {
+                        finished[0] = true;
+                    }
+                    JsonNode content = choice.path("delta").path("content");
+                    if (content.isTextual() && !content.asText().isEmpty()) {
+                        String delta = content.asText();
+                        fullText.append(delta);
+                        webSocketService.pushAIDelta(sessionId, delta, seq[0]++);
+                    }
+                } catch (Exception e) {
+                    logger.warn("解析流式数据失败: sessionId={}, data={}", sessionId, data);
+                }
+            });
+
+            // 既没有[DONE]也没有finish_reason说明连接中途断开，部分文本不可用
+            if (!done && !finished[0]) {
+                throw new RuntimeException("OpenAI流式响应未完成: receivedDeltas=" + seq[0]);
+            }
+            if (fullText.length() == 0) {
+                throw new RuntimeException("OpenAI流式响应中没有回复内容");
+            }
+
+            logger.debug("流式回复完成: sessionId={}, deltas={}, length={}", sessionId, seq[0], fullText.length());
+            return fullText.toString();
+
+        } catch (RuntimeException e) {
+            logger.error("流式调用OpenAI API失败: sessionId={}, receivedDeltas={}", sessionId, seq[0], e);
+            if (seq[0] > 0) {
+                webSocketService.pushAIDeltaAbort(sessionId, "AI回复中断，请稍后重新发送");
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 构建chat completions请求体
+     */
+    private Map<String, Object> buildChatRequestBody(String prompt) {
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("model", openAiModel);
+        requestBody.put("messages", Arrays.asList(
+                Map.of("role", "system", "content",
+                        "你是一个专业的技术面试官，正在直接与候选人对话。" +
+                                "请始终以第一人称与候选人交流，就像真正的面试官一样。" +
+                                "不要提供指导建议或元话语，直接进行面试对话。"),
+                Map.of("role", "user", "content", prompt)
+        ));
+        requestBody.put("max_tokens", 1000);
+        requestBody.put("temperature", 0.7);
+        return requestBody;
+    }
+
+    /**
+     * 保存AI消息
+     */
+    public MessageDTO saveAIMessage(Long sessionId, String text) {
+        return saveAIMessage(sessionId, text, null);
+    }
+
+    /**
+     * 保存队列任务生成的AI消息，turn_id唯一，同一任务重复保存时抛出DuplicateKeyException
+     */
+    public MessageDTO saveAIMessage(Long sessionId, String text, String turnId) {
+        Message message = new Message(sessionId, MessageType.AI, text);
+        message.setTurnId(turnId);
+        messageMapper.insert(message);
+        return dtoConverter.convertToMessageDTO(message);
+    }
+
+    /**
+     * 保存用户消息
+     */
+    public MessageDTO saveUserMessage(Long sessionId, String text) {
+        Message message = new Message(sessionId, MessageType.USER, text);
+        messageMapper.insert(message);
+        return dtoConverter.convertToMessageDTO(message);
+    }
+}
@@ -3,6 +3,10 @@ package com.xinyu.InterviewCoach_v2.service;
 import com.xinyu.InterviewCoach_v2.dto.QuestionDTO;
 import com.xinyu.InterviewCoach_v2.entity.Question;
 import com.xinyu.InterviewCoach_v2.mapper.QuestionMapper;
+import com.xinyu.InterviewCoach_v2.mapper.QuestionTagMapper;
+import com.xinyu.InterviewCoach_v2.service.cache.QuestionCatalogCache;
+import com.xinyu.InterviewCoach_v2.service.cache.QuestionIdSampler;
+import com.xinyu.InterviewCoach_v2.service.cache.QuestionSelectionIndex;
 import com.xinyu.InterviewCoach_v2.util.DTOConverter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -23,6 +27,18 @@ public class QuestionService {
     @Autowired
     private DTOConverter dtoConverter;
 
+    @Autowired
+    private QuestionCatalogCache questionCatalogCache;
+
+    @Autowired
+    private QuestionTagMapper questionTagMapper;
+
+    @Autowired
+    private QuestionSelectionIndex questionSelectionIndex;
+
+    @Autowired
+    private QuestionIdSampler questionIdSampler;
+
     /**
      * 创建新题目
      */
@@ -44,6 +60,7 @@ public class QuestionService {
 
         int result = questionMapper.insert(question);
         if (result > 0) {
+            questionIdSampler.invalidate();
             return dtoConverter.convertToQuestionDTO(question);
         } else {
             throw new RuntimeException("创建题目失败");
@@ -117,6 +134,7 @@ public class QuestionService {
 
         int result = questionMapper.update(existing);
         if (result > 0) {
+            questionCatalogCache.invalidateQuestion(id);
             return dtoConverter.convertToQuestionDTO(existing);
         } else {
             throw new RuntimeException("更新题目失败");
@@ -131,7 +149,15 @@ public class QuestionService {
         if (!questionMapper.findById(id).isPresent()) {
             throw new RuntimeException("题目不存在");
         }
-        return questionMapper.deleteById(id) > 0;
+        // 关联表随题目级联删除，先记下所属标签以便失效标签位图
+        List<Long> tagIds = questionTagMapper.findTagIdsByQuestionId(id);
+        boolean deleted = questionMapper.deleteById(id) > 0;
+        if (deleted) {
+            questionCatalogCache.invalidateQuestion(id);
+            questionSelectionIndex.invalidateTags(tagIds);
+            questionIdSampler.invalidate();
+        }
+        return deleted;
     }
 
     /**
@@ -165,7 +191,7 @@ public class QuestionService {
      */
     public List<QuestionDTO> getRandomQuestions(int limit) {
         if (limit < 1) limit = 10;
-        List<Question> questions = questionMapper.findRandom(limit);
+        List<Question> questions = questionIdSampler.sample(limit);
         return dtoConverter.convertToQuestionDTOList(questions);
     }
 
@@ -7,6 +7,7 @@ import com.xinyu.InterviewCoach_v2.entity.Tag;
 import com.xinyu.InterviewCoach_v2.mapper.QuestionMapper;
 import com.xinyu.InterviewCoach_v2.mapper.QuestionTagMapper;
 import com.xinyu.InterviewCoach_v2.mapper.TagMapper;
+import com.xinyu.InterviewCoach_v2.service.cache.QuestionSelectionIndex;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -29,6 +30,9 @@ public class QuestionTagService {
     @Autowired
     private TagMapper tagMapper;
 
+    @Autowired
+    private QuestionSelectionIndex questionSelectionIndex;
+
     /**
      * 为题目添加单个标签
      */
@@ -47,6 +51,7 @@ public class QuestionTagService {
             throw new RuntimeException("题目已有该标签");
         }
 
+        questionSelectionIndex.invalidateTags(List.of(tagId));
         return questionTagMapper.addTagToQuestion(questionId, tagId) > 0;
     }
 
@@ -60,6 +65,7 @@ public class QuestionTagService {
             throw new RuntimeException("题目没有该标签");
         }
 
+        questionSelectionIndex.invalidateTags(List.of(tagId));
         return questionTagMapper.removeTagFromQuestion(questionId, tagId) > 0;
     }
 
@@ -89,6 +95,7 @@ public class QuestionTagService {
             throw new RuntimeException("所有标签都已关联到该题目");
         }
 
+        questionSelectionIndex.invalidateTags(newTagIds);
         return questionTagMapper.addTagsToQuestion(questionId, newTagIds) > 0;
     }
 
@@ -97,6 +104,7 @@ public class QuestionTagService {
      */
     @Transactional
     public boolean removeTagsFromQuestion(Long questionId, List<Long> tagIds) {
+        questionSelectionIndex.invalidateTags(tagIds);
         return questionTagMapper.removeTagsFromQuestion(questionId, tagIds) > 0;
     }
 
@@ -105,6 +113,7 @@ public class QuestionTagService {
      */
     @Transactional
     public boolean removeAllTagsFromQuestion(Long questionId) {
+        questionSelectionIndex.invalidateTags(questionTagMapper.findTagIdsByQuestionId(questionId));
         return questionTagMapper.removeAllTagsFromQuestion(questionId) >= 0;
     }
 
@@ -125,6 +134,10 @@ public class QuestionTagService {
             }
         }
 
+        // 新旧标签的位图都需要失效
+        questionSelectionIndex.invalidateTags(questionTagMapper.findTagIdsByQuestionId(questionId));
+        questionSelectionIndex.invalidateTags(tagIds);
+
         // 先移除所有现有标签
         questionTagMapper.removeAllTagsFromQuestion(questionId);
 
@@ -165,6 +178,7 @@ public class QuestionTagService {
             throw new RuntimeException("题目已有该标签");
         }
 
+        questionSelectionIndex.invalidateTags(List.of(tag.getId()));
         return questionTagMapper.addTagToQuestion(questionId, tag.getId()) > 0;
     }
 
@@ -9,8 +9,12 @@ import com.xinyu.InterviewCoach_v2.entity.Question;
 import com.xinyu.InterviewCoach_v2.enums.SessionMode;
 import com.xinyu.InterviewCoach_v2.mapper.QuestionMapper;
 import com.xinyu.InterviewCoach_v2.mapper.SessionMapper;
+import com.xinyu.InterviewCoach_v2.service.cache.NearCache;
+import com.xinyu.InterviewCoach_v2.service.cache.QuestionCatalogCache;
 import com.xinyu.InterviewCoach_v2.service.cache.RedisSessionManager;
+import com.xinyu.InterviewCoach_v2.service.cache.SessionProgressWriteBehind;
 import com.xinyu.InterviewCoach_v2.util.DTOConverter;
+import com.xinyu.InterviewCoach_v2.util.TransactionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -49,6 +53,15 @@ public class SessionService {
     @Autowired
     private QuestionMapper questionMapper;
 
+    @Autowired
+    private NearCache nearCache;
+
+    @Autowired
+    private SessionProgressWriteBehind progressWriteBehind;
+
+    @Autowired
+    private QuestionCatalogCache questionCatalogCache;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     private static final String QUEUE_CACHE_PREFIX = "session:queue:";
@@ -99,6 +112,9 @@ public class SessionService {
         Optional<Session> dbSession = sessionMapper.findById(id);
         if (dbSession.isPresent()) {
             SessionDTO sessionDTO = dtoConverter.convertToSessionDTO(dbSession.get());
+            if (progressWriteBehind.isEnabled()) {
+                return Optional.of(backfillWriteBehind(sessionDTO));
+            }
             // 回填缓存
             redisSessionManager.cacheSession(sessionDTO);
             logger.debug("会话数据回填缓存: sessionId={}", id);
@@ -108,6 +124,22 @@ public class SessionService {
         return Optional.empty();
     }
 
+    /**
+     * write-behind模式回填：数据库进度可能落后（Redis丢失），先根据消息记录重放；
+     * Redis中的进度是权威数据，只在会话Hash不存在时写入，已被并发请求回填或推进时以Redis为准
+     */
+    private SessionDTO backfillWriteBehind(SessionDTO sessionDTO) {
+        boolean recovered = progressWriteBehind.recoverProgress(sessionDTO);
+        if (redisSessionManager.cacheSessionIfAbsent(sessionDTO)) {
+            if (recovered) {
+                progressWriteBehind.markDirty(sessionDTO.getId());
+            }
+            logger.debug("会话数据回填缓存(write-behind): sessionId={}", sessionDTO.getId());
+            return sessionDTO;
+        }
+        return redisSessionManager.getSession(sessionDTO.getId()).orElse(sessionDTO);
+    }
+
     /**
      * 根据用户ID查询活跃会话 - 优先从缓存读取
      */
@@ -128,12 +160,14 @@ public class SessionService {
         // 2. 缓存未命中，从数据库查询
         Optional<Session> dbSession = sessionMapper.findActiveByUserId(userId);
         if (dbSession.isPresent()) {
-            SessionDTO sessionDTO = dtoConverter.convertToSessionDTO(dbSession.get());
-            // 回填缓存
-            redisSessionManager.cacheSession(sessionDTO);
-            redisSessionManager.cacheUserActiveSession(userId, sessionDTO.getId());
-            logger.debug("活跃会话数据回填缓存: userId={}, sessionId={}", userId, sessionDTO.getId());
-            return Optional.of(sessionDTO);
+            // 会话详情走getSessionById，避免用数据库中可能落后的进度覆盖会话缓存
+            Optional<SessionDTO> sessionDTO = getSessionById(dbSession.get().getId());
+            if (sessionDTO.isEmpty()) {
+                return Optional.empty();
+            }
+            redisSessionManager.cacheUserActiveSession(userId, dbSession.get().getId());
+            logger.debug("活跃会话数据回填缓存: userId={}, sessionId={}", userId, dbSession.get().getId());
+            return sessionDTO;
         }
 
         return Optional.empty();
@@ -156,13 +190,9 @@ public class SessionService {
     public boolean incrementAskedQuestionCount(Long sessionId) {
         boolean success = sessionMapper.incrementAskedQuestionCount(sessionId) > 0;
         if (success) {
-            // 从数据库重新加载并更新缓存
-            Optional<Session> updatedSession = sessionMapper.findById(sessionId);
-            if (updatedSession.isPresent()) {
-                SessionDTO sessionDTO = dtoConverter.convertToSessionDTO(updatedSession.get());
-                redisSessionManager.cacheSession(sessionDTO);
-                logger.debug("增加提问数量并更新缓存: sessionId={}", sessionId);
-            }
+            // 只自增缓存中的对应字段
+            TransactionUtils.runAfterCommit(() -> redisSessionManager.incrementAskedQuestionCount(sessionId));
+            logger.debug("增加提问数量并更新缓存: sessionId={}", sessionId);
         }
         return success;
     }
@@ -174,13 +204,9 @@ public class SessionService {
     public boolean incrementCompletedQuestionCount(Long sessionId) {
         boolean success = sessionMapper.incrementCompletedQuestionCount(sessionId) > 0;
         if (success) {
-            // 从数据库重新加载并更新缓存
-            Optional<Session> updatedSession = sessionMapper.findById(sessionId);
-            if (updatedSession.isPresent()) {
-                SessionDTO sessionDTO = dtoConverter.convertToSessionDTO(updatedSession.get());
-                redisSessionManager.cacheSession(sessionDTO);
-                logger.debug("增加完成数量并更新缓存: sessionId={}", sessionId);
-            }
+            // 只自增缓存中的对应字段
+            TransactionUtils.runAfterCommit(() -> redisSessionManager.incrementCompletedQuestionCount(sessionId));
+            logger.debug("增加完成数量并更新缓存: sessionId={}", sessionId);
         }
         return success;
     }
@@ -193,6 +219,9 @@ public class SessionService {
         // 获取会话信息用于清理用户活跃会话缓存
         Optional<SessionDTO> session = getSessionById(sessionId);
 
+        // write-behind模式下先把缓存中的进度写回数据库
+        progressWriteBehind.flush(sessionId);
+
         boolean success = sessionMapper.endSession(sessionId) > 0;
         if (success) {
             // 清理缓存
@@ -271,7 +300,12 @@ public class SessionService {
      * 验证会话所有权 - 优先从缓存验证
      */
     public boolean validateSessionOwnership(Long sessionId, Long userId) {
-        Optional<SessionDTO> session = getSessionById(sessionId); // 会走缓存逻辑
+        // 缓存命中时只读取userId字段
+        Optional<Long> cachedUserId = redisSessionManager.getSessionUserId(sessionId);
+        if (cachedUserId.isPresent()) {
+            return cachedUserId.get().equals(userId);
+        }
+        Optional<SessionDTO> session = getSessionById(sessionId);
         return session.isPresent() && session.get().getUserId().equals(userId);
     }
 
@@ -307,8 +341,9 @@ public class SessionService {
             // 2. 更新数据库
             sessionMapper.updateQuestionQueue(sessionId, queueJson, 0);
 
-            // 3. 缓存到Redis
+            // 3. 缓存到Redis，会话缓存只更新队列相关字段
             cacheQuestionQueue(sessionId, questionIds);
+            redisSessionManager.updateQuestionQueue(sessionId, queueJson, 0);
 
             logger.debug("初始化会话 {} 题目队列，包含 {} 个题目", sessionId, questionIds.size());
 
@@ -326,18 +361,18 @@ public class SessionService {
             return null;
         }
 
-        Optional<SessionDTO> sessionOpt = getSessionById(sessionId);
-        if (sessionOpt.isEmpty()) {
+        Optional<Integer> positionOpt = getQueuePosition(sessionId);
+        if (positionOpt.isEmpty()) {
             return null;
         }
 
-        int currentPosition = sessionOpt.get().getQueuePosition();
+        int currentPosition = positionOpt.get();
         if (currentPosition >= questionQueue.size()) {
             return null; // 队列已完成
         }
 
         Long questionId = questionQueue.get(currentPosition);
-        return questionMapper.findById(questionId).orElse(null);
+        return questionCatalogCache.getQuestion(questionId).orElse(null);
     }
 
     /**
@@ -349,12 +384,12 @@ public class SessionService {
             return null;
         }
 
-        Optional<SessionDTO> sessionOpt = getSessionById(sessionId);
-        if (sessionOpt.isEmpty()) {
+        Optional<Integer> positionOpt = getQueuePosition(sessionId);
+        if (positionOpt.isEmpty()) {
             return null;
         }
 
-        int currentPosition = sessionOpt.get().getQueuePosition();
+        int currentPosition = positionOpt.get();
 
         // 如果当前位置是0，说明还没开始问题或者刚开始，没有上一题
         if (currentPosition <= 0) {
@@ -376,27 +411,141 @@ public class SessionService {
     @Transactional
     public boolean moveToNextQuestion(Long sessionId) {
         Optional<SessionDTO> sessionOpt = getSessionById(sessionId);
-        if (sessionOpt.isEmpty()) {
+        return sessionOpt.isPresent() && advanceProgress(sessionOpt.get(), false);
+    }
+
+    /**
+     * 完成当前题目并移动到下一题
+     */
+    @Transactional
+    public boolean completeAndMoveToNextQuestion(Long sessionId) {
+        Optional<SessionDTO> sessionOpt = getSessionById(sessionId);
+        return sessionOpt.isPresent() && advanceProgress(sessionOpt.get(), true);
+    }
+
+    /**
+     * 原子推进会话进度 - 一条UPDATE推进位置和计数，一次Lua脚本同步缓存
+     * 以session当前位置做乐观校验，位置已被并发请求推进时返回false
+     */
+    @Transactional
+    public boolean advanceProgress(SessionDTO session, boolean completed) {
+        int expectedPosition = session.getQueuePosition();
+        int completedDelta = completed ? 1 : 0;
+
+        if (progressWriteBehind.isEnabled()) {
+            return advanceProgressWriteBehind(session, expectedPosition, completedDelta);
+        }
+
+        boolean success = sessionMapper.advanceProgress(session.getId(), expectedPosition, completedDelta) > 0;
+        if (!success) {
+            // 缓存可能已落后于数据库，清除后由下次读取回填
+            redisSessionManager.removeSession(session.getId());
+            logger.warn("会话进度已被推进，放弃本次推进: sessionId={}, expectedPosition={}",
+                    session.getId(), expectedPosition);
             return false;
         }
 
-        SessionDTO session = sessionOpt.get();
-        int newPosition = session.getQueuePosition() + 1;
+        SessionDTO advanced = advancedCopy(session, expectedPosition, completedDelta);
 
-        // 更新数据库
-        boolean success = sessionMapper.updateQueuePosition(sessionId, newPosition) > 0;
+        // 事务提交后再同步缓存，避免回滚后缓存领先数据库
+        TransactionUtils.runAfterCommit(() ->
+                redisSessionManager.advanceProgress(advanced, expectedPosition, completedDelta));
+
+        logger.debug("会话 {} 移动到下一题，新位置: {}", session.getId(), advanced.getQueuePosition());
+        return true;
+    }
 
+    /**
+     * write-behind模式推进：只执行Lua脚本推进Redis中的进度并记入待写回集合，由定时任务批量写回数据库
+     * 推进结果决定本轮能否继续，所以在事务内立即执行；外层事务回滚（如用户消息未能保存）时条件恢复，
+     * 避免权威的Redis进度领先而跳过题目
+     */
+    private boolean advanceProgressWriteBehind(SessionDTO session, int expectedPosition, int completedDelta) {
+        SessionDTO advanced = advancedCopy(session, expectedPosition, completedDelta);
+        String dirtySetKey = progressWriteBehind.dirtySetKey();
+
+        Long result = redisSessionManager.advanceProgress(advanced, expectedPosition, completedDelta, dirtySetKey);
+        if (result != null && result == -1) {
+            // 缓存已过期：从数据库回填（含消息重放）后重试一次
+            Optional<SessionDTO> reloaded = getSessionById(session.getId());
+            if (reloaded.isPresent() && reloaded.get().getQueuePosition() == expectedPosition) {
+                result = redisSessionManager.advanceProgress(advanced, expectedPosition, completedDelta, dirtySetKey);
+            }
+        }
+
+        boolean success = result != null && result == expectedPosition + 1;
         if (success) {
-            // 更新缓存中的session数据
-            session.setQueuePosition(newPosition);
-            redisSessionManager.cacheSession(session);
+            SessionDTO snapshot = session.copy();
+            TransactionUtils.runAfterRollback(() -> {
+                Long restored = redisSessionManager.restoreProgress(snapshot, expectedPosition + 1, dirtySetKey);
+                logger.warn("事务回滚，撤销会话进度推进(write-behind): sessionId={}, result={}",
+                        snapshot.getId(), restored);
+            });
+            logger.debug("会话 {} 移动到下一题(write-behind)，新位置: {}", session.getId(), result);
+        } else {
+            logger.warn("会话进度已被推进，放弃本次推进(write-behind): sessionId={}, expectedPosition={}, result={}",
+                    session.getId(), expectedPosition, result);
+        }
+        return success;
+    }
 
-            // 增加已问题目计数
-            incrementAskedQuestionCount(sessionId);
+    private SessionDTO advancedCopy(SessionDTO session, int expectedPosition, int completedDelta) {
+        SessionDTO advanced = session.copy();
+        advanced.setQueuePosition(expectedPosition + 1);
+        advanced.setAskedQuestionCount(valueOrZero(session.getAskedQuestionCount()) + 1);
+        advanced.setCompletedQuestionCount(valueOrZero(session.getCompletedQuestionCount()) + completedDelta);
+        return advanced;
+    }
 
-            logger.debug("会话 {} 移动到下一题，新位置: {}", sessionId, newPosition);
+    /**
+     * 按快照恢复会话进度 - 同步缓存
+     * 只撤销本轮的一次推进：当前位置必须仍是snapshot位置+1，已被后续轮次推进时不修改并返回false
+     */
+    @Transactional
+    public boolean restoreProgress(SessionDTO snapshot) {
+        int expectedPosition = snapshot.getQueuePosition() + 1;
+        if (progressWriteBehind.isEnabled()) {
+            return restoreProgressWriteBehind(snapshot, expectedPosition);
         }
 
+        boolean success = sessionMapper.restoreProgress(snapshot.getId(), expectedPosition, snapshot.getQueuePosition(),
+                snapshot.getAskedQuestionCount(), snapshot.getCompletedQuestionCount()) > 0;
+        if (success) {
+            // 只覆盖缓存中的进度字段
+            TransactionUtils.runAfterCommit(() -> redisSessionManager.updateProgress(snapshot.getId(),
+                    snapshot.getQueuePosition(), snapshot.getAskedQuestionCount(), snapshot.getCompletedQuestionCount()));
+            logger.debug("恢复会话进度: sessionId={}, position={}",
+                    snapshot.getId(), snapshot.getQueuePosition());
+        } else {
+            logger.warn("会话进度已被后续轮次推进，放弃恢复: sessionId={}, expectedPosition={}",
+                    snapshot.getId(), expectedPosition);
+        }
+        return success;
+    }
+
+    /**
+     * write-behind模式恢复：Redis中的进度是权威数据，条件恢复后记入待写回集合
+     */
+    private boolean restoreProgressWriteBehind(SessionDTO snapshot, int expectedPosition) {
+        String dirtySetKey = progressWriteBehind.dirtySetKey();
+
+        Long result = redisSessionManager.restoreProgress(snapshot, expectedPosition, dirtySetKey);
+        if (result != null && result == -1) {
+            // 缓存已过期：从数据库回填（含消息重放）后重试一次
+            Optional<SessionDTO> reloaded = getSessionById(snapshot.getId());
+            if (reloaded.isPresent() && reloaded.get().getQueuePosition() == expectedPosition) {
+                result = redisSessionManager.restoreProgress(snapshot, expectedPosition, dirtySetKey);
+            }
+        }
+
+        boolean success = result != null && result == snapshot.getQueuePosition().longValue();
+        if (success) {
+            logger.debug("恢复会话进度(write-behind): sessionId={}, position={}",
+                    snapshot.getId(), snapshot.getQueuePosition());
+        } else {
+            logger.warn("会话进度已被后续轮次推进，放弃恢复(write-behind): sessionId={}, expectedPosition={}, result={}",
+                    snapshot.getId(), expectedPosition, result);
+        }
         return success;
     }
 
@@ -409,14 +558,72 @@ public class SessionService {
             return false;
         }
 
-        Optional<SessionDTO> sessionOpt = getSessionById(sessionId);
-        if (sessionOpt.isEmpty()) {
+        Optional<Integer> positionOpt = getQueuePosition(sessionId);
+        if (positionOpt.isEmpty()) {
             return false;
         }
 
-        System.out.println("---------------has more question");
+        return positionOpt.get() < questionQueue.size();
+    }
+
+    /**
+     * 获取当前队列位置 - 缓存命中时只读取queuePosition字段
+     */
+    public Optional<Integer> getQueuePosition(Long sessionId) {
+        Optional<Integer> cachedPosition = redisSessionManager.getQueuePosition(sessionId);
+        if (cachedPosition.isPresent()) {
+            return cachedPosition;
+        }
+        return getSessionById(sessionId).map(SessionDTO::getQueuePosition);
+    }
+
+    /**
+     * 加载单轮对话上下文
+     * 近端缓存未命中时会话Hash和题目队列一次pipeline读取，仍未命中的部分再回源数据库
+     */
+    public Optional<InterviewTurnContext> loadTurnContext(Long sessionId) {
+        String queueKey = QUEUE_CACHE_PREFIX + sessionId;
+        List<Long> questionQueue = nearCache.get(NearCache.SESSION_QUEUE, queueKey);
+        SessionDTO session = null;
+
+        if (questionQueue == null) {
+            RedisSessionManager.PipelinedRead read = redisSessionManager.getSessionWithValue(sessionId, queueKey);
+            session = read.getSession();
+            if (read.getValue() != null) {
+                try {
+                    questionQueue = toQuestionIds(redisTemplate.getValueSerializer().deserialize(read.getValue()));
+                    if (questionQueue != null) {
+                        nearCache.put(NearCache.SESSION_QUEUE, queueKey, questionQueue);
+                    }
+                } catch (Exception e) {
+                    logger.warn("解析缓存题目队列失败: sessionId={}", sessionId, e);
+                }
+            }
+            if (session != null) {
+                redisSessionManager.refreshSessionTtl(sessionId);
+            }
+        }
+
+        if (session == null) {
+            session = getSessionById(sessionId).orElse(null);
+            if (session == null) {
+                return Optional.empty();
+            }
+        }
+        if (questionQueue == null) {
+            questionQueue = getQuestionQueue(sessionId);
+        }
+
+        List<Long> queue = questionQueue != null ? questionQueue : List.of();
+        int position = valueOrZero(session.getQueuePosition());
 
-        return sessionOpt.get().getQueuePosition() < questionQueue.size();
+        // 上一题位于position - 1，当前待提问的下一题位于position
+        Long previousQuestionId = position > 0 && position - 1 < queue.size() ? queue.get(position - 1) : null;
+        boolean hasMoreQuestions = position < queue.size();
+        Question nextQuestion = hasMoreQuestions
+                ? questionCatalogCache.getQuestion(queue.get(position)).orElse(null) : null;
+
+        return Optional.of(new InterviewTurnContext(session, queue, previousQuestionId, hasMoreQuestions, nextQuestion));
     }
 
     /**
@@ -446,19 +653,18 @@ public class SessionService {
     private List<Long> getQuestionQueueFromCache(Long sessionId) {
         try {
             String cacheKey = QUEUE_CACHE_PREFIX + sessionId;
+
+            // 队列创建后不再变化，近端缓存命中时无需访问Redis
+            List<Long> nearCached = nearCache.get(NearCache.SESSION_QUEUE, cacheKey);
+            if (nearCached != null) {
+                return nearCached;
+            }
+
             Object cached = redisTemplate.opsForValue().get(cacheKey);
-            if (cached != null) {
-                // 处理Redis反序列化时Integer和Long的类型转换问题
-                if (cached instanceof List<?>) {
-                    List<?> rawList = (List<?>) cached;
-                    List<Long> questionIds = new ArrayList<>();
-                    for (Object item : rawList) {
-                        if (item instanceof Number) {
-                            questionIds.add(((Number) item).longValue());
-                        }
-                    }
-                    return questionIds;
-                }
+            List<Long> questionIds = toQuestionIds(cached);
+            if (questionIds != null) {
+                nearCache.put(NearCache.SESSION_QUEUE, cacheKey, questionIds);
+                return questionIds;
             }
         } catch (Exception e) {
             logger.warn("从缓存获取题目队列失败: sessionId={}", sessionId, e);
@@ -466,6 +672,22 @@ public class SessionService {
         return null;
     }
 
+    /**
+     * 缓存值转换为不可变的题目ID列表，处理Redis反序列化时Integer和Long的类型转换问题
+     */
+    private List<Long> toQuestionIds(Object cached) {
+        if (!(cached instanceof List<?>)) {
+            return null;
+        }
+        List<Long> questionIds = new ArrayList<>();
+        for (Object item : (List<?>) cached) {
+            if (item instanceof Number) {
+                questionIds.add(((Number) item).longValue());
+            }
+        }
+        return List.copyOf(questionIds);
+    }
+
     /**
      * 缓存题目队列
      */
@@ -473,6 +695,7 @@ public class SessionService {
         try {
             String cacheKey = QUEUE_CACHE_PREFIX + sessionId;
             redisTemplate.opsForValue().set(cacheKey, questionIds, CACHE_TTL_SECONDS, TimeUnit.SECONDS);
+            nearCache.putAndBroadcast(NearCache.SESSION_QUEUE, cacheKey, List.copyOf(questionIds));
             logger.debug("缓存题目队列: sessionId={}, size={}", sessionId, questionIds.size());
         } catch (Exception e) {
             logger.warn("缓存题目队列失败: sessionId={}", sessionId, e);
@@ -502,9 +725,14 @@ public class SessionService {
         try {
             redisTemplate.delete(QUEUE_CACHE_PREFIX + sessionId);
             redisTemplate.delete(CURRENT_QUESTION_CACHE_PREFIX + sessionId);
+            nearCache.invalidate(NearCache.SESSION_QUEUE, QUEUE_CACHE_PREFIX + sessionId);
             logger.debug("清理会话队列缓存: sessionId={}", sessionId);
         } catch (Exception e) {
             logger.warn("清理会话队列缓存失败: sessionId={}", sessionId, e);
         }
     }
-}
\ No newline at end of file
+
+    private int valueOrZero(Integer value) {
+        return value != null ? value : 0;
+    }
+}
@@ -3,6 +3,7 @@ package com.xinyu.InterviewCoach_v2.service;
 import com.xinyu.InterviewCoach_v2.dto.TagDTO;
 import com.xinyu.InterviewCoach_v2.entity.Tag;
 import com.xinyu.InterviewCoach_v2.mapper.TagMapper;
+import com.xinyu.InterviewCoach_v2.service.cache.QuestionSelectionIndex;
 import com.xinyu.InterviewCoach_v2.util.DTOConverter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -23,6 +24,9 @@ public class TagService {
     @Autowired
     private DTOConverter dtoConverter;
 
+    @Autowired
+    private QuestionSelectionIndex questionSelectionIndex;
+
     /**
      * 创建新标签
      */
@@ -144,7 +148,11 @@ public class TagService {
         if (!tagMapper.findById(id).isPresent()) {
             throw new RuntimeException("标签不存在");
         }
-        return tagMapper.deleteById(id) > 0;
+        boolean deleted = tagMapper.deleteById(id) > 0;
+        if (deleted) {
+            questionSelectionIndex.invalidateTags(List.of(id));
+        }
+        return deleted;
     }
 
     /**
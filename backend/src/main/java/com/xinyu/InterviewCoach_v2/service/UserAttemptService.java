@@ -1,6 +1,7 @@
 package com.xinyu.InterviewCoach_v2.service;
 
 import com.xinyu.InterviewCoach_v2.mapper.UserAttemptMapper;
+import com.xinyu.InterviewCoach_v2.service.cache.QuestionSelectionIndex;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -9,17 +10,24 @@ import org.springframework.transaction.annotation.Transactional;
  * 用户答题尝试业务逻辑层
  */
 @Service
-class UserAttemptService {
+public class UserAttemptService {
 
     @Autowired
     private UserAttemptMapper userAttemptMapper;
 
+    @Autowired
+    private QuestionSelectionIndex questionSelectionIndex;
+
     /**
      * 记录或更新用户答题尝试
      */
     @Transactional
     public boolean recordAttempt(Long userId, Long questionId) {
-        return userAttemptMapper.recordAttempt(userId, questionId) > 0;
+        boolean recorded = userAttemptMapper.recordAttempt(userId, questionId) > 0;
+        if (recorded) {
+            questionSelectionIndex.recordAttempt(userId, questionId);
+        }
+        return recorded;
     }
 
     /**
@@ -92,6 +92,27 @@ public class WebSocketService {
         }
     }
 
+    /**
+     * 注销WebSocket连接 - 只移除仍指向该连接的映射，避免误删同一会话的新连接
+     */
+    public void unregisterConnection(WebSocketSession wsSession) {
+        Long sessionId = (Long) wsSession.getAttributes().get("sessionId");
+        Long userId = (Long) wsSession.getAttributes().get("userId");
+
+        if (sessionId != null) {
+            sessionConnections.computeIfPresent(sessionId,
+                    (key, current) -> current.getId().equals(wsSession.getId()) ? null : current);
+        }
+        if (userId != null) {
+            userConnections.computeIfPresent(userId,
+                    (key, current) -> current.getId().equals(wsSession.getId()) ? null : current);
+        }
+        sessionMetadata.remove(wsSession.getId());
+
+        logger.info("WebSocket连接已注销: sessionId={}, userId={}, wsSessionId={}",
+                sessionId, userId, wsSession.getId());
+    }
+
     /**
      * 推送AI回复到指定会话
      */
@@ -139,6 +160,73 @@ public class WebSocketService {
         }
     }
 
+    /**
+     * 推送AI流式回复片段（ai_delta）
+     * 前端按seq顺序拼接，收到done=true的帧后以其中的完整message为准
+     */
+    public boolean pushAIDelta(Long sessionId, String delta, int seq) {
+        WebSocketSession wsSession = sessionConnections.get(sessionId);
+
+        if (wsSession == null || !wsSession.isOpen()) {
+            return false;
+        }
+
+        Map<String, Object> message = Map.of(
+                "type", "ai_delta",
+                "sessionId", sessionId,
+                "delta", delta,
+                "seq", seq,
+                "done", false,
+                "timestamp", System.currentTimeMillis()
+        );
+
+        return sendJsonMessage(wsSession, message);
+    }
+
+    /**
+     * 推送AI流式回复结束帧，携带已持久化的完整回复
+     */
+    public boolean pushAIDeltaDone(Long sessionId, Long messageId, String fullText, String currentState) {
+        WebSocketSession wsSession = sessionConnections.get(sessionId);
+
+        if (wsSession == null || !wsSession.isOpen()) {
+            return false;
+        }
+
+        Map<String, Object> message = new HashMap<>();
+        message.put("type", "ai_delta");
+        message.put("sessionId", sessionId);
+        message.put("done", true);
+        message.put("messageId", messageId);
+        message.put("message", fullText != null ? fullText : "");
+        message.put("currentState", currentState);
+        message.put("chatInputEnabled", !"SESSION_ENDED".equals(currentState));
+        message.put("timestamp", System.currentTimeMillis());
+
+        return sendJsonMessage(wsSession, message);
+    }
+
+    /**
+     * 推送AI流式回复中止帧，前端应丢弃已收到的ai_delta，本轮回复不会保存
+     */
+    public boolean pushAIDeltaAbort(Long sessionId, String reason) {
+        WebSocketSession wsSession = sessionConnections.get(sessionId);
+
+        if (wsSession == null || !wsSession.isOpen()) {
+            return false;
+        }
+
+        Map<String, Object> message = new HashMap<>();
+        message.put("type", "ai_delta");
+        message.put("sessionId", sessionId);
+        message.put("done", true);
+        message.put("aborted", true);
+        message.put("message", reason != null ? reason : "");
+        message.put("timestamp", System.currentTimeMillis());
+
+        return sendJsonMessage(wsSession, message);
+    }
+
     /**
      * 推送会话状态更新
      */
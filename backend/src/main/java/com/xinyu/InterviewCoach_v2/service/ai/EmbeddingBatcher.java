@@ -0,0 +1,206 @@
+package com.xinyu.InterviewCoach_v2.service.ai;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.xinyu.InterviewCoach_v2.config.properties.OpenAIProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Embedding请求合并器
+ * 并发的单条embedding请求在短时间窗口内（或攒够batch-size条）合并为一次批量API调用，
+ * 同一文本在途时复用同一个Future
+ */
+@Component
+public class EmbeddingBatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddingBatcher.class);
+
+    @Autowired
+    private OpenAIClient openAIClient;
+
+    @Autowired
+    private OpenAIProperties properties;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    private Counter embeddingCallMade;
+    private DistributionSummary batchSizeSummary;
+
+    // 在途请求：text -> Future，用于去重
+    private final Map<String, CompletableFuture<double[]>> inFlight = new ConcurrentHashMap<>();
+
+    // 等待合并的文本
+    private final List<String> pending = new ArrayList<>();
+    private final ReentrantLock pendingLock = new ReentrantLock();
+    private ScheduledFuture<?> scheduledFlush;
+
+    private ScheduledExecutorService flushScheduler;
+    private ExecutorService dispatchExecutor;
+
+    @PostConstruct
+    private void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        flushScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "embedding-batch-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // 并发由OpenAIClient的embedding许可控制
+        dispatchExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "embedding-batch-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        if (meterRegistry != null) {
+            embeddingCallMade = Counter.builder("ai.embedding.call.made").register(meterRegistry);
+            batchSizeSummary = DistributionSummary.builder("ai.embedding.batch.size").register(meterRegistry);
+        }
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        flushScheduler.shutdownNow();
+        dispatchExecutor.shutdown();
+    }
+
+    /**
+     * 提交单条文本，返回该文本embedding的Future
+     */
+    public CompletableFuture<double[]> submit(String text) {
+        CompletableFuture<double[]> existing = inFlight.get(text);
+        if (existing != null) {
+            return existing;
+        }
+
+        CompletableFuture<double[]> future = new CompletableFuture<>();
+        existing = inFlight.putIfAbsent(text, future);
+        if (existing != null) {
+            return existing;
+        }
+
+        List<String> readyBatch = null;
+        pendingLock.lock();
+        try {
+            pending.add(text);
+            if (pending.size() >= properties.getEmbedding().getBatchSize()) {
+                readyBatch = drainPending();
+            } else if (scheduledFlush == null) {
+                scheduledFlush = flushScheduler.schedule(this::flushPending,
+                        properties.getEmbedding().getBatchWindowMs(), TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            pendingLock.unlock();
+        }
+
+        if (readyBatch != null) {
+            dispatch(readyBatch);
+        }
+        return future;
+    }
+
+    /**
+     * 直接批量调用Embeddings接口，结果与texts一一对应，单条缺失时为null
+     */
+    public List<double[]> fetchEmbeddings(List<String> texts) {
+        Map<String, Object> requestBody = Map.of(
+                "model", properties.getEmbedding().getModel(),
+                "input", texts,
+                "encoding_format", "float"
+        );
+
+        JsonNode data = openAIClient.embeddings(requestBody).path("data");
+        if (embeddingCallMade != null) embeddingCallMade.increment();
+        if (batchSizeSummary != null) batchSizeSummary.record(texts.size());
+
+        double[][] embeddings = new double[texts.size()][];
+        for (int i = 0; i < data.size(); i++) {
+            JsonNode item = data.get(i);
+            int index = item.path("index").asInt(i);
+            if (index >= 0 && index < embeddings.length) {
+                embeddings[index] = toEmbedding(item.path("embedding"));
+            }
+        }
+        return Arrays.asList(embeddings);
+    }
+
+    private void flushPending() {
+        List<String> batch;
+        pendingLock.lock();
+        try {
+            batch = drainPending();
+        } finally {
+            pendingLock.unlock();
+        }
+        if (!batch.isEmpty()) {
+            dispatch(batch);
+        }
+    }
+
+    /**
+     * 取出一批待处理文本，调用方需持有pendingLock
+     */
+    private List<String> drainPending() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        List<String> batch = new ArrayList<>(pending);
+        pending.clear();
+        return batch;
+    }
+
+    private void dispatch(List<String> batch) {
+        dispatchExecutor.execute(() -> {
+            try {
+                List<double[]> embeddings = fetchEmbeddings(batch);
+                for (int i = 0; i < batch.size(); i++) {
+                    complete(batch.get(i), embeddings.get(i), null);
+                }
+                logger.debug("合并embedding请求完成: batchSize={}", batch.size());
+            } catch (Exception e) {
+                logger.error("合并embedding请求失败: batchSize={}", batch.size(), e);
+                batch.forEach(text -> complete(text, null, e));
+            }
+        });
+    }
+
+    private void complete(String text, double[] embedding, Exception error) {
+        CompletableFuture<double[]> future = inFlight.remove(text);
+        if (future == null) {
+            return;
+        }
+        if (error != null) {
+            future.completeExceptionally(error);
+        } else {
+            future.complete(embedding);
+        }
+    }
+
+    /**
+     * 将响应中的embedding数组转换为double[]
+     */
+    private double[] toEmbedding(JsonNode embeddingNode) {
+        if (!embeddingNode.isArray() || embeddingNode.isEmpty()) {
+            return null;
+        }
+        double[] embedding = new double[embeddingNode.size()];
+        for (int i = 0; i < embedding.length; i++) {
+            embedding[i] = embeddingNode.get(i).asDouble();
+        }
+        return embedding;
+    }
+}
@@ -0,0 +1,357 @@
+package com.xinyu.InterviewCoach_v2.service.ai;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xinyu.InterviewCoach_v2.config.properties.OpenAIProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * OpenAI共享HTTP客户端 - 对话与embedding共用
+ * 基于JDK HttpClient（优先HTTP/2，连接复用），统一超时、带抖动的指数退避重试和按接口的并发限制
+ */
+@Component
+public class OpenAIClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(OpenAIClient.class);
+
+    @Autowired
+    private OpenAIProperties properties;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private HttpClient httpClient;
+
+    // 按接口限制并发，避免突发流量触发OpenAI限流
+    private Semaphore chatPermits;
+    private Semaphore embeddingPermits;
+
+    // 流式响应看门狗：HttpRequest.timeout只覆盖等待响应头，body读取的空闲超时和总时长在这里检查
+    private static final long STREAM_WATCHDOG_INTERVAL_MS = 1000;
+    private ScheduledExecutorService streamWatchdog;
+
+    @PostConstruct
+    private void init() {
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(properties.getApi().getConnectTimeout()))
+                .build();
+        chatPermits = new Semaphore(properties.getApi().getMaxConcurrency(), true);
+        embeddingPermits = new Semaphore(properties.getEmbedding().getMaxConcurrency(), true);
+        streamWatchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "openai-stream-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        logger.info("OpenAI客户端初始化完成: chatConcurrency={}, embeddingConcurrency={}",
+                properties.getApi().getMaxConcurrency(), properties.getEmbedding().getMaxConcurrency());
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        streamWatchdog.shutdownNow();
+    }
+
+    /**
+     * 调用Chat Completions接口，返回响应JSON
+     */
+    public JsonNode chatCompletion(Map<String, Object> requestBody) {
+        return postJson(properties.getApi().getUrl(), requestBody,
+                properties.getApi().getTimeout(), chatPermits);
+    }
+
+    /**
+     * 流式调用Chat Completions接口，逐条回调SSE data内容，收到[DONE]时结束
+     * 已开始接收数据后不再重试，避免重复推送；返回是否收到[DONE]，未收到时回复可能不完整，由调用方判断
+     * 超过空闲超时没有新数据或超过总时长时由看门狗关闭body，抛出异常并释放并发许可
+     */
+    public boolean streamChatCompletion(Map<String, Object> requestBody, Consumer<String> dataHandler) {
+        byte[] body = writeBody(requestBody);
+        acquire(chatPermits);
+        StreamWatch watch = new StreamWatch(Thread.currentThread(),
+                properties.getApi().getStreamIdleTimeoutMs(), properties.getApi().getStreamTimeoutMs());
+        ScheduledFuture<?> watchdog = streamWatchdog.scheduleAtFixedRate(watch::check,
+                STREAM_WATCHDOG_INTERVAL_MS, STREAM_WATCHDOG_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        try {
+            HttpResponse<InputStream> response = sendWithRetry(
+                    buildRequest(properties.getApi().getUrl(), body, properties.getApi().getTimeout(),
+                            "text/event-stream"),
+                    HttpResponse.BodyHandlers.ofInputStream());
+            watch.attach(response.body());
+
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+                boolean done = false;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    watch.touch();
+                    if (!line.startsWith("data:")) {
+                        continue;
+                    }
+                    String data = line.substring(5).trim();
+                    if ("[DONE]".equals(data)) {
+                        done = true;
+                        break;
+                    }
+                    dataHandler.accept(data);
+                }
+                return done;
+            }
+        } catch (IOException | RuntimeException e) {
+            if (watch.isTimedOut()) {
+                throw new RuntimeException("OpenAI流式响应超时: " + watch.timeoutReason(), e);
+            }
+            if (e instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new RuntimeException("读取OpenAI流式响应失败: " + e.getMessage(), e);
+        } finally {
+            watchdog.cancel(false);
+            watch.finish();
+            chatPermits.release();
+        }
+    }
+
+    /**
+     * 调用Embeddings接口，返回响应JSON
+     */
+    public JsonNode embeddings(Map<String, Object> requestBody) {
+        return postJson(properties.getEmbedding().getUrl(), requestBody,
+                properties.getEmbedding().getTimeout(), embeddingPermits);
+    }
+
+    private JsonNode postJson(String url, Map<String, Object> requestBody, long timeoutMs, Semaphore permits) {
+        byte[] body = writeBody(requestBody);
+        acquire(permits);
+        try {
+            HttpResponse<byte[]> response = sendWithRetry(
+                    buildRequest(url, body, timeoutMs, "application/json"),
+                    HttpResponse.BodyHandlers.ofByteArray());
+            return objectMapper.readTree(response.body());
+        } catch (IOException e) {
+            throw new RuntimeException("解析OpenAI响应失败: " + e.getMessage(), e);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * 发送请求，网络异常、429和5xx按指数退避加随机抖动重试
+     */
+    private <T> HttpResponse<T> sendWithRetry(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) {
+        int maxRetries = properties.getApi().getMaxRetries();
+
+        for (int attempt = 0; ; attempt++) {
+            try {
+                HttpResponse<T> response = httpClient.send(request, bodyHandler);
+                int status = response.statusCode();
+                if (status == 200) {
+                    return response;
+                }
+
+                discard(response);
+                if (!isRetryable(status) || attempt >= maxRetries) {
+                    throw new RuntimeException("OpenAI接口返回异常状态: " + status);
+                }
+                logger.warn("OpenAI接口返回{}，准备第{}次重试: url={}", status, attempt + 1, request.uri());
+
+            } catch (IOException e) {
+                if (attempt >= maxRetries) {
+                    throw new RuntimeException("调用OpenAI接口失败: " + e.getMessage(), e);
+                }
+                logger.warn("调用OpenAI接口异常，准备第{}次重试: url={}, error={}",
+                        attempt + 1, request.uri(), e.getMessage());
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("调用OpenAI接口被中断", e);
+            }
+
+            sleepBackoff(attempt);
+        }
+    }
+
+    private boolean isRetryable(int status) {
+        return status == 429 || status >= 500;
+    }
+
+    /**
+     * 退避时间 = 基础延迟 * 2^attempt，在[一半, 全量]之间随机抖动，避免重试同时打到接口
+     */
+    private void sleepBackoff(int attempt) {
+        long base = properties.getApi().getRetryDelayMs() << Math.min(attempt, 10);
+        long delay = base / 2 + ThreadLocalRandom.current().nextLong(base / 2 + 1);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("OpenAI重试等待被中断", e);
+        }
+    }
+
+    private void acquire(Semaphore permits) {
+        try {
+            if (!permits.tryAcquire(properties.getApi().getAcquireTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                throw new RuntimeException("OpenAI请求并发已满，请稍后再试");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("等待OpenAI并发许可被中断", e);
+        }
+    }
+
+    private HttpRequest buildRequest(String url, byte[] body, long timeoutMs, String accept) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofMillis(timeoutMs))
+                .header("Content-Type", "application/json")
+                .header("Accept", accept)
+                .header("Authorization", "Bearer " + properties.getApi().getKey())
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+    }
+
+    private byte[] writeBody(Map<String, Object> requestBody) {
+        try {
+            return objectMapper.writeValueAsBytes(requestBody);
+        } catch (IOException e) {
+            throw new RuntimeException("序列化OpenAI请求失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 单次流式读取的超时状态
+     * 超时时关闭body并中断读取线程：HttpClient的body流在阻塞读取时不一定响应close，中断可以确保readLine退出。
+     * 中断和结束在同一把锁下判断，读取线程结束后不会再收到看门狗的中断
+     */
+    private static final class StreamWatch {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Thread reader;
+        private final long idleTimeoutMs;
+        private final long deadline;
+        private volatile long lastActivity;
+        private volatile InputStream body;
+        private volatile String timeoutReason;
+        private boolean finished;
+
+        StreamWatch(Thread reader, long idleTimeoutMs, long timeoutMs) {
+            this.reader = reader;
+            this.idleTimeoutMs = idleTimeoutMs;
+            this.lastActivity = System.currentTimeMillis();
+            this.deadline = lastActivity + timeoutMs;
+        }
+
+        void attach(InputStream body) {
+            this.body = body;
+            touch();
+        }
+
+        void touch() {
+            lastActivity = System.currentTimeMillis();
+        }
+
+        /**
+         * 看门狗线程调用；等待响应头阶段由HttpRequest.timeout负责，只检查总时长
+         */
+        void check() {
+            long now = System.currentTimeMillis();
+            String reason = null;
+            if (now >= deadline) {
+                reason = "超过总时长";
+            } else if (body != null && now - lastActivity >= idleTimeoutMs) {
+                reason = "超过" + idleTimeoutMs + "ms没有新数据";
+            }
+            if (reason == null) {
+                return;
+            }
+
+            lock.lock();
+            try {
+                if (finished || timeoutReason != null) {
+                    return;
+                }
+                timeoutReason = reason;
+                reader.interrupt();
+            } finally {
+                lock.unlock();
+            }
+            logger.warn("OpenAI流式响应超时，关闭连接: reason={}", reason);
+            closeQuietly();
+        }
+
+        /**
+         * 读取线程结束时调用，清除看门狗留下的中断标记
+         */
+        void finish() {
+            lock.lock();
+            try {
+                finished = true;
+                if (timeoutReason != null) {
+                    Thread.interrupted();
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (timeoutReason != null) {
+                closeQuietly();
+            }
+        }
+
+        boolean isTimedOut() {
+            return timeoutReason != null;
+        }
+
+        String timeoutReason() {
+            return timeoutReason;
+        }
+
+        private void closeQuietly() {
+            InputStream stream = body;
+            if (stream == null) {
+                return;
+            }
+            try {
+                stream.close();
+            } catch (IOException ignored) {
+                // 连接已断开时关闭失败无需处理
+            }
+        }
+    }
+
+    /**
+     * 非200响应需要消费掉流式body，连接才能归还复用
+     */
+    private void discard(HttpResponse<?> response) {
+        if (response.body() instanceof InputStream stream) {
+            try {
+                stream.close();
+            } catch (IOException ignored) {
+                // 连接关闭失败不影响重试
+            }
+        }
+    }
+}
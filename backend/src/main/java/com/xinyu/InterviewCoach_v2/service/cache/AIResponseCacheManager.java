@@ -1,17 +1,18 @@
 package com.xinyu.InterviewCoach_v2.service.cache;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.xinyu.InterviewCoach_v2.enums.SessionMode;
 import com.xinyu.InterviewCoach_v2.queue.producer.AIQueueProducer;
+import com.xinyu.InterviewCoach_v2.service.ai.EmbeddingBatcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.DataType;
+import org.springframework.data.redis.core.Cursor;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.http.*;
+import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.RestTemplate;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
 
@@ -19,6 +20,7 @@ import jakarta.annotation.PostConstruct;
 import java.security.MessageDigest;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -34,21 +36,19 @@ public class AIResponseCacheManager {
     private RedisTemplate<String, String> redisTemplate;
 
     @Autowired
-    private ObjectMapper objectMapper;
-
-    private final RestTemplate restTemplate = new RestTemplate();
+    private EmbeddingBatcher embeddingBatcher;
 
     @Autowired
-    private AIQueueProducer aiQueueProducer;
+    private SemanticVectorIndex semanticVectorIndex;
 
-    @Value("${openai.api.key}")
-    private String openAiApiKey;
+    @Autowired
+    private EmbeddingStore embeddingStore;
 
-    @Value("${openai.embedding.url:https://api.openai.com/v1/embeddings}")
-    private String embeddingApiUrl;
+    @Autowired
+    private NearCache nearCache;
 
-    @Value("${openai.embedding.model:text-embedding-3-small}")
-    private String embeddingModel;
+    @Autowired
+    private AIQueueProducer aiQueueProducer;
 
     @Value("${cache.ai.first-question.ttl:604800}")  // 7天
     private long firstQuestionTtl;
@@ -68,16 +68,27 @@ public class AIResponseCacheManager {
     @Value("${cache.ai.embedding.enabled:true}")
     private boolean embeddingEnabled;
 
-    @Value("${cache.ai.max-similar-answers:10}")  // 最多检查多少个相似答案
+    @Value("${cache.ai.embedding.ttl:86400}")  // 1天
+    private long embeddingTtl;
+
+    @Value("${cache.ai.embedding.wait-timeout-ms:30000}")  // 等待合并请求结果的超时
+    private long embeddingWaitTimeoutMs;
+
+    @Value("${cache.ai.max-similar-answers:10}")  // 命中候选已过期时最多尝试多少个
     private int maxSimilarAnswers;
 
+    @Value("${cache.ai.max-index-size:200}")  // 每个候选索引最多保留的条目数
+    private int maxIndexSize;
+
+    private static final String INDEX_SEGMENT = "index:";
+    private static final long SCAN_BATCH_SIZE = 500;
+
     @Autowired(required = false)
     private MeterRegistry meterRegistry;
 
     private Counter cacheHit;
     private Counter cacheMiss;
     private Counter apiCallSaved;
-    private Counter embeddingCallMade;
 
     @PostConstruct
     private void initMetrics() {
@@ -85,7 +96,6 @@ public class AIResponseCacheManager {
             cacheHit = Counter.builder("ai.cache.hit").register(meterRegistry);
             cacheMiss = Counter.builder("ai.cache.miss").register(meterRegistry);
             apiCallSaved = Counter.builder("ai.api.call.saved").register(meterRegistry);
-            embeddingCallMade = Counter.builder("ai.embedding.call.made").register(meterRegistry);
         }
     }
 
@@ -99,7 +109,7 @@ public class AIResponseCacheManager {
 
         try {
             String key = buildFirstQuestionKey(questionId, mode);
-            String cached = redisTemplate.opsForValue().get(key);
+            String cached = getWithNearCache(key);
 
             if (cached != null) {
                 logger.debug("第一题缓存命中: questionId={}, mode={}", questionId, mode);
@@ -129,6 +139,7 @@ public class AIResponseCacheManager {
         try {
             String key = buildFirstQuestionKey(questionId, mode);
             redisTemplate.opsForValue().set(key, aiResponse, firstQuestionTtl, TimeUnit.SECONDS);
+            nearCache.putAndBroadcast(NearCache.AI_RESPONSE, key, aiResponse);
             logger.debug("缓存第一题问法: questionId={}, mode={}", questionId, mode);
         } catch (Exception e) {
             logger.error("缓存第一题问法失败: questionId={}, mode={}", questionId, mode, e);
@@ -147,7 +158,7 @@ public class AIResponseCacheManager {
         try {
             // 1. 先尝试精确匹配
             String exactKey = buildExactFeedbackKey(previousQuestionId, nextQuestionId, userAnswer, hasStandardAnswer);
-            String exactCached = redisTemplate.opsForValue().get(exactKey);
+            String exactCached = getWithNearCache(exactKey);
             if (exactCached != null) {
                 logger.debug("反馈精确缓存命中: prevQ={}, nextQ={}", previousQuestionId, nextQuestionId);
                 if (cacheHit != null) cacheHit.increment();
@@ -192,6 +203,7 @@ public class AIResponseCacheManager {
             // 1. 缓存精确匹配
             String exactKey = buildExactFeedbackKey(previousQuestionId, nextQuestionId, userAnswer, hasStandardAnswer);
             redisTemplate.opsForValue().set(exactKey, aiResponse, feedbackTtl, TimeUnit.SECONDS);
+            nearCache.putAndBroadcast(NearCache.AI_RESPONSE, exactKey, aiResponse);
 
             // 2. 缓存到语义相似性索引
             if (embeddingEnabled) {
@@ -218,43 +230,30 @@ public class AIResponseCacheManager {
                 return Optional.empty();
             }
 
-            // 搜索相似的缓存条目
-            String searchPattern = buildSemanticSearchPattern(previousQuestionId, nextQuestionId, hasStandardAnswer);
-            Set<String> candidateKeys = redisTemplate.keys(searchPattern);
-
-            if (candidateKeys == null || candidateKeys.isEmpty()) {
-                return Optional.empty();
-            }
-
-            // 限制搜索范围，避免过多计算
-            List<String> limitedKeys = candidateKeys.stream()
-                    .limit(maxSimilarAnswers)
-                    .collect(Collectors.toList());
+            // 在(prevQ, nextQ, hasStandardAnswer)分片内检索全部候选
+            String indexKey = buildSemanticIndexKey(previousQuestionId, nextQuestionId, hasStandardAnswer);
+            List<SemanticVectorIndex.Match> matches = semanticVectorIndex.search(
+                    indexKey, userAnswerEmbedding, similarityThreshold);
 
             double maxSimilarity = 0.0;
             String bestMatch = null;
-
-            for (String candidateKey : limitedKeys) {
-                try {
-                    // 获取候选答案的embedding
-                    String embeddingKey = candidateKey + ":embedding";
-                    String embeddingStr = redisTemplate.opsForValue().get(embeddingKey);
-
-                    if (embeddingStr != null) {
-                        double[] candidateEmbedding = objectMapper.readValue(embeddingStr, double[].class);
-                        double similarity = calculateCosineSimilarity(userAnswerEmbedding, candidateEmbedding);
-
-                        if (similarity > maxSimilarity && similarity >= similarityThreshold) {
-                            maxSimilarity = similarity;
-                            String cachedResponse = redisTemplate.opsForValue().get(candidateKey);
-                            if (cachedResponse != null) {
-                                bestMatch = cachedResponse;
-                            }
-                        }
-                    }
-                } catch (Exception e) {
-                    logger.warn("处理候选缓存键失败: {}", candidateKey, e);
+            List<String> expiredKeys = new ArrayList<>();
+
+            // 按相似度从高到低取回复，最优候选已过期时依次尝试下一个
+            for (SemanticVectorIndex.Match match : matches.subList(0, Math.min(matches.size(), maxSimilarAnswers))) {
+                String cachedResponse = getWithNearCache(match.getMemberKey());
+                if (cachedResponse != null) {
+                    maxSimilarity = match.getSimilarity();
+                    bestMatch = cachedResponse;
+                    break;
                 }
+                expiredKeys.add(match.getMemberKey());
+            }
+
+            // 顺带清理索引中已过期的条目
+            if (!expiredKeys.isEmpty()) {
+                semanticVectorIndex.remove(indexKey, expiredKeys);
+                redisTemplate.opsForZSet().remove(indexKey, expiredKeys.toArray());
             }
 
             if (bestMatch != null) {
@@ -291,8 +290,13 @@ public class AIResponseCacheManager {
 
             // 缓存embedding向量
             String embeddingKey = semanticKey + ":embedding";
-            String embeddingStr = objectMapper.writeValueAsString(embedding);
-            redisTemplate.opsForValue().set(embeddingKey, embeddingStr, feedbackTtl, TimeUnit.SECONDS);
+            embeddingStore.set(embeddingKey, embedding, feedbackTtl);
+
+            // 写入候选索引（Redis按写入时间排序，同时写入本地向量索引）
+            String indexKey = buildSemanticIndexKey(previousQuestionId, nextQuestionId, hasStandardAnswer);
+            long timestamp = System.currentTimeMillis();
+            addToIndex(indexKey, semanticKey, timestamp);
+            semanticVectorIndex.add(indexKey, semanticKey, embedding, timestamp);
 
             logger.debug("缓存语义搜索索引: key={}", semanticKey);
 
@@ -310,51 +314,7 @@ public class AIResponseCacheManager {
         }
 
         try {
-            // 检查embedding缓存
-            String embeddingCacheKey = "embedding:" + generateTextHash(text);
-            String cachedEmbedding = redisTemplate.opsForValue().get(embeddingCacheKey);
-
-            if (cachedEmbedding != null) {
-                return objectMapper.readValue(cachedEmbedding, double[].class);
-            }
-
-            // 调用OpenAI Embedding API
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.setBearerAuth(openAiApiKey);
-
-            Map<String, Object> requestBody = Map.of(
-                    "model", embeddingModel,
-                    "input", text,
-                    "encoding_format", "float"
-            );
-
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
-            ResponseEntity<Map> response = restTemplate.exchange(
-                    embeddingApiUrl, HttpMethod.POST, entity, Map.class);
-
-            if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-                Map<String, Object> responseBody = response.getBody();
-                List<Map<String, Object>> data = (List<Map<String, Object>>) responseBody.get("data");
-
-                if (data != null && !data.isEmpty()) {
-                    List<Double> embeddingList = (List<Double>) data.get(0).get("embedding");
-                    double[] embedding = embeddingList.stream().mapToDouble(Double::doubleValue).toArray();
-
-                    // 缓存embedding结果
-                    String embeddingStr = objectMapper.writeValueAsString(embedding);
-                    redisTemplate.opsForValue().set(embeddingCacheKey, embeddingStr, 86400, TimeUnit.SECONDS); // 缓存1天
-
-                    if (embeddingCallMade != null) embeddingCallMade.increment();
-                    logger.debug("获取文本embedding成功: textLength={}, embeddingLength={}", text.length(), embedding.length);
-
-                    return embedding;
-                }
-            }
-
-            logger.warn("获取embedding失败: response={}", response.getStatusCode());
-            return null;
-
+            return fetchTextEmbedding(text);
         } catch (Exception e) {
             logger.error("调用embedding API失败: text={}", text.substring(0, Math.min(50, text.length())), e);
             return null;
@@ -362,31 +322,41 @@ public class AIResponseCacheManager {
     }
 
     /**
-     * 计算余弦相似度
+     * 读取或计算文本embedding，调用失败或响应中没有embedding时抛出异常
      */
-    private double calculateCosineSimilarity(double[] vectorA, double[] vectorB) {
-        if (vectorA.length != vectorB.length) {
-            return 0.0;
-        }
+    private double[] fetchTextEmbedding(String text) throws Exception {
+        // 检查embedding缓存
+        String embeddingCacheKey = "embedding:" + generateTextHash(text);
+        double[] cachedEmbedding = embeddingStore.get(embeddingCacheKey);
 
-        double dotProduct = 0.0;
-        double normA = 0.0;
-        double normB = 0.0;
+        if (cachedEmbedding != null) {
+            return cachedEmbedding;
+        }
 
-        for (int i = 0; i < vectorA.length; i++) {
-            dotProduct += vectorA[i] * vectorB[i];
-            normA += vectorA[i] * vectorA[i];
-            normB += vectorB[i] * vectorB[i];
+        // 提交到合并器，与并发的其他请求合并为一次批量API调用
+        double[] embedding = embeddingBatcher.submit(text)
+                .get(embeddingWaitTimeoutMs, TimeUnit.MILLISECONDS);
+        if (embedding == null) {
+            throw new RuntimeException("获取embedding失败: 响应中没有embedding数据");
         }
 
-        normA = Math.sqrt(normA);
-        normB = Math.sqrt(normB);
+        // 缓存embedding结果
+        embeddingStore.set(embeddingCacheKey, embedding, embeddingTtl);
+        logger.debug("获取文本embedding成功: textLength={}, embeddingLength={}", text.length(), embedding.length);
+        return embedding;
+    }
 
-        if (normA == 0.0 || normB == 0.0) {
-            return 0.0;
+    /**
+     * 先读近端缓存，未命中时读Redis并回填
+     */
+    private String getWithNearCache(String key) {
+        String nearCached = nearCache.get(NearCache.AI_RESPONSE, key);
+        if (nearCached != null) {
+            return nearCached;
         }
-
-        return dotProduct / (normA * normB);
+        String cached = redisTemplate.opsForValue().get(key);
+        nearCache.put(NearCache.AI_RESPONSE, key, cached);
+        return cached;
     }
 
     /**
@@ -436,11 +406,60 @@ public class AIResponseCacheManager {
     }
 
     /**
-     * 构建语义搜索模式
+     * 构建语义候选索引key（ZSET，member为语义缓存key，score为写入时间）
      */
-    private String buildSemanticSearchPattern(Long previousQuestionId, Long nextQuestionId, boolean hasStandardAnswer) {
-        return aiCachePrefix + "feedback:semantic:" + previousQuestionId + ":" + nextQuestionId +
-                ":" + hasStandardAnswer + ":*";
+    private String buildSemanticIndexKey(Long previousQuestionId, Long nextQuestionId, boolean hasStandardAnswer) {
+        return aiCachePrefix + INDEX_SEGMENT + "feedback:" + previousQuestionId + ":" + nextQuestionId +
+                ":" + hasStandardAnswer;
+    }
+
+    /**
+     * 写入候选索引：剔除超过TTL的旧条目，超出上限时只保留最新的条目
+     */
+    private void addToIndex(String indexKey, String memberKey, long timestamp) {
+        redisTemplate.opsForZSet().add(indexKey, memberKey, timestamp);
+        redisTemplate.opsForZSet().removeRangeByScore(indexKey, 0, timestamp - feedbackTtl * 1000);
+        redisTemplate.opsForZSet().removeRange(indexKey, 0, -(maxIndexSize + 1));
+        redisTemplate.expire(indexKey, feedbackTtl, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 清理索引：剔除超过TTL的条目以及指向的缓存已不存在的条目
+     */
+    private long pruneIndex(String indexKey) {
+        long removed = Optional.ofNullable(redisTemplate.opsForZSet()
+                .removeRangeByScore(indexKey, 0, System.currentTimeMillis() - feedbackTtl * 1000)).orElse(0L);
+
+        Set<String> members = redisTemplate.opsForZSet().range(indexKey, 0, -1);
+        if (members == null || members.isEmpty()) {
+            return removed;
+        }
+
+        List<String> memberKeys = new ArrayList<>(members);
+        List<String> values = redisTemplate.opsForValue().multiGet(memberKeys);
+        List<String> missing = new ArrayList<>();
+        for (int i = 0; i < memberKeys.size(); i++) {
+            if (values == null || values.get(i) == null) {
+                missing.add(memberKeys.get(i));
+            }
+        }
+        if (!missing.isEmpty()) {
+            removed += Optional.ofNullable(redisTemplate.opsForZSet()
+                    .remove(indexKey, missing.toArray())).orElse(0L);
+        }
+        return removed;
+    }
+
+    /**
+     * 使用SCAN增量遍历key，避免KEYS阻塞整个Redis实例
+     */
+    private void scanKeys(String pattern, Consumer<String> action) {
+        ScanOptions options = ScanOptions.scanOptions().match(pattern).count(SCAN_BATCH_SIZE).build();
+        try (Cursor<String> cursor = redisTemplate.scan(options)) {
+            while (cursor.hasNext()) {
+                action.accept(cursor.next());
+            }
+        }
     }
 
     /**
@@ -451,23 +470,31 @@ public class AIResponseCacheManager {
             // 清理逻辑可以后续实现
             logger.info("开始清理AI响应缓存");
 
-            // 清理空的或损坏的缓存条目
-            Set<String> allKeys = redisTemplate.keys(aiCachePrefix + "*");
-            if (allKeys != null) {
-                for (String key : allKeys) {
-                    try {
-                        String value = redisTemplate.opsForValue().get(key);
-                        if (value == null || value.trim().isEmpty()) {
-                            redisTemplate.delete(key);
-                        }
-                    } catch (Exception e) {
+            // SCAN遍历，索引单独修剪，其余清理空的或损坏的缓存条目
+            String indexPrefix = aiCachePrefix + INDEX_SEGMENT;
+            long[] removed = {0, 0};
+            scanKeys(aiCachePrefix + "*", key -> {
+                if (key.startsWith(indexPrefix)) {
+                    removed[1] += pruneIndex(key);
+                    return;
+                }
+                try {
+                    String value = redisTemplate.opsForValue().get(key);
+                    if (value == null || value.trim().isEmpty()) {
+                        redisTemplate.delete(key);
+                        removed[0]++;
+                    }
+                } catch (Exception e) {
+                    // 前缀与队列Stream(ai:requests)重叠，只删除损坏的字符串条目
+                    if (redisTemplate.type(key) == DataType.STRING) {
                         logger.warn("清理缓存条目失败: key={}", key, e);
                         redisTemplate.delete(key); // 删除损坏的条目
+                        removed[0]++;
                     }
                 }
-            }
+            });
 
-            logger.info("AI响应缓存清理完成");
+            logger.info("AI响应缓存清理完成: removedKeys={}, prunedIndexEntries={}", removed[0], removed[1]);
         } catch (Exception e) {
             logger.error("清理AI响应缓存失败", e);
         }
@@ -480,29 +507,32 @@ public class AIResponseCacheManager {
         Map<String, Object> stats = new HashMap<>();
 
         try {
-            Set<String> allKeys = redisTemplate.keys(aiCachePrefix + "*");
-            long totalKeys = allKeys != null ? allKeys.size() : 0;
-
-            long firstQuestionKeys = 0;
-            long feedbackKeys = 0;
-            long embeddingKeys = 0;
-
-            if (allKeys != null) {
-                for (String key : allKeys) {
-                    if (key.contains("first:")) {
-                        firstQuestionKeys++;
-                    } else if (key.contains("feedback:")) {
-                        feedbackKeys++;
-                    } else if (key.contains("embedding:")) {
-                        embeddingKeys++;
-                    }
+            String indexPrefix = aiCachePrefix + INDEX_SEGMENT;
+            long[] counts = new long[5];
+
+            scanKeys(aiCachePrefix + "*", key -> {
+                counts[0]++;
+                if (key.startsWith(indexPrefix)) {
+                    counts[4]++;
+                } else if (key.contains("first:")) {
+                    counts[1]++;
+                } else if (key.contains("feedback:")) {
+                    counts[2]++;
+                } else if (key.contains("embedding:")) {
+                    counts[3]++;
                 }
-            }
+            });
+
+            long totalKeys = counts[0];
+            long firstQuestionKeys = counts[1];
+            long feedbackKeys = counts[2];
+            long embeddingKeys = counts[3];
 
             stats.put("totalKeys", totalKeys);
             stats.put("firstQuestionKeys", firstQuestionKeys);
             stats.put("feedbackKeys", feedbackKeys);
             stats.put("embeddingKeys", embeddingKeys);
+            stats.put("indexKeys", counts[4]);
             stats.put("cacheEnabled", cacheEnabled);
             stats.put("embeddingEnabled", embeddingEnabled);
             stats.put("similarityThreshold", similarityThreshold);
@@ -516,7 +546,7 @@ public class AIResponseCacheManager {
     }
 
     /**
-     * 异步计算并缓存embedding（供队列调用）
+     * 异步计算并缓存embedding（供队列调用），失败时抛出异常，由队列消费者重试
      */
     public void calculateAndCacheEmbedding(String text, String cacheKey) {
         if (!embeddingEnabled || text == null || text.trim().isEmpty()) {
@@ -524,21 +554,17 @@ public class AIResponseCacheManager {
         }
 
         try {
-            double[] embedding = getTextEmbedding(text);
-            if (embedding != null) {
-                String embeddingStr = objectMapper.writeValueAsString(embedding);
-                redisTemplate.opsForValue().set(cacheKey, embeddingStr, 86400, TimeUnit.SECONDS);
-                logger.debug("Embedding计算并缓存成功: cacheKey={}", cacheKey);
-            } else {
-                logger.warn("Embedding计算失败: cacheKey={}", cacheKey);
-            }
+            embeddingStore.set(cacheKey, fetchTextEmbedding(text), embeddingTtl);
+            logger.debug("Embedding计算并缓存成功: cacheKey={}", cacheKey);
+        } catch (RuntimeException e) {
+            throw e;
         } catch (Exception e) {
-            logger.error("计算并缓存embedding失败: cacheKey={}", cacheKey, e);
+            throw new RuntimeException("计算并缓存embedding失败: cacheKey=" + cacheKey, e);
         }
     }
 
     /**
-     * 批量计算embedding（供队列调用）
+     * 批量计算embedding（供队列调用），任一批次失败时抛出异常，由队列消费者重试（已缓存的结果会被覆盖写入）
      */
     public void batchCalculateEmbeddings(Map<String, String> textCacheMap) {
         if (!embeddingEnabled || textCacheMap == null || textCacheMap.isEmpty()) {
@@ -554,17 +580,22 @@ public class AIResponseCacheManager {
                 List<String> batch = texts.subList(i, endIndex);
 
                 // 批量调用OpenAI API
-                List<double[]> embeddings = batchGetTextEmbeddings(batch);
+                List<double[]> embeddings = embeddingBatcher.fetchEmbeddings(batch);
+                if (embeddings.size() < batch.size()) {
+                    throw new RuntimeException("批量embedding结果数量不足: expected=" + batch.size()
+                            + ", actual=" + embeddings.size());
+                }
 
                 // 缓存结果
-                for (int j = 0; j < batch.size() && j < embeddings.size(); j++) {
+                for (int j = 0; j < batch.size(); j++) {
                     String text = batch.get(j);
                     String cacheKey = textCacheMap.get(text);
                     double[] embedding = embeddings.get(j);
-
-                    if (embedding != null && cacheKey != null) {
-                        String embeddingStr = objectMapper.writeValueAsString(embedding);
-                        redisTemplate.opsForValue().set(cacheKey, embeddingStr, 86400, TimeUnit.SECONDS);
+                    if (embedding == null) {
+                        throw new RuntimeException("批量embedding结果缺失: index=" + (i + j));
+                    }
+                    if (cacheKey != null) {
+                        embeddingStore.set(cacheKey, embedding, embeddingTtl);
                     }
                 }
 
@@ -577,113 +608,9 @@ public class AIResponseCacheManager {
                 }
             }
 
-        } catch (Exception e) {
-            logger.error("批量计算embedding失败", e);
-        }
-    }
-
-    /**
-     * 检查答案相似度（供队列调用）
-     */
-    public boolean checkAnswerSimilarity(Long questionId, String userAnswer) {
-        if (!embeddingEnabled || userAnswer == null || userAnswer.trim().isEmpty()) {
-            return false;
-        }
-
-        try {
-            // 获取该题目的历史标准答案进行相似度比较
-            String searchPattern = aiCachePrefix + "answer:" + questionId + ":*";
-            Set<String> answerKeys = redisTemplate.keys(searchPattern);
-
-            if (answerKeys == null || answerKeys.isEmpty()) {
-                return false;
-            }
-
-            double[] userEmbedding = getTextEmbedding(userAnswer);
-            if (userEmbedding == null) {
-                return false;
-            }
-
-            double maxSimilarity = 0.0;
-            for (String answerKey : answerKeys) {
-                try {
-                    String embeddingKey = answerKey + ":embedding";
-                    String embeddingStr = redisTemplate.opsForValue().get(embeddingKey);
-
-                    if (embeddingStr != null) {
-                        double[] answerEmbedding = objectMapper.readValue(embeddingStr, double[].class);
-                        double similarity = calculateCosineSimilarity(userEmbedding, answerEmbedding);
-                        maxSimilarity = Math.max(maxSimilarity, similarity);
-                    }
-                } catch (Exception e) {
-                    logger.warn("检查答案相似度失败: answerKey={}", answerKey, e);
-                }
-            }
-
-            boolean similar = maxSimilarity >= similarityThreshold;
-            logger.debug("答案相似度检查: questionId={}, maxSimilarity={}, similar={}",
-                    questionId, maxSimilarity, similar);
-
-            return similar;
-
-        } catch (Exception e) {
-            logger.error("检查答案相似度失败: questionId={}", questionId, e);
-            return false;
-        }
-    }
-
-    /**
-     * 批量获取文本embedding - 供队列使用
-     */
-    private List<double[]> batchGetTextEmbeddings(List<String> texts) {
-        if (!embeddingEnabled || texts == null || texts.isEmpty()) {
-            return new ArrayList<>();
-        }
-
-        try {
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.setBearerAuth(openAiApiKey);
-
-            Map<String, Object> requestBody = Map.of(
-                    "model", embeddingModel,
-                    "input", texts,
-                    "encoding_format", "float"
-            );
-
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
-            ResponseEntity<Map> response = restTemplate.exchange(
-                    embeddingApiUrl, HttpMethod.POST, entity, Map.class);
-
-            if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-                Map<String, Object> responseBody = response.getBody();
-                List<Map<String, Object>> data = (List<Map<String, Object>>) responseBody.get("data");
-
-                List<double[]> embeddings = new ArrayList<>();
-                if (data != null) {
-                    for (Map<String, Object> item : data) {
-                        List<Double> embeddingList = (List<Double>) item.get("embedding");
-                        if (embeddingList != null) {
-                            double[] embedding = embeddingList.stream().mapToDouble(Double::doubleValue).toArray();
-                            embeddings.add(embedding);
-                        } else {
-                            embeddings.add(null);
-                        }
-                    }
-                }
-
-                if (embeddingCallMade != null) embeddingCallMade.increment();
-                logger.debug("批量获取embedding成功: textCount={}, embeddingCount={}", texts.size(), embeddings.size());
-
-                return embeddings;
-            }
-
-            logger.warn("批量获取embedding失败: response={}", response.getStatusCode());
-            return new ArrayList<>();
-
-        } catch (Exception e) {
-            logger.error("批量调用embedding API失败", e);
-            return new ArrayList<>();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("批量计算embedding被中断", e);
         }
     }
 
@@ -0,0 +1,241 @@
+package com.xinyu.InterviewCoach_v2.service.cache;
+
+import com.xinyu.InterviewCoach_v2.config.properties.AIQueueProperties;
+import com.xinyu.InterviewCoach_v2.dto.response.chat.ChatTurnResponseDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 异步对话轮次状态
+ * 每个轮次一个Hash(turn:{turnId})，记录所属会话、用户、状态和AI回复，供HTTP轮询和队列处理器幂等判断。
+ * 队列处理器调用LLM前通过claim原子地将PENDING改为PROCESSING，同一轮次的重复投递不会同时处理；
+ * PROCESSING带租约，租约短于AI队列的回收阈值，持有者崩溃后其消息被回收时租约已过期，可以重新领取。
+ * 每个会话同时只允许一个进行中的轮次(turn:session:{sessionId} -> turnId)，轮次完成或回滚后释放
+ */
+@Component
+public class ChatTurnStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatTurnStore.class);
+
+    public static final String FIELD_SESSION_ID = "sessionId";
+    public static final String FIELD_USER_ID = "userId";
+    public static final String FIELD_STATUS = "status";
+    public static final String FIELD_AI_MESSAGE_ID = "aiMessageId";
+    public static final String FIELD_REPLY = "reply";
+    public static final String FIELD_CURRENT_STATE = "currentState";
+    public static final String FIELD_ERROR = "error";
+    public static final String FIELD_CLAIM_TOKEN = "claimToken";
+    public static final String FIELD_CLAIMED_AT = "claimedAt";
+
+    /**
+     * 领取轮次：KEYS[1]=轮次key，ARGV[1]=领取令牌，ARGV[2]=当前时间(ms)，ARGV[3]=租约(ms)，ARGV[4]=会话ID，
+     * ARGV[5]=用户ID，ARGV[6]=TTL
+     * PENDING或租约已过期的PROCESSING可领取；key已过期时按payload重建后领取，是否已处理由调用方查数据库判断。
+     * 返回1表示领取成功
+     */
+    private static final RedisScript<Long> CLAIM_SCRIPT = new DefaultRedisScript<>(
+            "local status = redis.call('HGET', KEYS[1], 'status') " +
+            "if not status then " +
+            "  redis.call('HSET', KEYS[1], 'sessionId', ARGV[4], 'userId', ARGV[5]) " +
+            "elseif status == 'PROCESSING' then " +
+            "  local claimedAt = tonumber(redis.call('HGET', KEYS[1], 'claimedAt') or '0') " +
+            "  if tonumber(ARGV[2]) - claimedAt < tonumber(ARGV[3]) then return 0 end " +
+            "elseif status ~= 'PENDING' then " +
+            "  return 0 " +
+            "end " +
+            "redis.call('HSET', KEYS[1], 'status', 'PROCESSING', 'claimToken', ARGV[1], 'claimedAt', ARGV[2]) " +
+            "redis.call('EXPIRE', KEYS[1], ARGV[6]) " +
+            "return 1", Long.class);
+
+    /**
+     * 处理失败后归还领取：KEYS[1]=轮次key，ARGV[1]=领取令牌；仍由该令牌持有时改回PENDING，等待重试
+     */
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('HGET', KEYS[1], 'status') ~= 'PROCESSING' " +
+            "  or redis.call('HGET', KEYS[1], 'claimToken') ~= ARGV[1] then return 0 end " +
+            "redis.call('HSET', KEYS[1], 'status', 'PENDING') " +
+            "redis.call('HDEL', KEYS[1], 'claimToken', 'claimedAt') " +
+            "return 1", Long.class);
+
+    /**
+     * 最终失败：KEYS[1]=轮次key，ARGV[1]=错误信息，ARGV[2]=当前时间(ms)，ARGV[3]=租约(ms)，ARGV[4]=会话ID，
+     * ARGV[5]=用户ID，ARGV[6]=TTL
+     * 已完成、已失败或正被其他节点处理(租约未过期)时不修改，返回0；返回1时由调用方执行回滚，保证只回滚一次
+     */
+    private static final RedisScript<Long> FAIL_SCRIPT = new DefaultRedisScript<>(
+            "local status = redis.call('HGET', KEYS[1], 'status') " +
+            "if status == 'COMPLETED' or status == 'FAILED' then return 0 end " +
+            "if status == 'PROCESSING' then " +
+            "  local claimedAt = tonumber(redis.call('HGET', KEYS[1], 'claimedAt') or '0') " +
+            "  if tonumber(ARGV[2]) - claimedAt < tonumber(ARGV[3]) then return 0 end " +
+            "end " +
+            "redis.call('HSET', KEYS[1], 'status', 'FAILED', 'error', ARGV[1], 'sessionId', ARGV[4], 'userId', ARGV[5]) " +
+            "redis.call('HDEL', KEYS[1], 'claimToken', 'claimedAt') " +
+            "redis.call('EXPIRE', KEYS[1], ARGV[6]) " +
+            "return 1", Long.class);
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    /**
+     * 释放会话锁：KEYS[1]=会话锁key，ARGV[1]=持有者的轮次ID，只删除自己持有的锁
+     */
+    private static final RedisScript<Long> UNLOCK_SESSION_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end " +
+            "return 0", Long.class);
+
+    @Value("${cache.turn.ttl:3600}")
+    private long turnTtl;
+
+    @Value("${cache.turn.prefix:turn:}")
+    private String turnPrefix;
+
+    @Value("${cache.turn.processing-lease-ms:300000}")  // 大于单条消息最长处理时间，且小于AI队列的claim-min-idle-ms
+    private long processingLeaseMs;
+
+    @Autowired
+    private AIQueueProperties queueProperties;
+
+    /**
+     * 租约不短于回收阈值时，崩溃节点的消息被回收后仍领取不到，轮次会一直停留在PROCESSING
+     */
+    @PostConstruct
+    private void checkProcessingLease() {
+        long claimMinIdleMs = queueProperties.getConsumer().getClaimMinIdleMs();
+        if (processingLeaseMs >= claimMinIdleMs) {
+            logger.warn("对话轮次租约processing-lease-ms({})不小于AI队列回收阈值claim-min-idle-ms({})，回收的消息可能无法领取轮次",
+                    processingLeaseMs, claimMinIdleMs);
+        }
+    }
+
+    /**
+     * 登记新的轮次，状态为PENDING
+     */
+    public void create(String turnId, Long sessionId, Long userId) {
+        Map<String, String> fields = new HashMap<>();
+        fields.put(FIELD_SESSION_ID, sessionId.toString());
+        fields.put(FIELD_USER_ID, userId.toString());
+        fields.put(FIELD_STATUS, ChatTurnResponseDTO.STATUS_PENDING);
+        write(turnId, fields);
+    }
+
+    /**
+     * 队列处理器调用LLM前领取轮次，返回false表示已完成、已失败或正被其他节点处理（租约未过期）
+     */
+    public boolean claim(String turnId, Long sessionId, Long userId, String claimToken) {
+        Long result = redisTemplate.execute(CLAIM_SCRIPT, List.of(buildKey(turnId)),
+                claimToken, String.valueOf(System.currentTimeMillis()), String.valueOf(processingLeaseMs),
+                sessionId.toString(), userId.toString(), String.valueOf(turnTtl));
+        return result != null && result == 1L;
+    }
+
+    /**
+     * 处理失败、等待重试时归还领取
+     */
+    public void release(String turnId, String claimToken) {
+        redisTemplate.execute(RELEASE_SCRIPT, List.of(buildKey(turnId)), claimToken);
+    }
+
+    /**
+     * 重试耗尽后将轮次标记为失败，返回true时调用方负责回滚；已完成或正被处理的轮次返回false
+     */
+    public boolean failIfUnfinished(String turnId, Long sessionId, Long userId, String error) {
+        Long result = redisTemplate.execute(FAIL_SCRIPT, List.of(buildKey(turnId)),
+                error != null ? error : "", String.valueOf(System.currentTimeMillis()),
+                String.valueOf(processingLeaseMs), sessionId.toString(), userId.toString(), String.valueOf(turnTtl));
+        return result != null && result == 1L;
+    }
+
+    /**
+     * AI回复已保存
+     */
+    public void complete(String turnId, Long aiMessageId, String reply, String currentState) {
+        Map<String, String> fields = new HashMap<>();
+        fields.put(FIELD_STATUS, ChatTurnResponseDTO.STATUS_COMPLETED);
+        fields.put(FIELD_AI_MESSAGE_ID, aiMessageId.toString());
+        fields.put(FIELD_REPLY, reply);
+        fields.put(FIELD_CURRENT_STATE, currentState);
+        write(turnId, fields);
+    }
+
+    /**
+     * 轮次最终失败（已回滚），用户需重新发送
+     */
+    public void fail(String turnId, String error) {
+        Map<String, String> fields = new HashMap<>();
+        fields.put(FIELD_STATUS, ChatTurnResponseDTO.STATUS_FAILED);
+        fields.put(FIELD_ERROR, error != null ? error : "");
+        write(turnId, fields);
+    }
+
+    /**
+     * 读取轮次的全部字段，不存在或已过期时返回空
+     */
+    public Optional<Map<String, String>> get(String turnId) {
+        Map<Object, Object> entries = redisTemplate.opsForHash().entries(buildKey(turnId));
+        if (entries == null || entries.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Map<String, String> fields = new HashMap<>();
+        entries.forEach((field, value) -> fields.put(field.toString(), value.toString()));
+        return Optional.of(fields);
+    }
+
+    /**
+     * 轮次当前状态，不存在时返回null
+     */
+    public String getStatus(String turnId) {
+        Object status = redisTemplate.opsForHash().get(buildKey(turnId), FIELD_STATUS);
+        return status != null ? status.toString() : null;
+    }
+
+    /**
+     * 会话没有进行中的轮次时登记turnId，返回false表示上一轮尚未完成
+     */
+    public boolean tryLockSession(Long sessionId, String turnId) {
+        Boolean locked = redisTemplate.opsForValue().setIfAbsent(buildSessionLockKey(sessionId), turnId,
+                turnTtl, TimeUnit.SECONDS);
+        return Boolean.TRUE.equals(locked);
+    }
+
+    /**
+     * 轮次完成或回滚后释放会话锁
+     */
+    public void unlockSession(Long sessionId, String turnId) {
+        try {
+            redisTemplate.execute(UNLOCK_SESSION_SCRIPT, List.of(buildSessionLockKey(sessionId)), turnId);
+        } catch (Exception e) {
+            // 释放失败时锁在TTL后过期
+            logger.warn("释放会话轮次锁失败: sessionId={}, turnId={}", sessionId, turnId, e);
+        }
+    }
+
+    private void write(String turnId, Map<String, String> fields) {
+        String key = buildKey(turnId);
+        redisTemplate.opsForHash().putAll(key, fields);
+        redisTemplate.expire(key, turnTtl, TimeUnit.SECONDS);
+        logger.debug("更新对话轮次状态: turnId={}, status={}", turnId, fields.get(FIELD_STATUS));
+    }
+
+    private String buildKey(String turnId) {
+        return turnPrefix + turnId;
+    }
+
+    private String buildSessionLockKey(Long sessionId) {
+        return turnPrefix + "session:" + sessionId;
+    }
+}
@@ -0,0 +1,102 @@
+package com.xinyu.InterviewCoach_v2.service.cache;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Embedding二进制编解码
+ * 格式：1字节格式标记 + 4字节维度(小端) + 数据
+ * FLOAT32：每维4字节小端float
+ * INT8：4字节小端float缩放系数 + 每维1字节有符号整数，value = q * scale
+ */
+public final class EmbeddingCodec {
+
+    public static final byte FORMAT_FLOAT32 = 0x01;
+    public static final byte FORMAT_INT8 = 0x02;
+
+    private static final int HEADER_SIZE = 5;
+
+    /**
+     * 编码格式
+     */
+    public enum Encoding {
+        FLOAT32, INT8
+    }
+
+    private EmbeddingCodec() {
+    }
+
+    public static byte[] encode(double[] vector, Encoding encoding) {
+        return encoding == Encoding.INT8 ? encodeInt8(vector) : encodeFloat32(vector);
+    }
+
+    /**
+     * 解码二进制embedding，无法识别的格式返回null
+     */
+    public static double[] decode(byte[] data) {
+        if (data == null || data.length < HEADER_SIZE) {
+            return null;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        byte format = buffer.get();
+        int dimension = buffer.getInt();
+
+        if (format == FORMAT_FLOAT32 && data.length == HEADER_SIZE + dimension * 4) {
+            double[] vector = new double[dimension];
+            for (int i = 0; i < dimension; i++) {
+                vector[i] = buffer.getFloat();
+            }
+            return vector;
+        }
+
+        if (format == FORMAT_INT8 && data.length == HEADER_SIZE + 4 + dimension) {
+            float scale = buffer.getFloat();
+            double[] vector = new double[dimension];
+            for (int i = 0; i < dimension; i++) {
+                vector[i] = buffer.get() * scale;
+            }
+            return vector;
+        }
+
+        return null;
+    }
+
+    /**
+     * 是否为旧版JSON数组格式
+     */
+    public static boolean isLegacyJson(byte[] data) {
+        return data != null && data.length > 0 && data[0] == '[';
+    }
+
+    private static byte[] encodeFloat32(double[] vector) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + vector.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(FORMAT_FLOAT32);
+        buffer.putInt(vector.length);
+        for (double value : vector) {
+            buffer.putFloat((float) value);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * 对称标量量化：scale = max|v| / 127
+     */
+    private static byte[] encodeInt8(double[] vector) {
+        double maxAbs = 0.0;
+        for (double value : vector) {
+            maxAbs = Math.max(maxAbs, Math.abs(value));
+        }
+        float scale = maxAbs == 0.0 ? 1.0f : (float) (maxAbs / 127.0);
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + 4 + vector.length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(FORMAT_INT8);
+        buffer.putInt(vector.length);
+        buffer.putFloat(scale);
+        for (double value : vector) {
+            long quantized = Math.round(value / scale);
+            buffer.put((byte) Math.max(-127, Math.min(127, quantized)));
+        }
+        return buffer.array();
+    }
+}
@@ -0,0 +1,114 @@
+package com.xinyu.InterviewCoach_v2.service.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Embedding存储 - embedding:*和*:embedding键统一使用二进制编码
+ * 读取到旧版JSON数组时透明解析，并按剩余TTL原地改写为二进制格式
+ */
+@Component
+public class EmbeddingStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddingStore.class);
+
+    @Autowired
+    @Qualifier("binaryRedisTemplate")
+    private RedisTemplate<String, byte[]> binaryRedisTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${cache.ai.embedding.encoding:float32}")  // float32 或 int8
+    private String encodingName;
+
+    private EmbeddingCodec.Encoding encoding;
+
+    @PostConstruct
+    private void init() {
+        encoding = EmbeddingCodec.Encoding.valueOf(encodingName.trim().toUpperCase());
+        logger.info("Embedding存储编码: {}", encoding);
+    }
+
+    /**
+     * 读取embedding，不存在或无法解析时返回null
+     */
+    public double[] get(String key) {
+        return decode(key, binaryRedisTemplate.opsForValue().get(key));
+    }
+
+    /**
+     * 批量读取embedding，结果与keys一一对应
+     */
+    public List<double[]> multiGet(List<String> keys) {
+        List<double[]> vectors = new ArrayList<>(keys.size());
+        List<byte[]> values = binaryRedisTemplate.opsForValue().multiGet(keys);
+        for (int i = 0; i < keys.size(); i++) {
+            vectors.add(decode(keys.get(i), values != null ? values.get(i) : null));
+        }
+        return vectors;
+    }
+
+    /**
+     * 写入embedding
+     */
+    public void set(String key, double[] vector, long ttlSeconds) {
+        binaryRedisTemplate.opsForValue().set(key, EmbeddingCodec.encode(vector, encoding), ttlSeconds, TimeUnit.SECONDS);
+    }
+
+    private double[] decode(String key, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+
+        if (!EmbeddingCodec.isLegacyJson(data)) {
+            double[] vector = EmbeddingCodec.decode(data);
+            if (vector == null) {
+                logger.warn("无法解析的embedding数据: key={}, length={}", key, data.length);
+            }
+            return vector;
+        }
+
+        try {
+            double[] vector = objectMapper.readValue(data, double[].class);
+            migrate(key, vector);
+            return vector;
+        } catch (Exception e) {
+            logger.warn("解析旧版JSON embedding失败: key={}", key, e);
+            return null;
+        }
+    }
+
+    /**
+     * 旧版JSON条目改写为二进制，保留剩余TTL
+     */
+    private void migrate(String key, double[] vector) {
+        try {
+            Long ttl = binaryRedisTemplate.getExpire(key, TimeUnit.SECONDS);
+            if (ttl == null || ttl == -2) {
+                return;
+            }
+
+            byte[] encoded = EmbeddingCodec.encode(vector, encoding);
+            if (ttl > 0) {
+                binaryRedisTemplate.opsForValue().set(key, encoded, ttl, TimeUnit.SECONDS);
+            } else {
+                binaryRedisTemplate.opsForValue().set(key, encoded);
+            }
+            logger.debug("迁移JSON embedding为二进制: key={}, dimension={}", key, vector.length);
+        } catch (Exception e) {
+            logger.warn("迁移JSON embedding失败: key={}", key, e);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.xinyu.InterviewCoach_v2.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * 进程内近端缓存(L1)，位于Redis(L2)之前
+ * 按名称划分多个Caffeine缓存，容量和TTL淘汰；本节点写入或删除时通过Redis pub/sub通知其他节点失效对应条目。
+ * 自行管理本地状态的组件（题库缓存、题目ID数组）也通过同一频道广播失效，用addListener接收其他节点的消息
+ */
+@Component
+public class NearCache implements MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(NearCache.class);
+
+    public static final String SESSION = "session";
+    public static final String SESSION_QUEUE = "sessionQueue";
+    public static final String SESSION_TTL_REFRESH = "sessionTtlRefresh";  // 仅本节点，用于节流TTL刷新
+    public static final String AI_RESPONSE = "aiResponse";
+    public static final String TAG_QUESTIONS = "tagQuestions";
+    public static final String QUESTION_IDS = "questionIds";
+    public static final String CATALOG_QUESTION = "catalogQuestion";
+    public static final String CATALOG_ANSWERS = "catalogAnswers";
+
+    private static final String SEPARATOR = "|";
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${cache.near.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cache.near.max-size:10000}")
+    private long maxSize;
+
+    @Value("${cache.near.ttl:60}")  // 秒，兜底丢失失效消息时的最大陈旧时间
+    private long ttlSeconds;
+
+    @Value("${cache.near.channel:cache:invalidate}")
+    private String channel;
+
+    // 节点标识，忽略自己发出的失效消息
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final Map<String, Cache<String, Object>> caches = new ConcurrentHashMap<>();
+
+    // 按名称注册的失效监听器，不受cache.near.enabled影响
+    private final Map<String, List<Consumer<String>>> listeners = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    private void init() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(channel));
+        if (enabled) {
+            logger.info("近端缓存已启用: maxSize={}, ttl={}s, channel={}", maxSize, ttlSeconds, channel);
+        }
+    }
+
+    /**
+     * 读取L1条目，不存在时返回null
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String cacheName, String key) {
+        if (!enabled) {
+            return null;
+        }
+        return (T) cache(cacheName).getIfPresent(key);
+    }
+
+    /**
+     * 写入L1条目（仅本节点）
+     */
+    public void put(String cacheName, String key, Object value) {
+        if (enabled && value != null) {
+            cache(cacheName).put(key, value);
+        }
+    }
+
+    /**
+     * 写入L1条目，并通知其他节点失效
+     */
+    public void putAndBroadcast(String cacheName, String key, Object value) {
+        put(cacheName, key, value);
+        broadcast(cacheName, key);
+    }
+
+    /**
+     * 失效本节点和其他节点的L1条目
+     */
+    public void invalidate(String cacheName, String key) {
+        if (!enabled) {
+            return;
+        }
+        cache(cacheName).invalidate(key);
+        broadcast(cacheName, key);
+    }
+
+    /**
+     * 注册其他节点对name的失效消息的监听器，参数为失效的key
+     */
+    public void addListener(String name, Consumer<String> listener) {
+        listeners.computeIfAbsent(name, n -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    /**
+     * 通知其他节点失效name下的key，不经过L1，不受cache.near.enabled影响
+     */
+    public void publish(String name, String key) {
+        try {
+            redisTemplate.convertAndSend(channel, nodeId + SEPARATOR + name + SEPARATOR + key);
+        } catch (Exception e) {
+            logger.warn("发布失效消息失败: name={}, key={}", name, key, e);
+        }
+    }
+
+    /**
+     * 处理其他节点的失效消息
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String payload = new String(message.getBody(), StandardCharsets.UTF_8);
+        String[] parts = payload.split("\\" + SEPARATOR, 3);
+        if (parts.length != 3 || nodeId.equals(parts[0])) {
+            return;
+        }
+
+        Cache<String, Object> cache = caches.get(parts[1]);
+        if (cache != null) {
+            cache.invalidate(parts[2]);
+            logger.debug("收到近端缓存失效消息: cache={}, key={}", parts[1], parts[2]);
+        }
+        for (Consumer<String> listener : listeners.getOrDefault(parts[1], List.of())) {
+            try {
+                listener.accept(parts[2]);
+            } catch (Exception e) {
+                logger.warn("处理失效消息失败: name={}, key={}", parts[1], parts[2], e);
+            }
+        }
+    }
+
+    private void broadcast(String cacheName, String key) {
+        if (enabled) {
+            publish(cacheName, key);
+        }
+    }
+
+    private Cache<String, Object> cache(String cacheName) {
+        return caches.computeIfAbsent(cacheName, name -> {
+            Cache<String, Object> cache = Caffeine.newBuilder()
+                    .maximumSize(maxSize)
+                    .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                    .recordStats()
+                    .build();
+            if (meterRegistry != null) {
+                CaffeineCacheMetrics.monitor(meterRegistry, cache, "near." + name);
+            }
+            return cache;
+        });
+    }
+}
@@ -0,0 +1,185 @@
+package com.xinyu.InterviewCoach_v2.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.xinyu.InterviewCoach_v2.entity.Answer;
+import com.xinyu.InterviewCoach_v2.entity.Question;
+import com.xinyu.InterviewCoach_v2.mapper.AnswerMapper;
+import com.xinyu.InterviewCoach_v2.mapper.QuestionMapper;
+import com.xinyu.InterviewCoach_v2.util.TransactionUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 题目和参考答案的版本化读穿缓存
+ * 题库较小且面试期间基本不变，读取时按题目ID整体缓存在本节点内存中；批量读取只对未命中的ID发一次批量查询。
+ * 题目或答案修改后，事务提交时失效本节点条目，并通过近端缓存的pub/sub频道通知其他节点失效；
+ * 条目另有写入后TTL，兜底丢失的失效消息
+ */
+@Component
+public class QuestionCatalogCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(QuestionCatalogCache.class);
+
+    @Autowired
+    private QuestionMapper questionMapper;
+
+    @Autowired
+    private AnswerMapper answerMapper;
+
+    @Autowired
+    private NearCache nearCache;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${cache.catalog.max-size:100000}")
+    private long maxSize;
+
+    @Value("${cache.catalog.ttl:600}")  // 秒，兜底丢失失效消息时的最大陈旧时间
+    private long ttlSeconds;
+
+    private Cache<Long, Question> questions;
+    private Cache<Long, List<Answer>> answers;
+
+    // 每次失效递增；加载期间发生失效时不回填，避免缓存旧数据
+    private final AtomicLong generation = new AtomicLong();
+
+    @PostConstruct
+    private void init() {
+        questions = Caffeine.newBuilder().maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds)).recordStats().build();
+        answers = Caffeine.newBuilder().maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds)).recordStats().build();
+        if (meterRegistry != null) {
+            CaffeineCacheMetrics.monitor(meterRegistry, questions, "catalog.questions");
+            CaffeineCacheMetrics.monitor(meterRegistry, answers, "catalog.answers");
+        }
+        nearCache.addListener(NearCache.CATALOG_QUESTION, key -> evictQuestion(Long.valueOf(key)));
+        nearCache.addListener(NearCache.CATALOG_ANSWERS, key -> evictAnswers(Long.valueOf(key)));
+    }
+
+    /**
+     * 获取单个题目
+     */
+    public Optional<Question> getQuestion(Long questionId) {
+        return Optional.ofNullable(getQuestions(List.of(questionId)).get(questionId));
+    }
+
+    /**
+     * 批量获取题目，不存在的ID不在结果中
+     */
+    public Map<Long, Question> getQuestions(Collection<Long> questionIds) {
+        long version = generation.get();
+
+        Map<Long, Question> result = new HashMap<>();
+        List<Long> missingIds = new ArrayList<>();
+        for (Long questionId : new LinkedHashSet<>(questionIds)) {
+            Question cached = questions.getIfPresent(questionId);
+            if (cached != null) {
+                result.put(questionId, cached);
+            } else {
+                missingIds.add(questionId);
+            }
+        }
+
+        if (!missingIds.isEmpty()) {
+            List<Question> loaded = questionMapper.findByIds(missingIds);
+            for (Question question : loaded) {
+                result.put(question.getId(), question);
+            }
+            // 加载期间发生失效时不回填，避免缓存旧数据
+            if (generation.get() == version) {
+                loaded.forEach(question -> questions.put(question.getId(), question));
+            }
+            logger.debug("批量加载题目: requested={}, loaded={}", missingIds.size(), loaded.size());
+        }
+        return result;
+    }
+
+    /**
+     * 获取单个题目的参考答案，无答案时返回空列表
+     */
+    public List<Answer> getAnswers(Long questionId) {
+        return getAnswers(List.of(questionId)).getOrDefault(questionId, List.of());
+    }
+
+    /**
+     * 批量获取参考答案，结果包含每个请求的题目ID（无答案时为空列表）
+     */
+    public Map<Long, List<Answer>> getAnswers(Collection<Long> questionIds) {
+        long version = generation.get();
+
+        Map<Long, List<Answer>> result = new HashMap<>();
+        List<Long> missingIds = new ArrayList<>();
+        for (Long questionId : new LinkedHashSet<>(questionIds)) {
+            List<Answer> cached = answers.getIfPresent(questionId);
+            if (cached != null) {
+                result.put(questionId, cached);
+            } else {
+                missingIds.add(questionId);
+            }
+        }
+
+        if (!missingIds.isEmpty()) {
+            Map<Long, List<Answer>> loaded = new HashMap<>();
+            for (Answer answer : answerMapper.findByQuestionIds(missingIds)) {
+                loaded.computeIfAbsent(answer.getQuestionId(), id -> new ArrayList<>()).add(answer);
+            }
+            boolean cacheable = generation.get() == version;
+            // 无答案的题目也缓存空列表，避免重复查询
+            for (Long questionId : missingIds) {
+                List<Answer> questionAnswers = List.copyOf(loaded.getOrDefault(questionId, List.of()));
+                result.put(questionId, questionAnswers);
+                if (cacheable) {
+                    answers.put(questionId, questionAnswers);
+                }
+            }
+            logger.debug("批量加载参考答案: questions={}", missingIds.size());
+        }
+        return result;
+    }
+
+    /**
+     * 题目修改或删除后调用 - 本节点立即失效，事务提交后再失效一次并通知其他节点
+     */
+    public void invalidateQuestion(Long questionId) {
+        evictQuestion(questionId);
+        TransactionUtils.runAfterCommit(() -> {
+            evictQuestion(questionId);
+            nearCache.publish(NearCache.CATALOG_QUESTION, String.valueOf(questionId));
+        });
+    }
+
+    /**
+     * 题目的参考答案新增、修改或删除后调用
+     */
+    public void invalidateAnswers(Long questionId) {
+        evictAnswers(questionId);
+        TransactionUtils.runAfterCommit(() -> {
+            evictAnswers(questionId);
+            nearCache.publish(NearCache.CATALOG_ANSWERS, String.valueOf(questionId));
+        });
+    }
+
+    private void evictQuestion(Long questionId) {
+        generation.incrementAndGet();
+        questions.invalidate(questionId);
+        answers.invalidate(questionId);
+    }
+
+    private void evictAnswers(Long questionId) {
+        generation.incrementAndGet();
+        answers.invalidate(questionId);
+    }
+}
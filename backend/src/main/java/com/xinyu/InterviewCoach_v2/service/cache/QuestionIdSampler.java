@@ -0,0 +1,125 @@
+package com.xinyu.InterviewCoach_v2.service.cache;
+
+import com.xinyu.InterviewCoach_v2.entity.Question;
+import com.xinyu.InterviewCoach_v2.mapper.QuestionMapper;
+import com.xinyu.InterviewCoach_v2.util.TransactionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 随机题目抽样器
+ * 全部题目ID以紧凑的long[]保存在本节点内存中，抽样时随机选取下标，只按主键读取选中的题目，
+ * 耗时只与抽取数量有关，与题库大小无关。ID数组不随时间过期，只在新增或删除题目的事务提交后失效
+ * （本节点直接失效，其他节点通过近端缓存的pub/sub频道），下次抽样时重新加载
+ */
+@Component
+public class QuestionIdSampler {
+
+    private static final Logger logger = LoggerFactory.getLogger(QuestionIdSampler.class);
+
+    private static final String ALL_IDS_KEY = "all";
+
+    @Autowired
+    private QuestionMapper questionMapper;
+
+    @Autowired
+    private QuestionCatalogCache questionCatalogCache;
+
+    @Autowired
+    private NearCache nearCache;
+
+    // 避免并发未命中时重复加载
+    private final ReentrantLock loadLock = new ReentrantLock();
+
+    private volatile long[] questionIds;
+
+    // 每次失效递增；加载期间发生失效时不保存加载结果，避免保存失效前读到的旧ID
+    private final AtomicLong generation = new AtomicLong();
+
+    @PostConstruct
+    private void init() {
+        nearCache.addListener(NearCache.QUESTION_IDS, key -> evict());
+    }
+
+    /**
+     * 随机抽取最多limit个不重复的题目，顺序随机
+     */
+    public List<Question> sample(int limit) {
+        long[] ids = questionIds();
+        int count = Math.min(limit, ids.length);
+        if (count <= 0) {
+            return new ArrayList<>();
+        }
+
+        // Floyd算法选取count个不重复下标
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Set<Integer> indexes = new HashSet<>();
+        for (int j = ids.length - count; j < ids.length; j++) {
+            int index = random.nextInt(j + 1);
+            indexes.add(indexes.contains(index) ? j : index);
+        }
+
+        List<Long> selectedIds = new ArrayList<>(count);
+        for (int index : indexes) {
+            selectedIds.add(ids[index]);
+        }
+        Collections.shuffle(selectedIds);
+
+        // ID数组刷新前被删除的题目不在结果中
+        Map<Long, Question> questions = questionCatalogCache.getQuestions(selectedIds);
+        List<Question> result = new ArrayList<>(questions.size());
+        for (Long id : selectedIds) {
+            Question question = questions.get(id);
+            if (question != null) {
+                result.add(question);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 新增或删除题目后调用，事务提交后失效各节点的ID数组
+     */
+    public void invalidate() {
+        TransactionUtils.runAfterCommit(() -> {
+            evict();
+            nearCache.publish(NearCache.QUESTION_IDS, ALL_IDS_KEY);
+        });
+    }
+
+    private void evict() {
+        generation.incrementAndGet();
+        questionIds = null;
+    }
+
+    private long[] questionIds() {
+        long[] ids = questionIds;
+        if (ids != null) {
+            return ids;
+        }
+
+        loadLock.lock();
+        try {
+            ids = questionIds;
+            if (ids == null) {
+                long loadGeneration = generation.get();
+                ids = questionMapper.findAllIds().stream().mapToLong(Long::longValue).toArray();
+                if (generation.get() == loadGeneration) {
+                    questionIds = ids;
+                }
+                logger.debug("加载题目ID数组: size={}", ids.length);
+            }
+            return ids;
+        } finally {
+            loadLock.unlock();
+        }
+    }
+}
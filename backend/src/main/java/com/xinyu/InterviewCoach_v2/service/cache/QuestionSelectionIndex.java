@@ -0,0 +1,394 @@
+package com.xinyu.InterviewCoach_v2.service.cache;
+
+import com.xinyu.InterviewCoach_v2.entity.UserAttempt;
+import com.xinyu.InterviewCoach_v2.mapper.QuestionTagMapper;
+import com.xinyu.InterviewCoach_v2.mapper.UserAttemptMapper;
+import com.xinyu.InterviewCoach_v2.util.TransactionUtils;
+import org.roaringbitmap.RoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 选题位图索引
+ * 每个标签的题目ID集合以RoaringBitmap缓存在近端缓存中；每个用户尝试过的题目以Redis原生位图(SETBIT)保存，
+ * 各题尝试次数以Redis Hash保存，记录尝试时原地更新。选未做过的题目 = 标签位图并集 - 用户位图，再在结果中均匀抽样；
+ * 未做过的题目不够时，按尝试次数的倒数加权抽样，不再扫描或排序题目表
+ */
+@Component
+public class QuestionSelectionIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(QuestionSelectionIndex.class);
+
+    private static final String ATTEMPTED_KEY_PREFIX = "attempt:bitmap:";
+    private static final String ATTEMPT_COUNT_KEY_PREFIX = "attempt:count:";
+    private static final String ATTEMPT_VERSION_KEY_PREFIX = "attempt:version:";
+
+    // 标记尝试次数Hash已从数据库加载，没有尝试记录的用户也能命中缓存
+    private static final String LOADED_FIELD = "_loaded";
+
+    /**
+     * 记录尝试：KEYS[1]=位图key，KEYS[2]=尝试次数key，KEYS[3]=版本key，ARGV[1]=题目ID，ARGV[2]=TTL
+     * 位图和尝试次数Hash已加载时才更新，未加载时由下次读取从数据库完整重建；
+     * 总是递增版本号，与此并发的重建发现版本变化后不写入缓存
+     */
+    private static final RedisScript<Long> RECORD_ATTEMPT_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('INCR', KEYS[3]) " +
+            "redis.call('EXPIRE', KEYS[3], ARGV[2]) " +
+            "local updated = 0 " +
+            "if redis.call('EXISTS', KEYS[1]) == 1 then " +
+            "  redis.call('SETBIT', KEYS[1], ARGV[1], 1) " +
+            "  redis.call('EXPIRE', KEYS[1], ARGV[2]) " +
+            "  updated = updated + 1 " +
+            "end " +
+            "if redis.call('EXISTS', KEYS[2]) == 1 then " +
+            "  redis.call('HINCRBY', KEYS[2], ARGV[1], 1) " +
+            "  redis.call('EXPIRE', KEYS[2], ARGV[2]) " +
+            "  updated = updated + 1 " +
+            "end " +
+            "return updated", Long.class);
+
+    /**
+     * 写入重建的位图：KEYS[1]=位图key，KEYS[2]=版本key，ARGV[1]=读数据库前的版本号(不存在时为空串)，
+     * ARGV[2]=位图，ARGV[3]=TTL。版本号已变化说明重建期间有新的尝试，返回0不写入
+     */
+    private static final RedisScript<Long> REBUILD_BITMAP_SCRIPT = new DefaultRedisScript<>(
+            "if (redis.call('GET', KEYS[2]) or '') ~= ARGV[1] then return 0 end " +
+            "redis.call('SET', KEYS[1], ARGV[2], 'EX', ARGV[3], 'NX') " +
+            "return 1", Long.class);
+
+    /**
+     * 写入重建的尝试次数：KEYS[1]=尝试次数key，KEYS[2]=版本key，ARGV[1]=读数据库前的版本号(不存在时为空串)，
+     * ARGV[2]=TTL，ARGV[3..]=题目ID与次数交替。版本号已变化或key已存在时返回0不写入
+     */
+    private static final RedisScript<Long> REBUILD_COUNTS_SCRIPT = new DefaultRedisScript<>(
+            "if (redis.call('GET', KEYS[2]) or '') ~= ARGV[1] then return 0 end " +
+            "if redis.call('EXISTS', KEYS[1]) == 1 then return 0 end " +
+            "for i = 3, #ARGV, 2 do " +
+            "  redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1]) " +
+            "end " +
+            "redis.call('EXPIRE', KEYS[1], ARGV[2]) " +
+            "return 1", Long.class);
+
+    @Autowired
+    private QuestionTagMapper questionTagMapper;
+
+    @Autowired
+    private UserAttemptMapper userAttemptMapper;
+
+    @Autowired
+    private NearCache nearCache;
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    @Qualifier("binaryRedisTemplate")
+    private RedisTemplate<String, byte[]> binaryRedisTemplate;
+
+    @Value("${cache.attempt.ttl:86400}")  // 用户尝试位图和尝试次数的TTL(秒)
+    private long attemptedTtlSeconds;
+
+    /**
+     * 从标签下用户未尝试过的题目中均匀抽取最多count道，排除exclude中的题目
+     */
+    public List<Long> sampleUntried(Long userId, Collection<Long> tagIds, int count, Collection<Long> exclude) {
+        RoaringBitmap candidates = candidates(tagIds, exclude);
+        candidates.andNot(getAttemptedQuestions(userId));
+        return sample(candidates, count);
+    }
+
+    /**
+     * 从标签下的题目中按尝试次数加权抽取最多count道，排除exclude中的题目
+     * 权重为1/(1+尝试次数)，一次遍历标签位图完成加权蓄水池抽样
+     */
+    public List<Long> sampleLeastAttempted(Long userId, Collection<Long> tagIds, int count, Collection<Long> exclude) {
+        return weightedSample(candidates(tagIds, exclude), getAttemptCounts(userId), count);
+    }
+
+    /**
+     * 标签下的全部题目ID位图，调用方不可修改返回值
+     */
+    public RoaringBitmap getTagQuestions(Long tagId) {
+        String key = String.valueOf(tagId);
+        RoaringBitmap cached = nearCache.get(NearCache.TAG_QUESTIONS, key);
+        if (cached != null) {
+            return cached;
+        }
+
+        RoaringBitmap bitmap = toBitmap(questionTagMapper.findQuestionIdsByTagId(tagId));
+        bitmap.runOptimize();
+        nearCache.put(NearCache.TAG_QUESTIONS, key, bitmap);
+        return bitmap;
+    }
+
+    /**
+     * 用户尝试过的题目ID位图，Redis中不存在时从数据库重建
+     * 重建期间有新的尝试提交时（版本号变化）只返回结果不写入缓存，避免缓存漏掉这次尝试
+     */
+    public RoaringBitmap getAttemptedQuestions(Long userId) {
+        String key = ATTEMPTED_KEY_PREFIX + userId;
+        String version;
+        try {
+            byte[] data = binaryRedisTemplate.opsForValue().get(key);
+            if (data != null) {
+                return fromRedisBitmap(data);
+            }
+            version = getVersion(userId);
+        } catch (Exception e) {
+            logger.warn("读取用户尝试位图失败，回退数据库: userId={}", userId, e);
+            return toBitmap(userAttemptMapper.findQuestionIdsByUserId(userId));
+        }
+
+        RoaringBitmap bitmap = toBitmap(userAttemptMapper.findQuestionIdsByUserId(userId));
+        try {
+            Long written = binaryRedisTemplate.execute(REBUILD_BITMAP_SCRIPT,
+                    List.of(key, ATTEMPT_VERSION_KEY_PREFIX + userId),
+                    version.getBytes(StandardCharsets.UTF_8), toRedisBitmap(bitmap),
+                    String.valueOf(attemptedTtlSeconds).getBytes(StandardCharsets.UTF_8));
+            logger.debug("重建用户尝试位图: userId={}, attempted={}, written={}",
+                    userId, bitmap.getCardinality(), written);
+        } catch (Exception e) {
+            logger.warn("写入用户尝试位图失败: userId={}", userId, e);
+        }
+        return bitmap;
+    }
+
+    /**
+     * 用户各题的尝试次数，Redis中不存在时从数据库重建
+     */
+    public Map<Long, Integer> getAttemptCounts(Long userId) {
+        String key = ATTEMPT_COUNT_KEY_PREFIX + userId;
+        String version;
+        try {
+            Map<String, String> entries = redisTemplate.<String, String>opsForHash().entries(key);
+            if (!entries.isEmpty()) {
+                Map<Long, Integer> counts = new HashMap<>(entries.size());
+                entries.forEach((field, value) -> {
+                    if (!LOADED_FIELD.equals(field)) {
+                        counts.put(Long.valueOf(field), Integer.valueOf(value));
+                    }
+                });
+                return counts;
+            }
+            version = getVersion(userId);
+        } catch (Exception e) {
+            logger.warn("读取用户尝试次数失败，回退数据库: userId={}", userId, e);
+            return loadAttemptCounts(userId);
+        }
+
+        Map<Long, Integer> counts = loadAttemptCounts(userId);
+        try {
+            List<String> args = new ArrayList<>(counts.size() * 2 + 4);
+            args.add(version);
+            args.add(String.valueOf(attemptedTtlSeconds));
+            counts.forEach((questionId, attempts) -> {
+                args.add(String.valueOf(questionId));
+                args.add(String.valueOf(attempts));
+            });
+            args.add(LOADED_FIELD);
+            args.add("1");
+            Long written = redisTemplate.execute(REBUILD_COUNTS_SCRIPT,
+                    List.of(key, ATTEMPT_VERSION_KEY_PREFIX + userId), args.toArray());
+            logger.debug("重建用户尝试次数: userId={}, attempted={}, written={}", userId, counts.size(), written);
+        } catch (Exception e) {
+            logger.warn("写入用户尝试次数失败: userId={}", userId, e);
+        }
+        return counts;
+    }
+
+    /**
+     * 记录用户尝试过某题，事务提交后更新Redis位图和尝试次数
+     */
+    public void recordAttempt(Long userId, Long questionId) {
+        if (userId == null || !isIndexable(questionId)) {
+            return;
+        }
+        TransactionUtils.runAfterCommit(() -> {
+            try {
+                redisTemplate.execute(RECORD_ATTEMPT_SCRIPT,
+                        List.of(ATTEMPTED_KEY_PREFIX + userId, ATTEMPT_COUNT_KEY_PREFIX + userId,
+                                ATTEMPT_VERSION_KEY_PREFIX + userId),
+                        String.valueOf(questionId), String.valueOf(attemptedTtlSeconds));
+            } catch (Exception e) {
+                // 更新失败时删除缓存，下次读取从数据库重建
+                logger.warn("更新用户尝试缓存失败: userId={}, questionId={}", userId, questionId, e);
+                removeAttempted(userId);
+            }
+        });
+    }
+
+    /**
+     * 题目与标签的关联变化后调用，事务提交后失效各节点的标签位图
+     */
+    public void invalidateTags(Collection<Long> tagIds) {
+        List<Long> ids = new ArrayList<>(tagIds);
+        TransactionUtils.runAfterCommit(() -> ids.forEach(tagId ->
+                nearCache.invalidate(NearCache.TAG_QUESTIONS, String.valueOf(tagId))));
+    }
+
+    /**
+     * 各标签题目位图的并集，去掉exclude中的题目
+     */
+    private RoaringBitmap candidates(Collection<Long> tagIds, Collection<Long> exclude) {
+        RoaringBitmap candidates = new RoaringBitmap();
+        for (Long tagId : tagIds) {
+            candidates.or(getTagQuestions(tagId));
+        }
+        for (Long questionId : exclude) {
+            if (isIndexable(questionId)) {
+                candidates.remove(questionId.intValue());
+            }
+        }
+        return candidates;
+    }
+
+    private void removeAttempted(Long userId) {
+        try {
+            redisTemplate.delete(List.of(ATTEMPTED_KEY_PREFIX + userId, ATTEMPT_COUNT_KEY_PREFIX + userId));
+        } catch (Exception e) {
+            logger.warn("删除用户尝试缓存失败: userId={}", userId, e);
+        }
+    }
+
+    /**
+     * 用户尝试记录的版本号，重建前读取，不存在时为空串
+     */
+    private String getVersion(Long userId) {
+        String version = redisTemplate.opsForValue().get(ATTEMPT_VERSION_KEY_PREFIX + userId);
+        return version != null ? version : "";
+    }
+
+    private Map<Long, Integer> loadAttemptCounts(Long userId) {
+        Map<Long, Integer> counts = new HashMap<>();
+        for (UserAttempt attempt : userAttemptMapper.findByUserId(userId)) {
+            counts.put(attempt.getQuestionId(), attempt.getAttemptNumber());
+        }
+        return counts;
+    }
+
+    /**
+     * 加权蓄水池抽样(A-Res)：每个元素取键 u^(1/w)，保留键最大的count个
+     * 以 ln(u)/w = ln(u)*(1+尝试次数) 代替幂运算，单调性相同
+     */
+    static List<Long> weightedSample(RoaringBitmap candidates, Map<Long, Integer> attemptCounts, int count) {
+        List<Long> selected = new ArrayList<>();
+        if (count <= 0 || candidates.isEmpty()) {
+            return selected;
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        PriorityQueue<WeightedCandidate> reservoir = new PriorityQueue<>(count,
+                Comparator.comparingDouble(candidate -> candidate.key));
+        candidates.forEach((int questionId) -> {
+            int attempts = attemptCounts.getOrDefault((long) questionId, 0);
+            double key = reservoirKey(1.0 - random.nextDouble(), attempts);
+            if (reservoir.size() < count) {
+                reservoir.add(new WeightedCandidate(questionId, key));
+            } else if (key > reservoir.peek().key) {
+                reservoir.poll();
+                reservoir.add(new WeightedCandidate(questionId, key));
+            }
+        });
+
+        reservoir.forEach(candidate -> selected.add((long) candidate.questionId));
+        Collections.shuffle(selected);
+        return selected;
+    }
+
+    /**
+     * A-Res的抽样键，u取自(0, 1]，权重 w = 1/(1+attempts)，与 u^(1/w) = u^(1+attempts) 同序
+     */
+    static double reservoirKey(double u, int attempts) {
+        return Math.log(u) * (1 + attempts);
+    }
+
+    /**
+     * 均匀抽取最多count个元素（Floyd算法选取不重复的秩），结果顺序随机
+     */
+    static List<Long> sample(RoaringBitmap candidates, int count) {
+        int size = candidates.getCardinality();
+        List<Long> selected = new ArrayList<>(Math.min(size, Math.max(count, 0)));
+        if (count <= 0 || size == 0) {
+            return selected;
+        }
+
+        if (size <= count) {
+            candidates.forEach((int questionId) -> selected.add((long) questionId));
+        } else {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            Set<Integer> ranks = new HashSet<>();
+            for (int j = size - count; j < size; j++) {
+                int rank = random.nextInt(j + 1);
+                ranks.add(ranks.contains(rank) ? j : rank);
+            }
+            for (int rank : ranks) {
+                selected.add((long) candidates.select(rank));
+            }
+        }
+        Collections.shuffle(selected);
+        return selected;
+    }
+
+    private RoaringBitmap toBitmap(List<Long> questionIds) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (Long questionId : questionIds) {
+            if (isIndexable(questionId)) {
+                bitmap.add(questionId.intValue());
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * Redis位图按字节从高位到低位编号，bit n对应题目ID n
+     */
+    static RoaringBitmap fromRedisBitmap(byte[] data) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int i = 0; i < data.length; i++) {
+            int b = data[i] & 0xFF;
+            while (b != 0) {
+                int highest = Integer.numberOfLeadingZeros(b) - 24;
+                bitmap.add(i * 8 + highest);
+                b &= ~(0x80 >>> highest);
+            }
+        }
+        return bitmap;
+    }
+
+    static byte[] toRedisBitmap(RoaringBitmap bitmap) {
+        if (bitmap.isEmpty()) {
+            return new byte[0];
+        }
+        byte[] data = new byte[(bitmap.last() >>> 3) + 1];
+        bitmap.forEach((int questionId) -> data[questionId >>> 3] |= (byte) (0x80 >>> (questionId & 7)));
+        return data;
+    }
+
+    /**
+     * 位图以int存储题目ID，超出范围的ID不进入索引
+     */
+    private boolean isIndexable(Long questionId) {
+        return questionId != null && questionId >= 0 && questionId <= Integer.MAX_VALUE;
+    }
+
+    private static final class WeightedCandidate {
+        private final int questionId;
+        private final double key;
+
+        private WeightedCandidate(int questionId, double key) {
+            this.questionId = questionId;
+            this.key = key;
+        }
+    }
+}
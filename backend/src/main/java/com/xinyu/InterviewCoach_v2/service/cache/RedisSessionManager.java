@@ -1,25 +1,39 @@
 package com.xinyu.InterviewCoach_v2.service.cache;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.xinyu.InterviewCoach_v2.dto.core.SessionDTO;
+import com.xinyu.InterviewCoach_v2.enums.InterviewState;
+import com.xinyu.InterviewCoach_v2.enums.SessionMode;
 import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Component;
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.MeterRegistry;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 import java.util.Optional;
 
 /**
  * Redis会话管理器
- * 负责会话数据的缓存操作
+ * 负责会话数据的缓存操作，会话以Hash结构存储（每个字段一个field），进度推进通过Lua脚本原子完成
  */
 @Component
 public class RedisSessionManager {
@@ -32,78 +46,457 @@ public class RedisSessionManager {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private NearCache nearCache;
+
     @Value("${cache.session.ttl:1800}")
     private long sessionTtl;
 
     @Value("${cache.session.prefix:session:}")
     private String sessionPrefix;
 
+    @Value("${cache.session.migrate-legacy:true}")  // 读取时将旧版JSON字符串key迁移为Hash
+    private boolean migrateLegacy;
+
     @Autowired(required = false)
     private MeterRegistry meterRegistry;
 
     private Counter cacheHit;
     private Counter cacheMiss;
+    private Counter legacyMigrated;
+    private DistributionSummary replaceBytes;
+    private DistributionSummary advanceBytes;
+    private DistributionSummary fieldUpdateBytes;
+
+    // 会话Hash字段名
+    private static final String FIELD_ID = "id";
+    private static final String FIELD_USER_ID = "userId";
+    private static final String FIELD_MODE = "mode";
+    private static final String FIELD_EXPECTED_COUNT = "expectedQuestionCount";
+    private static final String FIELD_ASKED_COUNT = "askedQuestionCount";
+    private static final String FIELD_COMPLETED_COUNT = "completedQuestionCount";
+    private static final String FIELD_QUESTION_QUEUE = "questionQueue";
+    private static final String FIELD_CURRENT_QUESTION_ID = "currentQuestionId";
+    private static final String FIELD_QUEUE_POSITION = "queuePosition";
+    private static final String FIELD_STARTED_AT = "startedAt";
+    private static final String FIELD_ENDED_AT = "endedAt";
+    private static final String FIELD_IS_ACTIVE = "isActive";
+    private static final String FIELD_CURRENT_STATE = "currentState";
+
+    /**
+     * 整体替换会话Hash：KEYS[1]=会话key，ARGV[1]=TTL，其余为field/value对
+     */
+    private static final RedisScript<Long> REPLACE_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('DEL', KEYS[1]) " +
+            "redis.call('HSET', KEYS[1], unpack(ARGV, 2)) " +
+            "redis.call('EXPIRE', KEYS[1], ARGV[1]) " +
+            "return 1", Long.class);
+
+    /**
+     * 会话Hash不存在时写入：KEYS[1]=会话key，ARGV[1]=TTL，其余为field/value对；已存在时不修改，返回0
+     */
+    private static final RedisScript<Long> CREATE_IF_ABSENT_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 1 then return 0 end " +
+            "redis.call('HSET', KEYS[1], unpack(ARGV, 2)) " +
+            "redis.call('EXPIRE', KEYS[1], ARGV[1]) " +
+            "return 1", Long.class);
+
+    /**
+     * 字段级更新：KEYS[1]=会话key，ARGV为field/value对；缓存不存在时不写入，返回0
+     */
+    private static final RedisScript<Long> UPDATE_FIELDS_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return 0 end " +
+            "redis.call('HSET', KEYS[1], unpack(ARGV)) " +
+            "return 1", Long.class);
+
+    /**
+     * 字段级自增：KEYS[1]=会话key，ARGV[1]=field，ARGV[2]=增量；缓存不存在时不写入，返回nil
+     */
+    private static final RedisScript<Long> INCREMENT_FIELD_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return nil end " +
+            "return redis.call('HINCRBY', KEYS[1], ARGV[1], ARGV[2])", Long.class);
+
+    /**
+     * 推进会话进度：KEYS[1]=会话key，KEYS[2]=可选的待写回集合，ARGV[1]=期望的当前位置，ARGV[2]=完成数增量，
+     * ARGV[3]=TTL，ARGV[4]=会话ID
+     * 返回新位置；缓存不存在返回-1；位置与期望不一致时返回-2，
+     * 非write-behind模式下同时删除缓存，由下次读取从数据库回填（write-behind模式下缓存是权威数据，保留）
+     */
+    private static final RedisScript<Long> ADVANCE_SCRIPT = new DefaultRedisScript<>(
+            "local position = redis.call('HGET', KEYS[1], 'queuePosition') " +
+            "if not position then return -1 end " +
+            "if tonumber(position) ~= tonumber(ARGV[1]) then " +
+            "  if not KEYS[2] then redis.call('DEL', KEYS[1]) end " +
+            "  return -2 " +
+            "end " +
+            "local newPosition = redis.call('HINCRBY', KEYS[1], 'queuePosition', 1) " +
+            "redis.call('HINCRBY', KEYS[1], 'askedQuestionCount', 1) " +
+            "if tonumber(ARGV[2]) ~= 0 then " +
+            "  redis.call('HINCRBY', KEYS[1], 'completedQuestionCount', ARGV[2]) " +
+            "end " +
+            "redis.call('EXPIRE', KEYS[1], ARGV[3]) " +
+            "if KEYS[2] then redis.call('SADD', KEYS[2], ARGV[4]) end " +
+            "return newPosition", Long.class);
+
+    /**
+     * 恢复会话进度：KEYS[1]=会话key，KEYS[2]=可选的待写回集合，ARGV[1]=期望的当前位置，
+     * ARGV[2..4]=恢复后的位置/已提问数/已完成数，ARGV[5]=TTL，ARGV[6]=会话ID
+     * 返回恢复后的位置；缓存不存在返回-1；位置与期望不一致（已被后续轮次推进）返回-2，不修改
+     */
+    private static final RedisScript<Long> RESTORE_SCRIPT = new DefaultRedisScript<>(
+            "local position = redis.call('HGET', KEYS[1], 'queuePosition') " +
+            "if not position then return -1 end " +
+            "if tonumber(position) ~= tonumber(ARGV[1]) then return -2 end " +
+            "redis.call('HSET', KEYS[1], 'queuePosition', ARGV[2], 'askedQuestionCount', ARGV[3], " +
+            "  'completedQuestionCount', ARGV[4]) " +
+            "redis.call('EXPIRE', KEYS[1], ARGV[5]) " +
+            "if KEYS[2] then redis.call('SADD', KEYS[2], ARGV[6]) end " +
+            "return tonumber(ARGV[2])", Long.class);
 
     @PostConstruct
     private void initMetrics() {
         if (meterRegistry != null) {
             cacheHit = Counter.builder("session.cache.hit").register(meterRegistry);
             cacheMiss = Counter.builder("session.cache.miss").register(meterRegistry);
+            legacyMigrated = Counter.builder("session.cache.legacy.migrated").register(meterRegistry);
+            // 每次写入发往Redis的字节数（key + 参数），用于对比整体写入和字段级更新的开销
+            replaceBytes = bytesWrittenSummary("replace");
+            advanceBytes = bytesWrittenSummary("advance");
+            fieldUpdateBytes = bytesWrittenSummary("field");
         }
     }
 
     /**
-     * 缓存会话数据
+     * 缓存会话数据 - 整体写入Hash，同时写入近端缓存并通知其他节点失效
      */
     public void cacheSession(SessionDTO session) {
         try {
             String key = buildSessionKey(session.getId());
-            String value = objectMapper.writeValueAsString(session);
-            redisTemplate.opsForValue().set(key, value, sessionTtl, TimeUnit.SECONDS);
+            List<String> args = new ArrayList<>();
+            args.add(String.valueOf(sessionTtl));
+            toHash(session).forEach((field, value) -> {
+                args.add(field);
+                args.add(value);
+            });
+            redisTemplate.execute(REPLACE_SCRIPT, List.of(key), args.toArray());
+            recordBytes(replaceBytes, key, args);
+            nearCache.putAndBroadcast(NearCache.SESSION, key, session.copy());
+            nearCache.put(NearCache.SESSION_TTL_REFRESH, key, Boolean.TRUE);
             logger.debug("会话缓存成功: sessionId={}", session.getId());
-        } catch (JsonProcessingException e) {
-            logger.error("会话序列化失败: sessionId={}", session.getId(), e);
+        } catch (Exception e) {
+            logger.error("会话缓存失败: sessionId={}", session.getId(), e);
         }
     }
 
     /**
-     * 从缓存获取会话
+     * 会话Hash不存在时才写入，返回是否写入；用于write-behind模式下从数据库回填，
+     * 不会覆盖并发推进后尚未写回数据库的进度。调用失败时返回false
+     */
+    public boolean cacheSessionIfAbsent(SessionDTO session) {
+        try {
+            String key = buildSessionKey(session.getId());
+            List<String> args = new ArrayList<>();
+            args.add(String.valueOf(sessionTtl));
+            toHash(session).forEach((field, value) -> {
+                args.add(field);
+                args.add(value);
+            });
+            Long result = redisTemplate.execute(CREATE_IF_ABSENT_SCRIPT, List.of(key), args.toArray());
+            recordBytes(replaceBytes, key, args);
+            if (result == null || result != 1L) {
+                logger.debug("会话缓存已存在，不回填: sessionId={}", session.getId());
+                return false;
+            }
+            nearCache.putAndBroadcast(NearCache.SESSION, key, session.copy());
+            nearCache.put(NearCache.SESSION_TTL_REFRESH, key, Boolean.TRUE);
+            logger.debug("会话缓存成功: sessionId={}", session.getId());
+            return true;
+        } catch (Exception e) {
+            logger.error("会话缓存失败: sessionId={}", session.getId(), e);
+            return false;
+        }
+    }
+
+    /**
+     * 从缓存获取会话 - 优先读近端缓存，返回副本
      */
     public Optional<SessionDTO> getSession(Long sessionId) {
         try {
             String key = buildSessionKey(sessionId);
-            String value = redisTemplate.opsForValue().get(key);
+            SessionDTO nearCached = nearCache.get(NearCache.SESSION, key);
+            if (nearCached != null) {
+                if (cacheHit != null) cacheHit.increment();
+                return Optional.of(nearCached.copy());
+            }
+
+            Map<Object, Object> hash = redisTemplate.opsForHash().entries(key);
 
-            if (value != null) {
-                SessionDTO session = objectMapper.readValue(value, SessionDTO.class);
+            if (!hash.isEmpty()) {
+                SessionDTO session = fromHash(hash);
+                nearCache.put(NearCache.SESSION, key, session.copy());
+                if (cacheHit != null) cacheHit.increment();
                 logger.debug("从缓存获取会话: sessionId={}", sessionId);
                 return Optional.of(session);
             }
 
+            Optional<SessionDTO> migrated = migrateLegacySession(sessionId);
+            if (migrated.isPresent()) {
+                if (cacheHit != null) cacheHit.increment();
+                return migrated;
+            }
+
+            if (cacheMiss != null) cacheMiss.increment();
+
             logger.debug("缓存中未找到会话: sessionId={}", sessionId);
             return Optional.empty();
 
-        } catch (JsonProcessingException e) {
-            logger.error("会话反序列化失败: sessionId={}", sessionId, e);
+        } catch (Exception e) {
+            logger.error("会话缓存解析失败: sessionId={}", sessionId, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * 一次pipeline读取会话Hash和一个附加key的原始值，近端缓存命中的会话不再读取Hash
+     * 会话不在缓存中时结果的session为null，由调用方回源数据库
+     */
+    public PipelinedRead getSessionWithValue(Long sessionId, String valueKey) {
+        String key = buildSessionKey(sessionId);
+        SessionDTO nearCached = nearCache.get(NearCache.SESSION, key);
+
+        try {
+            List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                if (nearCached == null) {
+                    connection.hashCommands().hGetAll(key.getBytes(StandardCharsets.UTF_8));
+                }
+                connection.stringCommands().get(valueKey.getBytes(StandardCharsets.UTF_8));
+                return null;
+            }, RedisSerializer.byteArray());
+
+            SessionDTO session = nearCached != null ? nearCached.copy() : null;
+            if (nearCached == null) {
+                Object hash = results.get(0);
+                if (hash instanceof Map<?, ?> entries && !entries.isEmpty()) {
+                    Map<Object, Object> fields = new LinkedHashMap<>();
+                    entries.forEach((field, value) -> fields.put(asText(field), asText(value)));
+                    session = fromHash(fields);
+                    nearCache.put(NearCache.SESSION, key, session.copy());
+                }
+            }
+            if (cacheHit != null && session != null) cacheHit.increment();
+            if (cacheMiss != null && session == null) cacheMiss.increment();
+
+            Object value = results.get(results.size() - 1);
+            return new PipelinedRead(session, value instanceof byte[] bytes ? bytes : null);
+        } catch (Exception e) {
+            logger.error("pipeline读取会话失败: sessionId={}", sessionId, e);
+            return new PipelinedRead(nearCached != null ? nearCached.copy() : null, null);
+        }
+    }
+
+    /**
+     * 原子推进会话进度：位置+1、已提问+1、已完成+completedDelta
+     * advanced为推进后的会话（由调用方基于数据库更新结果计算），成功时写入近端缓存
+     */
+    public void advanceProgress(SessionDTO advanced, int expectedPosition, int completedDelta) {
+        advanceProgress(advanced, expectedPosition, completedDelta, null);
+    }
+
+    /**
+     * 原子推进会话进度，dirtySetKey不为null时同时把会话ID加入待写回集合
+     * 返回脚本结果：新位置，-1缓存不存在，-2位置不一致，null调用失败
+     */
+    public Long advanceProgress(SessionDTO advanced, int expectedPosition, int completedDelta, String dirtySetKey) {
+        String key = buildSessionKey(advanced.getId());
+        try {
+            List<String> keys = dirtySetKey != null ? List.of(key, dirtySetKey) : List.of(key);
+            List<String> args = List.of(String.valueOf(expectedPosition), String.valueOf(completedDelta),
+                    String.valueOf(sessionTtl), String.valueOf(advanced.getId()));
+            Long result = redisTemplate.execute(ADVANCE_SCRIPT, keys, args.toArray());
+            recordBytes(advanceBytes, key, args);
+
+            if (result != null && result == expectedPosition + 1) {
+                nearCache.putAndBroadcast(NearCache.SESSION, key, advanced.copy());
+                nearCache.put(NearCache.SESSION_TTL_REFRESH, key, Boolean.TRUE);
+                logger.debug("推进会话缓存进度: sessionId={}, position={}", advanced.getId(), result);
+            } else {
+                // 缓存不存在或位置不一致，近端缓存失效后重新读取
+                nearCache.invalidate(NearCache.SESSION, key);
+                logger.debug("会话缓存未推进: sessionId={}, result={}", advanced.getId(), result);
+            }
+            return result;
+        } catch (Exception e) {
+            logger.error("推进会话缓存进度失败: sessionId={}", advanced.getId(), e);
+            removeSession(advanced.getId());
+            return null;
+        }
+    }
+
+    /**
+     * 位置仍为expectedPosition时原子恢复到snapshot的进度，dirtySetKey不为null时同时加入待写回集合
+     * 返回脚本结果：恢复后的位置，-1缓存不存在，-2位置不一致，null调用失败
+     */
+    public Long restoreProgress(SessionDTO snapshot, int expectedPosition, String dirtySetKey) {
+        String key = buildSessionKey(snapshot.getId());
+        try {
+            List<String> keys = dirtySetKey != null ? List.of(key, dirtySetKey) : List.of(key);
+            Long result = redisTemplate.execute(RESTORE_SCRIPT, keys,
+                    String.valueOf(expectedPosition), String.valueOf(snapshot.getQueuePosition()),
+                    String.valueOf(snapshot.getAskedQuestionCount()), String.valueOf(snapshot.getCompletedQuestionCount()),
+                    String.valueOf(sessionTtl), String.valueOf(snapshot.getId()));
+            nearCache.invalidate(NearCache.SESSION, key);
+            logger.debug("恢复会话缓存进度: sessionId={}, result={}", snapshot.getId(), result);
+            return result;
+        } catch (Exception e) {
+            logger.error("恢复会话缓存进度失败: sessionId={}", snapshot.getId(), e);
+            return null;
+        }
+    }
+
+    /**
+     * 批量读取会话进度（直接读Redis，不经过近端缓存），一次pipeline完成
+     * 返回的SessionDTO只包含id和进度字段，缓存不存在的会话不在结果中
+     */
+    public List<SessionDTO> getProgress(List<Long> sessionIds) {
+        List<String> fields = List.of(FIELD_QUEUE_POSITION, FIELD_ASKED_COUNT, FIELD_COMPLETED_COUNT);
+        List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> hashOperations = (RedisOperations<String, Object>) operations;
+                for (Long sessionId : sessionIds) {
+                    hashOperations.opsForHash().multiGet(buildSessionKey(sessionId), new ArrayList<Object>(fields));
+                }
+                return null;
+            }
+        });
+
+        List<SessionDTO> progress = new ArrayList<>();
+        for (int i = 0; i < sessionIds.size(); i++) {
+            List<?> values = (List<?>) results.get(i);
+            if (values == null || values.get(0) == null) {
+                continue;
+            }
+            SessionDTO session = new SessionDTO();
+            session.setId(sessionIds.get(i));
+            session.setQueuePosition(parseInteger(values.get(0)));
+            Integer askedCount = parseInteger(values.get(1));
+            Integer completedCount = parseInteger(values.get(2));
+            session.setAskedQuestionCount(askedCount != null ? askedCount : 0);
+            session.setCompletedQuestionCount(completedCount != null ? completedCount : 0);
+            progress.add(session);
+        }
+        return progress;
+    }
+
+    /**
+     * 读取会话的题目队列位置 - 近端缓存未命中时只读取一个字段
+     */
+    public Optional<Integer> getQueuePosition(Long sessionId) {
+        return getFields(sessionId, List.of(FIELD_QUEUE_POSITION))
+                .map(values -> values.get(0))
+                .map(Integer::valueOf);
+    }
+
+    /**
+     * 读取会话所属用户ID - 近端缓存未命中时只读取一个字段
+     */
+    public Optional<Long> getSessionUserId(Long sessionId) {
+        return getFields(sessionId, List.of(FIELD_USER_ID))
+                .map(values -> values.get(0))
+                .map(Long::valueOf);
+    }
+
+    /**
+     * 读取会话的多个字段 - 近端缓存未命中时HMGET，结果与fields一一对应，缓存不存在时返回空
+     */
+    public Optional<List<String>> getFields(Long sessionId, List<String> fields) {
+        String key = buildSessionKey(sessionId);
+        SessionDTO nearCached = nearCache.get(NearCache.SESSION, key);
+        if (nearCached != null) {
+            Map<String, String> hash = toHash(nearCached);
+            List<String> values = new ArrayList<>(fields.size());
+            fields.forEach(field -> values.add(hash.get(field)));
+            return Optional.of(values);
+        }
+
+        try {
+            List<Object> values = redisTemplate.opsForHash().multiGet(key, new ArrayList<>(fields));
+            if (values == null || values.stream().allMatch(Objects::isNull)) {
+                // Hash不存在（或仅有旧版key），走完整读取以便迁移和回填
+                return getSession(sessionId).map(session -> {
+                    Map<String, String> hash = toHash(session);
+                    List<String> result = new ArrayList<>(fields.size());
+                    fields.forEach(field -> result.add(hash.get(field)));
+                    return result;
+                });
+            }
+
+            List<String> result = new ArrayList<>(values.size());
+            values.forEach(value -> result.add(value != null ? value.toString() : null));
+            return Optional.of(result);
+        } catch (Exception e) {
+            logger.error("读取会话字段失败: sessionId={}, fields={}", sessionId, fields, e);
             return Optional.empty();
         }
     }
 
+    /**
+     * 更新题目队列和位置 - 只写这两个字段
+     */
+    public void updateQuestionQueue(Long sessionId, String questionQueue, Integer queuePosition) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put(FIELD_QUESTION_QUEUE, questionQueue);
+        fields.put(FIELD_QUEUE_POSITION, String.valueOf(queuePosition));
+        updateFields(sessionId, fields);
+    }
+
+    /**
+     * 覆盖会话进度字段 - 用于补偿恢复
+     */
+    public void updateProgress(Long sessionId, Integer queuePosition, Integer askedQuestionCount,
+                               Integer completedQuestionCount) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put(FIELD_QUEUE_POSITION, String.valueOf(queuePosition));
+        fields.put(FIELD_ASKED_COUNT, String.valueOf(askedQuestionCount));
+        fields.put(FIELD_COMPLETED_COUNT, String.valueOf(completedQuestionCount));
+        updateFields(sessionId, fields);
+    }
+
+    /**
+     * 已提问题目数+1
+     */
+    public void incrementAskedQuestionCount(Long sessionId) {
+        incrementField(sessionId, FIELD_ASKED_COUNT);
+    }
+
+    /**
+     * 已完成题目数+1
+     */
+    public void incrementCompletedQuestionCount(Long sessionId) {
+        incrementField(sessionId, FIELD_COMPLETED_COUNT);
+    }
+
     /**
      * 删除会话缓存
      */
     public void removeSession(Long sessionId) {
         String key = buildSessionKey(sessionId);
-        redisTemplate.delete(key);
+        redisTemplate.delete(List.of(key, buildLegacySessionKey(sessionId)));
+        nearCache.invalidate(NearCache.SESSION, key);
         logger.debug("删除会话缓存: sessionId={}", sessionId);
     }
 
     /**
-     * 刷新会话TTL
+     * 刷新会话TTL - 近端缓存TTL窗口内只刷新一次，避免每次读取都发EXPIRE
      */
     public void refreshSessionTtl(Long sessionId) {
         String key = buildSessionKey(sessionId);
+        if (nearCache.get(NearCache.SESSION_TTL_REFRESH, key) != null) {
+            return;
+        }
         redisTemplate.expire(key, sessionTtl, TimeUnit.SECONDS);
+        nearCache.put(NearCache.SESSION_TTL_REFRESH, key, Boolean.TRUE);
         logger.debug("刷新会话TTL: sessionId={}", sessionId);
     }
 
@@ -112,6 +505,9 @@ public class RedisSessionManager {
      */
     public boolean existsInCache(Long sessionId) {
         String key = buildSessionKey(sessionId);
+        if (nearCache.get(NearCache.SESSION, key) != null) {
+            return true;
+        }
         return Boolean.TRUE.equals(redisTemplate.hasKey(key));
     }
 
@@ -155,9 +551,169 @@ public class RedisSessionManager {
     }
 
     /**
-     * 构建会话缓存key
+     * 字段级写入，缓存不存在时跳过（下次读取从数据库回填）；近端缓存失效
+     */
+    private void updateFields(Long sessionId, Map<String, String> fields) {
+        String key = buildSessionKey(sessionId);
+        try {
+            List<String> args = new ArrayList<>();
+            fields.forEach((field, value) -> {
+                args.add(field);
+                args.add(value);
+            });
+            redisTemplate.execute(UPDATE_FIELDS_SCRIPT, List.of(key), args.toArray());
+            recordBytes(fieldUpdateBytes, key, args);
+            logger.debug("更新会话缓存字段: sessionId={}, fields={}", sessionId, fields.keySet());
+        } catch (Exception e) {
+            logger.error("更新会话缓存字段失败: sessionId={}", sessionId, e);
+            redisTemplate.delete(key);
+        } finally {
+            nearCache.invalidate(NearCache.SESSION, key);
+        }
+    }
+
+    private void incrementField(Long sessionId, String field) {
+        String key = buildSessionKey(sessionId);
+        try {
+            List<String> args = List.of(field, "1");
+            redisTemplate.execute(INCREMENT_FIELD_SCRIPT, List.of(key), args.toArray());
+            recordBytes(fieldUpdateBytes, key, args);
+        } catch (Exception e) {
+            logger.error("会话缓存字段自增失败: sessionId={}, field={}", sessionId, field, e);
+            redisTemplate.delete(key);
+        } finally {
+            nearCache.invalidate(NearCache.SESSION, key);
+        }
+    }
+
+    /**
+     * 旧版JSON字符串会话迁移为Hash，保留原key不再使用
+     */
+    private Optional<SessionDTO> migrateLegacySession(Long sessionId) {
+        if (!migrateLegacy) {
+            return Optional.empty();
+        }
+
+        String legacyKey = buildLegacySessionKey(sessionId);
+        try {
+            String value = redisTemplate.opsForValue().get(legacyKey);
+            if (value == null) {
+                return Optional.empty();
+            }
+
+            SessionDTO session = objectMapper.readValue(value, SessionDTO.class);
+            cacheSession(session);
+            redisTemplate.delete(legacyKey);
+            if (legacyMigrated != null) legacyMigrated.increment();
+            logger.info("迁移旧版会话缓存为Hash: sessionId={}", sessionId);
+            return Optional.of(session);
+        } catch (Exception e) {
+            // 非字符串类型或无法解析，直接丢弃旧key，由数据库回填
+            logger.warn("迁移旧版会话缓存失败: sessionId={}", sessionId, e);
+            redisTemplate.delete(legacyKey);
+            return Optional.empty();
+        }
+    }
+
+    private DistributionSummary bytesWrittenSummary(String operation) {
+        return DistributionSummary.builder("session.cache.bytes.written")
+                .baseUnit("bytes")
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+
+    private void recordBytes(DistributionSummary summary, String key, List<String> args) {
+        if (summary == null) {
+            return;
+        }
+        long bytes = key.getBytes(StandardCharsets.UTF_8).length;
+        for (String arg : args) {
+            bytes += arg.getBytes(StandardCharsets.UTF_8).length;
+        }
+        summary.record(bytes);
+    }
+
+    /**
+     * SessionDTO转换为Hash字段，null字段不写入
+     */
+    private Map<String, String> toHash(SessionDTO session) {
+        Map<String, String> hash = new LinkedHashMap<>();
+        putIfNotNull(hash, FIELD_ID, session.getId());
+        putIfNotNull(hash, FIELD_USER_ID, session.getUserId());
+        putIfNotNull(hash, FIELD_MODE, session.getMode() != null ? session.getMode().name() : null);
+        putIfNotNull(hash, FIELD_EXPECTED_COUNT, session.getExpectedQuestionCount());
+        putIfNotNull(hash, FIELD_ASKED_COUNT, session.getAskedQuestionCount());
+        putIfNotNull(hash, FIELD_COMPLETED_COUNT, session.getCompletedQuestionCount());
+        putIfNotNull(hash, FIELD_QUESTION_QUEUE, session.getQuestionQueue());
+        putIfNotNull(hash, FIELD_CURRENT_QUESTION_ID, session.getCurrentQuestionId());
+        putIfNotNull(hash, FIELD_QUEUE_POSITION, session.getQueuePosition());
+        putIfNotNull(hash, FIELD_STARTED_AT, session.getStartedAt());
+        putIfNotNull(hash, FIELD_ENDED_AT, session.getEndedAt());
+        putIfNotNull(hash, FIELD_IS_ACTIVE, session.getIsActive());
+        putIfNotNull(hash, FIELD_CURRENT_STATE, session.getCurrentState() != null ? session.getCurrentState().name() : null);
+        return hash;
+    }
+
+    /**
+     * Hash字段转换为SessionDTO
+     */
+    private SessionDTO fromHash(Map<Object, Object> hash) {
+        SessionDTO session = new SessionDTO();
+        session.setId(parseLong(hash.get(FIELD_ID)));
+        session.setUserId(parseLong(hash.get(FIELD_USER_ID)));
+        Object mode = hash.get(FIELD_MODE);
+        session.setMode(mode != null ? SessionMode.valueOf(mode.toString()) : null);
+        session.setExpectedQuestionCount(parseInteger(hash.get(FIELD_EXPECTED_COUNT)));
+        session.setAskedQuestionCount(parseInteger(hash.get(FIELD_ASKED_COUNT)));
+        session.setCompletedQuestionCount(parseInteger(hash.get(FIELD_COMPLETED_COUNT)));
+        Object questionQueue = hash.get(FIELD_QUESTION_QUEUE);
+        session.setQuestionQueue(questionQueue != null ? questionQueue.toString() : null);
+        session.setCurrentQuestionId(parseLong(hash.get(FIELD_CURRENT_QUESTION_ID)));
+        Integer queuePosition = parseInteger(hash.get(FIELD_QUEUE_POSITION));
+        session.setQueuePosition(queuePosition != null ? queuePosition : 0);
+        Object startedAt = hash.get(FIELD_STARTED_AT);
+        session.setStartedAt(startedAt != null ? LocalDateTime.parse(startedAt.toString()) : null);
+        Object endedAt = hash.get(FIELD_ENDED_AT);
+        session.setEndedAt(endedAt != null ? LocalDateTime.parse(endedAt.toString()) : null);
+        Object isActive = hash.get(FIELD_IS_ACTIVE);
+        session.setIsActive(isActive != null ? Boolean.valueOf(isActive.toString()) : null);
+        Object currentState = hash.get(FIELD_CURRENT_STATE);
+        session.setCurrentState(currentState != null ? InterviewState.valueOf(currentState.toString()) : null);
+        return session;
+    }
+
+    private void putIfNotNull(Map<String, String> hash, String field, Object value) {
+        if (value != null) {
+            hash.put(field, value.toString());
+        }
+    }
+
+    private String asText(Object value) {
+        if (value instanceof byte[] bytes) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value != null ? value.toString() : null;
+    }
+
+    private Long parseLong(Object value) {
+        return value != null ? Long.valueOf(value.toString()) : null;
+    }
+
+    private Integer parseInteger(Object value) {
+        return value != null ? Integer.valueOf(value.toString()) : null;
+    }
+
+    /**
+     * 构建会话缓存key（Hash结构，与旧版JSON字符串key区分）
      */
     private String buildSessionKey(Long sessionId) {
+        return sessionPrefix + "h:" + sessionId;
+    }
+
+    /**
+     * 构建旧版JSON字符串会话key，仅用于迁移
+     */
+    private String buildLegacySessionKey(Long sessionId) {
         return sessionPrefix + sessionId;
     }
 
@@ -167,4 +723,25 @@ public class RedisSessionManager {
     private String buildUserActiveSessionKey(Long userId) {
         return "user_active_session:" + userId;
     }
-}
\ No newline at end of file
+
+    /**
+     * pipeline读取结果：会话（缓存未命中为null）和附加key的原始值
+     */
+    public static final class PipelinedRead {
+        private final SessionDTO session;
+        private final byte[] value;
+
+        private PipelinedRead(SessionDTO session, byte[] value) {
+            this.session = session;
+            this.value = value;
+        }
+
+        public SessionDTO getSession() {
+            return session;
+        }
+
+        public byte[] getValue() {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.xinyu.InterviewCoach_v2.service.cache;
+
+import com.xinyu.InterviewCoach_v2.util.VectorMath;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * 语义缓存的进程内向量索引
+ * 每个Redis候选索引(ZSET)对应一个内存分片，启动后按需从Redis加载，之后增量同步；
+ * 检索时对分片内全部候选做精确相似度计算，无需每次查询都从Redis读取和反序列化embedding
+ */
+@Component
+public class SemanticVectorIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(SemanticVectorIndex.class);
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    private EmbeddingStore embeddingStore;
+
+    @Value("${cache.ai.feedback.ttl:259200}")
+    private long entryTtlSeconds;
+
+    @Value("${cache.ai.max-index-size:200}")
+    private int maxEntriesPerShard;
+
+    @Value("${cache.ai.vector-index.max-shards:2000}")  // 内存中最多保留的分片数
+    private int maxShards;
+
+    @Value("${cache.ai.vector-index.sync-interval-ms:5000}")  // 与Redis增量同步的最小间隔
+    private long syncIntervalMs;
+
+    private final Map<String, Shard> shards = new ConcurrentHashMap<>();
+
+    /**
+     * 检索结果
+     */
+    public static class Match {
+        private final String memberKey;
+        private final double similarity;
+
+        public Match(String memberKey, double similarity) {
+            this.memberKey = memberKey;
+            this.similarity = similarity;
+        }
+
+        public String getMemberKey() {
+            return memberKey;
+        }
+
+        public double getSimilarity() {
+            return similarity;
+        }
+    }
+
+    /**
+     * 检索分片内与query相似度不低于minSimilarity的候选，按相似度降序
+     */
+    public List<Match> search(String indexKey, double[] query, double minSimilarity) {
+        Shard shard = getShard(indexKey);
+        syncIfStale(indexKey, shard);
+        return shard.search(query, minSimilarity, System.currentTimeMillis() - entryTtlSeconds * 1000);
+    }
+
+    /**
+     * 写入本地分片（Redis索引由调用方写入）
+     */
+    public void add(String indexKey, String memberKey, double[] vector, long timestamp) {
+        getShard(indexKey).add(memberKey, vector, timestamp, maxEntriesPerShard);
+    }
+
+    /**
+     * 从本地分片移除已失效的候选
+     */
+    public void remove(String indexKey, Collection<String> memberKeys) {
+        Shard shard = shards.get(indexKey);
+        if (shard != null) {
+            shard.remove(memberKeys);
+        }
+    }
+
+    /**
+     * 清空本地索引
+     */
+    public void clear() {
+        shards.clear();
+    }
+
+    public int shardCount() {
+        return shards.size();
+    }
+
+    private Shard getShard(String indexKey) {
+        Shard shard = shards.get(indexKey);
+        if (shard == null) {
+            if (shards.size() >= maxShards) {
+                evictLeastRecentlyUsed();
+            }
+            shard = shards.computeIfAbsent(indexKey, key -> new Shard());
+        }
+        shard.lastAccessAt = System.currentTimeMillis();
+        return shard;
+    }
+
+    private void evictLeastRecentlyUsed() {
+        shards.entrySet().stream()
+                .min(Comparator.comparingLong(entry -> entry.getValue().lastAccessAt))
+                .ifPresent(entry -> shards.remove(entry.getKey(), entry.getValue()));
+    }
+
+    /**
+     * 增量同步：只拉取上次同步位置之后的条目，其他节点写入的缓存也能被检索到
+     */
+    private void syncIfStale(String indexKey, Shard shard) {
+        long now = System.currentTimeMillis();
+        if (now - shard.lastSyncAt < syncIntervalMs) {
+            return;
+        }
+        shard.lastSyncAt = now;
+
+        try {
+            Set<ZSetOperations.TypedTuple<String>> tuples = redisTemplate.opsForZSet()
+                    .rangeByScoreWithScores(indexKey, shard.syncedScore, Double.POSITIVE_INFINITY);
+            if (tuples == null || tuples.isEmpty()) {
+                return;
+            }
+            tuples.stream()
+                    .map(ZSetOperations.TypedTuple::getScore)
+                    .filter(Objects::nonNull)
+                    .max(Double::compare)
+                    .ifPresent(score -> shard.syncedScore = score);
+
+            List<ZSetOperations.TypedTuple<String>> newTuples = tuples.stream()
+                    .filter(tuple -> tuple.getValue() != null && !shard.contains(tuple.getValue()))
+                    .collect(Collectors.toList());
+            if (newTuples.isEmpty()) {
+                return;
+            }
+
+            List<String> embeddingKeys = newTuples.stream()
+                    .map(tuple -> tuple.getValue() + ":embedding")
+                    .collect(Collectors.toList());
+            List<double[]> embeddings = embeddingStore.multiGet(embeddingKeys);
+
+            int loaded = 0;
+            for (int i = 0; i < newTuples.size(); i++) {
+                double[] embedding = embeddings.get(i);
+                if (embedding == null) {
+                    continue;
+                }
+                ZSetOperations.TypedTuple<String> tuple = newTuples.get(i);
+                long timestamp = tuple.getScore() != null ? tuple.getScore().longValue() : now;
+                shard.add(tuple.getValue(), embedding, timestamp, maxEntriesPerShard);
+                loaded++;
+            }
+
+            logger.debug("向量索引同步: indexKey={}, loaded={}, size={}", indexKey, loaded, shard.size());
+
+        } catch (Exception e) {
+            logger.warn("向量索引同步失败: indexKey={}", indexKey, e);
+        }
+    }
+
+    /**
+     * 单个候选索引的内存分片
+     * 分片条目上限为cache.ai.max-index-size，全量精确计算比HNSW等近似结构更快且召回无损
+     */
+    private static class Shard {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Map<String, Entry> entries = new HashMap<>();
+        private volatile double syncedScore;   // 已从Redis同步到的最大写入时间，本地写入不推进
+        private volatile long lastSyncAt;
+        private volatile long lastAccessAt;
+
+        List<Match> search(double[] query, double minSimilarity, long minTimestamp) {
+            float[] normalizedQuery = VectorMath.normalize(query);
+            if (normalizedQuery == null) {
+                return Collections.emptyList();
+            }
+
+            List<Match> matches = new ArrayList<>();
+            lock.readLock().lock();
+            try {
+                for (Entry entry : entries.values()) {
+                    if (entry.timestamp < minTimestamp || entry.vector.length != query.length) {
+                        continue;
+                    }
+                    double similarity = VectorMath.dot(normalizedQuery, entry.vector);
+                    if (similarity >= minSimilarity) {
+                        matches.add(new Match(entry.memberKey, similarity));
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            matches.sort(Comparator.comparingDouble(Match::getSimilarity).reversed());
+            return matches;
+        }
+
+        void add(String memberKey, double[] vector, long timestamp, int maxEntries) {
+            // 写入时归一化一次，检索时只需点积
+            float[] normalized = VectorMath.normalize(vector);
+            if (normalized == null) {
+                return;
+            }
+
+            lock.writeLock().lock();
+            try {
+                entries.put(memberKey, new Entry(memberKey, normalized, timestamp));
+                // 与Redis索引一致，超出上限时淘汰最旧的条目
+                while (entries.size() > maxEntries) {
+                    entries.values().stream()
+                            .min(Comparator.comparingLong(entry -> entry.timestamp))
+                            .ifPresent(oldest -> entries.remove(oldest.memberKey));
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void remove(Collection<String> memberKeys) {
+            lock.writeLock().lock();
+            try {
+                memberKeys.forEach(entries::remove);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        boolean contains(String memberKey) {
+            lock.readLock().lock();
+            try {
+                return entries.containsKey(memberKey);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        int size() {
+            lock.readLock().lock();
+            try {
+                return entries.size();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    private static class Entry {
+        private final String memberKey;
+        private final float[] vector;   // L2归一化后的单位向量
+        private final long timestamp;
+
+        Entry(String memberKey, float[] vector, long timestamp) {
+            this.memberKey = memberKey;
+            this.vector = vector;
+            this.timestamp = timestamp;
+        }
+    }
+}
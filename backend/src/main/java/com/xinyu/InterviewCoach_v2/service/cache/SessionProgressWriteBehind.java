@@ -0,0 +1,203 @@
+package com.xinyu.InterviewCoach_v2.service.cache;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xinyu.InterviewCoach_v2.dto.core.SessionDTO;
+import com.xinyu.InterviewCoach_v2.mapper.MessageMapper;
+import com.xinyu.InterviewCoach_v2.mapper.SessionMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 会话进度write-behind
+ * 开启后面试进行中的进度（queue_position、asked/completed计数）以Redis会话Hash为准，
+ * 推进时只记入待写回集合，由定时任务合并成批量UPDATE写回MySQL；结束会话和停机时强制写回。
+ * Redis丢失时根据message表重放恢复进度。
+ */
+@Component
+public class SessionProgressWriteBehind {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionProgressWriteBehind.class);
+
+    private static final String DIRTY_SET_KEY = "session:progress:dirty";
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    private RedisSessionManager redisSessionManager;
+
+    @Autowired
+    private SessionMapper sessionMapper;
+
+    @Autowired
+    private MessageMapper messageMapper;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${cache.session.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${cache.session.write-behind.batch-size:200}")
+    private int batchSize;
+
+    @Value("${cache.session.write-behind.max-batches-per-flush:50}")
+    private int maxBatchesPerFlush;
+
+    private Counter sessionsFlushed;
+    private Counter flushFailures;
+    private Counter progressRecovered;
+
+    @PostConstruct
+    private void init() {
+        if (meterRegistry != null) {
+            sessionsFlushed = Counter.builder("session.progress.flushed").register(meterRegistry);
+            flushFailures = Counter.builder("session.progress.flush.failures").register(meterRegistry);
+            progressRecovered = Counter.builder("session.progress.recovered").register(meterRegistry);
+        }
+        if (enabled) {
+            logger.info("会话进度write-behind已启用: batchSize={}", batchSize);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 待写回会话ID集合的key，推进进度的Lua脚本会直接写入
+     */
+    public String dirtySetKey() {
+        return DIRTY_SET_KEY;
+    }
+
+    /**
+     * 标记会话进度待写回
+     */
+    public void markDirty(Long sessionId) {
+        redisTemplate.opsForSet().add(DIRTY_SET_KEY, sessionId.toString());
+    }
+
+    /**
+     * 定时批量写回
+     */
+    @Scheduled(fixedDelayString = "${cache.session.write-behind.flush-interval-ms:5000}")
+    public void flushDirty() {
+        if (!enabled) {
+            return;
+        }
+
+        for (int i = 0; i < maxBatchesPerFlush; i++) {
+            List<String> members = redisTemplate.opsForSet().pop(DIRTY_SET_KEY, batchSize);
+            if (members == null || members.isEmpty()) {
+                return;
+            }
+
+            List<Long> sessionIds = new ArrayList<>(members.size());
+            members.forEach(member -> sessionIds.add(Long.valueOf(member)));
+            flushSessions(sessionIds);
+        }
+    }
+
+    /**
+     * 立即写回单个会话，用于结束会话前
+     */
+    public void flush(Long sessionId) {
+        if (!enabled) {
+            return;
+        }
+        redisTemplate.opsForSet().remove(DIRTY_SET_KEY, sessionId.toString());
+        flushSessions(List.of(sessionId));
+    }
+
+    /**
+     * 停机时写回全部待写回会话
+     */
+    @PreDestroy
+    public void flushAll() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Long pending = redisTemplate.opsForSet().size(DIRTY_SET_KEY);
+            flushDirty();
+            logger.info("停机写回会话进度完成: pending={}", pending);
+        } catch (Exception e) {
+            logger.error("停机写回会话进度失败", e);
+        }
+    }
+
+    /**
+     * 从message表重放会话进度：开场AI消息推进到第1题，此后每条用户回答推进一题，最后一题不再推进
+     * 仅在重放结果领先数据库时修正，返回是否修正
+     */
+    public boolean recoverProgress(SessionDTO session) {
+        if (!enabled || !Boolean.TRUE.equals(session.getIsActive()) || session.getQuestionQueue() == null) {
+            return false;
+        }
+
+        try {
+            List<Long> questionQueue = objectMapper.readValue(session.getQuestionQueue(), new TypeReference<List<Long>>() {});
+            if (questionQueue.isEmpty() || messageMapper.countAIMessagesBySessionId(session.getId()) == 0) {
+                return false;
+            }
+
+            long userMessages = messageMapper.countUserMessagesBySessionId(session.getId());
+            int advancedTurns = (int) Math.min(userMessages, questionQueue.size() - 1);
+            int position = 1 + advancedTurns;
+
+            int currentPosition = session.getQueuePosition() != null ? session.getQueuePosition() : 0;
+            if (position <= currentPosition) {
+                return false;
+            }
+
+            session.setQueuePosition(position);
+            session.setAskedQuestionCount(position);
+            session.setCompletedQuestionCount(advancedTurns);
+            if (progressRecovered != null) progressRecovered.increment();
+            logger.warn("根据消息记录恢复会话进度: sessionId={}, fromPosition={}, toPosition={}",
+                    session.getId(), currentPosition, position);
+            return true;
+        } catch (Exception e) {
+            logger.error("恢复会话进度失败: sessionId={}", session.getId(), e);
+            return false;
+        }
+    }
+
+    private void flushSessions(List<Long> sessionIds) {
+        try {
+            List<SessionDTO> progress = redisSessionManager.getProgress(sessionIds);
+            if (!progress.isEmpty()) {
+                sessionMapper.batchUpdateProgress(progress);
+            }
+            if (sessionsFlushed != null) sessionsFlushed.increment(progress.size());
+            logger.debug("写回会话进度: requested={}, flushed={}", sessionIds.size(), progress.size());
+        } catch (Exception e) {
+            // 放回待写回集合，下个周期重试
+            if (flushFailures != null) flushFailures.increment();
+            logger.error("写回会话进度失败，稍后重试: sessionIds={}", sessionIds, e);
+            try {
+                redisTemplate.opsForSet().add(DIRTY_SET_KEY,
+                        sessionIds.stream().map(String::valueOf).toArray(String[]::new));
+            } catch (Exception retryError) {
+                logger.error("放回待写回集合失败: sessionIds={}", sessionIds, retryError);
+            }
+        }
+    }
+}
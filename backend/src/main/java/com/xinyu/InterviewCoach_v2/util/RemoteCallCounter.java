@@ -0,0 +1,60 @@
+package com.xinyu.InterviewCoach_v2.util;
+
+/**
+ * 远程调用计数器
+ * 按线程统计一段逻辑（如一轮对话）内发出的数据库语句和Redis命令数量，
+ * 计数由MyBatis拦截器和Lettuce命令监听器写入，未调用begin()的线程不计数
+ */
+public final class RemoteCallCounter {
+
+    private static final ThreadLocal<Counts> CURRENT = new ThreadLocal<>();
+
+    private RemoteCallCounter() {
+    }
+
+    /**
+     * 开始统计当前线程
+     */
+    public static void begin() {
+        CURRENT.set(new Counts());
+    }
+
+    /**
+     * 结束统计并返回结果，未开始时返回null
+     */
+    public static Counts end() {
+        Counts counts = CURRENT.get();
+        CURRENT.remove();
+        return counts;
+    }
+
+    public static void recordDatabase() {
+        Counts counts = CURRENT.get();
+        if (counts != null) {
+            counts.database++;
+        }
+    }
+
+    public static void recordRedis() {
+        Counts counts = CURRENT.get();
+        if (counts != null) {
+            counts.redis++;
+        }
+    }
+
+    /**
+     * 统计结果
+     */
+    public static final class Counts {
+        private int database;
+        private int redis;
+
+        public int getDatabase() {
+            return database;
+        }
+
+        public int getRedis() {
+            return redis;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.xinyu.InterviewCoach_v2.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 向量计算工具类
+ * 向量在写入时归一化为单位向量，相似度计算退化为点积；
+ * 启动参数包含--add-modules jdk.incubator.vector时使用SIMD实现，否则使用标量实现；
+ * SIMD实现VectorMathSimd在单独的编译步骤中生成，这里只按类名加载，其余代码编译时不依赖孵化模块
+ */
+public final class VectorMath {
+
+    private static final Logger logger = LoggerFactory.getLogger(VectorMath.class);
+
+    // SIMD实现，孵化模块不可用时为null
+    private static final DotProduct SIMD = loadSimd();
+
+    private VectorMath() {
+    }
+
+    /**
+     * L2归一化为float单位向量，零向量返回null
+     */
+    public static float[] normalize(double[] vector) {
+        if (vector == null || vector.length == 0) {
+            return null;
+        }
+
+        double sumOfSquares = 0.0;
+        for (double value : vector) {
+            sumOfSquares += value * value;
+        }
+        if (sumOfSquares == 0.0) {
+            return null;
+        }
+
+        double inverseNorm = 1.0 / Math.sqrt(sumOfSquares);
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = (float) (vector[i] * inverseNorm);
+        }
+        return normalized;
+    }
+
+    /**
+     * 点积，两个单位向量的点积即余弦相似度
+     */
+    public static float dot(float[] a, float[] b) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException("向量维度不一致: " + a.length + " != " + b.length);
+        }
+        return SIMD != null ? SIMD.dot(a, b) : dotScalar(a, b);
+    }
+
+    public static boolean isSimdAvailable() {
+        return SIMD != null;
+    }
+
+    static float dotScalar(float[] a, float[] b) {
+        float sum = 0.0f;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    /**
+     * 孵化模块未加入启动参数时直接使用标量实现，不会加载VectorMathSimd
+     */
+    private static DotProduct loadSimd() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            logger.info("jdk.incubator.vector未启用，向量计算使用标量实现");
+            return null;
+        }
+        try {
+            DotProduct simd = (DotProduct) Class.forName(VectorMath.class.getPackageName() + ".VectorMathSimd")
+                    .getDeclaredConstructor().newInstance();
+            simd.dot(new float[]{1.0f}, new float[]{1.0f});
+            logger.info("向量计算使用SIMD实现: lanes={}", simd.lanes());
+            return simd;
+        } catch (Throwable e) {
+            logger.warn("SIMD向量计算不可用，使用标量实现", e);
+            return null;
+        }
+    }
+
+    /**
+     * 点积实现，由VectorMathSimd实现
+     */
+    interface DotProduct {
+
+        float dot(float[] a, float[] b);
+
+        int lanes();
+    }
+}
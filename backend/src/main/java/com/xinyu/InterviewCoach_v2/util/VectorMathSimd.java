@@ -0,0 +1,40 @@
+package com.xinyu.InterviewCoach_v2.util;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * 基于JDK Vector API的点积实现，仅在jdk.incubator.vector模块可用时由VectorMath按类名加载；
+ * 本类单独编译（见pom.xml的compile-simd），其余代码编译时不需要添加孵化模块
+ */
+final class VectorMathSimd implements VectorMath.DotProduct {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    VectorMathSimd() {
+    }
+
+    @Override
+    public float dot(float[] a, float[] b) {
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int upperBound = SPECIES.loopBound(a.length);
+        int i = 0;
+        for (; i < upperBound; i += SPECIES.length()) {
+            FloatVector va = FloatVector.fromArray(SPECIES, a, i);
+            FloatVector vb = FloatVector.fromArray(SPECIES, b, i);
+            acc = va.fma(vb, acc);
+        }
+
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public int lanes() {
+        return SPECIES.length();
+    }
+}
@@ -1,12 +1,14 @@
 package com.xinyu.InterviewCoach_v2.websocket;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xinyu.InterviewCoach_v2.service.WebSocketService;
 import com.xinyu.InterviewCoach_v2.util.JwtUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.*;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
 
 import java.net.URI;
 import java.util.HashMap;
@@ -24,6 +26,13 @@ public class ChatWebSocketHandler implements WebSocketHandler {
     @Autowired
     private JwtUtil jwtUtil;
 
+    @Autowired
+    private WebSocketService webSocketService;
+
+    // 流式推送时多个线程可能同时写同一连接，发送超时10秒、缓冲上限512KB
+    private static final int SEND_TIME_LIMIT_MS = 10000;
+    private static final int SEND_BUFFER_SIZE_LIMIT = 512 * 1024;
+
     // 存储会话连接: sessionId -> WebSocketSession
     private final Map<Long, WebSocketSession> sessionConnections = new ConcurrentHashMap<>();
 
@@ -55,14 +64,21 @@ public class ChatWebSocketHandler implements WebSocketHandler {
             Long userId = jwtUtil.getUserIdFromToken(token);
             Long sessionId = Long.parseLong(sessionIdStr);
 
+            // 包装为线程安全的连接，ai_delta帧与其他推送可能并发发送
+            WebSocketSession concurrentSession = new ConcurrentWebSocketSessionDecorator(
+                    session, SEND_TIME_LIMIT_MS, SEND_BUFFER_SIZE_LIMIT);
+
             // 存储连接
-            sessionConnections.put(sessionId, session);
-            userConnections.put(userId, session);
+            sessionConnections.put(sessionId, concurrentSession);
+            userConnections.put(userId, concurrentSession);
 
             // 在session中存储元数据
             session.getAttributes().put("userId", userId);
             session.getAttributes().put("sessionId", sessionId);
 
+            // 注册到推送服务，供ChatService/队列消费者推送消息
+            webSocketService.registerConnection(sessionId, userId, concurrentSession);
+
             logger.info("WebSocket连接建立: userId={}, sessionId={}, wsSessionId={}",
                     userId, sessionId, session.getId());
 
@@ -93,8 +109,12 @@ public class ChatWebSocketHandler implements WebSocketHandler {
                 String type = (String) data.get("type");
 
                 if ("ping".equals(type)) {
-                    // 回复pong
-                    sendMessage(session, Map.of("type", "pong", "timestamp", System.currentTimeMillis()));
+                    // 回复pong，优先使用线程安全的包装连接
+                    Long sessionId = (Long) session.getAttributes().get("sessionId");
+                    WebSocketSession registered = sessionId != null ? sessionConnections.get(sessionId) : null;
+                    WebSocketSession target = registered != null && registered.getId().equals(session.getId())
+                            ? registered : session;
+                    sendMessage(target, Map.of("type", "pong", "timestamp", System.currentTimeMillis()));
                 }
 
             } catch (Exception e) {
@@ -114,11 +134,14 @@ public class ChatWebSocketHandler implements WebSocketHandler {
         Long sessionId = (Long) session.getAttributes().get("sessionId");
 
         if (sessionId != null) {
-            sessionConnections.remove(sessionId);
+            sessionConnections.computeIfPresent(sessionId,
+                    (key, current) -> current.getId().equals(session.getId()) ? null : current);
         }
         if (userId != null) {
-            userConnections.remove(userId);
+            userConnections.computeIfPresent(userId,
+                    (key, current) -> current.getId().equals(session.getId()) ? null : current);
         }
+        webSocketService.unregisterConnection(session);
 
         logger.info("WebSocket连接关闭: userId={}, sessionId={}, reason={}",
                 userId, sessionId, closeStatus.getReason());
@@ -0,0 +1,157 @@
+package com.xinyu.InterviewCoach_v2.queue.consumer;
+
+import com.xinyu.InterviewCoach_v2.config.properties.AIQueueProperties;
+import com.xinyu.InterviewCoach_v2.config.properties.OpenAIProperties;
+import com.xinyu.InterviewCoach_v2.queue.constants.AIQueueTopics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 隔离舱许可：每个Topic独立计数，预占不超过容量，任务结束或归还后许可恢复，未知Topic不限制
+ */
+class AIQueueBulkheadTest {
+
+    private static final String FEEDBACK = AIQueueTopics.FEEDBACK_GENERATION;
+    private static final String EMBEDDING = AIQueueTopics.EMBEDDING_CALCULATION;
+
+    private AIQueueBulkhead bulkhead;
+
+    @BeforeEach
+    void setUp() {
+        AIQueueProperties queueProperties = new AIQueueProperties();
+        AIQueueProperties.Topics topics = queueProperties.getTopics();
+        topics.getQuestionGeneration().setMaxConcurrency(1);
+        topics.getFeedbackGeneration().setMaxConcurrency(2);
+        topics.getEmbeddingCalculation().setMaxConcurrency(3);
+        topics.getFinalEvaluation().setMaxConcurrency(1);
+
+        bulkhead = new AIQueueBulkhead();
+        ReflectionTestUtils.setField(bulkhead, "queueProperties", queueProperties);
+        ReflectionTestUtils.setField(bulkhead, "openAIProperties", new OpenAIProperties());
+        ReflectionTestUtils.setField(bulkhead, "environment", new MockEnvironment());
+        ReflectionTestUtils.invokeMethod(bulkhead, "init");
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.invokeMethod(bulkhead, "shutdown");
+    }
+
+    @Test
+    void tryAcquireIsCappedPerTopic() {
+        assertEquals(7, bulkhead.availablePermits());
+
+        assertEquals(2, bulkhead.tryAcquire(FEEDBACK, 5));
+        assertEquals(0, bulkhead.tryAcquire(FEEDBACK, 1));
+        // 一个Topic用尽不影响其他Topic
+        assertEquals(3, bulkhead.tryAcquire(EMBEDDING, 3));
+        assertEquals(2, bulkhead.availablePermits());
+    }
+
+    @Test
+    void releaseReturnsUnusedPermits() {
+        assertEquals(2, bulkhead.tryAcquire(FEEDBACK, 2));
+        bulkhead.release(FEEDBACK, 1);
+        assertEquals(1, bulkhead.tryAcquire(FEEDBACK, 2));
+
+        // 归还0个或负数不改变许可
+        bulkhead.release(FEEDBACK, 0);
+        bulkhead.release(FEEDBACK, -1);
+        assertEquals(0, bulkhead.tryAcquire(FEEDBACK, 1));
+    }
+
+    @Test
+    void unknownTopicIsUnbounded() {
+        assertEquals(50, bulkhead.tryAcquire("ai.unknown", 50));
+        bulkhead.release("ai.unknown", 50);
+        assertEquals(7, bulkhead.availablePermits());
+    }
+
+    @Test
+    void executeReleasesPermitWhenTaskFinishes() throws Exception {
+        assertEquals(2, bulkhead.tryAcquire(FEEDBACK, 2));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+
+        bulkhead.execute(FEEDBACK, () -> {
+            started.countDown();
+            try {
+                finish.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        // 任务运行中许可仍被占用
+        assertEquals(0, bulkhead.tryAcquire(FEEDBACK, 1));
+
+        finish.countDown();
+        assertTrue(waitFor(() -> bulkhead.tryAcquire(FEEDBACK, 1) == 1));
+    }
+
+    @Test
+    void executeReleasesPermitWhenTaskThrows() throws Exception {
+        assertEquals(2, bulkhead.tryAcquire(FEEDBACK, 2));
+        bulkhead.execute(FEEDBACK, () -> {
+            throw new IllegalStateException("boom");
+        });
+        assertTrue(waitFor(() -> bulkhead.tryAcquire(FEEDBACK, 1) == 1));
+    }
+
+    @Test
+    void awaitCapacityWakesWhenPermitReleased() throws Exception {
+        drainAll();
+        assertEquals(0, bulkhead.availablePermits());
+
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            bulkhead.release(EMBEDDING, 1);
+        });
+        long start = System.nanoTime();
+        releaser.start();
+        bulkhead.awaitCapacity(10000);
+        long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        releaser.join();
+
+        assertEquals(1, bulkhead.availablePermits());
+        assertTrue(waitedMs < 5000, "释放许可后应被唤醒，实际等待" + waitedMs + "ms");
+    }
+
+    @Test
+    void awaitCapacityReturnsImmediatelyWhenPermitsRemain() throws Exception {
+        long start = System.nanoTime();
+        bulkhead.awaitCapacity(10000);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+    }
+
+    private void drainAll() {
+        bulkhead.tryAcquire(AIQueueTopics.QUESTION_GENERATION, 10);
+        bulkhead.tryAcquire(FEEDBACK, 10);
+        bulkhead.tryAcquire(EMBEDDING, 10);
+        bulkhead.tryAcquire(AIQueueTopics.FINAL_EVALUATION, 10);
+    }
+
+    private static boolean waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            if (condition.getAsBoolean()) {
+                return true;
+            }
+            Thread.sleep(10);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,289 @@
+package com.xinyu.InterviewCoach_v2.queue.consumer;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xinyu.InterviewCoach_v2.config.properties.AIQueueProperties;
+import com.xinyu.InterviewCoach_v2.queue.constants.AIQueueTopics;
+import com.xinyu.InterviewCoach_v2.queue.handler.AITaskHandler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 消费者出队顺序：strict模式始终从高到低，weighted模式按权重轮转首先读取的优先级；
+ * 处理失败按指数退避进入重试队列，超过最大重试次数或未知Topic转入死信流；
+ * 旧版单一请求流先读出消息，再只预占该消息Topic的许可
+ */
+class AIQueueConsumerTest {
+
+    private static final String HIGH = AIQueueTopics.PRIORITY_HIGH;
+    private static final String MEDIUM = AIQueueTopics.PRIORITY_MEDIUM;
+    private static final String LOW = AIQueueTopics.PRIORITY_LOW;
+
+    private static final String TOPIC = AIQueueTopics.FEEDBACK_GENERATION;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private AIQueueProperties queueProperties;
+    private AIQueueConsumer consumer;
+    private AITaskHandler handler;
+    private AIQueueBulkhead bulkhead;
+    private StreamOperations<String, Object, Object> streamOperations;
+    private ZSetOperations<String, String> zSetOperations;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        queueProperties = new AIQueueProperties();
+        consumer = new AIQueueConsumer();
+        ReflectionTestUtils.setField(consumer, "queueProperties", queueProperties);
+        ReflectionTestUtils.setField(consumer, "objectMapper", objectMapper);
+
+        RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+        RedisTemplate<String, String> stringRedisTemplate = mock(RedisTemplate.class);
+        streamOperations = mock(StreamOperations.class);
+        zSetOperations = mock(ZSetOperations.class);
+        doReturn(streamOperations).when(redisTemplate).opsForStream();
+        doReturn(zSetOperations).when(stringRedisTemplate).opsForZSet();
+        ReflectionTestUtils.setField(consumer, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(consumer, "stringRedisTemplate", stringRedisTemplate);
+
+        handler = mock(AITaskHandler.class);
+        Map<String, AITaskHandler> handlers = (Map<String, AITaskHandler>) ReflectionTestUtils.getField(consumer, "handlers");
+        handlers.put(TOPIC, handler);
+
+        bulkhead = mock(AIQueueBulkhead.class);
+        ReflectionTestUtils.setField(consumer, "bulkhead", bulkhead);
+        ReflectionTestUtils.setField(consumer, "legacyStream", queueProperties.getStreams().getRequests());
+    }
+
+    @Test
+    void strictModeAlwaysReadsHighToLow() {
+        queueProperties.getConsumer().setDequeueMode("strict");
+        useWeights(6, 3, 1);
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals(List.of(HIGH, MEDIUM, LOW), nextPriorityOrder());
+        }
+    }
+
+    @Test
+    void weightedScheduleExpandsWeightsInPriorityOrder() {
+        useWeights(3, 2, 1);
+        assertEquals(List.of(HIGH, HIGH, HIGH, MEDIUM, MEDIUM, LOW),
+                ReflectionTestUtils.getField(consumer, "weightedSchedule"));
+    }
+
+    @Test
+    void weightedScheduleIgnoresNegativeWeightsAndFallsBackToHigh() {
+        useWeights(-1, 0, 2);
+        assertEquals(List.of(LOW, LOW), ReflectionTestUtils.getField(consumer, "weightedSchedule"));
+
+        useWeights(0, 0, 0);
+        assertEquals(List.of(HIGH), ReflectionTestUtils.getField(consumer, "weightedSchedule"));
+    }
+
+    @Test
+    void weightedModeRotatesFirstPriorityByWeight() {
+        queueProperties.getConsumer().setDequeueMode("weighted");
+        useWeights(6, 3, 1);
+
+        Map<String, Integer> firsts = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            List<String> order = nextPriorityOrder();
+            firsts.merge(order.get(0), 1, Integer::sum);
+
+            // 其余优先级仍从高到低，且三个优先级都会被读取
+            assertEquals(Set.of(HIGH, MEDIUM, LOW), new HashSet<>(order));
+            List<String> rest = new ArrayList<>(List.of(HIGH, MEDIUM, LOW));
+            rest.remove(order.get(0));
+            assertEquals(rest, order.subList(1, 3));
+        }
+        assertEquals(Map.of(HIGH, 60, MEDIUM, 30, LOW, 10), firsts);
+    }
+
+    @Test
+    void dequeueModeIsCaseInsensitive() {
+        queueProperties.getConsumer().setDequeueMode("WEIGHTED");
+        useWeights(0, 0, 1);
+        assertEquals(List.of(LOW, HIGH, MEDIUM), nextPriorityOrder());
+    }
+
+    @Test
+    void retryDelayDoublesUntilCapped() throws Exception {
+        AIQueueProperties.Processors processors = queueProperties.getProcessors();
+        processors.setRetryDelaySeconds(5);
+        processors.setMaxRetryDelaySeconds(300);
+
+        long[] expectedSeconds = {5, 10, 20, 40, 80, 160, 300, 300};
+        for (int i = 0; i < expectedSeconds.length; i++) {
+            int retryCount = i + 1;
+            long before = System.currentTimeMillis();
+            ReflectionTestUtils.invokeMethod(consumer, "scheduleRetry", record(TOPIC, 0),
+                    retryCount, new RuntimeException("timeout"));
+            long after = System.currentTimeMillis();
+
+            ArgumentCaptor<Double> score = ArgumentCaptor.forClass(Double.class);
+            verify(zSetOperations).add(eq(queueProperties.getStreams().getRetry()), anyString(), score.capture());
+            long dueAt = score.getValue().longValue();
+            assertTrue(dueAt >= before + expectedSeconds[i] * 1000 && dueAt <= after + expectedSeconds[i] * 1000,
+                    "retryCount=" + retryCount);
+            clearInvocations(zSetOperations);
+        }
+    }
+
+    @Test
+    void largeRetryCountDoesNotOverflowDelay() {
+        queueProperties.getProcessors().setMaxRetryDelaySeconds(300);
+        long before = System.currentTimeMillis();
+        ReflectionTestUtils.invokeMethod(consumer, "scheduleRetry", record(TOPIC, 0), 100, new RuntimeException());
+
+        ArgumentCaptor<Double> score = ArgumentCaptor.forClass(Double.class);
+        verify(zSetOperations).add(anyString(), anyString(), score.capture());
+        long delayMs = score.getValue().longValue() - before;
+        assertTrue(delayMs >= 300000 && delayMs < 301000, "delayMs=" + delayMs);
+    }
+
+    @Test
+    void retryRecordCarriesCountAndRootCause() throws Exception {
+        ReflectionTestUtils.invokeMethod(consumer, "scheduleRetry", record(TOPIC, 1), 2,
+                new RuntimeException("wrapper", new IllegalStateException("rate limited")));
+
+        ArgumentCaptor<String> member = ArgumentCaptor.forClass(String.class);
+        verify(zSetOperations).add(anyString(), member.capture(), anyDouble());
+        Map<String, Object> retryRecord = objectMapper.readValue(member.getValue(), new TypeReference<>() {});
+        assertEquals(2, retryRecord.get("retryCount"));
+        assertEquals(TOPIC, retryRecord.get("topic"));
+        assertEquals("m-1", retryRecord.get("messageId"));
+        assertEquals("IllegalStateException: rate limited", retryRecord.get("lastError"));
+    }
+
+    @Test
+    void failureBelowMaxRetriesIsRescheduledAndAcked() {
+        queueProperties.getProcessors().setMaxRetries(3);
+        MapRecord<String, Object, Object> record = record(TOPIC, 2);
+
+        ReflectionTestUtils.invokeMethod(consumer, "handleProcessingError", record, new RuntimeException("boom"));
+
+        verify(zSetOperations).add(anyString(), anyString(), anyDouble());
+        verify(streamOperations, never()).add(anyString(), anyMap());
+        verify(streamOperations).acknowledge(queueProperties.getConsumer().getGroupName(), record);
+        verify(handler, never()).onFailure(any());
+    }
+
+    @Test
+    void failureAtMaxRetriesIsDeadLetteredAndAcked() {
+        queueProperties.getProcessors().setMaxRetries(3);
+        MapRecord<String, Object, Object> record = record(TOPIC, 3);
+
+        ReflectionTestUtils.invokeMethod(consumer, "handleProcessingError", record, new RuntimeException("boom"));
+
+        verify(zSetOperations, never()).add(anyString(), anyString(), anyDouble());
+        verify(streamOperations).add(eq(queueProperties.getStreams().getDeadLetter()), anyMap());
+        verify(streamOperations).acknowledge(queueProperties.getConsumer().getGroupName(), record);
+        verify(handler).onFailure(any());
+    }
+
+    @Test
+    void unknownTopicIsDeadLetteredWithoutRetry() {
+        MapRecord<String, Object, Object> record = record("ai.unknown", 0);
+
+        ReflectionTestUtils.invokeMethod(consumer, "handleProcessingError", record, new RuntimeException("boom"));
+
+        verify(zSetOperations, never()).add(anyString(), anyString(), anyDouble());
+        verify(streamOperations).add(eq(queueProperties.getStreams().getDeadLetter()), anyMap());
+        verify(streamOperations).acknowledge(queueProperties.getConsumer().getGroupName(), record);
+    }
+
+    @Test
+    void failureHandlingErrorLeavesMessagePending() {
+        doThrow(new RuntimeException("redis down")).when(zSetOperations).add(anyString(), anyString(), anyDouble());
+        MapRecord<String, Object, Object> record = record(TOPIC, 0);
+
+        ReflectionTestUtils.invokeMethod(consumer, "handleProcessingError", record, new RuntimeException("boom"));
+
+        // 不确认，等待回收后重新处理
+        verify(streamOperations, never()).acknowledge(anyString(), any(MapRecord.class));
+    }
+
+    @Test
+    void legacyReadReservesOnlyTheRecordTopic() {
+        MapRecord<String, Object, Object> record = record(TOPIC, 0);
+        stubLegacyRead(List.of(record));
+        when(bulkhead.tryAcquire(TOPIC, 1)).thenReturn(1);
+
+        List<?> reserved = ReflectionTestUtils.invokeMethod(consumer, "readLegacy");
+
+        assertEquals(1, reserved.size());
+        assertEquals(TOPIC, ReflectionTestUtils.getField(reserved.get(0), "topic"));
+        verify(bulkhead).tryAcquire(TOPIC, 1);
+        verifyNoMoreInteractions(bulkhead);
+    }
+
+    @Test
+    void legacyRecordOfSaturatedTopicRunsOutsideBulkhead() {
+        stubLegacyRead(List.of(record(TOPIC, 0)));
+        when(bulkhead.tryAcquire(TOPIC, 1)).thenReturn(0);
+
+        List<?> reserved = ReflectionTestUtils.invokeMethod(consumer, "readLegacy");
+
+        assertEquals(1, reserved.size());
+        assertNull(ReflectionTestUtils.getField(reserved.get(0), "topic"));
+    }
+
+    @Test
+    void emptyLegacyStreamReservesNothing() {
+        stubLegacyRead(List.of());
+
+        List<?> reserved = ReflectionTestUtils.invokeMethod(consumer, "readLegacy");
+
+        assertTrue(reserved.isEmpty());
+        verifyNoInteractions(bulkhead);
+    }
+
+    private void stubLegacyRead(List<MapRecord<String, Object, Object>> records) {
+        when(streamOperations.read(any(Consumer.class), any(StreamReadOptions.class), any(StreamOffset[].class)))
+                .thenReturn(records);
+    }
+
+    private void useWeights(int high, int medium, int low) {
+        AIQueueProperties.Consumer config = queueProperties.getConsumer();
+        config.setHighWeight(high);
+        config.setMediumWeight(medium);
+        config.setLowWeight(low);
+        ReflectionTestUtils.setField(consumer, "weightedSchedule",
+                ReflectionTestUtils.invokeMethod(consumer, "buildWeightedSchedule"));
+    }
+
+    private List<String> nextPriorityOrder() {
+        return ReflectionTestUtils.invokeMethod(consumer, "nextPriorityOrder");
+    }
+
+    private static MapRecord<String, Object, Object> record(String topic, int retryCount) {
+        Map<Object, Object> data = new LinkedHashMap<>();
+        data.put("messageId", "m-1");
+        data.put("topic", topic);
+        data.put("priority", HIGH);
+        data.put("payload", "{}");
+        data.put("retryCount", String.valueOf(retryCount));
+        return StreamRecords.<String, Object, Object>mapBacked(data)
+                .withStreamKey("ai:requests:high:feedback_generation")
+                .withId(RecordId.of("1-0"));
+    }
+}
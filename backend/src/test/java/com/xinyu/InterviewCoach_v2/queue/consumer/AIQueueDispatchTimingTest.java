@@ -0,0 +1,191 @@
+package com.xinyu.InterviewCoach_v2.queue.consumer;
+
+import ch.qos.logback.classic.Level;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xinyu.InterviewCoach_v2.config.properties.AIQueueProperties;
+import com.xinyu.InterviewCoach_v2.queue.constants.AIQueueTopics;
+import com.xinyu.InterviewCoach_v2.queue.handler.AITaskHandler;
+import com.xinyu.InterviewCoach_v2.util.TimingHarness;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Method;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * AI队列分发开销的耗时对比，默认不运行：mvn test -Dtest=AIQueueDispatchTimingTest -Dbenchmark=true
+ * 处理器本身为空操作，只衡量消费者侧的分发：按Topic查处理器表 vs 原先每条消息getDeclaredMethod+setAccessible+invoke，
+ * 以及processAIMessage整条路径（payload反序列化、分发、确认）
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class AIQueueDispatchTimingTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(AIQueueDispatchTimingTest.class);
+
+    private static final List<String> TOPICS = List.of(
+            AIQueueTopics.QUESTION_GENERATION, AIQueueTopics.FEEDBACK_GENERATION,
+            AIQueueTopics.EMBEDDING_CALCULATION, AIQueueTopics.FINAL_EVALUATION);
+
+    private static final Map<String, String> LEGACY_METHODS = Map.of(
+            AIQueueTopics.QUESTION_GENERATION, "processQuestionGeneration",
+            AIQueueTopics.FEEDBACK_GENERATION, "processFeedbackGeneration",
+            AIQueueTopics.EMBEDDING_CALCULATION, "processEmbeddingCalculation",
+            AIQueueTopics.FINAL_EVALUATION, "processFinalEvaluation");
+
+    private static final int OPS = 10000;
+
+    @Test
+    void handlerMapVersusReflectiveDispatch() throws Exception {
+        Map<String, AITaskHandler> handlers = new HashMap<>();
+        for (String topic : TOPICS) {
+            handlers.put(topic, new CountingHandler(topic));
+        }
+        LegacyProcessors legacy = new LegacyProcessors();
+        Map<String, Object> payload = Map.of("sessionId", 1L);
+
+        double mapNanos = TimingHarness.nanosPerOp(20, 15, OPS, i -> {
+            try {
+                AITaskHandler handler = handlers.get(TOPICS.get(i & 3));
+                handler.handle(payload);
+                return ((CountingHandler) handler).count;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        double reflectiveNanos = TimingHarness.nanosPerOp(20, 15, OPS, i -> {
+            try {
+                Method method = legacy.getClass().getDeclaredMethod(LEGACY_METHODS.get(TOPICS.get(i & 3)), Map.class);
+                method.setAccessible(true);
+                return (Long) method.invoke(legacy, payload);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        logger.info("分发耗时: handlerMap={}ns, reflection={}ns, ratio={}x",
+                String.format("%.1f", mapNanos), String.format("%.1f", reflectiveNanos),
+                String.format("%.1f", reflectiveNanos / mapNanos));
+        assertTrue(mapNanos > 0 && reflectiveNanos > 0);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void processMessagePath() throws Exception {
+        AIQueueConsumer consumer = new AIQueueConsumer();
+        ObjectMapper objectMapper = new ObjectMapper();
+        ReflectionTestUtils.setField(consumer, "queueProperties", new AIQueueProperties());
+        ReflectionTestUtils.setField(consumer, "objectMapper", objectMapper);
+
+        // 只做桩、不记录调用，避免上万次确认调用的记录本身成为开销
+        RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class, withSettings().stubOnly());
+        StreamOperations<String, Object, Object> streamOperations = mock(StreamOperations.class, withSettings().stubOnly());
+        doReturn(streamOperations).when(redisTemplate).opsForStream();
+        ReflectionTestUtils.setField(consumer, "redisTemplate", redisTemplate);
+
+        Map<String, AITaskHandler> handlers = (Map<String, AITaskHandler>) ReflectionTestUtils.getField(consumer, "handlers");
+        List<CountingHandler> counting = new ArrayList<>();
+        for (String topic : TOPICS) {
+            CountingHandler handler = new CountingHandler(topic);
+            handlers.put(topic, handler);
+            counting.add(handler);
+        }
+
+        List<MapRecord<String, Object, Object>> records = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            Map<Object, Object> data = new LinkedHashMap<>();
+            data.put("messageId", "m-" + i);
+            data.put("topic", TOPICS.get(i & 3));
+            data.put("priority", AIQueueTopics.PRIORITY_HIGH);
+            data.put("payload", objectMapper.writeValueAsString(Map.of(
+                    "sessionId", i, "userId", 7, "turnId", UUID.randomUUID().toString(), "userAnswer", "答案" + i)));
+            records.add(StreamRecords.<String, Object, Object>mapBacked(data)
+                    .withStreamKey("ai:requests:high:" + TOPICS.get(i & 3))
+                    .withId(RecordId.of(i + 1 + "-0")));
+        }
+
+        // 每条消息的INFO日志会淹没分发本身的耗时
+        ch.qos.logback.classic.Logger consumerLogger =
+                (ch.qos.logback.classic.Logger) LoggerFactory.getLogger(AIQueueConsumer.class);
+        Level level = consumerLogger.getLevel();
+        consumerLogger.setLevel(Level.WARN);
+        // 只查找一次，避免ReflectionTestUtils每次调用都查找方法
+        Method processAIMessage = AIQueueConsumer.class.getDeclaredMethod("processAIMessage", MapRecord.class);
+        processAIMessage.setAccessible(true);
+        double nanos;
+        try {
+            nanos = TimingHarness.nanosPerOp(20, 15, OPS, i -> {
+                try {
+                    processAIMessage.invoke(consumer, records.get(i & 63));
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException(e);
+                }
+                return i;
+            });
+        } finally {
+            consumerLogger.setLevel(level);
+        }
+
+        long handled = counting.stream().mapToLong(handler -> handler.count).sum();
+        logger.info("processAIMessage耗时: {}ns/条（含payload反序列化、分发和桩确认），共处理{}条",
+                String.format("%.1f", nanos), handled);
+        assertEquals(35L * OPS, handled);
+    }
+
+    /**
+     * 空操作处理器，只计数
+     */
+    private static class CountingHandler implements AITaskHandler {
+
+        private final String topic;
+        private long count;
+
+        CountingHandler(String topic) {
+            this.topic = topic;
+        }
+
+        @Override
+        public String topic() {
+            return topic;
+        }
+
+        @Override
+        public void handle(Map<String, Object> payload) {
+            count++;
+        }
+    }
+
+    /**
+     * 模拟原先由消费者反射调用的ChatService私有方法
+     */
+    private static class LegacyProcessors {
+
+        private long count;
+
+        private Long processQuestionGeneration(Map<String, Object> payload) {
+            return ++count;
+        }
+
+        private Long processFeedbackGeneration(Map<String, Object> payload) {
+            return ++count;
+        }
+
+        private Long processEmbeddingCalculation(Map<String, Object> payload) {
+            return ++count;
+        }
+
+        private Long processFinalEvaluation(Map<String, Object> payload) {
+            return ++count;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.xinyu.InterviewCoach_v2.service.cache;
+
+import com.xinyu.InterviewCoach_v2.config.properties.AIQueueProperties;
+import com.xinyu.InterviewCoach_v2.dto.response.chat.ChatTurnResponseDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 对话轮次状态机在真实Redis上的转换：PENDING -> PROCESSING -> PENDING/COMPLETED/FAILED，
+ * 租约过期后可重新领取，已完成或已失败的轮次不能再领取或失败
+ * 需要Redis：REDIS_HOST=localhost mvn test -Dtest=ChatTurnStoreRedisTest（可选REDIS_PORT，默认6379）
+ */
+@EnabledIfEnvironmentVariable(named = "REDIS_HOST", matches = ".+")
+class ChatTurnStoreRedisTest {
+
+    private static final long LEASE_MS = 200;
+
+    private LettuceConnectionFactory connectionFactory;
+    private StringRedisTemplate redisTemplate;
+    private ChatTurnStore store;
+    private String prefix;
+
+    @BeforeEach
+    void setUp() {
+        String host = System.getenv("REDIS_HOST");
+        String port = System.getenv("REDIS_PORT");
+        connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration(host, port != null ? Integer.parseInt(port) : 6379));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+
+        // 每次测试独立的key前缀，结束后清理
+        prefix = "test:turn:" + UUID.randomUUID() + ":";
+        store = new ChatTurnStore();
+        ReflectionTestUtils.setField(store, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(store, "queueProperties", new AIQueueProperties());
+        ReflectionTestUtils.setField(store, "turnTtl", 60L);
+        ReflectionTestUtils.setField(store, "turnPrefix", prefix);
+        ReflectionTestUtils.setField(store, "processingLeaseMs", LEASE_MS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        Set<String> keys = redisTemplate.keys(prefix + "*");
+        if (keys != null && !keys.isEmpty()) {
+            redisTemplate.delete(keys);
+        }
+        connectionFactory.destroy();
+    }
+
+    @Test
+    void pendingTurnIsClaimedOnce() {
+        store.create("t", 42L, 7L);
+
+        assertTrue(store.claim("t", 42L, 7L, "a"));
+        assertEquals(ChatTurnResponseDTO.STATUS_PROCESSING, store.getStatus("t"));
+        // 租约未过期，重复投递领取不到
+        assertFalse(store.claim("t", 42L, 7L, "b"));
+    }
+
+    @Test
+    void expiredLeaseCanBeReclaimed() throws InterruptedException {
+        store.create("t", 42L, 7L);
+        assertTrue(store.claim("t", 42L, 7L, "a"));
+
+        Thread.sleep(LEASE_MS + 100);
+
+        assertTrue(store.claim("t", 42L, 7L, "b"));
+        assertEquals("b", store.get("t").orElseThrow().get(ChatTurnStore.FIELD_CLAIM_TOKEN));
+    }
+
+    @Test
+    void releaseByHolderReturnsTurnToPending() {
+        store.create("t", 42L, 7L);
+        assertTrue(store.claim("t", 42L, 7L, "a"));
+
+        // 其他令牌归还无效
+        store.release("t", "b");
+        assertEquals(ChatTurnResponseDTO.STATUS_PROCESSING, store.getStatus("t"));
+
+        store.release("t", "a");
+        Map<String, String> fields = store.get("t").orElseThrow();
+        assertEquals(ChatTurnResponseDTO.STATUS_PENDING, fields.get(ChatTurnStore.FIELD_STATUS));
+        assertFalse(fields.containsKey(ChatTurnStore.FIELD_CLAIM_TOKEN));
+        assertFalse(fields.containsKey(ChatTurnStore.FIELD_CLAIMED_AT));
+
+        assertTrue(store.claim("t", 42L, 7L, "b"));
+    }
+
+    @Test
+    void completedTurnCannotBeClaimedOrFailed() {
+        store.create("t", 42L, 7L);
+        assertTrue(store.claim("t", 42L, 7L, "a"));
+        store.complete("t", 100L, "回复", "WAITING_FOR_USER_ANSWER");
+
+        assertFalse(store.claim("t", 42L, 7L, "b"));
+        assertFalse(store.failIfUnfinished("t", 42L, 7L, "error"));
+        assertEquals(ChatTurnResponseDTO.STATUS_COMPLETED, store.getStatus("t"));
+    }
+
+    @Test
+    void failIfUnfinishedFailsPendingTurnOnlyOnce() {
+        store.create("t", 42L, 7L);
+
+        assertTrue(store.failIfUnfinished("t", 42L, 7L, "AI服务暂时不可用"));
+        Map<String, String> fields = store.get("t").orElseThrow();
+        assertEquals(ChatTurnResponseDTO.STATUS_FAILED, fields.get(ChatTurnStore.FIELD_STATUS));
+        assertEquals("AI服务暂时不可用", fields.get(ChatTurnStore.FIELD_ERROR));
+
+        // 已失败：调用方不会再次回滚，也不能再被领取
+        assertFalse(store.failIfUnfinished("t", 42L, 7L, "again"));
+        assertFalse(store.claim("t", 42L, 7L, "a"));
+    }
+
+    @Test
+    void failIfUnfinishedWaitsForLiveLeaseButTakesExpiredOne() throws InterruptedException {
+        store.create("t", 42L, 7L);
+        assertTrue(store.claim("t", 42L, 7L, "a"));
+
+        // 仍在处理中，不能回滚
+        assertFalse(store.failIfUnfinished("t", 42L, 7L, "error"));
+
+        Thread.sleep(LEASE_MS + 100);
+        assertTrue(store.failIfUnfinished("t", 42L, 7L, "error"));
+        assertFalse(store.get("t").orElseThrow().containsKey(ChatTurnStore.FIELD_CLAIM_TOKEN));
+    }
+
+    @Test
+    void expiredTurnIsRebuiltFromPayloadOnClaim() {
+        assertTrue(store.claim("t", 42L, 7L, "a"));
+
+        Map<String, String> fields = store.get("t").orElseThrow();
+        assertEquals("42", fields.get(ChatTurnStore.FIELD_SESSION_ID));
+        assertEquals("7", fields.get(ChatTurnStore.FIELD_USER_ID));
+        assertEquals(ChatTurnResponseDTO.STATUS_PROCESSING, fields.get(ChatTurnStore.FIELD_STATUS));
+        Long ttl = redisTemplate.getExpire(prefix + "t");
+        assertTrue(ttl != null && ttl > 0);
+    }
+
+    @Test
+    void sessionLockIsReleasedOnlyByHolder() {
+        assertTrue(store.tryLockSession(42L, "t1"));
+        assertFalse(store.tryLockSession(42L, "t2"));
+
+        store.unlockSession(42L, "t2");
+        assertFalse(store.tryLockSession(42L, "t3"));
+
+        store.unlockSession(42L, "t1");
+        assertTrue(store.tryLockSession(42L, "t3"));
+    }
+}
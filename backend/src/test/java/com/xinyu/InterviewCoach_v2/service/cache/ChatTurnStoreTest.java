@@ -0,0 +1,146 @@
+package com.xinyu.InterviewCoach_v2.service.cache;
+
+import com.xinyu.InterviewCoach_v2.config.properties.AIQueueProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 对话轮次CLAIM/RELEASE/FAIL脚本的KEYS、ARGV约定和返回值处理，以及会话锁
+ * 脚本本身的状态转换需要Redis执行，见ChatTurnStoreRedisTest
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class ChatTurnStoreTest {
+
+    private static final String TURN_ID = "t-1";
+    private static final String TURN_KEY = "turn:t-1";
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    private ChatTurnStore store;
+
+    // 最近一次脚本调用的KEYS和ARGV
+    private List<String> scriptKeys;
+    private List<Object> scriptArgs;
+    private Long scriptResult;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        store = new ChatTurnStore();
+        ReflectionTestUtils.setField(store, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(store, "queueProperties", new AIQueueProperties());
+        ReflectionTestUtils.setField(store, "turnTtl", 3600L);
+        ReflectionTestUtils.setField(store, "turnPrefix", "turn:");
+        ReflectionTestUtils.setField(store, "processingLeaseMs", 300000L);
+
+        doReturn(valueOperations).when(redisTemplate).opsForValue();
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenAnswer(invocation -> {
+            scriptKeys = invocation.getArgument(1);
+            scriptArgs = Arrays.asList((Object[]) invocation.getRawArguments()[2]);
+            return scriptResult;
+        });
+    }
+
+    @Test
+    void claimPassesTokenLeaseAndPayloadFields() {
+        scriptResult = 1L;
+        long before = System.currentTimeMillis();
+
+        assertTrue(store.claim(TURN_ID, 42L, 7L, "token-a"));
+
+        // CLAIM_SCRIPT：ARGV[1]=令牌，ARGV[2]=当前时间，ARGV[3]=租约，ARGV[4]=会话ID，ARGV[5]=用户ID，ARGV[6]=TTL
+        assertEquals(List.of(TURN_KEY), scriptKeys);
+        assertEquals(6, scriptArgs.size());
+        assertEquals("token-a", scriptArgs.get(0));
+        long now = Long.parseLong((String) scriptArgs.get(1));
+        assertTrue(now >= before && now <= System.currentTimeMillis());
+        assertEquals(List.of("300000", "42", "7", "3600"), scriptArgs.subList(2, 6));
+    }
+
+    @Test
+    void claimIsRejectedUnlessScriptReturnsOne() {
+        scriptResult = 0L;
+        assertFalse(store.claim(TURN_ID, 42L, 7L, "token-a"));
+
+        scriptResult = null;
+        assertFalse(store.claim(TURN_ID, 42L, 7L, "token-a"));
+    }
+
+    @Test
+    void releasePassesOnlyTheToken() {
+        store.release(TURN_ID, "token-a");
+
+        // RELEASE_SCRIPT：ARGV[1]=领取令牌
+        assertEquals(List.of(TURN_KEY), scriptKeys);
+        assertEquals(List.of("token-a"), scriptArgs);
+    }
+
+    @Test
+    void failIfUnfinishedPassesErrorLeaseAndPayloadFields() {
+        scriptResult = 1L;
+
+        assertTrue(store.failIfUnfinished(TURN_ID, 42L, 7L, "AI服务暂时不可用"));
+
+        // FAIL_SCRIPT：ARGV[1]=错误信息，ARGV[2]=当前时间，ARGV[3]=租约，ARGV[4]=会话ID，ARGV[5]=用户ID，ARGV[6]=TTL
+        assertEquals(List.of(TURN_KEY), scriptKeys);
+        assertEquals(6, scriptArgs.size());
+        assertEquals("AI服务暂时不可用", scriptArgs.get(0));
+        assertEquals(List.of("300000", "42", "7", "3600"), scriptArgs.subList(2, 6));
+    }
+
+    @Test
+    void failIfUnfinishedSendsEmptyErrorForNullAndMapsResult() {
+        scriptResult = 0L;
+        assertFalse(store.failIfUnfinished(TURN_ID, 42L, 7L, null));
+        assertEquals("", scriptArgs.get(0));
+
+        scriptResult = null;
+        assertFalse(store.failIfUnfinished(TURN_ID, 42L, 7L, "error"));
+    }
+
+    @Test
+    void sessionLockIsSetIfAbsentWithTurnTtl() {
+        when(valueOperations.setIfAbsent("turn:session:42", TURN_ID, 3600L, TimeUnit.SECONDS)).thenReturn(true);
+        assertTrue(store.tryLockSession(42L, TURN_ID));
+
+        when(valueOperations.setIfAbsent("turn:session:42", "t-2", 3600L, TimeUnit.SECONDS)).thenReturn(false);
+        assertFalse(store.tryLockSession(42L, "t-2"));
+
+        when(valueOperations.setIfAbsent("turn:session:42", "t-3", 3600L, TimeUnit.SECONDS)).thenReturn(null);
+        assertFalse(store.tryLockSession(42L, "t-3"));
+    }
+
+    @Test
+    void unlockSessionDeletesOnlyOwnLockAndSwallowsErrors() {
+        store.unlockSession(42L, TURN_ID);
+
+        // UNLOCK_SESSION_SCRIPT：ARGV[1]=持有者的轮次ID
+        assertEquals(List.of("turn:session:42"), scriptKeys);
+        assertEquals(List.of(TURN_ID), scriptArgs);
+
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+                .thenThrow(new IllegalStateException("redis down"));
+        assertDoesNotThrow(() -> store.unlockSession(42L, TURN_ID));
+    }
+}
@@ -0,0 +1,90 @@
+package com.xinyu.InterviewCoach_v2.service.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Embedding二进制编解码：FLOAT32/INT8往返、格式校验、旧版JSON识别
+ */
+class EmbeddingCodecTest {
+
+    private static final double[] VECTOR = {0.125, -0.5, 0.0, 0.9921875, -1.0, 0.0078125};
+
+    @Test
+    void float32RoundTrip() {
+        byte[] data = EmbeddingCodec.encode(VECTOR, EmbeddingCodec.Encoding.FLOAT32);
+
+        assertEquals(EmbeddingCodec.FORMAT_FLOAT32, data[0]);
+        assertEquals(5 + VECTOR.length * 4, data.length);
+        // 以上取值都能被float精确表示
+        assertArrayEquals(VECTOR, EmbeddingCodec.decode(data));
+    }
+
+    @Test
+    void float32RoundTripWithinFloatPrecision() {
+        double[] vector = {Math.PI, -Math.E, 1e-3, 123.456};
+
+        double[] decoded = EmbeddingCodec.decode(EmbeddingCodec.encode(vector, EmbeddingCodec.Encoding.FLOAT32));
+
+        for (int i = 0; i < vector.length; i++) {
+            assertEquals((float) vector[i], decoded[i]);
+        }
+    }
+
+    @Test
+    void int8RoundTripWithinHalfStep() {
+        byte[] data = EmbeddingCodec.encode(VECTOR, EmbeddingCodec.Encoding.INT8);
+
+        assertEquals(EmbeddingCodec.FORMAT_INT8, data[0]);
+        assertEquals(5 + 4 + VECTOR.length, data.length);
+
+        // scale = max|v| / 127，量化误差不超过半个刻度
+        double scale = 1.0 / 127;
+        double[] decoded = EmbeddingCodec.decode(data);
+        assertEquals(VECTOR.length, decoded.length);
+        for (int i = 0; i < VECTOR.length; i++) {
+            assertEquals(VECTOR[i], decoded[i], scale / 2 + 1e-7);
+        }
+        // 绝对值最大的分量精确还原
+        assertEquals(-1.0, decoded[4], 1e-7);
+    }
+
+    @Test
+    void int8ZeroVector() {
+        double[] decoded = EmbeddingCodec.decode(EmbeddingCodec.encode(new double[3], EmbeddingCodec.Encoding.INT8));
+
+        assertArrayEquals(new double[3], decoded);
+    }
+
+    @Test
+    void emptyVectorRoundTrip() {
+        assertEquals(0, EmbeddingCodec.decode(EmbeddingCodec.encode(new double[0], EmbeddingCodec.Encoding.FLOAT32)).length);
+        assertEquals(0, EmbeddingCodec.decode(EmbeddingCodec.encode(new double[0], EmbeddingCodec.Encoding.INT8)).length);
+    }
+
+    @Test
+    void decodeRejectsMalformedData() {
+        byte[] data = EmbeddingCodec.encode(VECTOR, EmbeddingCodec.Encoding.FLOAT32);
+
+        assertNull(EmbeddingCodec.decode(null));
+        assertNull(EmbeddingCodec.decode(new byte[3]));
+        assertNull(EmbeddingCodec.decode(Arrays.copyOf(data, data.length - 1)));
+
+        byte[] unknownFormat = data.clone();
+        unknownFormat[0] = 0x7F;
+        assertNull(EmbeddingCodec.decode(unknownFormat));
+    }
+
+    @Test
+    void detectsLegacyJson() {
+        assertTrue(EmbeddingCodec.isLegacyJson("[0.1,0.2]".getBytes(StandardCharsets.UTF_8)));
+        assertFalse(EmbeddingCodec.isLegacyJson(EmbeddingCodec.encode(VECTOR, EmbeddingCodec.Encoding.FLOAT32)));
+        assertFalse(EmbeddingCodec.isLegacyJson(EmbeddingCodec.encode(VECTOR, EmbeddingCodec.Encoding.INT8)));
+        assertFalse(EmbeddingCodec.isLegacyJson(new byte[0]));
+        assertFalse(EmbeddingCodec.isLegacyJson(null));
+    }
+}
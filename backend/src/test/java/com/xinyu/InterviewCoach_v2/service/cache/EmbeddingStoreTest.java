@@ -0,0 +1,83 @@
+package com.xinyu.InterviewCoach_v2.service.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Embedding存储：二进制读取和旧版JSON条目的解析与迁移
+ */
+@ExtendWith(MockitoExtension.class)
+class EmbeddingStoreTest {
+
+    private static final String KEY = "embedding:question:1";
+
+    @Mock
+    private RedisTemplate<String, byte[]> binaryRedisTemplate;
+
+    @Mock
+    private ValueOperations<String, byte[]> valueOperations;
+
+    private EmbeddingStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new EmbeddingStore();
+        ReflectionTestUtils.setField(store, "binaryRedisTemplate", binaryRedisTemplate);
+        ReflectionTestUtils.setField(store, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(store, "encoding", EmbeddingCodec.Encoding.INT8);
+        when(binaryRedisTemplate.opsForValue()).thenReturn(valueOperations);
+    }
+
+    @Test
+    void readsBinaryEntry() {
+        double[] vector = {0.25, -0.75};
+        when(valueOperations.get(KEY)).thenReturn(EmbeddingCodec.encode(vector, EmbeddingCodec.Encoding.FLOAT32));
+
+        assertArrayEquals(vector, store.get(KEY));
+        verify(binaryRedisTemplate, never()).getExpire(anyString(), any(TimeUnit.class));
+    }
+
+    @Test
+    void decodesLegacyJsonAndMigratesKeepingTtl() {
+        when(valueOperations.get(KEY)).thenReturn("[0.5,-1.0,0.25]".getBytes(StandardCharsets.UTF_8));
+        when(binaryRedisTemplate.getExpire(KEY, TimeUnit.SECONDS)).thenReturn(600L);
+
+        assertArrayEquals(new double[]{0.5, -1.0, 0.25}, store.get(KEY));
+
+        ArgumentCaptor<byte[]> encoded = ArgumentCaptor.forClass(byte[].class);
+        verify(valueOperations).set(eq(KEY), encoded.capture(), eq(600L), eq(TimeUnit.SECONDS));
+        assertEquals(EmbeddingCodec.FORMAT_INT8, encoded.getValue()[0]);
+        assertArrayEquals(new double[]{0.5, -1.0, 0.25}, EmbeddingCodec.decode(encoded.getValue()), 1.0 / 254);
+    }
+
+    @Test
+    void skipsMigrationWhenKeyExpired() {
+        when(valueOperations.get(KEY)).thenReturn("[1.0]".getBytes(StandardCharsets.UTF_8));
+        when(binaryRedisTemplate.getExpire(KEY, TimeUnit.SECONDS)).thenReturn(-2L);
+
+        assertArrayEquals(new double[]{1.0}, store.get(KEY));
+        verify(valueOperations, never()).set(anyString(), any(byte[].class), anyLong(), any(TimeUnit.class));
+    }
+
+    @Test
+    void malformedEntryReturnsNull() {
+        when(valueOperations.get(KEY)).thenReturn("[1.0,".getBytes(StandardCharsets.UTF_8));
+
+        assertNull(store.get(KEY));
+    }
+}
@@ -0,0 +1,148 @@
+package com.xinyu.InterviewCoach_v2.service.cache;
+
+import com.xinyu.InterviewCoach_v2.entity.Question;
+import com.xinyu.InterviewCoach_v2.mapper.QuestionMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 随机题目抽样：Floyd算法选取不重复下标，结果只包含仍存在的题目；ID数组只在题目增删后重新加载
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class QuestionIdSamplerTest {
+
+    private static final long[] IDS = {11, 22, 33, 44, 55, 66, 77, 88};
+    private static final List<Long> ID_LIST = Arrays.stream(IDS).boxed().collect(Collectors.toList());
+
+    @Mock
+    private QuestionMapper questionMapper;
+
+    @Mock
+    private QuestionCatalogCache questionCatalogCache;
+
+    @Mock
+    private NearCache nearCache;
+
+    @InjectMocks
+    private QuestionIdSampler sampler;
+
+    // 已被删除、ID数组尚未刷新的题目
+    private final Set<Long> deleted = new HashSet<>();
+
+    @BeforeEach
+    void setUp() {
+        when(questionMapper.findAllIds()).thenReturn(ID_LIST);
+        when(questionCatalogCache.getQuestions(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            Map<Long, Question> questions = new HashMap<>();
+            for (Long id : ids) {
+                if (!deleted.contains(id)) {
+                    Question question = new Question();
+                    question.setId(id);
+                    questions.put(id, question);
+                }
+            }
+            return questions;
+        });
+    }
+
+    @Test
+    void sampleReturnsDistinctQuestions() {
+        Set<Long> all = Arrays.stream(IDS).boxed().collect(Collectors.toSet());
+
+        for (int i = 0; i < 200; i++) {
+            List<Long> ids = idsOf(sampler.sample(3));
+            assertEquals(3, ids.size());
+            assertEquals(3, new HashSet<>(ids).size());
+            assertTrue(all.containsAll(ids));
+        }
+    }
+
+    @Test
+    void sampleIsCappedByQuestionCount() {
+        assertEquals(IDS.length, new HashSet<>(idsOf(sampler.sample(20))).size());
+        assertTrue(sampler.sample(0).isEmpty());
+    }
+
+    @Test
+    void sampleIsUniform() {
+        int rounds = 40000;
+        Map<Long, Integer> frequency = new HashMap<>();
+
+        for (int i = 0; i < rounds; i++) {
+            idsOf(sampler.sample(2)).forEach(id -> frequency.merge(id, 1, Integer::sum));
+        }
+
+        // 每道题被选中的概率为2/8
+        double expected = rounds * 2 / (double) IDS.length;
+        assertEquals(IDS.length, frequency.size());
+        frequency.values().forEach(count -> assertEquals(expected, count, expected * 0.1));
+    }
+
+    @Test
+    void sampleSkipsDeletedQuestions() {
+        deleted.add(22L);
+        deleted.add(55L);
+
+        List<Long> ids = idsOf(sampler.sample(IDS.length));
+
+        assertEquals(IDS.length - 2, ids.size());
+        assertFalse(ids.contains(22L));
+        assertFalse(ids.contains(55L));
+    }
+
+    @Test
+    void loadsIdsOnceUntilInvalidated() {
+        for (int i = 0; i < 10; i++) {
+            sampler.sample(3);
+        }
+        verify(questionMapper, times(1)).findAllIds();
+
+        // 无事务时立即失效并通知其他节点
+        when(questionMapper.findAllIds()).thenReturn(List.of(5L, 6L));
+        sampler.invalidate();
+
+        assertEquals(Set.of(5L, 6L), new HashSet<>(idsOf(sampler.sample(5))));
+        verify(questionMapper, times(2)).findAllIds();
+        verify(nearCache).publish(NearCache.QUESTION_IDS, "all");
+    }
+
+    @Test
+    void reloadsAfterRemoteInvalidation() {
+        ArgumentCaptor<Consumer<String>> listener = listenerCaptor();
+        ReflectionTestUtils.invokeMethod(sampler, "init");
+        verify(nearCache).addListener(eq(NearCache.QUESTION_IDS), listener.capture());
+        sampler.sample(3);
+
+        listener.getValue().accept("all");
+        sampler.sample(3);
+
+        verify(questionMapper, times(2)).findAllIds();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArgumentCaptor<Consumer<String>> listenerCaptor() {
+        return ArgumentCaptor.forClass((Class<Consumer<String>>) (Class<?>) Consumer.class);
+    }
+
+    private List<Long> idsOf(List<Question> questions) {
+        return questions.stream().map(Question::getId).collect(Collectors.toList());
+    }
+}
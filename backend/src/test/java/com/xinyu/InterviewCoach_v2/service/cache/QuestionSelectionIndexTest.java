@@ -0,0 +1,152 @@
+package com.xinyu.InterviewCoach_v2.service.cache;
+
+import org.junit.jupiter.api.Test;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 选题位图索引的纯计算部分：Redis位图字节序转换、Floyd均匀抽样、A-Res加权抽样
+ */
+class QuestionSelectionIndexTest {
+
+    @Test
+    void toRedisBitmapUsesSetbitBitOrder() {
+        // SETBIT按字节从高位到低位编号：bit 0是第0字节的0x80，bit 7是0x01
+        byte[] data = QuestionSelectionIndex.toRedisBitmap(RoaringBitmap.bitmapOf(0, 1, 7, 8, 15));
+
+        assertArrayEquals(new byte[]{(byte) 0xC1, (byte) 0x81}, data);
+    }
+
+    @Test
+    void fromRedisBitmapReadsSetbitBitOrder() {
+        // 等价于 SETBIT key 3 1、SETBIT key 17 1
+        RoaringBitmap bitmap = QuestionSelectionIndex.fromRedisBitmap(new byte[]{0x10, 0x00, 0x40});
+
+        assertEquals(RoaringBitmap.bitmapOf(3, 17), bitmap);
+    }
+
+    @Test
+    void redisBitmapRoundTrip() {
+        RoaringBitmap bitmap = RoaringBitmap.bitmapOf(0, 5, 63, 64, 1000, 65535, 100000);
+
+        byte[] data = QuestionSelectionIndex.toRedisBitmap(bitmap);
+
+        assertEquals(100000 / 8 + 1, data.length);
+        assertEquals(bitmap, QuestionSelectionIndex.fromRedisBitmap(data));
+    }
+
+    @Test
+    void emptyRedisBitmap() {
+        assertEquals(0, QuestionSelectionIndex.toRedisBitmap(new RoaringBitmap()).length);
+        assertTrue(QuestionSelectionIndex.fromRedisBitmap(new byte[0]).isEmpty());
+        assertTrue(QuestionSelectionIndex.fromRedisBitmap(new byte[4]).isEmpty());
+    }
+
+    @Test
+    void sampleReturnsDistinctCandidates() {
+        RoaringBitmap candidates = RoaringBitmap.bitmapOf(2, 3, 5, 7, 11, 13, 17, 19);
+
+        for (int i = 0; i < 200; i++) {
+            List<Long> selected = QuestionSelectionIndex.sample(candidates, 3);
+            assertEquals(3, selected.size());
+            assertEquals(3, new HashSet<>(selected).size());
+            selected.forEach(id -> assertTrue(candidates.contains(id.intValue())));
+        }
+    }
+
+    @Test
+    void sampleReturnsAllWhenNotEnoughCandidates() {
+        RoaringBitmap candidates = RoaringBitmap.bitmapOf(4, 8, 15);
+
+        assertEquals(new HashSet<>(List.of(4L, 8L, 15L)), new HashSet<>(QuestionSelectionIndex.sample(candidates, 5)));
+        assertTrue(QuestionSelectionIndex.sample(candidates, 0).isEmpty());
+        assertTrue(QuestionSelectionIndex.sample(new RoaringBitmap(), 3).isEmpty());
+    }
+
+    @Test
+    void sampleIsUniform() {
+        RoaringBitmap candidates = new RoaringBitmap();
+        candidates.add(100L, 110L);
+        int rounds = 30000;
+        Map<Long, Integer> frequency = new HashMap<>();
+
+        for (int i = 0; i < rounds; i++) {
+            QuestionSelectionIndex.sample(candidates, 3).forEach(id -> frequency.merge(id, 1, Integer::sum));
+        }
+
+        // 每个元素被选中的概率为3/10
+        double expected = rounds * 3 / 10.0;
+        assertEquals(10, frequency.size());
+        frequency.values().forEach(count -> assertEquals(expected, count, expected * 0.1));
+    }
+
+    @Test
+    void reservoirKeyOrdersLikePowerKey() {
+        double[] us = {1e-9, 0.01, 0.2, 0.5, 0.73, 0.99, 1.0};
+        int[] attempts = {0, 1, 3, 10, 250};
+
+        for (double u1 : us) {
+            for (int a1 : attempts) {
+                for (double u2 : us) {
+                    for (int a2 : attempts) {
+                        // 权重 w = 1/(1+attempts)，u^(1/w) = u^(1+attempts)
+                        double power1 = Math.pow(u1, 1 + a1);
+                        double power2 = Math.pow(u2, 1 + a2);
+                        if (power1 == power2 || Math.abs(power1 - power2) < 1e-12 * Math.max(power1, power2)) {
+                            continue;
+                        }
+                        assertEquals(power1 > power2,
+                                QuestionSelectionIndex.reservoirKey(u1, a1) > QuestionSelectionIndex.reservoirKey(u2, a2),
+                                "u1=" + u1 + ", a1=" + a1 + ", u2=" + u2 + ", a2=" + a2);
+                    }
+                }
+            }
+        }
+        assertEquals(0.0, QuestionSelectionIndex.reservoirKey(1.0, 5));
+    }
+
+    @Test
+    void weightedSampleReturnsAllWhenNotEnoughCandidates() {
+        RoaringBitmap candidates = RoaringBitmap.bitmapOf(1, 2, 3);
+
+        List<Long> selected = QuestionSelectionIndex.weightedSample(candidates, Map.of(2L, 9), 5);
+
+        assertEquals(new HashSet<>(List.of(1L, 2L, 3L)), new HashSet<>(selected));
+        assertTrue(QuestionSelectionIndex.weightedSample(candidates, Map.of(), 0).isEmpty());
+    }
+
+    @Test
+    void weightedSampleEvictsHeavilyAttempted() {
+        RoaringBitmap candidates = RoaringBitmap.bitmapOf(1, 2, 3, 4);
+        Map<Long, Integer> attemptCounts = Map.of(3L, 1_000_000);
+
+        for (int i = 0; i < 500; i++) {
+            List<Long> selected = QuestionSelectionIndex.weightedSample(candidates, attemptCounts, 3);
+            assertEquals(3, selected.size());
+            assertEquals(new HashSet<>(List.of(1L, 2L, 4L)), new HashSet<>(selected));
+        }
+    }
+
+    @Test
+    void weightedSampleFollowsWeights() {
+        // 权重1 : 1/4，单个抽取时选中1的概率为 1 / (1 + 1/4) = 0.8
+        RoaringBitmap candidates = RoaringBitmap.bitmapOf(1, 2);
+        Map<Long, Integer> attemptCounts = Map.of(2L, 3);
+        int rounds = 20000;
+        int first = 0;
+
+        for (int i = 0; i < rounds; i++) {
+            if (QuestionSelectionIndex.weightedSample(candidates, attemptCounts, 1).get(0) == 1L) {
+                first++;
+            }
+        }
+
+        assertEquals(0.8, first / (double) rounds, 0.02);
+    }
+}
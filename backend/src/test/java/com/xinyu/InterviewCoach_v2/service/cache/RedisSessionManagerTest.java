@@ -0,0 +1,191 @@
+package com.xinyu.InterviewCoach_v2.service.cache;
+
+import com.xinyu.InterviewCoach_v2.dto.core.SessionDTO;
+import com.xinyu.InterviewCoach_v2.enums.InterviewState;
+import com.xinyu.InterviewCoach_v2.enums.SessionMode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 会话Hash缓存：字段转换往返，以及推进/恢复进度脚本的KEYS、ARGV约定和返回值处理
+ * 脚本本身在Redis中执行，这里只校验调用方传参与脚本注释中的约定一致
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class RedisSessionManagerTest {
+
+    private static final String SESSION_KEY = "session:h:42";
+    private static final String DIRTY_SET_KEY = "session:progress:dirty";
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Mock
+    private HashOperations<String, Object, Object> hashOperations;
+
+    @Mock
+    private NearCache nearCache;
+
+    private RedisSessionManager manager;
+
+    // 最近一次脚本调用的KEYS和ARGV
+    private List<String> scriptKeys;
+    private List<Object> scriptArgs;
+    private Long scriptResult;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        manager = new RedisSessionManager();
+        ReflectionTestUtils.setField(manager, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(manager, "nearCache", nearCache);
+        ReflectionTestUtils.setField(manager, "sessionTtl", 1800L);
+        ReflectionTestUtils.setField(manager, "sessionPrefix", "session:");
+
+        doReturn(hashOperations).when(redisTemplate).opsForHash();
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenAnswer(invocation -> {
+            scriptKeys = invocation.getArgument(1);
+            scriptArgs = Arrays.asList((Object[]) invocation.getRawArguments()[2]);
+            return scriptResult;
+        });
+    }
+
+    @Test
+    void cachedHashRoundTrips() {
+        SessionDTO session = new SessionDTO(42L, 7L, SessionMode.STRUCTURED_SET, 5, 2, 1,
+                LocalDateTime.of(2024, 3, 1, 10, 30, 15), null, true);
+        session.setQuestionQueue("[3,9,27]");
+        session.setCurrentQuestionId(9L);
+        session.setQueuePosition(1);
+        session.setCurrentState(InterviewState.WAITING_FOR_USER_ANSWER);
+
+        manager.cacheSession(session);
+
+        // REPLACE_SCRIPT：ARGV[1]=TTL，其余为field/value对，null字段不写入
+        assertEquals(List.of(SESSION_KEY), scriptKeys);
+        assertEquals("1800", scriptArgs.get(0));
+        assertEquals(1, scriptArgs.size() % 2);
+        Map<Object, Object> hash = new HashMap<>();
+        for (int i = 1; i < scriptArgs.size(); i += 2) {
+            hash.put(scriptArgs.get(i), scriptArgs.get(i + 1));
+        }
+        assertFalse(hash.containsKey("endedAt"));
+        verify(nearCache).putAndBroadcast(eq(NearCache.SESSION), eq(SESSION_KEY), any(SessionDTO.class));
+
+        when(hashOperations.entries(SESSION_KEY)).thenReturn(hash);
+        SessionDTO cached = manager.getSession(42L).orElseThrow();
+
+        assertEquals(session.getId(), cached.getId());
+        assertEquals(session.getUserId(), cached.getUserId());
+        assertEquals(session.getMode(), cached.getMode());
+        assertEquals(session.getExpectedQuestionCount(), cached.getExpectedQuestionCount());
+        assertEquals(session.getAskedQuestionCount(), cached.getAskedQuestionCount());
+        assertEquals(session.getCompletedQuestionCount(), cached.getCompletedQuestionCount());
+        assertEquals(session.getQuestionQueue(), cached.getQuestionQueue());
+        assertEquals(session.getCurrentQuestionId(), cached.getCurrentQuestionId());
+        assertEquals(session.getQueuePosition(), cached.getQueuePosition());
+        assertEquals(session.getStartedAt(), cached.getStartedAt());
+        assertNull(cached.getEndedAt());
+        assertEquals(session.getIsActive(), cached.getIsActive());
+        assertEquals(session.getCurrentState(), cached.getCurrentState());
+    }
+
+    @Test
+    void cacheSessionIfAbsentKeepsExistingHash() {
+        scriptResult = 0L;
+
+        assertFalse(manager.cacheSessionIfAbsent(progress(1, 1, 0)));
+
+        assertEquals(List.of(SESSION_KEY), scriptKeys);
+        assertEquals("1800", scriptArgs.get(0));
+        verify(nearCache, never()).putAndBroadcast(anyString(), anyString(), any());
+    }
+
+    @Test
+    void cacheSessionIfAbsentWritesMissingHash() {
+        scriptResult = 1L;
+
+        assertTrue(manager.cacheSessionIfAbsent(progress(1, 1, 0)));
+
+        verify(nearCache).putAndBroadcast(eq(NearCache.SESSION), eq(SESSION_KEY), any(SessionDTO.class));
+    }
+
+    @Test
+    void advanceProgressPassesDirtySetAndUpdatesNearCache() {
+        scriptResult = 4L;
+
+        Long result = manager.advanceProgress(progress(4, 4, 3), 3, 1, DIRTY_SET_KEY);
+
+        // ADVANCE_SCRIPT：KEYS=[会话key, 待写回集合]，ARGV=[期望位置, 完成数增量, TTL, 会话ID]
+        assertEquals(4L, result);
+        assertEquals(List.of(SESSION_KEY, DIRTY_SET_KEY), scriptKeys);
+        assertEquals(List.of("3", "1", "1800", "42"), scriptArgs);
+        verify(nearCache).putAndBroadcast(eq(NearCache.SESSION), eq(SESSION_KEY), any(SessionDTO.class));
+    }
+
+    @Test
+    void advanceProgressWithoutDirtySetPassesSingleKey() {
+        scriptResult = 4L;
+
+        manager.advanceProgress(progress(4, 4, 3), 3, 0);
+
+        assertEquals(List.of(SESSION_KEY), scriptKeys);
+        assertEquals(List.of("3", "0", "1800", "42"), scriptArgs);
+    }
+
+    @Test
+    void advanceProgressPositionMismatchInvalidatesNearCache() {
+        scriptResult = -2L;
+
+        assertEquals(-2L, manager.advanceProgress(progress(4, 4, 3), 3, 1, DIRTY_SET_KEY));
+
+        verify(nearCache).invalidate(NearCache.SESSION, SESSION_KEY);
+        verify(nearCache, never()).putAndBroadcast(anyString(), anyString(), any());
+    }
+
+    @Test
+    void restoreProgressPassesSnapshotInScriptOrder() {
+        scriptResult = 3L;
+
+        Long result = manager.restoreProgress(progress(3, 3, 2), 4, DIRTY_SET_KEY);
+
+        // RESTORE_SCRIPT：ARGV=[期望位置, 位置, 已提问数, 已完成数, TTL, 会话ID]
+        assertEquals(3L, result);
+        assertEquals(List.of(SESSION_KEY, DIRTY_SET_KEY), scriptKeys);
+        assertEquals(List.of("4", "3", "3", "2", "1800", "42"), scriptArgs);
+        verify(nearCache).invalidate(NearCache.SESSION, SESSION_KEY);
+    }
+
+    @Test
+    void restoreProgressReturnsNullWhenScriptFails() {
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+                .thenThrow(new RuntimeException("connection lost"));
+
+        assertNull(manager.restoreProgress(progress(3, 3, 2), 4, null));
+    }
+
+    private SessionDTO progress(int queuePosition, int askedQuestionCount, int completedQuestionCount) {
+        SessionDTO session = new SessionDTO();
+        session.setId(42L);
+        session.setQueuePosition(queuePosition);
+        session.setAskedQuestionCount(askedQuestionCount);
+        session.setCompletedQuestionCount(completedQuestionCount);
+        return session;
+    }
+}
@@ -0,0 +1,43 @@
+package com.xinyu.InterviewCoach_v2.util;
+
+import java.util.Arrays;
+import java.util.function.IntToLongFunction;
+
+/**
+ * 测试用的简单计时工具，项目没有JMH，只用于同一JVM内对比两种实现的相对耗时
+ * 先预热让JIT完成编译，再取多轮中位数；操作的返回值累加到sink，避免被JIT当作死代码消除
+ */
+public final class TimingHarness {
+
+    private static volatile long sink;
+
+    private TimingHarness() {
+    }
+
+    /**
+     * 返回每次操作的耗时（纳秒，多轮取中位数），op的参数为本轮内的操作序号
+     */
+    public static double nanosPerOp(int warmupRounds, int rounds, int opsPerRound, IntToLongFunction op) {
+        for (int round = 0; round < warmupRounds; round++) {
+            runRound(opsPerRound, op);
+        }
+
+        double[] samples = new double[rounds];
+        for (int round = 0; round < rounds; round++) {
+            samples[round] = (double) runRound(opsPerRound, op) / opsPerRound;
+        }
+        Arrays.sort(samples);
+        return samples[rounds / 2];
+    }
+
+    private static long runRound(int opsPerRound, IntToLongFunction op) {
+        long accumulator = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < opsPerRound; i++) {
+            accumulator += op.applyAsLong(i);
+        }
+        long elapsed = System.nanoTime() - start;
+        sink += accumulator;
+        return elapsed;
+    }
+}
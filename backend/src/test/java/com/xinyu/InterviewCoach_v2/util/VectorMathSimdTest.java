@@ -0,0 +1,88 @@
+package com.xinyu.InterviewCoach_v2.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * SIMD点积与标量点积一致：覆盖不足一个向量、整好填满最后一组lane和剩余尾部元素的各种长度
+ */
+class VectorMathSimdTest {
+
+    private VectorMathSimd simd;
+
+    @BeforeEach
+    void setUp() {
+        // surefire已添加--add-modules jdk.incubator.vector，单独在IDE中运行时可能没有该模块
+        assumeTrue(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent(), "jdk.incubator.vector未启用");
+        simd = new VectorMathSimd();
+    }
+
+    @Test
+    void matchesScalarAcrossLaneBoundaries() {
+        int lanes = simd.lanes();
+        int[] lengths = IntStream.of(0, 1, lanes - 1, lanes, lanes + 1, 2 * lanes - 1, 2 * lanes, 2 * lanes + 3,
+                        1535, 1536, 1537)
+                .filter(length -> length >= 0)
+                .distinct()
+                .toArray();
+
+        Random random = new Random(42);
+        for (int length : lengths) {
+            float[] a = randomVector(random, length);
+            float[] b = randomVector(random, length);
+
+            float expected = VectorMath.dotScalar(a, b);
+            float actual = simd.dot(a, b);
+            // 累加顺序和FMA不同，按各项绝对值之和给出误差范围
+            assertEquals(expected, actual, tolerance(a, b), "length=" + length + ", lanes=" + lanes);
+        }
+    }
+
+    @Test
+    void tailElementsAreIncluded() {
+        int length = simd.lanes() + 1;
+        float[] a = new float[length];
+        float[] b = new float[length];
+        a[length - 1] = 2.0f;
+        b[length - 1] = 3.0f;
+
+        assertEquals(6.0f, simd.dot(a, b));
+    }
+
+    @Test
+    void unitVectorsGiveCosineSimilarity() {
+        float[] a = VectorMath.normalize(new double[]{3, 4, 0, 0, 0, 0, 0, 0, 0, 1});
+        float[] b = VectorMath.normalize(new double[]{3, 4, 0, 0, 0, 0, 0, 0, 0, 1});
+        float[] c = VectorMath.normalize(new double[]{-3, -4, 0, 0, 0, 0, 0, 0, 0, -1});
+
+        assertEquals(1.0f, simd.dot(a, b), 1e-6f);
+        assertEquals(-1.0f, simd.dot(a, c), 1e-6f);
+    }
+
+    @Test
+    void vectorMathUsesSimdWhenModuleIsPresent() {
+        assertTrue(VectorMath.isSimdAvailable());
+    }
+
+    private static float[] randomVector(Random random, int length) {
+        float[] vector = new float[length];
+        for (int i = 0; i < length; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private static float tolerance(float[] a, float[] b) {
+        double magnitude = 0.0;
+        for (int i = 0; i < a.length; i++) {
+            magnitude += Math.abs((double) a[i] * b[i]);
+        }
+        return (float) Math.max(1e-6, magnitude * 1e-5);
+    }
+}
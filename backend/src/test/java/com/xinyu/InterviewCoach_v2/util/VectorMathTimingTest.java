@@ -0,0 +1,57 @@
+package com.xinyu.InterviewCoach_v2.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * 标量点积与SIMD点积的耗时对比，默认不运行：mvn test -Dtest=VectorMathTimingTest -Dbenchmark=true
+ * 维度取embedding的常见长度，结果只在同一台机器上相对比较
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class VectorMathTimingTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(VectorMathTimingTest.class);
+
+    private static final int[] DIMENSIONS = {384, 1536, 3072};
+    private static final int VECTORS = 1024;
+
+    @Test
+    void scalarVersusSimdDot() {
+        assumeTrue(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent(), "jdk.incubator.vector未启用");
+        VectorMathSimd simd = new VectorMathSimd();
+        Random random = new Random(7);
+
+        for (int dimension : DIMENSIONS) {
+            float[] query = VectorMath.normalize(randomVector(random, dimension));
+            float[][] vectors = new float[VECTORS][];
+            for (int i = 0; i < VECTORS; i++) {
+                vectors[i] = VectorMath.normalize(randomVector(random, dimension));
+            }
+
+            double scalarNanos = TimingHarness.nanosPerOp(20, 15, VECTORS,
+                    i -> Float.floatToRawIntBits(VectorMath.dotScalar(query, vectors[i])));
+            double simdNanos = TimingHarness.nanosPerOp(20, 15, VECTORS,
+                    i -> Float.floatToRawIntBits(simd.dot(query, vectors[i])));
+
+            logger.info("点积耗时: dimension={}, lanes={}, scalar={}ns, simd={}ns, speedup={}x",
+                    dimension, simd.lanes(), String.format("%.1f", scalarNanos), String.format("%.1f", simdNanos),
+                    String.format("%.2f", scalarNanos / simdNanos));
+            assertTrue(scalarNanos > 0 && simdNanos > 0);
+        }
+    }
+
+    private static double[] randomVector(Random random, int dimension) {
+        double[] vector = new double[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = random.nextGaussian();
+        }
+        return vector;
+    }
+}